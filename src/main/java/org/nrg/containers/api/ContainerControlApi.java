@@ -13,15 +13,18 @@ import org.nrg.containers.model.dockerhub.DockerHubBase.DockerHub;
 import org.nrg.containers.model.image.docker.DockerImage;
 import org.nrg.containers.model.server.docker.DockerServerBase.DockerServer;
 import org.nrg.containers.model.server.docker.DockerServerBase.DockerServerWithPing;
+import org.nrg.containers.model.server.docker.DockerServerLoad;
 import org.nrg.framework.exceptions.NotFoundException;
 import org.nrg.xft.security.UserI;
 
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
 
 public interface ContainerControlApi {
     String ping() throws NoDockerServerException, DockerServerException;
+    String ping(DockerServer server) throws DockerServerException;
     boolean canConnect();
 
     String pingHub(DockerHub hub) throws DockerServerException, NoDockerServerException;
@@ -30,12 +33,16 @@ public interface ContainerControlApi {
     List<DockerImage> getAllImages() throws NoDockerServerException, DockerServerException;
     DockerImage getImageById(final String imageId) throws NotFoundException, DockerServerException, NoDockerServerException;
     void deleteImageById(String id, Boolean force) throws NoDockerServerException, DockerServerException;
+    void deleteImageById(DockerServer server, String id, Boolean force) throws DockerServerException;
 
     DockerImage pullImage(String name) throws NoDockerServerException, DockerServerException, NotFoundException;
+    DockerImage getImageById(DockerServer server, String imageId) throws NotFoundException, DockerServerException;
+    DockerImage pullImage(DockerServer server, String name) throws DockerServerException, NotFoundException;
     DockerImage pullImage(String name, DockerHub hub) throws NoDockerServerException, DockerServerException, NotFoundException;
     DockerImage pullImage(String name, DockerHub hub, String username, String password) throws NoDockerServerException, DockerServerException, NotFoundException;
 
     Container createContainerOrSwarmService(final ResolvedCommand dockerCommand, final UserI userI) throws NoDockerServerException, DockerServerException, ContainerException;
+    Container createContainerOrSwarmService(final DockerServer server, final ResolvedCommand dockerCommand, final UserI userI) throws DockerServerException, ContainerException;
     //    String createContainer(final String imageName, final List<String> runCommand, final List <String> volumes) throws NoServerPrefException, DockerServerException;
 //    String createContainer(final DockerServer server, final String imageName,
 //                       final List<String> runCommand, final List <String> volumes) throws DockerServerException;
@@ -43,6 +50,7 @@ public interface ContainerControlApi {
 //                       final List<String> runCommand, final List <String> volumes,
 //                       final List<String> environmentVariables) throws DockerServerException;
     void startContainer(final String containerOrServiceId) throws NoDockerServerException, DockerServerException;
+    void startContainer(final DockerServer server, final String containerOrServiceId) throws DockerServerException;
 
     List<Command> parseLabels(final String imageName)
             throws DockerServerException, NoDockerServerException, NotFoundException;
@@ -55,11 +63,61 @@ public interface ContainerControlApi {
     String getContainerStderrLog(String containerId) throws NoDockerServerException, DockerServerException;
     String getServiceStdoutLog(String serviceId) throws NoDockerServerException, DockerServerException;
     String getServiceStderrLog(String serviceId) throws NoDockerServerException, DockerServerException;
+    String getContainerStdoutLog(DockerServer server, String containerId) throws DockerServerException;
+    String getContainerStderrLog(DockerServer server, String containerId) throws DockerServerException;
+    String getServiceStdoutLog(DockerServer server, String serviceId) throws DockerServerException;
+    String getServiceStderrLog(DockerServer server, String serviceId) throws DockerServerException;
 
     List<DockerContainerEvent> getContainerEvents(final Date since, final Date until) throws NoDockerServerException, DockerServerException;
     void throwContainerEvents(final Date since, final Date until) throws NoDockerServerException, DockerServerException;
+    List<DockerContainerEvent> getContainerEvents(final DockerServer server, final Date since, final Date until) throws DockerServerException;
+    void throwContainerEvents(final DockerServer server, final Date since, final Date until) throws DockerServerException;
 
     void killContainer(final String id) throws NoDockerServerException, DockerServerException, NotFoundException;
+    void killContainer(final DockerServer server, final String id) throws DockerServerException, NotFoundException;
+
+    /**
+     * Remove a finished container or service from the Docker server. Does nothing if it is already gone.
+     */
+    void removeContainer(String containerId) throws NoDockerServerException, DockerServerException;
+    void removeService(String serviceId) throws NoDockerServerException, DockerServerException;
+    void removeContainer(DockerServer server, String containerId) throws DockerServerException;
+    void removeService(DockerServer server, String serviceId) throws DockerServerException;
+
+    /**
+     * @return Every exited container on the server, by container id, with the size of its writable layer in bytes.
+     *         Docker has to walk each container's files to compute the sizes, so unless asked for they are all zero.
+     */
+    Map<String, Long> getExitedContainerSizes(boolean computeSizes) throws NoDockerServerException, DockerServerException;
+    Map<String, Long> getExitedContainerSizes(DockerServer server, boolean computeSizes) throws DockerServerException;
+
+    /**
+     * @return The given containers that have exited, by container id, with the size of each one's writable layer in bytes.
+     *         Only these containers are sized.
+     */
+    Map<String, Long> getExitedContainerSizes(DockerServer server, Collection<String> containerIds) throws DockerServerException;
+    List<String> getServiceIds() throws NoDockerServerException, DockerServerException;
+    List<String> getServiceIds(DockerServer server) throws DockerServerException;
+
+    /**
+     * Find which of the given containers have exited, or are gone from the server, without reading its event history.
+     * The containers this service created are read in one listing, by label. Any given container the listing leaves out,
+     * such as one created before containers were labeled, is inspected on its own.
+     *
+     * @return An exit event for each of the given containers that has exited or is gone, like the one Docker sends.
+     */
+    List<DockerContainerEvent> getExitEvents(DockerServer server, Collection<String> containerIds) throws DockerServerException;
+
+    /**
+     * @return The size, in bytes, of every untagged image that no other image is built on, by image id.
+     */
+    Map<String, Long> getDanglingImageSizes() throws NoDockerServerException, DockerServerException;
+    Map<String, Long> getDanglingImageSizes(DockerServer server) throws DockerServerException;
+
+    /**
+     * @return How many containers the server is running and how much memory it has, for placing new containers.
+     */
+    DockerServerLoad getServerLoad(DockerServer server) throws DockerServerException;
 
     ServiceTask getTaskForService(Container service) throws NoDockerServerException, DockerServerException;
     ServiceTask getTaskForService(DockerServer dockerServer, Container service) throws DockerServerException;
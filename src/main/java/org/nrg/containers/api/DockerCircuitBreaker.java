@@ -0,0 +1,96 @@
+package org.nrg.containers.api;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Ticker;
+import com.google.common.collect.Maps;
+import org.nrg.containers.exceptions.DockerServerException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps track of whether each Docker server is answering, so that launches and status checks can fail fast
+ * instead of each waiting out a network timeout while a daemon is down.
+ *
+ * A server's breaker opens after a few of its pings fail in a row. While it is open, {@link #checkClosed(Long)}
+ * throws for that server. It closes again as soon as a ping succeeds. In case nothing is pinging, it also lets
+ * calls through again after a while, so it can never stay open forever.
+ */
+@Component
+public class DockerCircuitBreaker {
+    private static final Logger log = LoggerFactory.getLogger(DockerCircuitBreaker.class);
+
+    private static final int FAILURES_TO_OPEN = 2;
+    private static final long DEFAULT_OPEN_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
+    private final long openMillis;
+    private final Ticker ticker;
+
+    // By server id. Servers that have never failed a ping have no state.
+    private final Map<Long, ServerState> states = Maps.newHashMap();
+
+    public DockerCircuitBreaker() {
+        this(DEFAULT_OPEN_MILLIS, Ticker.systemTicker());
+    }
+
+    @VisibleForTesting
+    DockerCircuitBreaker(final long openMillis, final Ticker ticker) {
+        this.openMillis = openMillis;
+        this.ticker = ticker;
+    }
+
+    public synchronized void recordSuccess(final Long serverId) {
+        final ServerState state = states.remove(serverId);
+        if (state != null && state.open) {
+            log.info("Docker server {} is answering again.", serverId);
+        }
+    }
+
+    public synchronized void recordFailure(final Long serverId, final String reason) {
+        ServerState state = states.get(serverId);
+        if (state == null) {
+            state = new ServerState();
+            states.put(serverId, state);
+        }
+        state.consecutiveFailures++;
+        state.lastFailure = reason;
+        if (state.consecutiveFailures >= FAILURES_TO_OPEN) {
+            if (!state.open) {
+                log.warn("Docker server {} did not answer {} pings in a row. Failing fast until it does. Last failure: {}",
+                        serverId, state.consecutiveFailures, reason);
+            }
+            state.open = true;
+            state.openUntil = now() + openMillis;
+        }
+    }
+
+    public synchronized boolean isOpen(final Long serverId) {
+        final ServerState state = states.get(serverId);
+        return state != null && state.open && now() < state.openUntil;
+    }
+
+    public void checkClosed(final Long serverId) throws DockerServerException {
+        final String reason;
+        synchronized (this) {
+            if (!isOpen(serverId)) {
+                return;
+            }
+            reason = states.get(serverId).lastFailure;
+        }
+        throw new DockerServerException("Docker server " + serverId + " is not answering. Last failure: " + reason);
+    }
+
+    private long now() {
+        return TimeUnit.NANOSECONDS.toMillis(ticker.read());
+    }
+
+    private static class ServerState {
+        private int consecutiveFailures = 0;
+        private boolean open = false;
+        private long openUntil = 0L;
+        private String lastFailure;
+    }
+}
@@ -2,8 +2,12 @@ package org.nrg.containers.api;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Function;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import com.spotify.docker.client.DefaultDockerClient;
 import com.spotify.docker.client.DockerCertificates;
 import com.spotify.docker.client.DockerClient;
@@ -15,13 +19,16 @@ import com.spotify.docker.client.exceptions.ContainerNotFoundException;
 import com.spotify.docker.client.exceptions.DockerCertificateException;
 import com.spotify.docker.client.exceptions.DockerException;
 import com.spotify.docker.client.exceptions.ImageNotFoundException;
+import com.spotify.docker.client.exceptions.ServiceNotFoundException;
 import com.spotify.docker.client.messages.ContainerConfig;
 import com.spotify.docker.client.messages.ContainerCreation;
 import com.spotify.docker.client.messages.ContainerInfo;
+import com.spotify.docker.client.messages.ContainerState;
 import com.spotify.docker.client.messages.Event;
 import com.spotify.docker.client.messages.HostConfig;
 import com.spotify.docker.client.messages.Image;
 import com.spotify.docker.client.messages.ImageInfo;
+import com.spotify.docker.client.messages.Info;
 import com.spotify.docker.client.messages.PortBinding;
 import com.spotify.docker.client.messages.RegistryAuth;
 import com.spotify.docker.client.messages.ServiceCreateResponse;
@@ -30,6 +37,8 @@ import com.spotify.docker.client.messages.swarm.ContainerSpec;
 import com.spotify.docker.client.messages.swarm.EndpointSpec;
 import com.spotify.docker.client.messages.swarm.PortConfig;
 import com.spotify.docker.client.messages.swarm.ReplicatedService;
+import com.spotify.docker.client.messages.swarm.ResourceRequirements;
+import com.spotify.docker.client.messages.swarm.Resources;
 import com.spotify.docker.client.messages.swarm.RestartPolicy;
 import com.spotify.docker.client.messages.swarm.ServiceMode;
 import com.spotify.docker.client.messages.swarm.ServiceSpec;
@@ -42,6 +51,7 @@ import org.nrg.containers.exceptions.ContainerException;
 import org.nrg.containers.exceptions.DockerServerException;
 import org.nrg.containers.exceptions.NoDockerServerException;
 import org.nrg.containers.model.command.auto.Command;
+import org.nrg.containers.model.command.auto.CommandResources;
 import org.nrg.containers.model.command.auto.ResolvedCommand;
 import org.nrg.containers.model.command.auto.ResolvedCommandMount;
 import org.nrg.containers.model.container.auto.Container;
@@ -50,6 +60,7 @@ import org.nrg.containers.model.container.auto.ServiceTask;
 import org.nrg.containers.model.dockerhub.DockerHubBase.DockerHub;
 import org.nrg.containers.model.image.docker.DockerImage;
 import org.nrg.containers.model.server.docker.DockerServerBase.DockerServer;
+import org.nrg.containers.model.server.docker.DockerServerLoad;
 import org.nrg.containers.services.CommandLabelService;
 import org.nrg.containers.services.DockerServerService;
 import org.nrg.framework.exceptions.NotFoundException;
@@ -64,10 +75,17 @@ import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.io.File;
 import java.nio.file.Paths;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import static com.spotify.docker.client.DockerClient.EventsParam.since;
 import static com.spotify.docker.client.DockerClient.EventsParam.type;
@@ -78,17 +96,40 @@ import static org.nrg.containers.services.CommandLabelService.LABEL_KEY;
 public class DockerControlApi implements ContainerControlApi {
     private static final Logger log = LoggerFactory.getLogger(DockerControlApi.class);
 
+    // The daemon asks the registry on our behalf. Don't let a slow or unreachable registry hold up the caller.
+    private static final long HUB_PING_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(10);
+
+    // The CFS period Docker uses by default. A CPU limit is a quota of this period.
+    private static final long CPU_PERIOD_MICROS = 100000L;
+
+    // Placement asks every enabled server for its load. One slow server should not hold up a launch.
+    private static final long LOAD_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(5);
+
+    // How many containers to size in one request
+    private static final int SIZE_BATCH_SIZE = 50;
+    // Put on every container this service creates, so a sweep can list them all in one call
+    private static final String MANAGED_LABEL = "org.nrg.containers.managed";
+    private static final Set<String> EXITED_STATES = ImmutableSet.of("exited", "dead");
+    // A listed container's status reads like "Exited (137) 5 minutes ago"
+    private static final Pattern EXITED_STATUS_PATTERN = Pattern.compile("Exited \\((-?\\d+)\\)");
+
     private final DockerServerService dockerServerService;
     private final CommandLabelService commandLabelService;
     private final NrgEventService eventService;
+    private final DockerCircuitBreaker circuitBreaker;
+
+    // The credentials each image was last pulled with, so other servers can pull it the same way
+    private final ConcurrentMap<String, RegistryAuth> registryAuthsByImage = new ConcurrentHashMap<>();
 
     @Autowired
     public DockerControlApi(final DockerServerService dockerServerService,
                             final CommandLabelService commandLabelService,
-                            final NrgEventService eventService) {
+                            final NrgEventService eventService,
+                            final DockerCircuitBreaker circuitBreaker) {
         this.dockerServerService = dockerServerService;
         this.commandLabelService = commandLabelService;
         this.eventService = eventService;
+        this.circuitBreaker = circuitBreaker;
     }
 
     @Nonnull
@@ -102,11 +143,24 @@ public class DockerControlApi implements ContainerControlApi {
 
     @Override
     public String ping() throws NoDockerServerException, DockerServerException {
-        return ping(getServer());
+        return pingAndRecord(getServer());
     }
 
-    private String ping(final DockerServer dockerServer) throws DockerServerException {
-        return dockerServer.swarmMode() ? pingSwarmMaster(dockerServer) : pingServer(dockerServer);
+    @Override
+    public String ping(final @Nonnull DockerServer dockerServer) throws DockerServerException {
+        return pingAndRecord(dockerServer);
+    }
+
+    private String pingAndRecord(final DockerServer dockerServer) throws DockerServerException {
+        // Pings always go through, even when the server's circuit breaker is open. They are how it finds out the server is back.
+        try {
+            final String pingResult = dockerServer.swarmMode() ? pingSwarmMaster(dockerServer) : pingServer(dockerServer);
+            circuitBreaker.recordSuccess(dockerServer.id());
+            return pingResult;
+        } catch (DockerServerException e) {
+            circuitBreaker.recordFailure(dockerServer.id(), e.getMessage());
+            throw e;
+        }
     }
 
     private String pingServer(final DockerServer dockerServer) throws DockerServerException {
@@ -154,7 +208,7 @@ public class DockerControlApi implements ContainerControlApi {
     public String pingHub(final @Nonnull DockerHub hub, final @Nullable String username, final @Nullable String password)
             throws DockerServerException, NoDockerServerException {
         int status = 500;
-        try (final DockerClient client = getClient()) {
+        try (final DockerClient client = getCheckedClient(getServer(), HUB_PING_TIMEOUT_MILLIS)) {
             status = client.auth(registryAuth(hub, username, password));
         } catch (Exception e) {
             log.error(e.getMessage());
@@ -278,6 +332,15 @@ public class DockerControlApi implements ContainerControlApi {
     @Override
     public Container createContainerOrSwarmService(final ResolvedCommand resolvedCommand, final UserI userI)
             throws NoDockerServerException, DockerServerException, ContainerException {
+        return createContainerOrSwarmService(getServer(), resolvedCommand, userI);
+    }
+
+    /**
+     * Launch image on the given Docker server. The returned container records the server it was created on.
+     */
+    @Override
+    public Container createContainerOrSwarmService(final DockerServer server, final ResolvedCommand resolvedCommand, final UserI userI)
+            throws DockerServerException, ContainerException {
 
         // CS-403 We need to make sure everything exists before we mount it, else
         // bad stuff can happen.
@@ -301,8 +364,7 @@ public class DockerControlApi implements ContainerControlApi {
                 resolvedCommand.workingDirectory() :
                 null;
 
-        final DockerServer server = getServer();
-        return server.swarmMode() ?
+        final Container created = server.swarmMode() ?
                 Container.serviceFromResolvedCommand(resolvedCommand,
                         createService(server,
                                 resolvedCommand.image(),
@@ -310,7 +372,8 @@ public class DockerControlApi implements ContainerControlApi {
                                 resolvedCommand.mounts(),
                                 environmentVariables,
                                 resolvedCommand.ports(),
-                                workingDirectory),
+                                workingDirectory,
+                                resolvedCommand.resources()),
                         userI.getLogin()
                 ) :
                 Container.containerFromResolvedCommand(resolvedCommand,
@@ -320,9 +383,11 @@ public class DockerControlApi implements ContainerControlApi {
                                 resolvedCommand.mounts(),
                                 environmentVariables,
                                 resolvedCommand.ports(),
-                                workingDirectory),
+                                workingDirectory,
+                                resolvedCommand.resources()),
                         userI.getLogin()
                 );
+        return created.toBuilder().dockerServerId(server.id()).build();
     }
 
     private String createContainer(final DockerServer server,
@@ -331,7 +396,8 @@ public class DockerControlApi implements ContainerControlApi {
                                    final List<ResolvedCommandMount> resolvedCommandMounts,
                                    final List<String> environmentVariables,
                                    final Map<String, String> ports,
-                                   final String workingDirectory)
+                                   final String workingDirectory,
+                                   final CommandResources resources)
             throws DockerServerException, ContainerException {
 
         final List<String> bindMounts = Lists.newArrayList();
@@ -367,11 +433,22 @@ public class DockerControlApi implements ContainerControlApi {
             }
         }
 
-        final HostConfig hostConfig =
+        final HostConfig.Builder hostConfigBuilder =
                 HostConfig.builder()
                         .binds(bindMounts)
-                        .portBindings(portBindings)
-                        .build();
+                        .portBindings(portBindings);
+        if (resources != null) {
+            hostConfigBuilder.cpuShares(resources.cpuShares())
+                    .memory(megabytesToBytes(resources.memoryLimitMb()))
+                    .memoryReservation(megabytesToBytes(resources.memoryReservationMb()))
+                    .pidsLimit(resources.pidsLimit())
+                    .shmSize(megabytesToBytes(resources.shmSizeMb()));
+            if (resources.cpuLimit() != null) {
+                hostConfigBuilder.cpuPeriod(CPU_PERIOD_MICROS)
+                        .cpuQuota(Math.round(resources.cpuLimit() * CPU_PERIOD_MICROS));
+            }
+        }
+        final HostConfig hostConfig = hostConfigBuilder.build();
         final ContainerConfig containerConfig =
                 ContainerConfig.builder()
                         .hostConfig(hostConfig)
@@ -382,6 +459,7 @@ public class DockerControlApi implements ContainerControlApi {
                         .entrypoint("") // CS-433 Override any entrypoint image specifies
                         .env(environmentVariables)
                         .workingDir(workingDirectory)
+                        .labels(ImmutableMap.of(MANAGED_LABEL, "true"))
                         .build();
 
         if (log.isDebugEnabled()) {
@@ -393,19 +471,23 @@ public class DockerControlApi implements ContainerControlApi {
                             "\n\tworking directory \"%s\"" +
                             "\n\tvolumes [%s]" +
                             "\n\tenvironment variables [%s]" +
-                            "\n\texposed ports: {%s}",
+                            "\n\texposed ports: {%s}" +
+                            "\n\tresources %s",
                     server.name(), server.host(),
                     imageName,
                     runCommand,
                     workingDirectory,
                     StringUtils.join(bindMounts, ", "),
                     StringUtils.join(environmentVariables, ", "),
-                    StringUtils.join(portStringList, ", ")
+                    StringUtils.join(portStringList, ", "),
+                    resources
             );
             log.debug(message);
         }
 
-        try (final DockerClient client = getClient(server)) {
+        try (final DockerClient client = getCheckedClient(server)) {
+            // The image warmer may not have pulled this image onto this server yet
+            pullIfMissing(imageName, client);
             final ContainerCreation container = client.createContainer(containerConfig);
 
             final List<String> warnings = container.warnings();
@@ -428,7 +510,8 @@ public class DockerControlApi implements ContainerControlApi {
                                  final List<ResolvedCommandMount> resolvedCommandMounts,
                                  final List<String> environmentVariables,
                                  final Map<String, String> ports,
-                                 final String workingDirectory)
+                                 final String workingDirectory,
+                                 final CommandResources resources)
             throws DockerServerException, ContainerException {
 
         final List<PortConfig> portConfigs = Lists.newArrayList();
@@ -492,6 +575,7 @@ public class DockerControlApi implements ContainerControlApi {
                 .restartPolicy(RestartPolicy.builder()
                         .condition("none")
                         .build())
+                .resources(resourceRequirements(resources))
                 .build();
         final ServiceSpec serviceSpec =
                 ServiceSpec.builder()
@@ -515,19 +599,21 @@ public class DockerControlApi implements ContainerControlApi {
                             "\n\tworking directory \"%s\"" +
                             "\n\tvolumes [%s]" +
                             "\n\tenvironment variables [%s]" +
-                            "\n\texposed ports: {%s}",
+                            "\n\texposed ports: {%s}" +
+                            "\n\tresources %s",
                     server.name(), server.host(),
                     imageName,
                     runCommand,
                     workingDirectory,
                     StringUtils.join(bindMounts, ", "),
                     StringUtils.join(environmentVariables, ", "),
-                    StringUtils.join(portStringList, ", ")
+                    StringUtils.join(portStringList, ", "),
+                    resources
             );
             log.debug(message);
         }
 
-        try (final DockerClient client = getClient(server)) {
+        try (final DockerClient client = getCheckedClient(server)) {
             final ServiceCreateResponse serviceCreateResponse = client.createService(serviceSpec);
 
             final List<String> warnings = serviceCreateResponse.warnings();
@@ -544,15 +630,55 @@ public class DockerControlApi implements ContainerControlApi {
         }
     }
 
+    /**
+     * Swarm services only take CPU and memory limits and reservations.
+     * CPU shares, pids limits, and shm size only apply to standalone containers.
+     */
+    @Nullable
+    private ResourceRequirements resourceRequirements(final @Nullable CommandResources resources) {
+        if (resources == null) {
+            return null;
+        }
+        if (resources.cpuShares() != null || resources.pidsLimit() != null || resources.shmSizeMb() != null) {
+            log.debug("Swarm services cannot set cpu shares, pids limit, or shm size. Ignoring them.");
+        }
+
+        final ResourceRequirements.Builder builder = ResourceRequirements.builder();
+        if (resources.cpuLimit() != null || resources.memoryLimitMb() != null) {
+            builder.limits(Resources.builder()
+                    .nanoCpus(cpusToNanoCpus(resources.cpuLimit()))
+                    .memoryBytes(megabytesToBytes(resources.memoryLimitMb()))
+                    .build());
+        }
+        if (resources.cpuReservation() != null || resources.memoryReservationMb() != null) {
+            builder.reservations(Resources.builder()
+                    .nanoCpus(cpusToNanoCpus(resources.cpuReservation()))
+                    .memoryBytes(megabytesToBytes(resources.memoryReservationMb()))
+                    .build());
+        }
+        return builder.build();
+    }
+
+    @Nullable
+    private static Long megabytesToBytes(final @Nullable Long megabytes) {
+        return megabytes == null ? null : megabytes * 1024L * 1024L;
+    }
+
+    @Nullable
+    private static Long cpusToNanoCpus(final @Nullable Double cpus) {
+        return cpus == null ? null : Math.round(cpus * 1e9);
+    }
+
     @Override
     public void startContainer(final String containerOrServiceId) throws DockerServerException, NoDockerServerException {
-        startContainer(containerOrServiceId, getServer());
+        startContainer(getServer(), containerOrServiceId);
     }
 
-    private void startContainer(final String containerOrServiceId,
-                                final DockerServer server) throws DockerServerException {
+    @Override
+    public void startContainer(final DockerServer server,
+                               final String containerOrServiceId) throws DockerServerException {
         final boolean swarmMode = server.swarmMode();
-        try (final DockerClient client = getClient(server)) {
+        try (final DockerClient client = getCheckedClient(server)) {
             if (swarmMode) {
                 log.debug("Inspecting service " + containerOrServiceId);
                 final com.spotify.docker.client.messages.swarm.Service service = client.inspectService(containerOrServiceId);
@@ -587,7 +713,12 @@ public class DockerControlApi implements ContainerControlApi {
 
     @Override
     public void deleteImageById(final String id, final Boolean force) throws NoDockerServerException, DockerServerException {
-        try (final DockerClient dockerClient = getClient()) {
+        deleteImageById(getServer(), id, force);
+    }
+
+    @Override
+    public void deleteImageById(final DockerServer server, final String id, final Boolean force) throws DockerServerException {
+        try (final DockerClient dockerClient = getCheckedClient(server)) {
             dockerClient.removeImage(id, force, false);
         } catch (DockerException|InterruptedException e) {
             throw new DockerServerException(e);
@@ -611,7 +742,11 @@ public class DockerControlApi implements ContainerControlApi {
     @Nullable
     public DockerImage pullImage(final String name, final @Nullable DockerHub hub, final @Nullable String username, final @Nullable String password) throws NoDockerServerException, DockerServerException, NotFoundException {
         final DockerClient client = getClient();
-        _pullImage(name, registryAuth(hub, username, password), client);  // We want to throw NotFoundException here if the image is not found on the hub
+        final RegistryAuth registryAuth = registryAuth(hub, username, password);
+        _pullImage(name, registryAuth, client);  // We want to throw NotFoundException here if the image is not found on the hub
+        if (registryAuth != null) {
+            registryAuthsByImage.put(name, registryAuth);
+        }
         try {
             return getImageById(name, client);  // We don't want to throw NotFoundException from here. If we can't find the image here after it has been pulled, that is a server error.
         } catch (NotFoundException e) {
@@ -636,6 +771,46 @@ public class DockerControlApi implements ContainerControlApi {
         }
     }
 
+    @Override
+    @Nonnull
+    public DockerImage getImageById(final @Nonnull DockerServer server, final String imageId)
+            throws NotFoundException, DockerServerException {
+        try (final DockerClient client = getCheckedClient(server)) {
+            return getImageById(imageId, client);
+        } catch (NoDockerServerException e) {
+            throw new DockerServerException(e);
+        }
+    }
+
+    @Override
+    @Nonnull
+    public DockerImage pullImage(final @Nonnull DockerServer server, final String name) throws DockerServerException, NotFoundException {
+        try (final DockerClient client = getCheckedClient(server)) {
+            _pullImage(name, registryAuthsByImage.get(name), client);
+            try {
+                return getImageById(name, client);
+            } catch (NotFoundException | NoDockerServerException e) {
+                throw new DockerServerException(e);
+            }
+        }
+    }
+
+    private void pullIfMissing(final @Nonnull String imageName, final @Nonnull DockerClient client) throws DockerServerException {
+        try {
+            client.inspectImage(imageName);
+        } catch (ImageNotFoundException e) {
+            log.info("Image {} is not on this server. Pulling it.", imageName);
+            try {
+                // With the credentials it was pulled with on another server, if any
+                _pullImage(imageName, registryAuthsByImage.get(imageName), client);
+            } catch (NotFoundException notFound) {
+                throw new DockerServerException("Could not find image " + imageName, notFound);
+            }
+        } catch (DockerException | InterruptedException e) {
+            throw new DockerServerException(e);
+        }
+    }
+
     @Override
     public List<Command> parseLabels(final String imageName)
             throws DockerServerException, NoDockerServerException, NotFoundException {
@@ -734,18 +909,29 @@ public class DockerControlApi implements ContainerControlApi {
 
     @Override
     public String getContainerStdoutLog(final String containerId) throws NoDockerServerException, DockerServerException {
-        return getContainerLog(containerId, LogsParam.stdout());
+        return getContainerLog(getServer(), containerId, LogsParam.stdout());
     }
 
     @Override
     public String getContainerStderrLog(final String containerId) throws NoDockerServerException, DockerServerException {
-        return getContainerLog(containerId, LogsParam.stderr());
+        return getContainerLog(getServer(), containerId, LogsParam.stderr());
+    }
+
+    @Override
+    public String getContainerStdoutLog(final DockerServer server, final String containerId) throws DockerServerException {
+        return getContainerLog(server, containerId, LogsParam.stdout());
     }
 
-    private String getContainerLog(final String containerId, final LogsParam logType) throws NoDockerServerException, DockerServerException {
-        try (final LogStream logStream = getClient().logs(containerId, logType)) {
+    @Override
+    public String getContainerStderrLog(final DockerServer server, final String containerId) throws DockerServerException {
+        return getContainerLog(server, containerId, LogsParam.stderr());
+    }
+
+    private String getContainerLog(final DockerServer server, final String containerId, final LogsParam logType) throws DockerServerException {
+        try (final DockerClient client = getCheckedClient(server);
+             final LogStream logStream = client.logs(containerId, logType)) {
             return logStream.readFully();
-        } catch (NoDockerServerException e) {
+        } catch (DockerServerException e) {
             throw e;
         } catch (Exception e) {
             log.error(e.getMessage());
@@ -755,18 +941,29 @@ public class DockerControlApi implements ContainerControlApi {
 
     @Override
     public String getServiceStdoutLog(final String serviceId) throws NoDockerServerException, DockerServerException {
-        return getServiceLog(serviceId, LogsParam.stdout());
+        return getServiceLog(getServer(), serviceId, LogsParam.stdout());
     }
 
     @Override
     public String getServiceStderrLog(final String serviceId) throws NoDockerServerException, DockerServerException {
-        return getServiceLog(serviceId, LogsParam.stderr());
+        return getServiceLog(getServer(), serviceId, LogsParam.stderr());
     }
 
-    private String getServiceLog(final String serviceId, final LogsParam logType) throws DockerServerException, NoDockerServerException {
-        try (final LogStream logStream = getClient().serviceLogs(serviceId, logType)) {
+    @Override
+    public String getServiceStdoutLog(final DockerServer server, final String serviceId) throws DockerServerException {
+        return getServiceLog(server, serviceId, LogsParam.stdout());
+    }
+
+    @Override
+    public String getServiceStderrLog(final DockerServer server, final String serviceId) throws DockerServerException {
+        return getServiceLog(server, serviceId, LogsParam.stderr());
+    }
+
+    private String getServiceLog(final DockerServer server, final String serviceId, final LogsParam logType) throws DockerServerException {
+        try (final DockerClient client = getCheckedClient(server);
+             final LogStream logStream = client.serviceLogs(serviceId, logType)) {
             return logStream.readFully();
-        } catch (NoDockerServerException e) {
+        } catch (DockerServerException e) {
             throw e;
         } catch (Exception e) {
             log.error(e.getMessage());
@@ -777,16 +974,40 @@ public class DockerControlApi implements ContainerControlApi {
     @VisibleForTesting
     @Nonnull
     public DockerClient getClient() throws NoDockerServerException, DockerServerException {
-        return getClient(getServer());
+        return getCheckedClient(getServer());
+    }
+
+    /**
+     * Get a client for anything but a ping. Fails fast if the server has not been answering pings.
+     */
+    private DockerClient getCheckedClient(final @Nonnull DockerServer server) throws DockerServerException {
+        return getCheckedClient(server, null);
+    }
+
+    private DockerClient getCheckedClient(final @Nonnull DockerServer server, final @Nullable Long timeoutMillis)
+            throws DockerServerException {
+        circuitBreaker.checkClosed(server.id());
+        return getClient(server, timeoutMillis);
     }
 
     @Nonnull
     private DockerClient getClient(final @Nonnull DockerServer server) throws DockerServerException {
+        return getClient(server, null);
+    }
+
+    private DockerClient getClient(final @Nonnull DockerServer server, final @Nullable Long timeoutMillis)
+            throws DockerServerException {
 
         DefaultDockerClient.Builder clientBuilder =
             DefaultDockerClient.builder()
                 .uri(server.host());
 
+        if (timeoutMillis != null) {
+            clientBuilder = clientBuilder
+                    .connectTimeoutMillis(timeoutMillis)
+                    .readTimeoutMillis(timeoutMillis);
+        }
+
         if (StringUtils.isNotBlank(server.certPath())) {
             try {
                 final DockerCertificates certificates =
@@ -807,7 +1028,12 @@ public class DockerControlApi implements ContainerControlApi {
 
     @Override
     public List<DockerContainerEvent> getContainerEvents(final Date since, final Date until) throws NoDockerServerException, DockerServerException {
-        final List<Event> dockerEventList = getDockerContainerEvents(since, until);
+        return getContainerEvents(getServer(), since, until);
+    }
+
+    @Override
+    public List<DockerContainerEvent> getContainerEvents(final DockerServer server, final Date since, final Date until) throws DockerServerException {
+        final List<Event> dockerEventList = getDockerContainerEvents(server, since, until);
 
         final List<DockerContainerEvent> events = Lists.newArrayList();
         for (final Event dockerEvent : dockerEventList) {
@@ -832,7 +1058,12 @@ public class DockerControlApi implements ContainerControlApi {
 
     @Override
     public void throwContainerEvents(final Date since, final Date until) throws NoDockerServerException, DockerServerException {
-        final List<DockerContainerEvent> events = getContainerEvents(since, until);
+        throwContainerEvents(getServer(), since, until);
+    }
+
+    @Override
+    public void throwContainerEvents(final DockerServer server, final Date since, final Date until) throws DockerServerException {
+        final List<DockerContainerEvent> events = getContainerEvents(server, since, until);
 
         for (final DockerContainerEvent event : events) {
             if (log.isDebugEnabled()) {
@@ -842,8 +1073,8 @@ public class DockerControlApi implements ContainerControlApi {
         }
     }
 
-    private List<Event> getDockerContainerEvents(final Date since, final Date until) throws NoDockerServerException, DockerServerException {
-        try(final DockerClient client = getClient()) {
+    private List<Event> getDockerContainerEvents(final DockerServer server, final Date since, final Date until) throws DockerServerException {
+        try(final DockerClient client = getCheckedClient(server)) {
             if (log.isDebugEnabled()) {
                 log.debug("Reading all docker container events from " + since.getTime() + " to " + until.getTime() + ".");
             }
@@ -872,7 +1103,12 @@ public class DockerControlApi implements ContainerControlApi {
 
     @Override
     public void killContainer(final String id) throws NoDockerServerException, DockerServerException, NotFoundException {
-        try(final DockerClient client = getClient()) {
+        killContainer(getServer(), id);
+    }
+
+    @Override
+    public void killContainer(final DockerServer server, final String id) throws DockerServerException, NotFoundException {
+        try(final DockerClient client = getCheckedClient(server)) {
             log.info("Killing container " + id);
             client.killContainer(id);
         } catch (ContainerNotFoundException e) {
@@ -887,6 +1123,198 @@ public class DockerControlApi implements ContainerControlApi {
         }
     }
 
+    @Override
+    public void removeContainer(final String containerId) throws NoDockerServerException, DockerServerException {
+        removeContainer(getServer(), containerId);
+    }
+
+    @Override
+    public void removeContainer(final DockerServer server, final String containerId) throws DockerServerException {
+        try (final DockerClient client = getCheckedClient(server)) {
+            log.debug("Removing container {}.", containerId);
+            client.removeContainer(containerId, DockerClient.RemoveContainerParam.removeVolumes());
+        } catch (ContainerNotFoundException e) {
+            // Someone else already removed it
+            log.debug("Container {} is already gone.", containerId);
+        } catch (DockerException | InterruptedException e) {
+            throw new DockerServerException(e);
+        }
+    }
+
+    @Override
+    public void removeService(final String serviceId) throws NoDockerServerException, DockerServerException {
+        removeService(getServer(), serviceId);
+    }
+
+    @Override
+    public void removeService(final DockerServer server, final String serviceId) throws DockerServerException {
+        try (final DockerClient client = getCheckedClient(server)) {
+            log.debug("Removing service {}.", serviceId);
+            client.removeService(serviceId);
+        } catch (ServiceNotFoundException e) {
+            // Someone else already removed it
+            log.debug("Service {} is already gone.", serviceId);
+        } catch (DockerException | InterruptedException e) {
+            throw new DockerServerException(e);
+        }
+    }
+
+    @Override
+    @Nonnull
+    public Map<String, Long> getExitedContainerSizes(final boolean computeSizes)
+            throws NoDockerServerException, DockerServerException {
+        return getExitedContainerSizes(getServer(), computeSizes);
+    }
+
+    @Override
+    @Nonnull
+    public Map<String, Long> getExitedContainerSizes(final DockerServer server, final boolean computeSizes)
+            throws DockerServerException {
+        try (final DockerClient client = getCheckedClient(server)) {
+            final List<com.spotify.docker.client.messages.Container> exited = client.listContainers(
+                    DockerClient.ListContainersParam.withStatusExited(),
+                    DockerClient.ListContainersParam.withContainerSizes(computeSizes));
+            final Map<String, Long> sizes = Maps.newHashMap();
+            for (final com.spotify.docker.client.messages.Container container : exited) {
+                sizes.put(container.id(), container.sizeRw() == null ? 0L : container.sizeRw());
+            }
+            return sizes;
+        } catch (DockerException | InterruptedException e) {
+            throw new DockerServerException(e);
+        }
+    }
+
+    @Override
+    @Nonnull
+    public Map<String, Long> getExitedContainerSizes(final DockerServer server, final Collection<String> containerIds)
+            throws DockerServerException {
+        final Map<String, Long> sizes = Maps.newHashMap();
+        try (final DockerClient client = getCheckedClient(server)) {
+            // Docker ORs the values of a repeated filter. Batches keep the request URL short.
+            for (final List<String> batch : Iterables.partition(containerIds, SIZE_BATCH_SIZE)) {
+                final List<DockerClient.ListContainersParam> params = Lists.newArrayList(
+                        DockerClient.ListContainersParam.withStatusExited(),
+                        DockerClient.ListContainersParam.withContainerSizes(true));
+                for (final String containerId : batch) {
+                    params.add(DockerClient.ListContainersParam.filter("id", containerId));
+                }
+                for (final com.spotify.docker.client.messages.Container container : client.listContainers(
+                        params.toArray(new DockerClient.ListContainersParam[params.size()]))) {
+                    sizes.put(container.id(), container.sizeRw() == null ? 0L : container.sizeRw());
+                }
+            }
+        } catch (DockerException | InterruptedException e) {
+            throw new DockerServerException(e);
+        }
+        return sizes;
+    }
+
+    @Override
+    @Nonnull
+    public List<String> getServiceIds() throws NoDockerServerException, DockerServerException {
+        return getServiceIds(getServer());
+    }
+
+    @Override
+    @Nonnull
+    public List<String> getServiceIds(final DockerServer server) throws DockerServerException {
+        try (final DockerClient client = getCheckedClient(server)) {
+            final List<String> serviceIds = Lists.newArrayList();
+            for (final com.spotify.docker.client.messages.swarm.Service service : client.listServices()) {
+                serviceIds.add(service.id());
+            }
+            return serviceIds;
+        } catch (DockerException | InterruptedException e) {
+            throw new DockerServerException(e);
+        }
+    }
+
+    @Override
+    @Nonnull
+    public List<DockerContainerEvent> getExitEvents(final DockerServer server, final Collection<String> containerIds)
+            throws DockerServerException {
+        final Set<String> notListed = Sets.newHashSet(containerIds);
+        final List<DockerContainerEvent> events = Lists.newArrayList();
+        try (final DockerClient client = getCheckedClient(server)) {
+            for (final com.spotify.docker.client.messages.Container container : client.listContainers(
+                    DockerClient.ListContainersParam.allContainers(),
+                    DockerClient.ListContainersParam.withLabel(MANAGED_LABEL))) {
+                if (notListed.remove(container.id()) && EXITED_STATES.contains(container.state())) {
+                    events.add(exitEvent(container.id(), new Date(), exitCodeFromStatus(container.status())));
+                }
+            }
+
+            for (final String containerId : notListed) {
+                try {
+                    final ContainerState state = client.inspectContainer(containerId).state();
+                    if (EXITED_STATES.contains(state.status())) {
+                        events.add(exitEvent(containerId, state.finishedAt() == null ? new Date() : state.finishedAt(),
+                                state.exitCode() == null ? null : String.valueOf(state.exitCode())));
+                    }
+                } catch (ContainerNotFoundException e) {
+                    log.info("Container {} is gone from server {}.", containerId, server.name());
+                    events.add(exitEvent(containerId, new Date(), null));
+                }
+            }
+        } catch (DockerException | InterruptedException e) {
+            throw new DockerServerException(e);
+        }
+        return events;
+    }
+
+    // No nanosecond time, so an exit found by several sweeps goes into the container's history once
+    private static DockerContainerEvent exitEvent(final String containerId, final Date time, final @Nullable String exitCode) {
+        final Map<String, String> attributes = Maps.newHashMap();
+        if (exitCode != null) {
+            attributes.put("exitCode", exitCode);
+        }
+        return DockerContainerEvent.create("die", containerId, time, null, attributes);
+    }
+
+    @Nullable
+    private static String exitCodeFromStatus(final @Nullable String status) {
+        if (status == null) {
+            return null;
+        }
+        final Matcher matcher = EXITED_STATUS_PATTERN.matcher(status);
+        return matcher.find() ? matcher.group(1) : null;
+    }
+
+    @Override
+    @Nonnull
+    public Map<String, Long> getDanglingImageSizes() throws NoDockerServerException, DockerServerException {
+        return getDanglingImageSizes(getServer());
+    }
+
+    @Override
+    @Nonnull
+    public Map<String, Long> getDanglingImageSizes(final DockerServer server) throws DockerServerException {
+        try (final DockerClient client = getCheckedClient(server)) {
+            final Map<String, Long> sizes = Maps.newHashMap();
+            for (final Image image : client.listImages(ListImagesParam.danglingImages())) {
+                sizes.put(image.id(), image.size() == null ? 0L : image.size());
+            }
+            return sizes;
+        } catch (DockerException | InterruptedException e) {
+            throw new DockerServerException(e);
+        }
+    }
+
+    @Override
+    @Nonnull
+    public DockerServerLoad getServerLoad(final DockerServer server) throws DockerServerException {
+        // A server that does not answer quickly is left out of placement
+        try (final DockerClient client = getCheckedClient(server, LOAD_TIMEOUT_MILLIS)) {
+            final Info info = client.info();
+            return DockerServerLoad.create(server.id(), server.name(),
+                    info.containersRunning() == null ? 0 : info.containersRunning(),
+                    info.memTotal() == null ? 0L : info.memTotal(),
+                    server.weight());
+        } catch (DockerException | InterruptedException e) {
+            throw new DockerServerException(e);
+        }
+    }
+
     @Override
     public ServiceTask getTaskForService(final Container service) throws NoDockerServerException, DockerServerException {
         return getTaskForService(getServer(), service);
@@ -895,7 +1323,7 @@ public class DockerControlApi implements ContainerControlApi {
     @Override
     public ServiceTask getTaskForService(final DockerServer dockerServer, final Container service)
             throws DockerServerException {
-        try (final DockerClient client = getClient(dockerServer)) {
+        try (final DockerClient client = getCheckedClient(dockerServer)) {
             final List<Task> tasks = client.listTasks(Task.Criteria.builder().serviceName(service.serviceId()).build());
             if (tasks.size() == 1) {
                 final Task task = tasks.get(0);
@@ -4,6 +4,13 @@ import com.fasterxml.jackson.databind.Module;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.guava.GuavaModule;
 import org.nrg.containers.events.DockerStatusUpdater;
+import org.nrg.containers.jobs.BulkLaunchJobDrainer;
+import org.nrg.containers.jobs.ContainerQueueJob;
+import org.nrg.containers.jobs.ContainerRetentionJob;
+import org.nrg.containers.jobs.DockerHealthMonitor;
+import org.nrg.containers.jobs.DockerPruneJob;
+import org.nrg.containers.jobs.FinalizationWorkJob;
+import org.nrg.containers.jobs.ImageWarmerJob;
 import org.nrg.framework.annotations.XnatPlugin;
 import org.nrg.transporter.config.TransporterConfig;
 import org.nrg.xnat.initialization.RootConfig;
@@ -45,7 +52,63 @@ public class ContainersConfig {
     public TriggerTask dockerEventPullerTask(final DockerStatusUpdater dockerStatusUpdater) {
         return new TriggerTask(
                 dockerStatusUpdater,
+                new PeriodicTrigger(DockerStatusUpdater.PERIOD_SECONDS, TimeUnit.SECONDS)
+        );
+    }
+
+    @Bean
+    public TriggerTask dockerHealthMonitorTask(final DockerHealthMonitor dockerHealthMonitor) {
+        return new TriggerTask(
+                dockerHealthMonitor,
+                new PeriodicTrigger(15L, TimeUnit.SECONDS)
+        );
+    }
+
+    @Bean
+    public TriggerTask imageWarmerTask(final ImageWarmerJob imageWarmerJob) {
+        return new TriggerTask(
+                imageWarmerJob,
+                new PeriodicTrigger(ImageWarmerJob.PERIOD_MINUTES, TimeUnit.MINUTES)
+        );
+    }
+
+    @Bean
+    public TriggerTask dockerPruneTask(final DockerPruneJob dockerPruneJob) {
+        return new TriggerTask(
+                dockerPruneJob,
+                new PeriodicTrigger(10L, TimeUnit.MINUTES)
+        );
+    }
+
+    @Bean
+    public TriggerTask containerRetentionTask(final ContainerRetentionJob containerRetentionJob) {
+        return new TriggerTask(
+                containerRetentionJob,
+                new PeriodicTrigger(ContainerRetentionJob.PERIOD_MINUTES, TimeUnit.MINUTES)
+        );
+    }
+
+    @Bean
+    public TriggerTask containerQueueTask(final ContainerQueueJob containerQueueJob) {
+        return new TriggerTask(
+                containerQueueJob,
+                new PeriodicTrigger(30L, TimeUnit.SECONDS)
+        );
+    }
+
+    @Bean
+    public TriggerTask bulkLaunchJobTask(final BulkLaunchJobDrainer bulkLaunchJobDrainer) {
+        return new TriggerTask(
+                bulkLaunchJobDrainer,
+                new PeriodicTrigger(5L, TimeUnit.SECONDS)
+        );
+    }
+
+    @Bean
+    public TriggerTask finalizationWorkTask(final FinalizationWorkJob finalizationWorkJob) {
+        return new TriggerTask(
+                finalizationWorkJob,
                 new PeriodicTrigger(10L, TimeUnit.SECONDS)
         );
     }
-}
\ No newline at end of file
+}
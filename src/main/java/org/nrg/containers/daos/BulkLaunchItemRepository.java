@@ -0,0 +1,74 @@
+package org.nrg.containers.daos;
+
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.criterion.Order;
+import org.hibernate.criterion.Restrictions;
+import org.nrg.containers.model.bulklaunch.entity.BulkLaunchItemEntity;
+import org.nrg.framework.orm.hibernate.AbstractHibernateDAO;
+import org.springframework.stereotype.Repository;
+
+import javax.annotation.Nonnull;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+@Repository
+public class BulkLaunchItemRepository extends AbstractHibernateDAO<BulkLaunchItemEntity> {
+
+    /**
+     * @return Items of a job with index at least {@code fromIndex} and less than {@code toIndex}, in order.
+     */
+    @Nonnull
+    @SuppressWarnings("unchecked")
+    public List<BulkLaunchItemEntity> retrieveRange(final long jobId, final int fromIndex, final int toIndex) {
+        final List result = getSession()
+                .createCriteria(BulkLaunchItemEntity.class)
+                .add(Restrictions.eq("jobId", jobId))
+                .add(Restrictions.ge("itemIndex", fromIndex))
+                .add(Restrictions.lt("itemIndex", toIndex))
+                .addOrder(Order.asc("itemIndex"))
+                .list();
+        return result == null ? Collections.<BulkLaunchItemEntity>emptyList() : (List<BulkLaunchItemEntity>) result;
+    }
+
+    /**
+     * @return Items that were claimed before the cutoff but never got a report, for instance because the node
+     * launching them went down.
+     */
+    @Nonnull
+    @SuppressWarnings("unchecked")
+    public List<BulkLaunchItemEntity> retrieveClaimedWithoutReport(final @Nonnull Date claimedBefore, final int maxResults) {
+        final List result = getSession()
+                .createCriteria(BulkLaunchItemEntity.class)
+                .add(Restrictions.isNull("success"))
+                .add(Restrictions.isNotNull("claimed"))
+                .add(Restrictions.lt("claimed", claimedBefore))
+                .addOrder(Order.asc("id"))
+                .setMaxResults(maxResults)
+                .list();
+        return result == null ? Collections.<BulkLaunchItemEntity>emptyList() : (List<BulkLaunchItemEntity>) result;
+    }
+
+    /**
+     * Write out and detach everything in the session. Used while storing a large job so the session does not grow with it.
+     */
+    public void flushAndClear() {
+        getSession().flush();
+        getSession().clear();
+    }
+
+    /**
+     * Report JSON of a job's launched items, in item order. The caller must close the results.
+     */
+    @Nonnull
+    public ScrollableResults scrollReports(final long jobId, final int fetchSize) {
+        return getSession()
+                .createQuery("select i.reportJson from BulkLaunchItemEntity as i " +
+                        "where i.jobId = :jobId and i.reportJson is not null order by i.itemIndex asc")
+                .setLong("jobId", jobId)
+                .setReadOnly(true)
+                .setFetchSize(fetchSize)
+                .scroll(ScrollMode.FORWARD_ONLY);
+    }
+}
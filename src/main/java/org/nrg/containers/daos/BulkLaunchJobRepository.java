@@ -0,0 +1,78 @@
+package org.nrg.containers.daos;
+
+import org.hibernate.criterion.Order;
+import org.hibernate.criterion.Restrictions;
+import org.nrg.containers.model.bulklaunch.entity.BulkLaunchJobEntity;
+import org.nrg.framework.orm.hibernate.AbstractHibernateDAO;
+import org.springframework.stereotype.Repository;
+
+import javax.annotation.Nonnull;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+@Repository
+public class BulkLaunchJobRepository extends AbstractHibernateDAO<BulkLaunchJobEntity> {
+
+    /**
+     * @return Jobs that are not complete, oldest first.
+     */
+    @Nonnull
+    @SuppressWarnings("unchecked")
+    public List<BulkLaunchJobEntity> retrieveUnfinished() {
+        final List result = getSession()
+                .createCriteria(BulkLaunchJobEntity.class)
+                .add(Restrictions.ne("status", BulkLaunchJobEntity.COMPLETE))
+                .addOrder(Order.asc("id"))
+                .list();
+        return result == null ? Collections.<BulkLaunchJobEntity>emptyList() : (List<BulkLaunchJobEntity>) result;
+    }
+
+    /**
+     * Atomically move a job's cursor, but only if no one else has moved it since it was read.
+     *
+     * @return {@code true} if the caller now owns the items between the two cursor positions.
+     */
+    public boolean moveCursor(final long jobId, final int expectedCursor, final int newCursor) {
+        final Date now = new Date();
+        final int updated = getSession()
+                .createQuery("update BulkLaunchJobEntity as j " +
+                        "set j.launchCursor = :newCursor, j.status = :running, j.timestamp = :now " +
+                        "where j.id = :id and j.launchCursor = :expectedCursor")
+                .setInteger("newCursor", newCursor)
+                .setString("running", BulkLaunchJobEntity.RUNNING)
+                .setTimestamp("now", now)
+                .setLong("id", jobId)
+                .setInteger("expectedCursor", expectedCursor)
+                .executeUpdate();
+        return updated == 1;
+    }
+
+    public void addResults(final long jobId, final int succeeded, final int failed) {
+        getSession()
+                .createQuery("update BulkLaunchJobEntity as j " +
+                        "set j.succeeded = j.succeeded + :succeeded, j.failed = j.failed + :failed, j.timestamp = :now " +
+                        "where j.id = :id")
+                .setInteger("succeeded", succeeded)
+                .setInteger("failed", failed)
+                .setTimestamp("now", new Date())
+                .setLong("id", jobId)
+                .executeUpdate();
+    }
+
+    /**
+     * Mark the job complete if every item has a report.
+     */
+    public boolean completeIfDone(final long jobId) {
+        final Date now = new Date();
+        final int updated = getSession()
+                .createQuery("update BulkLaunchJobEntity as j " +
+                        "set j.status = :complete, j.finished = :now, j.timestamp = :now " +
+                        "where j.id = :id and j.status <> :complete and j.succeeded + j.failed >= j.itemCount")
+                .setString("complete", BulkLaunchJobEntity.COMPLETE)
+                .setTimestamp("now", now)
+                .setLong("id", jobId)
+                .executeUpdate();
+        return updated == 1;
+    }
+}
@@ -0,0 +1,46 @@
+package org.nrg.containers.daos;
+
+import org.hibernate.criterion.Order;
+import org.hibernate.criterion.Restrictions;
+import org.nrg.containers.model.container.entity.ContainerArchiveEntity;
+import org.nrg.framework.orm.hibernate.AbstractHibernateDAO;
+import org.springframework.stereotype.Repository;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Collections;
+import java.util.List;
+
+@Repository
+public class ContainerArchiveEntityRepository extends AbstractHibernateDAO<ContainerArchiveEntity> {
+
+    @Nullable
+    public ContainerArchiveEntity retrieveByContainerDatabaseId(final long containerDatabaseId) {
+        return findByUniqueProperty("containerDatabaseId", containerDatabaseId);
+    }
+
+    @Nullable
+    public ContainerArchiveEntity retrieveByContainerOrServiceId(final @Nonnull String containerId) {
+        final List result = getSession()
+                .createCriteria(ContainerArchiveEntity.class)
+                .add(Restrictions.or(
+                        Restrictions.eq("containerId", containerId),
+                        Restrictions.eq("serviceId", containerId)
+                ))
+                .setMaxResults(1)
+                .list();
+        return result == null || result.isEmpty() ? null : (ContainerArchiveEntity) result.get(0);
+    }
+
+    @Nonnull
+    @SuppressWarnings("unchecked")
+    public List<ContainerArchiveEntity> retrievePage(final int firstResult, final int maxResults) {
+        final List result = getSession()
+                .createCriteria(ContainerArchiveEntity.class)
+                .addOrder(Order.desc("containerDatabaseId"))
+                .setFirstResult(firstResult)
+                .setMaxResults(maxResults)
+                .list();
+        return result == null ? Collections.<ContainerArchiveEntity>emptyList() : (List<ContainerArchiveEntity>) result;
+    }
+}
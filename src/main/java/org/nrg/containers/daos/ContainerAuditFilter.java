@@ -0,0 +1,291 @@
+package org.nrg.containers.daos;
+
+import com.google.common.collect.ImmutableSet;
+import org.hibernate.event.spi.PostCollectionRecreateEvent;
+import org.hibernate.event.spi.PostCollectionRecreateEventListener;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.event.spi.PreCollectionRemoveEvent;
+import org.hibernate.event.spi.PreCollectionRemoveEventListener;
+import org.hibernate.event.spi.PreCollectionUpdateEvent;
+import org.hibernate.event.spi.PreCollectionUpdateEventListener;
+import org.hibernate.persister.entity.EntityPersister;
+import org.nrg.containers.model.configuration.ContainerServicePrefsBean;
+import org.nrg.containers.model.container.ContainerAuditGranularity;
+import org.nrg.containers.model.container.entity.ContainerEntity;
+import org.nrg.containers.model.container.entity.ContainerEntityHistory;
+import org.nrg.containers.model.container.entity.ContainerEntityInput;
+import org.nrg.containers.model.container.entity.ContainerEntityMount;
+import org.nrg.containers.model.container.entity.ContainerEntityOutput;
+import org.nrg.containers.model.container.entity.ContainerMountFilesEntity;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Decides which Envers audit events on the container entity graph should be written,
+ * based on the {@link ContainerAuditGranularity} site setting.
+ *
+ * The nested listener classes wrap the Envers listeners and only delegate to them
+ * when the filter says the event should be audited. Events on any other entity
+ * are always passed through untouched.
+ */
+public class ContainerAuditFilter {
+    private static final Logger log = LoggerFactory.getLogger(ContainerAuditFilter.class);
+
+    private static final String STATUS_PROPERTY = "status";
+    private static final Set<Class<?>> CHILD_ENTITY_CLASSES = ImmutableSet.<Class<?>>of(
+            ContainerEntityHistory.class,
+            ContainerEntityInput.class,
+            ContainerEntityOutput.class,
+            ContainerEntityMount.class,
+            ContainerMountFilesEntity.class
+    );
+
+    private static final ThreadLocal<Boolean> SUPPRESSED = new ThreadLocal<>();
+
+    private final ContainerServicePrefsBean containerServicePrefsBean;
+
+    public ContainerAuditFilter(final ContainerServicePrefsBean containerServicePrefsBean) {
+        this.containerServicePrefsBean = containerServicePrefsBean;
+    }
+
+    /**
+     * Stop auditing the container entity graph on the current thread, whatever the granularity.
+     * Used when records are purged on purpose, e.g. by the retention job. Always pair with {@link #resumeForCurrentThread()}.
+     */
+    public static void suppressForCurrentThread() {
+        SUPPRESSED.set(Boolean.TRUE);
+    }
+
+    public static void resumeForCurrentThread() {
+        SUPPRESSED.remove();
+    }
+
+    public ContainerAuditGranularity granularity() {
+        if (Boolean.TRUE.equals(SUPPRESSED.get())) {
+            return ContainerAuditGranularity.NONE;
+        }
+        try {
+            return containerServicePrefsBean.auditGranularity();
+        } catch (Exception e) {
+            // Preferences may not be readable during startup. Fall back to auditing everything.
+            log.debug("Could not read container audit granularity. Using \"{}\".", ContainerAuditGranularity.FULL.getName());
+            return ContainerAuditGranularity.FULL;
+        }
+    }
+
+    public boolean shouldAuditInsert(final Object entity) {
+        return shouldAuditInsertOrDelete(entity);
+    }
+
+    public boolean shouldAuditDelete(final Object entity) {
+        return shouldAuditInsertOrDelete(entity);
+    }
+
+    public boolean shouldAuditUpdate(final Object entity,
+                                     final String[] propertyNames,
+                                     final int[] dirtyProperties,
+                                     final Object[] oldState,
+                                     final Object[] state) {
+        if (!isInContainerGraph(entity)) {
+            return true;
+        }
+        switch (granularity()) {
+            case FULL:
+                return true;
+            case ENTITY:
+                return entity instanceof ContainerEntity;
+            case LIFECYCLE:
+                return entity instanceof ContainerEntity &&
+                        ((ContainerEntity) entity).statusIsTerminal() &&
+                        statusMayHaveChanged(propertyNames, dirtyProperties, oldState, state);
+            default:
+                return false;
+        }
+    }
+
+    public boolean shouldAuditCollectionChange(final Object owner) {
+        return !isInContainerGraph(owner) || granularity() == ContainerAuditGranularity.FULL;
+    }
+
+    private boolean shouldAuditInsertOrDelete(final Object entity) {
+        if (!isInContainerGraph(entity)) {
+            return true;
+        }
+        switch (granularity()) {
+            case FULL:
+                return true;
+            case ENTITY:
+            case LIFECYCLE:
+                return entity instanceof ContainerEntity;
+            default:
+                return false;
+        }
+    }
+
+    private boolean isInContainerGraph(final Object entity) {
+        return entity != null &&
+                (entity instanceof ContainerEntity || CHILD_ENTITY_CLASSES.contains(entity.getClass()));
+    }
+
+    private boolean statusMayHaveChanged(final String[] propertyNames,
+                                         final int[] dirtyProperties,
+                                         final Object[] oldState,
+                                         final Object[] state) {
+        int statusIndex = -1;
+        if (propertyNames != null) {
+            for (int i = 0; i < propertyNames.length; i++) {
+                if (STATUS_PROPERTY.equals(propertyNames[i])) {
+                    statusIndex = i;
+                    break;
+                }
+            }
+        }
+        if (statusIndex < 0) {
+            return true;
+        }
+
+        if (dirtyProperties != null) {
+            for (final int dirtyIndex : dirtyProperties) {
+                if (dirtyIndex == statusIndex) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        // Detached updates carry no dirty-checking information. Compare the states if we have both.
+        if (oldState != null && state != null) {
+            return !Objects.equals(oldState[statusIndex], state[statusIndex]);
+        }
+        return true;
+    }
+
+    public static class FilteringPostInsertEventListener implements PostInsertEventListener {
+        private final PostInsertEventListener delegate;
+        private final ContainerAuditFilter filter;
+
+        public FilteringPostInsertEventListener(final PostInsertEventListener delegate, final ContainerAuditFilter filter) {
+            this.delegate = delegate;
+            this.filter = filter;
+        }
+
+        @Override
+        public void onPostInsert(final PostInsertEvent event) {
+            if (filter.shouldAuditInsert(event.getEntity())) {
+                delegate.onPostInsert(event);
+            }
+        }
+
+        @Override
+        public boolean requiresPostCommitHanding(final EntityPersister persister) {
+            return delegate.requiresPostCommitHanding(persister);
+        }
+    }
+
+    public static class FilteringPostUpdateEventListener implements PostUpdateEventListener {
+        private final PostUpdateEventListener delegate;
+        private final ContainerAuditFilter filter;
+
+        public FilteringPostUpdateEventListener(final PostUpdateEventListener delegate, final ContainerAuditFilter filter) {
+            this.delegate = delegate;
+            this.filter = filter;
+        }
+
+        @Override
+        public void onPostUpdate(final PostUpdateEvent event) {
+            if (filter.shouldAuditUpdate(event.getEntity(),
+                    event.getPersister() == null ? null : event.getPersister().getPropertyNames(),
+                    event.getDirtyProperties(),
+                    event.getOldState(),
+                    event.getState())) {
+                delegate.onPostUpdate(event);
+            }
+        }
+
+        @Override
+        public boolean requiresPostCommitHanding(final EntityPersister persister) {
+            return delegate.requiresPostCommitHanding(persister);
+        }
+    }
+
+    public static class FilteringPostDeleteEventListener implements PostDeleteEventListener {
+        private final PostDeleteEventListener delegate;
+        private final ContainerAuditFilter filter;
+
+        public FilteringPostDeleteEventListener(final PostDeleteEventListener delegate, final ContainerAuditFilter filter) {
+            this.delegate = delegate;
+            this.filter = filter;
+        }
+
+        @Override
+        public void onPostDelete(final PostDeleteEvent event) {
+            if (filter.shouldAuditDelete(event.getEntity())) {
+                delegate.onPostDelete(event);
+            }
+        }
+
+        @Override
+        public boolean requiresPostCommitHanding(final EntityPersister persister) {
+            return delegate.requiresPostCommitHanding(persister);
+        }
+    }
+
+    public static class FilteringPreCollectionUpdateEventListener implements PreCollectionUpdateEventListener {
+        private final PreCollectionUpdateEventListener delegate;
+        private final ContainerAuditFilter filter;
+
+        public FilteringPreCollectionUpdateEventListener(final PreCollectionUpdateEventListener delegate, final ContainerAuditFilter filter) {
+            this.delegate = delegate;
+            this.filter = filter;
+        }
+
+        @Override
+        public void onPreUpdateCollection(final PreCollectionUpdateEvent event) {
+            if (filter.shouldAuditCollectionChange(event.getAffectedOwnerOrNull())) {
+                delegate.onPreUpdateCollection(event);
+            }
+        }
+    }
+
+    public static class FilteringPreCollectionRemoveEventListener implements PreCollectionRemoveEventListener {
+        private final PreCollectionRemoveEventListener delegate;
+        private final ContainerAuditFilter filter;
+
+        public FilteringPreCollectionRemoveEventListener(final PreCollectionRemoveEventListener delegate, final ContainerAuditFilter filter) {
+            this.delegate = delegate;
+            this.filter = filter;
+        }
+
+        @Override
+        public void onPreRemoveCollection(final PreCollectionRemoveEvent event) {
+            if (filter.shouldAuditCollectionChange(event.getAffectedOwnerOrNull())) {
+                delegate.onPreRemoveCollection(event);
+            }
+        }
+    }
+
+    public static class FilteringPostCollectionRecreateEventListener implements PostCollectionRecreateEventListener {
+        private final PostCollectionRecreateEventListener delegate;
+        private final ContainerAuditFilter filter;
+
+        public FilteringPostCollectionRecreateEventListener(final PostCollectionRecreateEventListener delegate, final ContainerAuditFilter filter) {
+            this.delegate = delegate;
+            this.filter = filter;
+        }
+
+        @Override
+        public void onPostRecreateCollection(final PostCollectionRecreateEvent event) {
+            if (filter.shouldAuditCollectionChange(event.getAffectedOwnerOrNull())) {
+                delegate.onPostRecreateCollection(event);
+            }
+        }
+    }
+}
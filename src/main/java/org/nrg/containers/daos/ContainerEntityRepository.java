@@ -1,10 +1,25 @@
 package org.nrg.containers.daos;
 
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import org.apache.commons.lang3.StringUtils;
+import org.hibernate.CacheMode;
+import org.hibernate.Criteria;
 import org.hibernate.Hibernate;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.SessionFactory;
+import org.hibernate.criterion.MatchMode;
+import org.hibernate.criterion.Order;
 import org.hibernate.criterion.Restrictions;
+import org.nrg.containers.model.container.auto.ContainerFilter;
 import org.nrg.containers.model.container.entity.ContainerEntity;
 import org.nrg.containers.model.container.entity.ContainerEntityHistory;
+import org.nrg.containers.model.container.entity.ContainerEntityInput;
 import org.nrg.containers.model.container.entity.ContainerEntityMount;
+import org.nrg.containers.model.container.entity.ContainerEntityOutput;
+import org.nrg.containers.model.container.entity.ContainerMountFilesEntity;
 import org.nrg.framework.orm.hibernate.AbstractHibernateDAO;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -12,12 +27,37 @@ import org.springframework.stereotype.Repository;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Date;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 @Repository
 public class ContainerEntityRepository extends AbstractHibernateDAO<ContainerEntity> {
     private static final Logger log = LoggerFactory.getLogger(ContainerEntityRepository.class);
+    private static final String AUDIT_ENTITY_SUFFIX = "_AUD";
+    // Collections read when a container is turned into its pojo, fetched a page at a time for exports
+    private static final List<String> FETCHED_COLLECTIONS = Arrays.asList("environmentVariables", "mounts", "inputs",
+            "outputs", "history", "logPaths");
+    private static final String TERMINAL_STATUS_HQL =
+            "(c.status like '%Complete%' or c.status like '%Failed%' or c.status like '%Killed%')";
+    // Only finalization marks a container finalized. Containers saved before that was recorded go by their status.
+    private static final String NOT_FINALIZED_HQL = "(c.finalized = false or (c.finalized is null and " +
+            "(c.status is null or (c.status not like '%Complete%' and c.status not like '%Failed%'))))";
+    private static final String FINALIZED_HQL = "(c.finalized = true or (c.finalized is null and " +
+            "(c.status like '%Complete%' or c.status like '%Failed%')))";
+    // Not yet created, or already known to have exited: exit events were recorded, so finalization is under way.
+    // Kills are recorded as Killed, which is a terminal status.
+    private static final List<String> NOT_RUNNING_STATUSES = Arrays.asList(ContainerEntity.QUEUED, ContainerEntity.DISPATCHING,
+            ContainerEntity.FINALIZING, "die", "Done");
+    // Exit statuses that are not terminal statuses, which finalization replaces
+    private static final List<String> EXITED_STATUSES = Arrays.asList("die", "Done");
+    // History statuses, lower-cased, recorded when a container or service task starts running.
+    // These are the ones ContainerEntity.STANDARD_STATUS_MAP reads as Running.
+    private static final List<String> STARTED_STATUSES = Arrays.asList("start", "started", "running");
 
     @Override
     public void initialize(final ContainerEntity entity) {
@@ -56,7 +96,8 @@ public class ContainerEntityRepository extends AbstractHibernateDAO<ContainerEnt
                         (containerEntity.getStatusTime() == null ||
                                 containerEntityHistory.getTimeRecorded().getTime() > containerEntity.getStatusTime().getTime());
 
-        if (historyEntryIsMoreRecentThanContainerStatus && !containerEntity.statusIsTerminal()) {
+        // Once a container is finalizing, only the finalization itself may change its status
+        if (historyEntryIsMoreRecentThanContainerStatus && !containerEntity.statusIsTerminal() && !containerEntity.statusIsFinalizing()) {
             containerEntity.setStatusTime(containerEntityHistory.getTimeRecorded());
             containerEntity.setStatus(containerEntityHistory.getStatus());
             log.debug("Setting container entity {} status to \"{}\", based on history entry status \"{}\".",
@@ -68,6 +109,126 @@ public class ContainerEntityRepository extends AbstractHibernateDAO<ContainerEnt
         update(containerEntity);
     }
 
+    /**
+     * Atomically move a container into the "Finalizing" status, unless it is already being finalized or
+     * has already been finalized. This is a single conditional UPDATE, so it is safe across threads and nodes.
+     * A container's status does not say whether it has been finalized, so the finalized flag is checked instead.
+     *
+     * The entity's version timestamp is bumped as well, so any stale copy of the container that another thread
+     * tries to save afterward fails its optimistic lock check instead of overwriting the claim.
+     *
+     * @return {@code true} if the caller now holds the claim and should finalize the container.
+     */
+    public boolean claimForFinalization(final long containerDatabaseId) {
+        final Date now = new Date();
+        final int updated = getSession()
+                .createQuery("update ContainerEntity as c " +
+                        "set c.status = :finalizing, c.statusTime = :now, c.timestamp = :now " +
+                        "where c.id = :id and (c.status is null or c.status <> :finalizing) and " + NOT_FINALIZED_HQL)
+                .setString("finalizing", ContainerEntity.FINALIZING)
+                .setTimestamp("now", now)
+                .setLong("id", containerDatabaseId)
+                .executeUpdate();
+        return updated == 1;
+    }
+
+    /**
+     * Atomically change a container's status, but only if it still has the expected status.
+     *
+     * @return {@code true} if the status was changed.
+     */
+    public boolean compareAndSetStatus(final long containerDatabaseId,
+                                       final @Nonnull String expectedStatus,
+                                       final @Nonnull String newStatus) {
+        final Date now = new Date();
+        final int updated = getSession()
+                .createQuery("update ContainerEntity as c " +
+                        "set c.status = :newStatus, c.statusTime = :now, c.timestamp = :now " +
+                        "where c.id = :id and c.status = :expectedStatus")
+                .setString("newStatus", newStatus)
+                .setTimestamp("now", now)
+                .setLong("id", containerDatabaseId)
+                .setString("expectedStatus", expectedStatus)
+                .executeUpdate();
+        return updated == 1;
+    }
+
+    /**
+     * Atomically change a container's status and mark it finalized, but only if it still has the expected status.
+     *
+     * @return {@code true} if the status was changed.
+     */
+    public boolean compareAndFinalize(final long containerDatabaseId,
+                                      final @Nonnull String expectedStatus,
+                                      final @Nonnull String newStatus) {
+        final Date now = new Date();
+        final int updated = getSession()
+                .createQuery("update ContainerEntity as c " +
+                        "set c.status = :newStatus, c.statusTime = :now, c.timestamp = :now, c.finalized = true " +
+                        "where c.id = :id and c.status = :expectedStatus")
+                .setString("newStatus", newStatus)
+                .setTimestamp("now", now)
+                .setLong("id", containerDatabaseId)
+                .setString("expectedStatus", expectedStatus)
+                .executeUpdate();
+        return updated == 1;
+    }
+
+    /**
+     * Atomically change a container's status and mark it finalized, whatever its status, unless it is already finalized.
+     *
+     * @return {@code true} if the status was changed.
+     */
+    public boolean finalizeUnlessFinalized(final long containerDatabaseId, final @Nonnull String newStatus) {
+        final Date now = new Date();
+        final int updated = getSession()
+                .createQuery("update ContainerEntity as c " +
+                        "set c.status = :newStatus, c.statusTime = :now, c.timestamp = :now, c.finalized = true " +
+                        "where c.id = :id and " + NOT_FINALIZED_HQL)
+                .setString("newStatus", newStatus)
+                .setTimestamp("now", now)
+                .setLong("id", containerDatabaseId)
+                .executeUpdate();
+        return updated == 1;
+    }
+
+    /**
+     * @return Ids of containers and services that exited before the cutoff, are not finalized, and are not in the
+     * finalization work table, because adding them to it failed.
+     */
+    @Nonnull
+    @SuppressWarnings("unchecked")
+    public List<Long> retrieveExitedWithoutFinalizationWork(final @Nonnull Date exitedBefore) {
+        final List result = getSession()
+                .createQuery("select c.id from ContainerEntity as c " +
+                        "where c.statusTime < :exitedBefore and (c.status in (:exited) or " + TERMINAL_STATUS_HQL + ") and " +
+                        NOT_FINALIZED_HQL + " and not exists " +
+                        "(select w.id from FinalizationWorkEntity as w where w.containerDatabaseId = c.id)")
+                .setTimestamp("exitedBefore", exitedBefore)
+                .setParameterList("exited", EXITED_STATUSES)
+                .list();
+        return result == null ? Collections.<Long>emptyList() : (List<Long>) result;
+    }
+
+    /**
+     * Put launches back in the launch queue that were taken off it for dispatch before the cutoff and never launched,
+     * because the node dispatching them went down.
+     *
+     * @return The number of launches put back.
+     */
+    public int requeueStaleDispatches(final @Nonnull Date cutoff) {
+        final Date now = new Date();
+        return getSession()
+                .createQuery("update ContainerEntity as c " +
+                        "set c.status = :queued, c.statusTime = :now, c.timestamp = :now " +
+                        "where c.status = :dispatching and c.statusTime < :cutoff")
+                .setString("queued", ContainerEntity.QUEUED)
+                .setTimestamp("now", now)
+                .setString("dispatching", ContainerEntity.DISPATCHING)
+                .setTimestamp("cutoff", cutoff)
+                .executeUpdate();
+    }
+
     @Nonnull
     public List<ContainerEntity> retrieveServices() {
         final List servicesResult = getSession()
@@ -77,6 +238,91 @@ public class ContainerEntityRepository extends AbstractHibernateDAO<ContainerEnt
         return initializeAndReturnList(servicesResult);
     }
 
+    /**
+     * Containers whose Docker container id or service id is one of the given ids.
+     * Only the container rows are loaded. Their collections are not initialized.
+     */
+    @Nonnull
+    @SuppressWarnings("unchecked")
+    public List<ContainerEntity> retrieveByDockerIds(final @Nonnull Collection<String> dockerIds) {
+        if (dockerIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+        final List result = getSession()
+                .createCriteria(ContainerEntity.class)
+                .add(Restrictions.disjunction()
+                        .add(Restrictions.in("containerId", dockerIds))
+                        .add(Restrictions.in("serviceId", dockerIds))
+                )
+                .list();
+        return result == null ? Collections.<ContainerEntity>emptyList() : (List<ContainerEntity>) result;
+    }
+
+    /**
+     * Distinct images of top-level containers created since the given date, most used first.
+     */
+    @Nonnull
+    @SuppressWarnings("unchecked")
+    public List<String> retrieveImagesUsedSince(final @Nonnull Date since) {
+        final List imagesResult = getSession()
+                .createQuery("select c.dockerImage from ContainerEntity as c " +
+                        "where c.parentContainerEntity is null and c.dockerImage is not null and c.created > :since " +
+                        "group by c.dockerImage order by count(c) desc")
+                .setTimestamp("since", since)
+                .list();
+        return imagesResult == null ? Collections.<String>emptyList() : (List<String>) imagesResult;
+    }
+
+    /**
+     * Count the top-level containers that are occupying the cluster, grouped by a single property
+     * (e.g. "project", "userId", or "wrapperId"). Queued, finalizing, and finished containers are not counted.
+     *
+     * @return Rows of [property value, count].
+     */
+    @Nonnull
+    @SuppressWarnings("unchecked")
+    public List<Object[]> countActiveGroupedBy(final @Nonnull String property) {
+        final List result = getSession()
+                .createQuery("select c." + property + ", count(c) from ContainerEntity as c " +
+                        "where c.parentContainerEntity is null and c.status is not null " +
+                        "and c.status <> :queued and c.status <> :finalizing and not " + TERMINAL_STATUS_HQL + " " +
+                        "group by c." + property)
+                .setString("queued", ContainerEntity.QUEUED)
+                .setString("finalizing", ContainerEntity.FINALIZING)
+                .setReadOnly(true)
+                .list();
+        return result == null ? Collections.<Object[]>emptyList() : (List<Object[]>) result;
+    }
+
+    /**
+     * @return Top-level containers waiting in the launch queue, oldest first. Collections are not initialized.
+     */
+    @Nonnull
+    @SuppressWarnings("unchecked")
+    public List<ContainerEntity> retrieveQueued() {
+        final List result = getSession()
+                .createQuery("from ContainerEntity as c " +
+                        "where c.parentContainerEntity is null and c.status = :queued order by c.id asc")
+                .setString("queued", ContainerEntity.QUEUED)
+                .setReadOnly(true)
+                .list();
+        return result == null ? Collections.<ContainerEntity>emptyList() : (List<ContainerEntity>) result;
+    }
+
+    /**
+     * @return Whether any top-level container is waiting in the launch queue. Reads at most one row.
+     */
+    public boolean hasQueued() {
+        final List result = getSession()
+                .createQuery("select c.id from ContainerEntity as c " +
+                        "where c.parentContainerEntity is null and c.status = :queued")
+                .setString("queued", ContainerEntity.QUEUED)
+                .setMaxResults(1)
+                .setReadOnly(true)
+                .list();
+        return result != null && !result.isEmpty();
+    }
+
     @Nonnull
     public List<ContainerEntity> retrieveNonfinalizedServices() {
         final List servicesResult = getSession()
@@ -94,6 +340,42 @@ public class ContainerEntityRepository extends AbstractHibernateDAO<ContainerEnt
         return initializeAndReturnList(servicesResult);
     }
 
+    /**
+     * @return Docker container ids of containers, not services, that have been created but have not exited,
+     * with the id of the server each was placed on. Only the ids are read, so this is cheap for many containers.
+     */
+    @Nonnull
+    public Map<String, Long> retrieveNonfinalizedContainerIds() {
+        final List rows = getSession()
+                .createQuery("select c.containerId, c.dockerServerId from ContainerEntity as c " +
+                        "where c.serviceId is null and c.containerId is not null and " +
+                        "(c.status is null or (c.status not in (:notRunning) and not " + TERMINAL_STATUS_HQL + "))")
+                .setParameterList("notRunning", NOT_RUNNING_STATUSES)
+                .list();
+        final Map<String, Long> serverIdsByContainerId = Maps.newHashMap();
+        if (rows != null) {
+            for (final Object row : rows) {
+                final Object[] columns = (Object[]) row;
+                serverIdsByContainerId.put((String) columns[0], (Long) columns[1]);
+            }
+        }
+        return serverIdsByContainerId;
+    }
+
+    /**
+     * @return Ids of the servers that containers and services not yet finalized were placed on.
+     * Containers placed before there were several servers have no server id, and are not counted.
+     */
+    @Nonnull
+    @SuppressWarnings("unchecked")
+    public Set<Long> retrieveServerIdsWithNonfinalizedContainers() {
+        final List result = getSession()
+                .createQuery("select distinct c.dockerServerId from ContainerEntity as c " +
+                        "where c.dockerServerId is not null and " + NOT_FINALIZED_HQL)
+                .list();
+        return result == null ? Collections.<Long>emptySet() : Sets.newHashSet((List<Long>) result);
+    }
+
     @Nonnull
     public List<ContainerEntity> retrieveContainersForParentWithSubtype(final long parentId,
                                                                         final String subtype) {
@@ -106,6 +388,251 @@ public class ContainerEntityRepository extends AbstractHibernateDAO<ContainerEnt
         return initializeAndReturnList(setupContainersResult);
     }
 
+    @Nonnull
+    public List<ContainerEntity> retrieve(final @Nonnull ContainerFilter filter) {
+        final List filteredResult = criteriaFor(filter)
+                .addOrder(Order.asc("id"))
+                .list();
+        return initializeAndReturnList(filteredResult);
+    }
+
+    /**
+     * Read-only, forward-only cursor over the containers matching the filter, in id order.
+     * The caller must close the results, and should clear the session periodically so memory use stays flat.
+     */
+    @Nonnull
+    public ScrollableResults scroll(final @Nonnull ContainerFilter filter, final int fetchSize) {
+        return criteriaFor(filter)
+                .addOrder(Order.asc("id"))
+                .setReadOnly(true)
+                .setCacheMode(CacheMode.IGNORE)
+                .setFetchSize(fetchSize)
+                .scroll(ScrollMode.FORWARD_ONLY);
+    }
+
+    /**
+     * Count containers grouped by the given properties.
+     * @return One row per group: the property values, in order, followed by the count
+     */
+    @Nonnull
+    @SuppressWarnings("unchecked")
+    public List<Object[]> countGroupedBy(final String... properties) {
+        final StringBuilder select = new StringBuilder();
+        for (final String property : properties) {
+            select.append("c.").append(property).append(", ");
+        }
+        final String groupBy = select.substring(0, select.length() - 2);
+        final List result = getSession()
+                .createQuery("select " + select + "count(c) from ContainerEntity as c group by " + groupBy)
+                .setReadOnly(true)
+                .list();
+        return result == null ? Collections.<Object[]>emptyList() : (List<Object[]>) result;
+    }
+
+    /**
+     * @return Counts of finalized containers by wrapper id
+     */
+    @Nonnull
+    public Map<Long, Long> countFinalizedByWrapper() {
+        final List rows = getSession()
+                .createQuery("select c.wrapperId, count(c) from ContainerEntity as c " +
+                        "where " + FINALIZED_HQL + " group by c.wrapperId")
+                .setReadOnly(true)
+                .list();
+        final Map<Long, Long> counts = Maps.newHashMap();
+        if (rows != null) {
+            for (final Object row : rows) {
+                final Object[] columns = (Object[]) row;
+                counts.put((Long) columns[0], (Long) columns[1]);
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Per finalized container, most recent first: wrapper id, the time it was first recorded running, and its last
+     * history time. Time spent queued or being dispatched is not run time. The start time is null for a container
+     * that was never recorded running. Only the given number of containers are read. The caller must close the results.
+     */
+    @Nonnull
+    public ScrollableResults scrollFinalizedRunSpans(final int fetchSize, final int maxResults) {
+        return getSession()
+                .createQuery("select c.wrapperId, " +
+                        "(select min(s.timeRecorded) from ContainerEntityHistory as s " +
+                        "where s.containerEntity = c and lower(s.status) in (:started)), " +
+                        "(select max(e.timeRecorded) from ContainerEntityHistory as e where e.containerEntity = c) " +
+                        "from ContainerEntity as c " +
+                        "where " + FINALIZED_HQL + " " +
+                        "order by c.id desc")
+                .setParameterList("started", STARTED_STATUSES)
+                .setReadOnly(true)
+                .setFetchSize(fetchSize)
+                .setMaxResults(maxResults)
+                .scroll(ScrollMode.FORWARD_ONLY);
+    }
+
+    /**
+     * Load the collections of a page of scrolled containers, and of their parents, with one query per collection
+     * rather than one per container. The containers must still be in the session.
+     */
+    public void fetchCollections(final @Nonnull List<ContainerEntity> containerEntities) {
+        if (containerEntities.isEmpty()) {
+            return;
+        }
+        final Set<Long> ids = Sets.newHashSet();
+        for (final ContainerEntity containerEntity : containerEntities) {
+            ids.add(containerEntity.getId());
+            if (containerEntity.getParentContainerEntity() != null) {
+                ids.add(containerEntity.getParentContainerEntity().getId());
+            }
+        }
+
+        // Mounts first, with their files, so the mount collections below find them already loaded
+        getSession().createQuery("select distinct m from ContainerEntityMount as m left join fetch m.inputFiles " +
+                "where m.containerEntity.id in (:ids)")
+                .setParameterList("ids", ids)
+                .list();
+        for (final String collection : FETCHED_COLLECTIONS) {
+            getSession().createQuery("select distinct c from ContainerEntity as c left join fetch c." + collection +
+                    " where c.id in (:ids)")
+                    .setParameterList("ids", ids)
+                    .list();
+        }
+    }
+
+    /**
+     * Detach everything loaded so far. Used while scrolling so the session does not grow with the result set.
+     */
+    public void clearSession() {
+        getSession().clear();
+    }
+
+    private Criteria criteriaFor(final @Nonnull ContainerFilter filter) {
+        final Criteria criteria = getSession().createCriteria(ContainerEntity.class);
+        if (StringUtils.isNotBlank(filter.status())) {
+            criteria.add(Restrictions.like("status", filter.status(), MatchMode.START));
+        }
+        if (filter.commandId() != null) {
+            criteria.add(Restrictions.eq("commandId", filter.commandId()));
+        }
+        if (filter.wrapperId() != null) {
+            criteria.add(Restrictions.eq("wrapperId", filter.wrapperId()));
+        }
+        if (StringUtils.isNotBlank(filter.userId())) {
+            criteria.add(Restrictions.eq("userId", filter.userId()));
+        }
+        if (StringUtils.isNotBlank(filter.project())) {
+            criteria.add(Restrictions.eq("project", filter.project()));
+        }
+        if (filter.since() != null) {
+            criteria.add(Restrictions.ge("statusTime", filter.since()));
+        }
+        if (filter.until() != null) {
+            criteria.add(Restrictions.lt("statusTime", filter.until()));
+        }
+        return criteria;
+    }
+
+    /**
+     * Top-level containers that have been finalized and whose status was last set before the given date,
+     * oldest first. A container is left out while it, or one of its children, still has unfinished finalization work.
+     * Child (e.g. setup) containers are not returned; find them with {@link #retrieveChildren(List)}.
+     */
+    @Nonnull
+    public List<ContainerEntity> retrieveFinalizedBefore(final @Nonnull Date finalizedBefore, final int maxResults) {
+        final List finalizedResult = getSession()
+                .createQuery("select c from ContainerEntity as c " +
+                        "where c.parentContainerEntity is null and c.statusTime < :finalizedBefore and " + FINALIZED_HQL +
+                        " and not exists (select w.id from FinalizationWorkEntity as w where w.finished is null and " +
+                        "(w.containerDatabaseId = c.id or w.containerDatabaseId in " +
+                        "(select child.id from ContainerEntity as child where child.parentContainerEntity = c))) " +
+                        "order by c.id")
+                .setTimestamp("finalizedBefore", finalizedBefore)
+                .setMaxResults(maxResults)
+                .list();
+        return initializeAndReturnList(finalizedResult);
+    }
+
+    @Nonnull
+    public List<ContainerEntity> retrieveChildren(final @Nonnull List<ContainerEntity> parents) {
+        if (parents.isEmpty()) {
+            return Collections.emptyList();
+        }
+        final List<Long> parentIds = Lists.newArrayList();
+        for (final ContainerEntity parent : parents) {
+            parentIds.add(parent.getId());
+        }
+        final List childrenResult = getSession()
+                .createQuery("select c from ContainerEntity as c where c.parentContainerEntity.id in (:parentIds)")
+                .setParameterList("parentIds", parentIds)
+                .list();
+        return initializeAndReturnList(childrenResult);
+    }
+
+    /**
+     * Delete containers along with their child rows and any audit rows recorded for them.
+     * Children must come before their parents in the list.
+     */
+    public void purge(final @Nonnull List<ContainerEntity> containerEntities) {
+        if (containerEntities.isEmpty()) {
+            return;
+        }
+
+        final Map<Class<?>, List<Long>> idsByClass = Maps.newHashMap();
+        for (final ContainerEntity containerEntity : containerEntities) {
+            addId(idsByClass, ContainerEntity.class, containerEntity.getId());
+            for (final ContainerEntityHistory history : containerEntity.getHistory()) {
+                addId(idsByClass, ContainerEntityHistory.class, history.getId());
+            }
+            for (final ContainerEntityInput input : containerEntity.getInputs()) {
+                addId(idsByClass, ContainerEntityInput.class, input.getId());
+            }
+            for (final ContainerEntityOutput output : containerEntity.getOutputs()) {
+                addId(idsByClass, ContainerEntityOutput.class, output.getId());
+            }
+            for (final ContainerEntityMount mount : containerEntity.getMounts()) {
+                addId(idsByClass, ContainerEntityMount.class, mount.getId());
+                for (final ContainerMountFilesEntity files : mount.getInputFiles()) {
+                    addId(idsByClass, ContainerMountFilesEntity.class, files.getId());
+                }
+            }
+        }
+
+        // Purging is deliberate, so do not write "deleted" audit revisions for what we are about to remove.
+        ContainerAuditFilter.suppressForCurrentThread();
+        try {
+            for (final ContainerEntity containerEntity : containerEntities) {
+                getSession().delete(containerEntity);
+            }
+            getSession().flush();
+        } finally {
+            ContainerAuditFilter.resumeForCurrentThread();
+        }
+
+        final SessionFactory sessionFactory = getSession().getSessionFactory();
+        for (final Map.Entry<Class<?>, List<Long>> entry : idsByClass.entrySet()) {
+            final String auditEntityName = entry.getKey().getName() + AUDIT_ENTITY_SUFFIX;
+            if (sessionFactory.getClassMetadata(auditEntityName) == null) {
+                // Envers is not active, or this class is not audited
+                continue;
+            }
+            for (final List<Long> idBatch : Lists.partition(entry.getValue(), 500)) {
+                final int deleted = getSession()
+                        .createQuery("delete from " + auditEntityName + " as a where a.originalId.id in (:ids)")
+                        .setParameterList("ids", idBatch)
+                        .executeUpdate();
+                log.debug("Deleted {} audit rows from {}.", deleted, auditEntityName);
+            }
+        }
+    }
+
+    private void addId(final Map<Class<?>, List<Long>> idsByClass, final Class<?> clazz, final long id) {
+        if (!idsByClass.containsKey(clazz)) {
+            idsByClass.put(clazz, Lists.<Long>newArrayList());
+        }
+        idsByClass.get(clazz).add(id);
+    }
+
     @SuppressWarnings("unchecked")
     private List<ContainerEntity> initializeAndReturnList(final List result) {
         if (result != null) {
@@ -5,49 +5,69 @@ import org.nrg.framework.orm.hibernate.AbstractHibernateDAO;
 import org.springframework.stereotype.Repository;
 
 import java.util.Date;
+import java.util.List;
 
 @Repository
 public class DockerServerEntityRepository extends AbstractHibernateDAO<DockerServerEntity> {
 
-    public DockerServerEntity getUniqueEnabledServer() {
-        final DockerServerEntity dockerServerEntity = (DockerServerEntity) getSession()
-                .createQuery("select server from DockerServerEntity as server where server.enabled = true")
+    /**
+     * The default server is the enabled server that was set, rather than added alongside it. It is the one that
+     * holds images and answers pings, and containers placed before servers were recorded ran on it.
+     */
+    public DockerServerEntity getDefaultServer() {
+        DockerServerEntity dockerServerEntity = (DockerServerEntity) getSession()
+                .createQuery("select server from DockerServerEntity as server where server.enabled = true " +
+                        "and (server.additional is null or server.additional = false) order by server.id desc")
+                .setMaxResults(1)
                 .uniqueResult();
+        if (dockerServerEntity == null) {
+            // The default server was disabled. Fall back to the oldest added server.
+            dockerServerEntity = (DockerServerEntity) getSession()
+                    .createQuery("select server from DockerServerEntity as server where server.enabled = true order by server.id")
+                    .setMaxResults(1)
+                    .uniqueResult();
+        }
         initialize(dockerServerEntity);
         return dockerServerEntity;
     }
 
-    public long getUniqueEnabledServerId() {
-        final Long serverId = (Long) getSession()
-                .createQuery("select server.id from DockerServerEntity as server where server.enabled = true")
-                .uniqueResult();
-        return serverId == null ? 0L : serverId;
+    @SuppressWarnings("unchecked")
+    public List<DockerServerEntity> getEnabledServers() {
+        final List<DockerServerEntity> servers = getSession()
+                .createQuery("select server from DockerServerEntity as server where server.enabled = true order by server.id")
+                .list();
+        for (final DockerServerEntity server : servers) {
+            initialize(server);
+        }
+        return servers;
     }
 
     @Override
     public DockerServerEntity create(final DockerServerEntity dockerServerEntity) {
-        // We only allow one enabled server at a time. To create this one, we must disable
-        // the previous one.
-        final DockerServerEntity currentlyEnabledServer = getUniqueEnabledServer();
+        // Setting the server replaces the default server. To create this one, we must disable
+        // the previous one. Any other enabled servers stay enabled.
+        final DockerServerEntity currentlyEnabledServer = getDefaultServer();
         if (currentlyEnabledServer != null) {
             disableServer(currentlyEnabledServer);
         }
+        return add(dockerServerEntity);
+    }
+
+    /**
+     * Create another enabled server alongside the default server.
+     */
+    public DockerServerEntity addServer(final DockerServerEntity dockerServerEntity) {
+        dockerServerEntity.setAdditional(true);
+        return add(dockerServerEntity);
+    }
+
+    private DockerServerEntity add(final DockerServerEntity dockerServerEntity) {
         final Long id = (Long) super.create(dockerServerEntity);
         dockerServerEntity.setId(id);
         return dockerServerEntity;
     }
 
-    @Override
-    public void update(final DockerServerEntity dockerServerEntity) {
-        if (dockerServerEntity.isEnabled() && dockerServerEntity.getId() != getUniqueEnabledServerId()) {
-            // If the caller wants to update this server to be "enabled", we want to disable
-            // the currently enabled server. Unless they are the same.
-            disableServer(getUniqueEnabledServer());
-        }
-        super.update(dockerServerEntity);
-    }
-
-    private void disableServer(final DockerServerEntity currentlyEnabledServer) {
+    public void disableServer(final DockerServerEntity currentlyEnabledServer) {
         final Date now = new Date();
         currentlyEnabledServer.setEnabled(false);
         currentlyEnabledServer.setDisabled(now);
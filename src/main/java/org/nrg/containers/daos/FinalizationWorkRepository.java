@@ -0,0 +1,167 @@
+package org.nrg.containers.daos;
+
+import com.google.common.collect.Maps;
+import org.hibernate.criterion.Restrictions;
+import org.nrg.containers.model.container.entity.FinalizationWorkEntity;
+import org.nrg.framework.orm.hibernate.AbstractHibernateDAO;
+import org.springframework.stereotype.Repository;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+@Repository
+public class FinalizationWorkRepository extends AbstractHibernateDAO<FinalizationWorkEntity> {
+
+    @Nullable
+    public FinalizationWorkEntity retrieveByContainerDatabaseId(final long containerDatabaseId) {
+        return (FinalizationWorkEntity) getSession()
+                .createCriteria(FinalizationWorkEntity.class)
+                .add(Restrictions.eq("containerDatabaseId", containerDatabaseId))
+                .uniqueResult();
+    }
+
+    /**
+     * @return Ids of unfinished work that no one has claimed, or whose lease has expired, in claim order.
+     */
+    @Nonnull
+    @SuppressWarnings("unchecked")
+    public List<Long> retrieveClaimableIds(final Date now, final int maxResults) {
+        final List result = getSession()
+                .createQuery("select w.id from FinalizationWorkEntity as w " +
+                        "where w.finished is null and (w.claimedBy is null or w.leaseExpires < :now) " +
+                        "order by w.sortTime, w.id")
+                .setTimestamp("now", now)
+                .setMaxResults(maxResults)
+                .list();
+        return result == null ? Collections.<Long>emptyList() : (List<Long>) result;
+    }
+
+    /**
+     * Atomically claim work, but only if it is unfinished and no one else holds an unexpired lease on it.
+     *
+     * @return {@code true} if the holder now has the work until the given time.
+     */
+    public boolean claim(final long id, final String holder, final Date now, final Date leaseExpires) {
+        final int updated = getSession()
+                .createQuery("update FinalizationWorkEntity as w " +
+                        "set w.claimedBy = :holder, w.claimed = :now, w.leaseExpires = :leaseExpires, " +
+                        "w.attempts = w.attempts + 1, w.timestamp = :now " +
+                        "where w.id = :id and w.finished is null and (w.claimedBy is null or w.leaseExpires < :now)")
+                .setString("holder", holder)
+                .setTimestamp("now", now)
+                .setTimestamp("leaseExpires", leaseExpires)
+                .setLong("id", id)
+                .executeUpdate();
+        return updated == 1;
+    }
+
+    /**
+     * Read work again after a claim. The claim is a bulk update, which does not change a copy already in the session.
+     */
+    @Nullable
+    public FinalizationWorkEntity retrieveClaimed(final long id) {
+        final FinalizationWorkEntity work = retrieve(id);
+        if (work != null) {
+            getSession().refresh(work);
+        }
+        return work;
+    }
+
+    /**
+     * Extend the leases the holder still has on the given work.
+     */
+    public void renew(final Collection<Long> ids, final String holder, final Date leaseExpires) {
+        getSession()
+                .createQuery("update FinalizationWorkEntity as w " +
+                        "set w.leaseExpires = :leaseExpires, w.timestamp = :now " +
+                        "where w.id in (:ids) and w.claimedBy = :holder and w.finished is null")
+                .setTimestamp("leaseExpires", leaseExpires)
+                .setTimestamp("now", new Date())
+                .setParameterList("ids", ids)
+                .setString("holder", holder)
+                .executeUpdate();
+    }
+
+    /**
+     * Mark work finished, if the holder still has it.
+     *
+     * @return {@code false} if another node took over the work after the holder's lease expired.
+     */
+    public boolean finish(final long id, final String holder, final boolean failed) {
+        final Date now = new Date();
+        final int updated = getSession()
+                .createQuery("update FinalizationWorkEntity as w " +
+                        "set w.finished = :now, w.failed = :failed, w.timestamp = :now " +
+                        "where w.id = :id and w.claimedBy = :holder and w.finished is null")
+                .setTimestamp("now", now)
+                .setBoolean("failed", failed)
+                .setLong("id", id)
+                .setString("holder", holder)
+                .executeUpdate();
+        return updated == 1;
+    }
+
+    /**
+     * @return Counts of work by the node that last claimed it, for work claimed since the given time.
+     * Only the last claim of each item is recorded, so an earlier claim by a node whose lease then expired is not
+     * counted for that node.
+     */
+    @Nonnull
+    public Map<String, Long> countClaimedByNode(final Date since) {
+        return countByNode(getSession()
+                .createQuery("select w.claimedBy, count(w.id) from FinalizationWorkEntity as w " +
+                        "where w.claimed >= :since group by w.claimedBy")
+                .setTimestamp("since", since)
+                .list());
+    }
+
+    /**
+     * @return Counts of work finished since the given time, successfully or not, by the node that finished it.
+     */
+    @Nonnull
+    public Map<String, Long> countFinishedByNode(final Date since, final boolean failed) {
+        return countByNode(getSession()
+                .createQuery("select w.claimedBy, count(w.id) from FinalizationWorkEntity as w " +
+                        "where w.finished >= :since and w.failed = :failed group by w.claimedBy")
+                .setTimestamp("since", since)
+                .setBoolean("failed", failed)
+                .list());
+    }
+
+    /**
+     * @return Counts of unfinished work under an unexpired lease, by the node holding the lease.
+     */
+    @Nonnull
+    public Map<String, Long> countInProgressByNode(final Date now) {
+        return countByNode(getSession()
+                .createQuery("select w.claimedBy, count(w.id) from FinalizationWorkEntity as w " +
+                        "where w.finished is null and w.claimedBy is not null and w.leaseExpires >= :now " +
+                        "group by w.claimedBy")
+                .setTimestamp("now", now)
+                .list());
+    }
+
+    public int deleteFinishedBefore(final Date cutoff) {
+        return getSession()
+                .createQuery("delete from FinalizationWorkEntity as w where w.finished < :cutoff")
+                .setTimestamp("cutoff", cutoff)
+                .executeUpdate();
+    }
+
+    @Nonnull
+    private static Map<String, Long> countByNode(final List rows) {
+        final Map<String, Long> counts = Maps.newHashMap();
+        if (rows != null) {
+            for (final Object row : rows) {
+                final Object[] columns = (Object[]) row;
+                counts.put((String) columns[0], ((Number) columns[1]).longValue());
+            }
+        }
+        return counts;
+    }
+}
@@ -0,0 +1,54 @@
+package org.nrg.containers.daos;
+
+import org.hibernate.criterion.Restrictions;
+import org.nrg.containers.model.cluster.entity.TaskLeaseEntity;
+import org.nrg.framework.orm.hibernate.AbstractHibernateDAO;
+import org.springframework.stereotype.Repository;
+
+import javax.annotation.Nullable;
+import java.util.Date;
+
+@Repository
+public class TaskLeaseRepository extends AbstractHibernateDAO<TaskLeaseEntity> {
+
+    @Nullable
+    public TaskLeaseEntity retrieveByName(final String name) {
+        return (TaskLeaseEntity) getSession()
+                .createCriteria(TaskLeaseEntity.class)
+                .add(Restrictions.eq("name", name))
+                .uniqueResult();
+    }
+
+    /**
+     * Atomically take or renew a lease, but only if the holder already has it or it has expired.
+     *
+     * @return {@code true} if the holder now has the lease until the given time.
+     */
+    public boolean acquire(final String name, final String holder, final Date now, final Date expires) {
+        final int updated = getSession()
+                .createQuery("update TaskLeaseEntity as l " +
+                        "set l.holder = :holder, l.expires = :expires, l.timestamp = :now " +
+                        "where l.name = :name and (l.holder = :holder or l.expires < :now)")
+                .setString("holder", holder)
+                .setTimestamp("expires", expires)
+                .setTimestamp("now", now)
+                .setString("name", name)
+                .executeUpdate();
+        return updated == 1;
+    }
+
+    /**
+     * Let the lease expire now, if the holder has it, so another node can take it without waiting.
+     */
+    public void release(final String name, final String holder) {
+        final Date now = new Date();
+        getSession()
+                .createQuery("update TaskLeaseEntity as l " +
+                        "set l.expires = :now, l.timestamp = :now " +
+                        "where l.name = :name and l.holder = :holder")
+                .setTimestamp("now", now)
+                .setString("name", name)
+                .setString("holder", holder)
+                .executeUpdate();
+    }
+}
@@ -1,46 +1,87 @@
 package org.nrg.containers.events;
 
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import org.nrg.containers.api.ContainerControlApi;
+import org.nrg.containers.events.model.DockerContainerEvent;
 import org.nrg.containers.exceptions.DockerServerException;
-import org.nrg.containers.exceptions.NoDockerServerException;
+import org.nrg.containers.jobs.TaskLeader;
+import org.nrg.containers.model.configuration.ContainerServicePrefsBean;
 import org.nrg.containers.model.container.auto.Container;
 import org.nrg.containers.model.container.auto.ServiceTask;
 import org.nrg.containers.model.server.docker.DockerServerBase.DockerServer;
 import org.nrg.containers.services.ContainerService;
+import org.nrg.containers.services.DockerHealthService;
 import org.nrg.containers.services.DockerServerService;
+import org.nrg.containers.services.TaskLeaseService;
 import org.nrg.framework.exceptions.NotFoundException;
 import org.nrg.xft.schema.XFTManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import java.util.Collections;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 @Component
-public class DockerStatusUpdater implements Runnable {
+public class DockerStatusUpdater implements Runnable, DisposableBean {
     private static final Logger log = LoggerFactory.getLogger(DockerStatusUpdater.class);
 
+    public static final long PERIOD_SECONDS = 10L;
+
+    private static final String LEASE_NAME = "docker-status-updater";
+    // A lease must outlast a few runs, or a run that is a little late loses it to another node
+    private static final long MIN_LEASE_MILLIS = TimeUnit.SECONDS.toMillis(3 * PERIOD_SECONDS);
+    private static final int DEFAULT_SWEEP_MINUTES = 15;
+    // Events older than this are not replayed. The daemon may have dropped them, and the sweep finds the exits among them.
+    private static final long MAX_EVENT_REPLAY_MILLIS = TimeUnit.HOURS.toMillis(1);
+
     private ContainerControlApi controlApi;
     private DockerServerService dockerServerService;
     private ContainerService containerService;
+    private DockerHealthService dockerHealthService;
+    private ContainerServicePrefsBean containerServicePrefsBean;
+    private TaskLeader taskLeader;
 
-    private boolean haveLoggedDockerConnectFailure = false;
     private boolean haveLoggedNoServerInDb = false;
     private boolean haveLoggedXftInitFailure = false;
 
+    // Servers that did not answer their last ping. Each is logged once, when it stops answering.
+    private final Set<Long> unreachableServerIds = Sets.newHashSet();
+    // Servers we may have missed events from, to sweep on the next run they can be reached
+    private final Set<Long> serverIdsToSweep = Sets.newHashSet();
+    // Sweep every server on the first run, and on the first run after taking over from another node
+    private long nextSweepMillis = 0L;
+    private long leaseRenewedMillis = 0L;
+
     @Autowired
     @SuppressWarnings("SpringJavaAutowiringInspection")
     public DockerStatusUpdater(final ContainerControlApi controlApi,
                                final DockerServerService dockerServerService,
-                               final ContainerService containerService) {
+                               final ContainerService containerService,
+                               final DockerHealthService dockerHealthService,
+                               final TaskLeaseService taskLeaseService,
+                               final ContainerServicePrefsBean containerServicePrefsBean) {
         this.controlApi = controlApi;
         this.dockerServerService = dockerServerService;
         this.containerService = containerService;
+        this.dockerHealthService = dockerHealthService;
+        this.containerServicePrefsBean = containerServicePrefsBean;
+        this.taskLeader = new TaskLeader(taskLeaseService, LEASE_NAME);
+    }
+
+    @Override
+    public void destroy() {
+        taskLeader.resign();
     }
 
     @Override
@@ -57,14 +98,23 @@ public class DockerStatusUpdater implements Runnable {
             return;
         }
 
-        // Since XFT is up, we should be able to connect to the database and read the docker server
-        DockerServer dockerServer = null;
-        try {
-            dockerServer = dockerServerService.getServer();
-        } catch (NotFoundException e) {
-            // ignored
+        // In a cluster, only one node polls. The others would see the same events and finalize the same containers.
+        final long leaseMillis = leaseMillis();
+        if (leaseMillis == 0) {
+            taskLeader.resign();
+        } else if (!taskLeader.isLeader(leaseMillis)) {
+            log.trace("Another node is updating status. " + skipMessage);
+            // If this node takes over, it may have to catch up on what the old leader missed
+            nextSweepMillis = 0L;
+            return;
+        } else {
+            leaseRenewedMillis = System.currentTimeMillis();
         }
-        if (dockerServer == null) {
+
+        // Since XFT is up, we should be able to connect to the database and read the docker servers.
+        // Disabled servers are followed until their containers are finalized.
+        final List<DockerServer> servers = dockerServerService.getServersInUse();
+        if (servers.isEmpty()) {
             if (!haveLoggedNoServerInDb) {
                 log.info("No docker server has been defined (or enabled) in the database. " + skipMessage);
                 haveLoggedNoServerInDb = true;
@@ -72,19 +122,63 @@ public class DockerStatusUpdater implements Runnable {
             }
             return;
         }
+        // Containers placed before there were several servers are on the default server
+        final DockerServer defaultServer = dockerServerService.retrieveServer();
 
-        if (!controlApi.canConnect()) {
-            if (!haveLoggedDockerConnectFailure) {
-                log.info("Cannot ping docker server " + dockerServer.name() + ". " + skipMessage);
-                haveLoggedDockerConnectFailure = true;
-                haveLoggedXftInitFailure = false;
-                haveLoggedNoServerInDb = false;
+        // Now we should be able to check the status, on every server that answers
+        final UpdateReport updateReport = UpdateReport.create();
+        final List<DockerServer> containerServers = Lists.newArrayList();
+        final Set<Long> swarmServerIds = Sets.newHashSet();
+        for (final DockerServer server : servers) {
+            if (!keepLease(leaseMillis)) {
+                return;
+            }
+            // Use the remembered ping, so we don't have to ping on every tick
+            if (!dockerHealthService.isServerReachable(server)) {
+                if (unreachableServerIds.add(server.id())) {
+                    log.info("Cannot ping docker server {}. Skipping it until it answers.", server.name());
+                }
+                if (!server.swarmMode()) {
+                    serverIdsToSweep.add(server.id());
+                }
+                continue;
+            }
+            if (unreachableServerIds.remove(server.id())) {
+                log.info("Docker server {} answers pings again.", server.name());
+            }
+
+            if (server.swarmMode()) {
+                swarmServerIds.add(server.id());
+            } else {
+                containerServers.add(server);
+                updateReport.addAll(updateContainers(server));
             }
-            return;
+        }
+        if (!swarmServerIds.isEmpty()) {
+            // Services are asked for their current task on every run, so they need no sweep
+            updateReport.addAll(updateServices(swarmServerIds, defaultServer));
         }
 
-        // Now we should be able to check the status
-        final UpdateReport updateReport = dockerServer.swarmMode() ? updateServices(dockerServer) : updateContainers(dockerServer);
+        // Sweep every server periodically, and any we may have missed events from as soon as they answer
+        final boolean sweepAll = System.currentTimeMillis() >= nextSweepMillis;
+        final List<DockerServer> serversToSweep = Lists.newArrayList();
+        for (final DockerServer server : containerServers) {
+            if (sweepAll || serverIdsToSweep.contains(server.id())) {
+                serversToSweep.add(server);
+            }
+        }
+        if (sweepAll) {
+            nextSweepMillis = System.currentTimeMillis() + sweepMillis();
+            try {
+                containerService.scheduleMissedFinalizations();
+            } catch (RuntimeException e) {
+                log.error("Could not add missed containers to the finalization work table.", e);
+            }
+        }
+        if (!serversToSweep.isEmpty()) {
+            updateReport.addAll(sweep(serversToSweep, defaultServer, leaseMillis));
+        }
+        updateReport.summarize();
         if (updateReport.successful == null) {
             // This means some, but not all, of the services didn't update properly. Which ones?
             for (final UpdateReportEntry entry : updateReport.updateReports) {
@@ -96,7 +190,6 @@ public class DockerStatusUpdater implements Runnable {
             }
 
             // Reset failure flags
-            haveLoggedDockerConnectFailure = false;
             haveLoggedXftInitFailure = false;
             haveLoggedNoServerInDb = false;
         } else if (updateReport.successful) {
@@ -104,7 +197,6 @@ public class DockerStatusUpdater implements Runnable {
                 log.debug("Updated status successfully.");
             }
             // Reset failure flags
-            haveLoggedDockerConnectFailure = false;
             haveLoggedXftInitFailure = false;
             haveLoggedNoServerInDb = false;
         } else {
@@ -112,52 +204,158 @@ public class DockerStatusUpdater implements Runnable {
         }
     }
 
+    private long leaseMillis() {
+        final Integer leaseSeconds = containerServicePrefsBean.getStatusUpdaterLeaseSeconds();
+        if (leaseSeconds == null || leaseSeconds <= 0) {
+            return 0L;
+        }
+        return Math.max(TimeUnit.SECONDS.toMillis(leaseSeconds), MIN_LEASE_MILLIS);
+    }
+
+    /**
+     * Renew the lease partway through a long run, once a third of it has gone by, so it does not expire under us.
+     *
+     * @return {@code false} if another node has taken the lease, and this run should stop.
+     */
+    private boolean keepLease(final long leaseMillis) {
+        if (leaseMillis == 0 || System.currentTimeMillis() - leaseRenewedMillis < leaseMillis / 3) {
+            return true;
+        }
+        if (!taskLeader.isLeader(leaseMillis)) {
+            log.warn("Lost the lease on updating status partway through. Stopping this run.");
+            nextSweepMillis = 0L;
+            return false;
+        }
+        leaseRenewedMillis = System.currentTimeMillis();
+        return true;
+    }
+
+    private long sweepMillis() {
+        final Integer sweepMinutes = containerServicePrefsBean.getReconciliationSweepMinutes();
+        if (sweepMinutes == null) {
+            return TimeUnit.MINUTES.toMillis(DEFAULT_SWEEP_MINUTES);
+        }
+        return sweepMinutes <= 0 ? Long.MAX_VALUE / 2 : TimeUnit.MINUTES.toMillis(sweepMinutes);
+    }
+
     @Nonnull
     private UpdateReport updateContainers(final DockerServer dockerServer) {
-        final Date lastEventCheckTime = dockerServer.lastEventCheckTime();
-        final Date since = lastEventCheckTime == null ? new Date(0L) : lastEventCheckTime;
-
         final Date now = new Date();
+        final Date earliest = new Date(now.getTime() - MAX_EVENT_REPLAY_MILLIS);
+        final Date lastEventCheckTime = dockerServer.lastEventCheckTime();
+        final Date since;
+        if (lastEventCheckTime == null || lastEventCheckTime.before(earliest)) {
+            log.info("Reading events on server {} from {} rather than {}. Sweeping for missed exits.",
+                    dockerServer.name(), earliest, lastEventCheckTime);
+            since = earliest;
+            serverIdsToSweep.add(dockerServer.id());
+        } else {
+            since = lastEventCheckTime;
+        }
 
         try {
-            controlApi.throwContainerEvents(since, now);
+            controlApi.throwContainerEvents(dockerServer, since, now);
             dockerServerService.update(dockerServer.updateEventCheckTime(now));
 
-            return UpdateReport.singleton(UpdateReportEntry.success());
-        } catch (NoDockerServerException e) {
-            log.info("Cannot search for Docker container events. No Docker server defined.");
+            return UpdateReport.singleton(UpdateReportEntry.success(dockerServer.name()));
         } catch (DockerServerException e) {
-            log.error("Cannot find Docker container events.", e);
+            log.error("Cannot find Docker container events on server " + dockerServer.name() + ".", e);
+            serverIdsToSweep.add(dockerServer.id());
+            return UpdateReport.singleton(UpdateReportEntry.failure(dockerServer.name(), e.getMessage()));
         }
-        return UpdateReport.singleton(UpdateReportEntry.failure());
     }
 
+    /**
+     * Check every container that has not exited, as far as we know, against its server, and process the exits
+     * of any that have. Catches exits whose events were missed, because the server could not be reached,
+     * no node was polling, or the events were older than we replay.
+     */
     @Nonnull
-    private UpdateReport updateServices(final DockerServer dockerServer) {
+    private UpdateReport sweep(final List<DockerServer> servers, final @Nullable DockerServer defaultServer,
+                               final long leaseMillis) {
+        final Map<Long, List<String>> containerIdsByServerId = Maps.newHashMap();
+        for (final Map.Entry<String, Long> entry : containerService.retrieveNonfinalizedContainerIds().entrySet()) {
+            final Long serverId = serverIdOrDefault(entry.getValue(), defaultServer);
+            if (serverId == null) {
+                continue;
+            }
+            if (!containerIdsByServerId.containsKey(serverId)) {
+                containerIdsByServerId.put(serverId, Lists.<String>newArrayList());
+            }
+            containerIdsByServerId.get(serverId).add(entry.getKey());
+        }
+
         final UpdateReport report = UpdateReport.create();
+        for (final DockerServer server : servers) {
+            if (!keepLease(leaseMillis)) {
+                break;
+            }
+            final List<String> containerIds = containerIdsByServerId.get(server.id());
+            if (containerIds == null) {
+                serverIdsToSweep.remove(server.id());
+                continue;
+            }
+            try {
+                final List<DockerContainerEvent> exits = controlApi.getExitEvents(server, containerIds);
+                if (!exits.isEmpty()) {
+                    log.info("Found {} containers on server {} that exited without an event we saw.", exits.size(), server.name());
+                }
+                for (final DockerContainerEvent exit : exits) {
+                    try {
+                        containerService.processEvent(exit);
+                    } catch (RuntimeException e) {
+                        // Its exit is recorded, so the next sweep adds it to the finalization work table
+                        log.error("Could not process the exit of container {}.", exit.containerId(), e);
+                    }
+                }
+                serverIdsToSweep.remove(server.id());
+                report.add(UpdateReportEntry.success("sweep of " + server.name()));
+            } catch (DockerServerException e) {
+                log.error("Cannot check containers on server " + server.name() + ".", e);
+                serverIdsToSweep.add(server.id());
+                report.add(UpdateReportEntry.failure("sweep of " + server.name(), e.getMessage()));
+            }
+        }
+        return report;
+    }
+
+    @Nonnull
+    private UpdateReport updateServices(final Set<Long> reachableServerIds, final @Nullable DockerServer defaultServer) {
+        final UpdateReport report = UpdateReport.create();
+        // Each service is asked about on the swarm it was placed on, if that swarm answers
+        final Map<Long, DockerServer> serversById = Maps.newHashMap();
         for (final Container service : containerService.retrieveNonfinalizedServices()) {
+            if (!reachableServerIds.contains(serverIdOrDefault(service.dockerServerId(), defaultServer))) {
+                continue;
+            }
             log.debug("Getting Task info for Service {}.", service.serviceId());
             try {
-                controlApi.throwTaskEventForService(dockerServer, service);
+                final Long serverId = service.dockerServerId();
+                DockerServer server = serversById.get(serverId);
+                if (server == null) {
+                    server = dockerServerService.getServerFor(service);
+                    serversById.put(serverId, server);
+                }
+                controlApi.throwTaskEventForService(server, service);
                 report.add(UpdateReportEntry.success(service.serviceId()));
-            } catch (DockerServerException e) {
+            } catch (DockerServerException | NotFoundException e) {
                 log.error(String.format("Cannot get Tasks for Service %s.", service.serviceId()), e);
                 report.add(UpdateReportEntry.failure(service.serviceId(), e.getMessage()));
             }
         }
+        return report;
+    }
 
-        boolean allTrue = true;
-        boolean allFalse = true;
-        for (final UpdateReportEntry entry : report.updateReports) {
-            allTrue = allTrue && entry.successful;
-            allFalse = allFalse && !entry.successful;
+    /**
+     * @return The id of the server a container was placed on. Containers placed before there were several servers
+     * are on the default server.
+     */
+    @Nullable
+    private static Long serverIdOrDefault(final @Nullable Long serverId, final @Nullable DockerServer defaultServer) {
+        if (serverId == null || serverId == 0L) {
+            return defaultServer == null ? null : defaultServer.id();
         }
-
-        // If either allTrue or allFalse is true, then allTrue will tell us if everything was successful or not.
-        // If both allTrue and allFalse are false,, that means some were successful and some not. So we set overall report success to null.
-        report.successful = allTrue || allFalse ? allTrue : null;
-
-        return report;
+        return serverId;
     }
 
     private static class UpdateReport {
@@ -182,6 +380,23 @@ public class DockerStatusUpdater implements Runnable {
         public void add(final UpdateReportEntry entry) {
             updateReports.add(entry);
         }
+
+        public void addAll(final UpdateReport report) {
+            updateReports.addAll(report.updateReports);
+        }
+
+        public void summarize() {
+            boolean allTrue = true;
+            boolean allFalse = true;
+            for (final UpdateReportEntry entry : updateReports) {
+                allTrue = allTrue && entry.successful;
+                allFalse = allFalse && !entry.successful;
+            }
+
+            // If either allTrue or allFalse is true, then allTrue will tell us if everything was successful or not.
+            // If both allTrue and allFalse are false,, that means some were successful and some not. So we set overall report success to null.
+            successful = allTrue || allFalse ? allTrue : null;
+        }
     }
 
     private static class UpdateReportEntry {
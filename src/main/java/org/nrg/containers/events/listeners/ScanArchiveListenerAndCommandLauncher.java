@@ -11,6 +11,7 @@ import org.nrg.containers.exceptions.DockerServerException;
 import org.nrg.containers.exceptions.NoDockerServerException;
 import org.nrg.containers.exceptions.UnauthorizedException;
 import org.nrg.containers.model.CommandEventMapping;
+import org.nrg.containers.model.container.LaunchPriority;
 import org.nrg.containers.model.xnat.Scan;
 import org.nrg.containers.services.CommandEventMappingService;
 import org.nrg.containers.services.ContainerService;
@@ -104,11 +105,9 @@ public class ScanArchiveListenerAndCommandLauncher implements Consumer<Event<Sca
                                 }
                             }
                         }
-                        if (subscriptionProjectId != null && !subscriptionProjectId.isEmpty()) {
-                            containerService.resolveCommandAndLaunchContainer(subscriptionProjectId, commandId, wrapperName, inputValues, subscriptionUser);
-                        } else {
-                            containerService.resolveCommandAndLaunchContainer(commandId, wrapperName, inputValues, subscriptionUser);
-                        }
+                        final String projectId = subscriptionProjectId != null && !subscriptionProjectId.isEmpty() ? subscriptionProjectId : null;
+                        containerService.resolveCommandAndLaunchContainer(projectId, commandId, wrapperName, 0L, inputValues, subscriptionUser,
+                                LaunchPriority.EVENT, LaunchPriority.fromName(commandEventMapping.getPriority()));
                     } catch (UserNotFoundException | UserInitException e) {
                         log.error(String.format("Error launching command %d. Could not find or Init subscription owner: %s", commandId, commandEventMapping.getSubscriptionUserName()), e);
                     } catch (NotFoundException | CommandResolutionException | NoDockerServerException | DockerServerException | ContainerException | UnauthorizedException e) {
@@ -0,0 +1,142 @@
+package org.nrg.containers.initialization.tasks;
+
+import com.google.common.base.Function;
+import com.google.common.collect.Lists;
+import org.hibernate.SessionFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.envers.event.spi.EnversListener;
+import org.hibernate.event.service.spi.EventListenerGroup;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostCollectionRecreateEventListener;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.event.spi.PreCollectionRemoveEventListener;
+import org.hibernate.event.spi.PreCollectionUpdateEventListener;
+import org.nrg.containers.daos.ContainerAuditFilter;
+import org.nrg.containers.model.configuration.ContainerServicePrefsBean;
+import org.nrg.xnat.initialization.tasks.AbstractInitializingTask;
+import org.nrg.xnat.initialization.tasks.InitializingTaskException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Wraps the Envers audit listeners so writes on the container entity graph
+ * honor the site's container audit granularity setting.
+ */
+@Component
+public class ConfigureContainerAuditing extends AbstractInitializingTask {
+    private static final Logger log = LoggerFactory.getLogger(ConfigureContainerAuditing.class);
+    private final SessionFactory sessionFactory;
+    private final ContainerAuditFilter auditFilter;
+
+    @Autowired
+    public ConfigureContainerAuditing(final SessionFactory sessionFactory,
+                                      final ContainerServicePrefsBean containerServicePrefsBean) {
+        this.sessionFactory = sessionFactory;
+        this.auditFilter = new ContainerAuditFilter(containerServicePrefsBean);
+    }
+
+    @Override
+    public String getTaskName() {
+        return "Configure audit granularity for containers";
+    }
+
+    @Override
+    protected void callImpl() throws InitializingTaskException {
+        if (!(sessionFactory instanceof SessionFactoryImplementor)) {
+            log.info("Cannot access Hibernate event listeners. Container audit granularity will not be applied.");
+            return;
+        }
+
+        final EventListenerRegistry registry =
+                ((SessionFactoryImplementor) sessionFactory).getServiceRegistry().getService(EventListenerRegistry.class);
+        if (registry == null) {
+            log.info("No Hibernate event listener registry found. Container audit granularity will not be applied.");
+            return;
+        }
+
+        int wrapped = 0;
+        wrapped += wrapEnversListeners(registry.getEventListenerGroup(EventType.POST_INSERT),
+                new Function<PostInsertEventListener, PostInsertEventListener>() {
+                    @Override
+                    public PostInsertEventListener apply(final PostInsertEventListener listener) {
+                        return new ContainerAuditFilter.FilteringPostInsertEventListener(listener, auditFilter);
+                    }
+                });
+        wrapped += wrapEnversListeners(registry.getEventListenerGroup(EventType.POST_UPDATE),
+                new Function<PostUpdateEventListener, PostUpdateEventListener>() {
+                    @Override
+                    public PostUpdateEventListener apply(final PostUpdateEventListener listener) {
+                        return new ContainerAuditFilter.FilteringPostUpdateEventListener(listener, auditFilter);
+                    }
+                });
+        wrapped += wrapEnversListeners(registry.getEventListenerGroup(EventType.POST_DELETE),
+                new Function<PostDeleteEventListener, PostDeleteEventListener>() {
+                    @Override
+                    public PostDeleteEventListener apply(final PostDeleteEventListener listener) {
+                        return new ContainerAuditFilter.FilteringPostDeleteEventListener(listener, auditFilter);
+                    }
+                });
+        wrapped += wrapEnversListeners(registry.getEventListenerGroup(EventType.PRE_COLLECTION_UPDATE),
+                new Function<PreCollectionUpdateEventListener, PreCollectionUpdateEventListener>() {
+                    @Override
+                    public PreCollectionUpdateEventListener apply(final PreCollectionUpdateEventListener listener) {
+                        return new ContainerAuditFilter.FilteringPreCollectionUpdateEventListener(listener, auditFilter);
+                    }
+                });
+        wrapped += wrapEnversListeners(registry.getEventListenerGroup(EventType.PRE_COLLECTION_REMOVE),
+                new Function<PreCollectionRemoveEventListener, PreCollectionRemoveEventListener>() {
+                    @Override
+                    public PreCollectionRemoveEventListener apply(final PreCollectionRemoveEventListener listener) {
+                        return new ContainerAuditFilter.FilteringPreCollectionRemoveEventListener(listener, auditFilter);
+                    }
+                });
+        wrapped += wrapEnversListeners(registry.getEventListenerGroup(EventType.POST_COLLECTION_RECREATE),
+                new Function<PostCollectionRecreateEventListener, PostCollectionRecreateEventListener>() {
+                    @Override
+                    public PostCollectionRecreateEventListener apply(final PostCollectionRecreateEventListener listener) {
+                        return new ContainerAuditFilter.FilteringPostCollectionRecreateEventListener(listener, auditFilter);
+                    }
+                });
+
+        log.info("Wrapped {} Envers listener{}. Container audit granularity is \"{}\".",
+                wrapped, wrapped == 1 ? "" : "s", auditFilter.granularity().getName());
+    }
+
+    private <T> int wrapEnversListeners(final EventListenerGroup<T> group, final Function<T, T> wrapper) {
+        if (group == null) {
+            return 0;
+        }
+
+        final List<T> listeners = Lists.newArrayList(group.listeners());
+        boolean anyEnvers = false;
+        for (final T listener : listeners) {
+            if (listener instanceof EnversListener) {
+                anyEnvers = true;
+                break;
+            }
+        }
+        if (!anyEnvers) {
+            // Either Envers is not active, or we have already wrapped its listeners.
+            return 0;
+        }
+
+        int wrapped = 0;
+        group.clear();
+        for (final T listener : listeners) {
+            if (listener instanceof EnversListener) {
+                group.appendListener(wrapper.apply(listener));
+                wrapped++;
+            } else {
+                group.appendListener(listener);
+            }
+        }
+        return wrapped;
+    }
+}
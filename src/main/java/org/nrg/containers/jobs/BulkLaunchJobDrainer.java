@@ -0,0 +1,100 @@
+package org.nrg.containers.jobs;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.nrg.containers.model.bulklaunch.auto.BulkLaunchJob;
+import org.nrg.containers.model.command.auto.LaunchReport;
+import org.nrg.containers.services.BulkLaunchJobService;
+import org.nrg.containers.services.BulkLaunchService;
+import org.nrg.xdat.security.helpers.Users;
+import org.nrg.xdat.security.user.exceptions.UserInitException;
+import org.nrg.xdat.security.user.exceptions.UserNotFoundException;
+import org.nrg.xft.schema.XFTManager;
+import org.nrg.xft.security.UserI;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Launches the items of stored bulk launch jobs. Jobs take turns a chunk at a time, so one large job
+ * does not hold up the others. Items are claimed in the database before they are launched, so each item
+ * is launched at most once even with several nodes running this job. An item that was claimed but never
+ * got a report, because the node launching it went down, is reported as failed once it is old enough.
+ */
+@Component
+public class BulkLaunchJobDrainer implements Runnable {
+    private static final Logger log = LoggerFactory.getLogger(BulkLaunchJobDrainer.class);
+
+    private static final int CHUNK_SIZE = 50;
+    private static final long ABANDONED_AFTER_MILLIS = TimeUnit.HOURS.toMillis(1L);
+
+    private final BulkLaunchJobService bulkLaunchJobService;
+    private final BulkLaunchService bulkLaunchService;
+
+    @Autowired
+    public BulkLaunchJobDrainer(final BulkLaunchJobService bulkLaunchJobService,
+                                final BulkLaunchService bulkLaunchService) {
+        this.bulkLaunchJobService = bulkLaunchJobService;
+        this.bulkLaunchService = bulkLaunchService;
+    }
+
+    @Override
+    public void run() {
+        if (!XFTManager.isInitialized()) {
+            log.trace("XFT is not initialized. Skipping bulk launch jobs.");
+            return;
+        }
+
+        try {
+            bulkLaunchJobService.failAbandonedItems(new Date(System.currentTimeMillis() - ABANDONED_AFTER_MILLIS), CHUNK_SIZE);
+
+            boolean launchedAny = true;
+            while (launchedAny && !Thread.currentThread().isInterrupted()) {
+                launchedAny = false;
+                for (final BulkLaunchJob job : bulkLaunchJobService.getUnfinishedJobs()) {
+                    launchedAny |= launchChunk(job);
+                }
+            }
+        } catch (Exception e) {
+            log.error("Failed to run bulk launch jobs. Will try again on the next run.", e);
+        }
+    }
+
+    private boolean launchChunk(final BulkLaunchJob job) {
+        final Map<Long, Map<String, String>> claimed = bulkLaunchJobService.claimItems(job.id(), CHUNK_SIZE);
+        if (claimed.isEmpty()) {
+            return false;
+        }
+        log.debug("Launching {} items of bulk launch job {}.", claimed.size(), job.id());
+
+        final long commandId = job.commandId() == null ? 0L : job.commandId();
+        final long wrapperId = job.wrapperId() == null ? 0L : job.wrapperId();
+        final List<Long> itemIds = Lists.newArrayList(claimed.keySet());
+        final List<Map<String, String>> launchParamSets = Lists.newArrayList(claimed.values());
+
+        List<LaunchReport> reports;
+        try {
+            final UserI userI = Users.getUser(job.userId());
+            reports = bulkLaunchService.launch(job.project(), commandId, job.wrapperName(), wrapperId, launchParamSets, userI);
+        } catch (UserInitException | UserNotFoundException e) {
+            log.error("Could not get user {} for bulk launch job {}.", job.userId(), job.id(), e);
+            reports = Lists.newArrayList();
+            for (final Map<String, String> launchParams : launchParamSets) {
+                reports.add(LaunchReport.Failure.create("Could not get user " + job.userId() + ".", launchParams, commandId, wrapperId));
+            }
+        }
+
+        final Map<Long, LaunchReport> reportsByItemId = Maps.newLinkedHashMap();
+        for (int i = 0; i < itemIds.size(); i++) {
+            reportsByItemId.put(itemIds.get(i), reports.get(i));
+        }
+        bulkLaunchJobService.recordReports(job.id(), reportsByItemId);
+        return true;
+    }
+}
@@ -0,0 +1,38 @@
+package org.nrg.containers.jobs;
+
+import org.nrg.containers.services.ContainerService;
+import org.nrg.xft.schema.XFTManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Dispatches queued launches. Finalizing a container already does this, so the job only catches
+ * launches that could go because the limits were raised, or whose dispatch was missed on another node.
+ */
+@Component
+public class ContainerQueueJob implements Runnable {
+    private static final Logger log = LoggerFactory.getLogger(ContainerQueueJob.class);
+
+    private final ContainerService containerService;
+
+    @Autowired
+    public ContainerQueueJob(final ContainerService containerService) {
+        this.containerService = containerService;
+    }
+
+    @Override
+    public void run() {
+        if (!XFTManager.isInitialized()) {
+            log.trace("XFT is not initialized. Skipping launch queue dispatch.");
+            return;
+        }
+
+        try {
+            containerService.dispatchQueued();
+        } catch (Exception e) {
+            log.error("Failed to dispatch queued launches. Will try again on the next run.", e);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package org.nrg.containers.jobs;
+
+import org.nrg.containers.model.configuration.ContainerServicePrefsBean;
+import org.nrg.containers.services.ContainerArchiveService;
+import org.nrg.containers.services.TaskLeaseService;
+import org.nrg.xft.schema.XFTManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Moves finalized containers older than the configured retention period out of the live container tables.
+ * Each batch is archived and deleted in its own transaction, and each run handles a bounded number of batches,
+ * so a large backlog is worked off over several runs without holding long locks.
+ * In a cluster, only one node runs it.
+ */
+@Component
+public class ContainerRetentionJob implements Runnable, DisposableBean {
+    private static final Logger log = LoggerFactory.getLogger(ContainerRetentionJob.class);
+
+    public static final long PERIOD_MINUTES = 60L;
+
+    private static final String LEASE_NAME = "container-retention";
+    // Outlasts a few runs, so a run that is a little late does not lose the lease to another node
+    private static final long LEASE_MILLIS = TimeUnit.MINUTES.toMillis(3 * PERIOD_MINUTES);
+
+    private final ContainerArchiveService containerArchiveService;
+    private final ContainerServicePrefsBean containerServicePrefsBean;
+    private final TaskLeader taskLeader;
+
+    @Autowired
+    public ContainerRetentionJob(final ContainerArchiveService containerArchiveService,
+                                 final ContainerServicePrefsBean containerServicePrefsBean,
+                                 final TaskLeaseService taskLeaseService) {
+        this.containerArchiveService = containerArchiveService;
+        this.containerServicePrefsBean = containerServicePrefsBean;
+        this.taskLeader = new TaskLeader(taskLeaseService, LEASE_NAME);
+    }
+
+    @Override
+    public void destroy() {
+        taskLeader.resign();
+    }
+
+    @Override
+    public void run() {
+        if (!XFTManager.isInitialized()) {
+            log.trace("XFT is not initialized. Skipping container retention.");
+            return;
+        }
+
+        final Integer retentionDays = containerServicePrefsBean.getRetentionDays();
+        if (retentionDays == null || retentionDays <= 0) {
+            log.trace("Container retention is turned off.");
+            taskLeader.resign();
+            return;
+        }
+
+        if (!taskLeader.isLeader(LEASE_MILLIS)) {
+            log.trace("Another node is archiving containers.");
+            return;
+        }
+
+        final int batchSize = positiveOrDefault(containerServicePrefsBean.getRetentionBatchSize(), 100);
+        final int maxBatches = positiveOrDefault(containerServicePrefsBean.getRetentionMaxBatchesPerRun(), 50);
+        final Date finalizedBefore = new Date(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(retentionDays));
+
+        log.debug("Archiving containers finalized before {}.", finalizedBefore);
+        int archived = 0;
+        for (int batch = 0; batch < maxBatches; batch++) {
+            final int archivedInBatch;
+            try {
+                archivedInBatch = containerArchiveService.archiveFinalizedContainers(finalizedBefore, batchSize);
+            } catch (Exception e) {
+                log.error("Failed to archive a batch of finalized containers. Will try again on the next run.", e);
+                break;
+            }
+            archived += archivedInBatch;
+            if (archivedInBatch < batchSize) {
+                break;
+            }
+        }
+
+        if (archived > 0) {
+            log.info("Archived {} finalized container{}.", archived, archived == 1 ? "" : "s");
+        }
+    }
+
+    private int positiveOrDefault(final Integer value, final int defaultValue) {
+        return value == null || value <= 0 ? defaultValue : value;
+    }
+}
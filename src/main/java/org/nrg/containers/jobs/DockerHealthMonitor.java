@@ -0,0 +1,37 @@
+package org.nrg.containers.jobs;
+
+import org.nrg.containers.services.DockerHealthService;
+import org.nrg.xft.schema.XFTManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Pings the Docker server and hubs in the background, so the answers are ready when someone asks.
+ */
+@Component
+public class DockerHealthMonitor implements Runnable {
+    private static final Logger log = LoggerFactory.getLogger(DockerHealthMonitor.class);
+
+    private final DockerHealthService dockerHealthService;
+
+    @Autowired
+    public DockerHealthMonitor(final DockerHealthService dockerHealthService) {
+        this.dockerHealthService = dockerHealthService;
+    }
+
+    @Override
+    public void run() {
+        if (!XFTManager.isInitialized()) {
+            log.trace("XFT is not initialized. Skipping Docker health check.");
+            return;
+        }
+
+        try {
+            dockerHealthService.refresh();
+        } catch (Exception e) {
+            log.error("Failed to check Docker server and hub health. Will try again on the next run.", e);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package org.nrg.containers.jobs;
+
+import org.nrg.containers.model.configuration.ContainerServicePrefsBean;
+import org.nrg.containers.services.ContainerCleanupService;
+import org.nrg.xft.schema.XFTManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Prunes finalized containers and dangling images from the Docker server every configured interval.
+ * The job is scheduled more often than that so that interval changes take effect quickly.
+ */
+@Component
+public class DockerPruneJob implements Runnable {
+    private static final Logger log = LoggerFactory.getLogger(DockerPruneJob.class);
+
+    private final ContainerCleanupService containerCleanupService;
+    private final ContainerServicePrefsBean containerServicePrefsBean;
+
+    private long lastPruned = 0L;
+
+    @Autowired
+    public DockerPruneJob(final ContainerCleanupService containerCleanupService,
+                          final ContainerServicePrefsBean containerServicePrefsBean) {
+        this.containerCleanupService = containerCleanupService;
+        this.containerServicePrefsBean = containerServicePrefsBean;
+    }
+
+    @Override
+    public void run() {
+        if (!XFTManager.isInitialized()) {
+            log.trace("XFT is not initialized. Skipping Docker pruning.");
+            return;
+        }
+
+        final Integer intervalHours = containerServicePrefsBean.getDockerPruneIntervalHours();
+        if (intervalHours == null || intervalHours <= 0) {
+            log.trace("Docker pruning is turned off.");
+            return;
+        }
+        if (lastPruned != 0L && System.currentTimeMillis() - lastPruned < TimeUnit.HOURS.toMillis(intervalHours)) {
+            return;
+        }
+
+        lastPruned = System.currentTimeMillis();
+        try {
+            containerCleanupService.prune();
+        } catch (Exception e) {
+            log.error("Failed to prune the Docker server. Will try again on the next run.", e);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package org.nrg.containers.jobs;
+
+import org.nrg.containers.services.ContainerService;
+import org.nrg.containers.services.FinalizationWorkService;
+import org.nrg.xft.schema.XFTManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Claims finalization work enqueued on any node of the cluster for this node's free workers, takes over work whose
+ * node went away once its lease expires, and renews this node's leases while it finalizes. Runs on every node.
+ * Finished work is kept for a day, for the per-node throughput report.
+ */
+@Component
+public class FinalizationWorkJob implements Runnable {
+    private static final Logger log = LoggerFactory.getLogger(FinalizationWorkJob.class);
+
+    private static final long KEEP_FINISHED_MILLIS = TimeUnit.DAYS.toMillis(1L);
+    private static final long PURGE_INTERVAL_MILLIS = TimeUnit.HOURS.toMillis(1L);
+
+    private final ContainerService containerService;
+    private final FinalizationWorkService finalizationWorkService;
+
+    private long nextPurgeMillis = 0L;
+
+    @Autowired
+    public FinalizationWorkJob(final ContainerService containerService,
+                               final FinalizationWorkService finalizationWorkService) {
+        this.containerService = containerService;
+        this.finalizationWorkService = finalizationWorkService;
+    }
+
+    @Override
+    public void run() {
+        if (!XFTManager.isInitialized()) {
+            log.trace("XFT is not initialized. Skipping finalization work.");
+            return;
+        }
+
+        try {
+            containerService.claimFinalizationWork();
+        } catch (Exception e) {
+            log.error("Failed to claim finalization work. Will try again on the next run.", e);
+        }
+
+        final long now = System.currentTimeMillis();
+        if (now >= nextPurgeMillis) {
+            nextPurgeMillis = now + PURGE_INTERVAL_MILLIS;
+            try {
+                final int purged = finalizationWorkService.purgeFinishedBefore(new Date(now - KEEP_FINISHED_MILLIS));
+                if (purged > 0) {
+                    log.debug("Removed {} finished items from the finalization work table.", purged);
+                }
+            } catch (Exception e) {
+                log.error("Failed to remove finished finalization work.", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package org.nrg.containers.jobs;
+
+import org.nrg.containers.model.configuration.ContainerServicePrefsBean;
+import org.nrg.containers.services.ImageWarmerService;
+import org.nrg.containers.services.TaskLeaseService;
+import org.nrg.xft.schema.XFTManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pre-pulls the images of event-triggered and recently used commands, once at startup and then every
+ * configured interval. The job is scheduled more often than that so that interval changes take effect quickly.
+ * The servers are shared by every node of a cluster, so only one node warms them.
+ */
+@Component
+public class ImageWarmerJob implements Runnable, DisposableBean {
+    private static final Logger log = LoggerFactory.getLogger(ImageWarmerJob.class);
+
+    public static final long PERIOD_MINUTES = 1L;
+
+    private static final String LEASE_NAME = "image-warmer";
+    // Outlasts a few runs, so a run that is a little late does not lose the lease to another node
+    private static final long LEASE_MILLIS = TimeUnit.MINUTES.toMillis(3 * PERIOD_MINUTES);
+
+    private final ImageWarmerService imageWarmerService;
+    private final ContainerServicePrefsBean containerServicePrefsBean;
+    private final TaskLeader taskLeader;
+
+    private long lastWarmed = 0L;
+
+    @Autowired
+    public ImageWarmerJob(final ImageWarmerService imageWarmerService,
+                          final ContainerServicePrefsBean containerServicePrefsBean,
+                          final TaskLeaseService taskLeaseService) {
+        this.imageWarmerService = imageWarmerService;
+        this.containerServicePrefsBean = containerServicePrefsBean;
+        this.taskLeader = new TaskLeader(taskLeaseService, LEASE_NAME);
+    }
+
+    @Override
+    public void destroy() {
+        taskLeader.resign();
+    }
+
+    @Override
+    public void run() {
+        if (!XFTManager.isInitialized()) {
+            log.trace("XFT is not initialized. Skipping image warming.");
+            return;
+        }
+
+        final Integer intervalMinutes = containerServicePrefsBean.getImageWarmerIntervalMinutes();
+        if (intervalMinutes == null || intervalMinutes <= 0) {
+            log.trace("Image warming is turned off.");
+            taskLeader.resign();
+            return;
+        }
+
+        // Checked every run, not only when it is time to warm, so the leader keeps its lease between warmings
+        if (!taskLeader.isLeader(LEASE_MILLIS)) {
+            log.trace("Another node is warming images.");
+            return;
+        }
+        if (lastWarmed != 0L && System.currentTimeMillis() - lastWarmed < TimeUnit.MINUTES.toMillis(intervalMinutes)) {
+            return;
+        }
+
+        lastWarmed = System.currentTimeMillis();
+        try {
+            imageWarmerService.warmAll();
+        } catch (Exception e) {
+            log.error("Failed to warm images. Will try again on the next run.", e);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package org.nrg.containers.jobs;
+
+import org.nrg.containers.services.TaskLeaseService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Date;
+
+/**
+ * Decides, each time a scheduled task runs, whether this node of a cluster is the one that runs it.
+ * The node holding the task's lease renews it every run. The other nodes do not go to the database again
+ * until the lease they last saw has expired, so for them a skipped run costs nothing.
+ */
+public class TaskLeader {
+    private static final Logger log = LoggerFactory.getLogger(TaskLeader.class);
+
+    private final TaskLeaseService taskLeaseService;
+    private final String name;
+
+    private volatile boolean leading = false;
+    private volatile long nextAttemptMillis = 0L;
+
+    public TaskLeader(final TaskLeaseService taskLeaseService, final String name) {
+        this.taskLeaseService = taskLeaseService;
+        this.name = name;
+    }
+
+    /**
+     * @param leaseMillis How long the lease lasts if it is not renewed. If this node stops running the task,
+     *                    another node takes over within this long.
+     * @return {@code true} if this node should run the task now.
+     */
+    public boolean isLeader(final long leaseMillis) {
+        final long now = System.currentTimeMillis();
+        if (!leading && now < nextAttemptMillis) {
+            return false;
+        }
+
+        boolean acquired;
+        try {
+            acquired = taskLeaseService.tryAcquire(name, leaseMillis);
+        } catch (RuntimeException e) {
+            // Most likely another node created the lease at the same moment
+            log.debug("Could not take the lease on task {}: {}", name, e.getMessage());
+            acquired = false;
+        }
+
+        if (acquired && !leading) {
+            log.info("Node {} now runs task {}.", taskLeaseService.getNodeId(), name);
+        } else if (!acquired && leading) {
+            log.warn("Node {} lost the lease on task {} to another node.", taskLeaseService.getNodeId(), name);
+        }
+        leading = acquired;
+
+        if (!acquired) {
+            Date expiry = null;
+            try {
+                expiry = taskLeaseService.getExpiry(name);
+            } catch (RuntimeException e) {
+                log.debug("Could not read the lease on task {}: {}", name, e.getMessage());
+            }
+            nextAttemptMillis = expiry == null ? now : expiry.getTime();
+        }
+        return acquired;
+    }
+
+    /**
+     * Give up the lease, if this node has it, so another node can take over right away.
+     */
+    public void resign() {
+        if (!leading) {
+            return;
+        }
+        leading = false;
+        try {
+            taskLeaseService.release(name);
+            log.info("Node {} gave up task {}.", taskLeaseService.getNodeId(), name);
+        } catch (RuntimeException e) {
+            log.debug("Could not give up the lease on task {}: {}", name, e.getMessage());
+        }
+    }
+}
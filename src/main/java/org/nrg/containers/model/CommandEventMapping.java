@@ -14,6 +14,7 @@ public class CommandEventMapping extends AbstractHibernateEntity {
     @JsonProperty("xnat-command-wrapper") private String xnatCommandWrapperName;
     @JsonProperty("project") private String projectId;
     @JsonProperty("subscription-user-name") private String subscriptionUserName;
+    @JsonProperty("priority") private String priority;
 
     public String getEventType() {
         return eventType;
@@ -56,6 +57,17 @@ public class CommandEventMapping extends AbstractHibernateEntity {
         this.subscriptionUserName = subscriptionUserName;
     }
 
+    /**
+     * The priority of launches by this mapping. If null, the wrapper's priority is used, or "event" if it has none.
+     */
+    public String getPriority() {
+        return priority;
+    }
+
+    public void setPriority(final String priority) {
+        this.priority = priority;
+    }
+
     @Override
     public boolean equals(final Object o) {
         if (this == o) return true;
@@ -66,12 +78,13 @@ public class CommandEventMapping extends AbstractHibernateEntity {
                 Objects.equals(this.commandId, that.commandId) &&
                 Objects.equals(this.xnatCommandWrapperName, that.xnatCommandWrapperName) &&
                 Objects.equals(this.projectId, that.projectId) &&
-                Objects.equals(this.subscriptionUserName, that.subscriptionUserName);
+                Objects.equals(this.subscriptionUserName, that.subscriptionUserName) &&
+                Objects.equals(this.priority, that.priority);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(super.hashCode(), eventType, commandId, xnatCommandWrapperName, projectId, subscriptionUserName);
+        return Objects.hash(super.hashCode(), eventType, commandId, xnatCommandWrapperName, projectId, subscriptionUserName, priority);
     }
 
     @Override
@@ -82,6 +95,7 @@ public class CommandEventMapping extends AbstractHibernateEntity {
                 .add("xnatCommandWrapper", xnatCommandWrapperName)
                 .add("projectId", projectId)
                 .add("subscriptionUserName", subscriptionUserName)
+                .add("priority", priority)
                 .toString();
     }
 
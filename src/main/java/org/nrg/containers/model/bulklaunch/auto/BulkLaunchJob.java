@@ -0,0 +1,62 @@
+package org.nrg.containers.model.bulklaunch.auto;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.auto.value.AutoValue;
+import org.nrg.containers.model.bulklaunch.entity.BulkLaunchJobEntity;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Date;
+
+/**
+ * Progress of a background bulk launch. "Launched" counts items that have been handed to a launcher;
+ * "succeeded" and "failed" count items whose launch reports are in. The reports themselves are at
+ * /xapi/bulklaunch/jobs/{id}/reports.
+ */
+@AutoValue
+@JsonInclude(JsonInclude.Include.ALWAYS)
+public abstract class BulkLaunchJob {
+    @JsonProperty("id") public abstract long id();
+    @JsonProperty("user-id") public abstract String userId();
+    @Nullable @JsonProperty("project") public abstract String project();
+    @Nullable @JsonProperty("command-id") public abstract Long commandId();
+    @Nullable @JsonProperty("wrapper-name") public abstract String wrapperName();
+    @Nullable @JsonProperty("wrapper-id") public abstract Long wrapperId();
+    @JsonProperty("status") public abstract String status();
+    @JsonProperty("items") public abstract int items();
+    @JsonProperty("launched") public abstract int launched();
+    @JsonProperty("succeeded") public abstract int succeeded();
+    @JsonProperty("failed") public abstract int failed();
+    @Nullable @JsonProperty("created") public abstract Date created();
+    @Nullable @JsonProperty("finished") public abstract Date finished();
+
+    @JsonCreator
+    public static BulkLaunchJob create(@JsonProperty("id") final long id,
+                                       @JsonProperty("user-id") final String userId,
+                                       @JsonProperty("project") final String project,
+                                       @JsonProperty("command-id") final Long commandId,
+                                       @JsonProperty("wrapper-name") final String wrapperName,
+                                       @JsonProperty("wrapper-id") final Long wrapperId,
+                                       @JsonProperty("status") final String status,
+                                       @JsonProperty("items") final int items,
+                                       @JsonProperty("launched") final int launched,
+                                       @JsonProperty("succeeded") final int succeeded,
+                                       @JsonProperty("failed") final int failed,
+                                       @JsonProperty("created") final Date created,
+                                       @JsonProperty("finished") final Date finished) {
+        return new AutoValue_BulkLaunchJob(id, userId, project, commandId, wrapperName, wrapperId, status,
+                items, launched, succeeded, failed, created, finished);
+    }
+
+    @Nonnull
+    public static BulkLaunchJob create(final @Nonnull BulkLaunchJobEntity entity) {
+        return create(entity.getId(), entity.getUserId(), entity.getProject(),
+                entity.getCommandId() == 0L ? null : entity.getCommandId(),
+                entity.getWrapperName(),
+                entity.getWrapperId() == 0L ? null : entity.getWrapperId(),
+                entity.getStatus(), entity.getItemCount(), Math.min(entity.getLaunchCursor(), entity.getItemCount()),
+                entity.getSucceeded(), entity.getFailed(), entity.getCreated(), entity.getFinished());
+    }
+}
@@ -0,0 +1,108 @@
+package org.nrg.containers.model.bulklaunch.entity;
+
+import com.google.common.base.MoreObjects;
+import org.nrg.framework.orm.hibernate.AbstractHibernateEntity;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Table;
+import javax.persistence.UniqueConstraint;
+import java.util.Date;
+import java.util.Objects;
+
+/**
+ * One parameter set of a {@link BulkLaunchJobEntity}, and its launch report once it has been launched.
+ * The job is referenced by id rather than mapped, so a job never loads all of its items at once.
+ */
+@Entity
+@Table(uniqueConstraints = {@UniqueConstraint(columnNames = {"jobId", "itemIndex"})})
+public class BulkLaunchItemEntity extends AbstractHibernateEntity {
+    private long jobId;
+    private int itemIndex;
+    private String launchParamsJson;
+    private Date claimed;
+    private Boolean success;
+    private String reportJson;
+
+    public static BulkLaunchItemEntity create(final long jobId, final int itemIndex, final String launchParamsJson) {
+        final BulkLaunchItemEntity itemEntity = new BulkLaunchItemEntity();
+        itemEntity.jobId = jobId;
+        itemEntity.itemIndex = itemIndex;
+        itemEntity.launchParamsJson = launchParamsJson;
+        return itemEntity;
+    }
+
+    public long getJobId() {
+        return jobId;
+    }
+
+    public void setJobId(final long jobId) {
+        this.jobId = jobId;
+    }
+
+    public int getItemIndex() {
+        return itemIndex;
+    }
+
+    public void setItemIndex(final int itemIndex) {
+        this.itemIndex = itemIndex;
+    }
+
+    @Column(columnDefinition = "TEXT")
+    public String getLaunchParamsJson() {
+        return launchParamsJson;
+    }
+
+    public void setLaunchParamsJson(final String launchParamsJson) {
+        this.launchParamsJson = launchParamsJson;
+    }
+
+    public Date getClaimed() {
+        return claimed;
+    }
+
+    public void setClaimed(final Date claimed) {
+        this.claimed = claimed;
+    }
+
+    public Boolean getSuccess() {
+        return success;
+    }
+
+    public void setSuccess(final Boolean success) {
+        this.success = success;
+    }
+
+    @Column(columnDefinition = "TEXT")
+    public String getReportJson() {
+        return reportJson;
+    }
+
+    public void setReportJson(final String reportJson) {
+        this.reportJson = reportJson;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        final BulkLaunchItemEntity that = (BulkLaunchItemEntity) o;
+        return jobId == that.jobId &&
+                itemIndex == that.itemIndex;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(jobId, itemIndex);
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("jobId", jobId)
+                .add("itemIndex", itemIndex)
+                .add("claimed", claimed)
+                .add("success", success)
+                .toString();
+    }
+}
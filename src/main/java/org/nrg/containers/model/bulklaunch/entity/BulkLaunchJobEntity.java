@@ -0,0 +1,157 @@
+package org.nrg.containers.model.bulklaunch.entity;
+
+import com.google.common.base.MoreObjects;
+import org.nrg.framework.orm.hibernate.AbstractHibernateEntity;
+
+import javax.persistence.Entity;
+import javax.persistence.Transient;
+import java.util.Date;
+import java.util.Objects;
+
+/**
+ * A bulk launch that runs in the background. Its parameter sets are stored as {@link BulkLaunchItemEntity} rows.
+ * The cursor is the index of the next item to launch. Items are claimed by moving the cursor,
+ * so each item is launched at most once, on whichever node claims it.
+ */
+@Entity
+public class BulkLaunchJobEntity extends AbstractHibernateEntity {
+    public static final String PENDING = "Pending";
+    public static final String RUNNING = "Running";
+    public static final String COMPLETE = "Complete";
+
+    private String userId;
+    private String project;
+    private long commandId;
+    private String wrapperName;
+    private long wrapperId;
+    private int itemCount;
+    private int launchCursor;
+    private int succeeded;
+    private int failed;
+    private String status;
+    private Date finished;
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public void setUserId(final String userId) {
+        this.userId = userId;
+    }
+
+    public String getProject() {
+        return project;
+    }
+
+    public void setProject(final String project) {
+        this.project = project;
+    }
+
+    public long getCommandId() {
+        return commandId;
+    }
+
+    public void setCommandId(final long commandId) {
+        this.commandId = commandId;
+    }
+
+    public String getWrapperName() {
+        return wrapperName;
+    }
+
+    public void setWrapperName(final String wrapperName) {
+        this.wrapperName = wrapperName;
+    }
+
+    public long getWrapperId() {
+        return wrapperId;
+    }
+
+    public void setWrapperId(final long wrapperId) {
+        this.wrapperId = wrapperId;
+    }
+
+    public int getItemCount() {
+        return itemCount;
+    }
+
+    public void setItemCount(final int itemCount) {
+        this.itemCount = itemCount;
+    }
+
+    public int getLaunchCursor() {
+        return launchCursor;
+    }
+
+    public void setLaunchCursor(final int launchCursor) {
+        this.launchCursor = launchCursor;
+    }
+
+    public int getSucceeded() {
+        return succeeded;
+    }
+
+    public void setSucceeded(final int succeeded) {
+        this.succeeded = succeeded;
+    }
+
+    public int getFailed() {
+        return failed;
+    }
+
+    public void setFailed(final int failed) {
+        this.failed = failed;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(final String status) {
+        this.status = status;
+    }
+
+    public Date getFinished() {
+        return finished;
+    }
+
+    public void setFinished(final Date finished) {
+        this.finished = finished;
+    }
+
+    @Transient
+    public boolean statusIsComplete() {
+        return COMPLETE.equals(status);
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        final BulkLaunchJobEntity that = (BulkLaunchJobEntity) o;
+        return getId() == that.getId();
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(getId());
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("id", getId())
+                .add("userId", userId)
+                .add("project", project)
+                .add("commandId", commandId)
+                .add("wrapperName", wrapperName)
+                .add("wrapperId", wrapperId)
+                .add("itemCount", itemCount)
+                .add("launchCursor", launchCursor)
+                .add("succeeded", succeeded)
+                .add("failed", failed)
+                .add("status", status)
+                .add("finished", finished)
+                .toString();
+    }
+}
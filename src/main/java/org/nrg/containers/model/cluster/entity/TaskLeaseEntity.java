@@ -0,0 +1,77 @@
+package org.nrg.containers.model.cluster.entity;
+
+import com.google.common.base.MoreObjects;
+import org.nrg.framework.orm.hibernate.AbstractHibernateEntity;
+
+import javax.persistence.Entity;
+import javax.persistence.Table;
+import javax.persistence.UniqueConstraint;
+import java.util.Date;
+import java.util.Objects;
+
+/**
+ * A lease on a task that only one node of a cluster should run at a time. The node that holds an unexpired lease
+ * runs the task. It renews the lease while it runs the task, and if it stops, another node takes the lease
+ * once it expires.
+ */
+@Entity
+@Table(uniqueConstraints = {@UniqueConstraint(columnNames = {"name"})})
+public class TaskLeaseEntity extends AbstractHibernateEntity {
+    private String name;
+    private String holder;
+    private Date expires;
+
+    public static TaskLeaseEntity create(final String name, final String holder, final Date expires) {
+        final TaskLeaseEntity taskLeaseEntity = new TaskLeaseEntity();
+        taskLeaseEntity.name = name;
+        taskLeaseEntity.holder = holder;
+        taskLeaseEntity.expires = expires;
+        return taskLeaseEntity;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(final String name) {
+        this.name = name;
+    }
+
+    public String getHolder() {
+        return holder;
+    }
+
+    public void setHolder(final String holder) {
+        this.holder = holder;
+    }
+
+    public Date getExpires() {
+        return expires;
+    }
+
+    public void setExpires(final Date expires) {
+        this.expires = expires;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        final TaskLeaseEntity that = (TaskLeaseEntity) o;
+        return Objects.equals(this.name, that.name);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(name);
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("name", name)
+                .add("holder", holder)
+                .add("expires", expires)
+                .toString();
+    }
+}
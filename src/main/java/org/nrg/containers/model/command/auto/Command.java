@@ -26,6 +26,7 @@ import org.nrg.containers.model.command.entity.CommandWrapperOutputEntity;
 import org.nrg.containers.model.command.entity.CommandWrapperEntity;
 import org.nrg.containers.model.configuration.CommandConfiguration.CommandInputConfiguration;
 import org.nrg.containers.model.configuration.CommandConfiguration.CommandOutputConfiguration;
+import org.nrg.containers.model.container.LaunchPriority;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -54,6 +55,7 @@ public abstract class Command {
     @JsonProperty("mounts") public abstract ImmutableList<CommandMount> mounts();
     @JsonProperty("environment-variables") public abstract ImmutableMap<String, String> environmentVariables();
     @JsonProperty("ports") public abstract ImmutableMap<String, String> ports();
+    @Nullable @JsonProperty("resources") public abstract CommandResources resources();
     @JsonProperty("inputs") public abstract ImmutableList<CommandInput> inputs();
     @JsonProperty("outputs") public abstract ImmutableList<CommandOutput> outputs();
     @JsonProperty("xnat") public abstract ImmutableList<CommandWrapper> xnatCommandWrappers();
@@ -75,6 +77,7 @@ public abstract class Command {
                           @JsonProperty("mounts") final List<CommandMount> mounts,
                           @JsonProperty("environment-variables") final Map<String, String> environmentVariables,
                           @JsonProperty("ports") final Map<String, String> ports,
+                          @JsonProperty("resources") final CommandResources resources,
                           @JsonProperty("inputs") final List<CommandInput> inputs,
                           @JsonProperty("outputs") final List<CommandOutput> outputs,
                           @JsonProperty("xnat") final List<CommandWrapper> xnatCommandWrappers) {
@@ -95,6 +98,7 @@ public abstract class Command {
                 .mounts(mounts == null ? Collections.<CommandMount>emptyList() : mounts)
                 .environmentVariables(environmentVariables == null ? Collections.<String, String>emptyMap() : environmentVariables)
                 .ports(ports == null ? Collections.<String, String>emptyMap() : ports)
+                .resources(resources)
                 .inputs(inputs == null ? Collections.<CommandInput>emptyList() : inputs)
                 .outputs(outputs == null ? Collections.<CommandOutput>emptyList() : outputs)
                 .xnatCommandWrappers(xnatCommandWrappers == null ? Collections.<CommandWrapper>emptyList() : xnatCommandWrappers)
@@ -120,6 +124,7 @@ public abstract class Command {
                 .environmentVariables(commandEntity.getEnvironmentVariables() == null ?
                         Collections.<String, String>emptyMap() :
                         commandEntity.getEnvironmentVariables())
+                .resources(CommandResources.create(commandEntity.getResources()))
                 .mounts(commandEntity.getMounts() == null ?
                         Collections.<CommandMount>emptyList() :
                         Lists.newArrayList(Lists.transform(commandEntity.getMounts(), new Function<CommandMountEntity, CommandMount>() {
@@ -192,6 +197,7 @@ public abstract class Command {
                 .mounts(creation.mounts() == null ? Collections.<CommandMount>emptyList() : creation.mounts())
                 .environmentVariables(creation.environmentVariables() == null ? Collections.<String, String>emptyMap() : creation.environmentVariables())
                 .ports(creation.ports() == null ? Collections.<String, String>emptyMap() : creation.ports())
+                .resources(creation.resources())
                 .inputs(creation.inputs() == null ? Collections.<CommandInput>emptyList() : creation.inputs())
                 .outputs(creation.outputs() == null ? Collections.<CommandOutput>emptyList() : creation.outputs())
                 .xnatCommandWrappers(creation.commandWrapperCreations() == null ? Collections.<CommandWrapper>emptyList() :
@@ -266,6 +272,10 @@ public abstract class Command {
             }
         };
 
+        if (resources() != null) {
+            errors.addAll(Lists.transform(resources().validate(), addCommandNameToError));
+        }
+
         final Set<String> mountNames = Sets.newHashSet();
         for (final CommandMount mount : mounts()) {
             final List<String> mountErrors = Lists.newArrayList();
@@ -502,6 +512,8 @@ public abstract class Command {
             return this;
         }
 
+        public abstract Builder resources(CommandResources resources);
+
         public abstract Builder inputs(List<CommandInput> inputs);
         public abstract Builder inputs(CommandInput... inputs);
         abstract ImmutableList.Builder<CommandInput> inputsBuilder();
@@ -785,6 +797,9 @@ public abstract class Command {
         @JsonProperty("external-inputs") public abstract ImmutableList<CommandWrapperExternalInput> externalInputs();
         @JsonProperty("derived-inputs") public abstract ImmutableList<CommandWrapperDerivedInput> derivedInputs();
         @JsonProperty("output-handlers") public abstract ImmutableList<CommandWrapperOutput> outputHandlers();
+        @Nullable @JsonProperty("resources") public abstract CommandResources resources();
+        @Nullable @JsonProperty("batch-size") public abstract Integer batchSize();
+        @Nullable @JsonProperty("priority") public abstract String priority();
 
         @JsonCreator
         static CommandWrapper create(@JsonProperty("id") final long id,
@@ -793,7 +808,10 @@ public abstract class Command {
                                      @JsonProperty("contexts") final Set<String> contexts,
                                      @JsonProperty("external-inputs") final List<CommandWrapperExternalInput> externalInputs,
                                      @JsonProperty("derived-inputs") final List<CommandWrapperDerivedInput> derivedInputs,
-                                     @JsonProperty("output-handlers") final List<CommandWrapperOutput> outputHandlers) {
+                                     @JsonProperty("output-handlers") final List<CommandWrapperOutput> outputHandlers,
+                                     @JsonProperty("resources") final CommandResources resources,
+                                     @JsonProperty("batch-size") final Integer batchSize,
+                                     @JsonProperty("priority") final String priority) {
             return builder()
                     .id(id)
                     .name(name == null ? "" : name)
@@ -802,6 +820,9 @@ public abstract class Command {
                     .externalInputs(externalInputs == null ? Collections.<CommandWrapperExternalInput>emptyList() : externalInputs)
                     .derivedInputs(derivedInputs == null ? Collections.<CommandWrapperDerivedInput>emptyList() : derivedInputs)
                     .outputHandlers(outputHandlers == null ? Collections.<CommandWrapperOutput>emptyList() : outputHandlers)
+                    .resources(resources)
+                    .batchSize(batchSize)
+                    .priority(priority)
                     .build();
         }
 
@@ -813,6 +834,9 @@ public abstract class Command {
                     .externalInputs(creation.externalInputs() == null ? Collections.<CommandWrapperExternalInput>emptyList() : creation.externalInputs())
                     .derivedInputs(creation.derivedInputs() == null ? Collections.<CommandWrapperDerivedInput>emptyList() : creation.derivedInputs())
                     .outputHandlers(creation.outputHandlers() == null ? Collections.<CommandWrapperOutput>emptyList() : creation.outputHandlers())
+                    .resources(creation.resources())
+                    .batchSize(creation.batchSize())
+                    .priority(creation.priority())
                     .build();
         }
 
@@ -866,6 +890,9 @@ public abstract class Command {
                     .externalInputs(external)
                     .derivedInputs(derived)
                     .outputHandlers(outputs)
+                    .resources(CommandResources.create(commandWrapperEntity.getResources()))
+                    .batchSize(commandWrapperEntity.getBatchSize())
+                    .priority(commandWrapperEntity.getPriority())
                     .build();
         }
 
@@ -875,10 +902,27 @@ public abstract class Command {
             if (StringUtils.isBlank(name())) {
                 errors.add("Command wrapper name cannot be blank.");
             }
+            if (resources() != null) {
+                errors.addAll(resources().validate());
+            }
+            if (batchSize() != null && batchSize() < 1) {
+                errors.add("Command wrapper \"" + name() + "\" - \"batch-size\" must be at least 1.");
+            }
+            if (priority() != null && LaunchPriority.fromName(priority()) == null) {
+                errors.add("Command wrapper \"" + name() + "\" - \"priority\" must be \"interactive\", \"bulk\", or \"event\".");
+            }
 
             return errors;
         }
 
+        /**
+         * Whether launches of this wrapper are packed several to a container.
+         */
+        @JsonIgnore
+        public boolean isBatched() {
+            return batchSize() != null && batchSize() > 1;
+        }
+
         @AutoValue.Builder
         public abstract static class Builder {
             public abstract Builder id(long id);
@@ -919,6 +963,12 @@ public abstract class Command {
                 return this;
             }
 
+            public abstract Builder resources(CommandResources resources);
+
+            public abstract Builder batchSize(Integer batchSize);
+
+            public abstract Builder priority(String priority);
+
             public abstract CommandWrapper build();
         }
     }
@@ -932,6 +982,9 @@ public abstract class Command {
         @JsonProperty("external-inputs") public abstract ImmutableList<CommandWrapperExternalInput> externalInputs();
         @JsonProperty("derived-inputs") public abstract ImmutableList<CommandWrapperDerivedInput> derivedInputs();
         @JsonProperty("output-handlers") public abstract ImmutableList<CommandWrapperOutput> outputHandlers();
+        @Nullable @JsonProperty("resources") public abstract CommandResources resources();
+        @Nullable @JsonProperty("batch-size") public abstract Integer batchSize();
+        @Nullable @JsonProperty("priority") public abstract String priority();
 
         @JsonCreator
         static CommandWrapperCreation create(@JsonProperty("name") final String name,
@@ -939,12 +992,16 @@ public abstract class Command {
                                              @JsonProperty("contexts") final Set<String> contexts,
                                              @JsonProperty("external-inputs") final List<CommandWrapperExternalInput> externalInputs,
                                              @JsonProperty("derived-inputs") final List<CommandWrapperDerivedInput> derivedInputs,
-                                             @JsonProperty("output-handlers") final List<CommandWrapperOutput> outputHandlers) {
+                                             @JsonProperty("output-handlers") final List<CommandWrapperOutput> outputHandlers,
+                                             @JsonProperty("resources") final CommandResources resources,
+                                             @JsonProperty("batch-size") final Integer batchSize,
+                                             @JsonProperty("priority") final String priority) {
             return new AutoValue_Command_CommandWrapperCreation(name, description,
                     contexts == null ? ImmutableSet.<String>of() : ImmutableSet.copyOf(contexts),
                     externalInputs == null ? ImmutableList.<CommandWrapperExternalInput>of() : ImmutableList.copyOf(externalInputs),
                     derivedInputs == null ? ImmutableList.<CommandWrapperDerivedInput>of() : ImmutableList.copyOf(derivedInputs),
-                    outputHandlers == null ? ImmutableList.<CommandWrapperOutput>of() : ImmutableList.copyOf(outputHandlers));
+                    outputHandlers == null ? ImmutableList.<CommandWrapperOutput>of() : ImmutableList.copyOf(outputHandlers),
+                    resources, batchSize, priority);
         }
     }
 
@@ -1301,6 +1358,7 @@ public abstract class Command {
         @JsonProperty("mounts") public abstract ImmutableList<CommandMount> mounts();
         @JsonProperty("environment-variables") public abstract ImmutableMap<String, String> environmentVariables();
         @JsonProperty("ports") public abstract ImmutableMap<String, String> ports();
+        @Nullable @JsonProperty("resources") public abstract CommandResources resources();
         @JsonProperty("inputs") public abstract ImmutableList<CommandInput> inputs();
         @JsonProperty("outputs") public abstract ImmutableList<CommandOutput> outputs();
         @JsonProperty("xnat") public abstract ImmutableList<CommandWrapperCreation> commandWrapperCreations();
@@ -1321,6 +1379,7 @@ public abstract class Command {
                                       @JsonProperty("mounts") final List<CommandMount> mounts,
                                       @JsonProperty("environment-variables") final Map<String, String> environmentVariables,
                                       @JsonProperty("ports") final Map<String, String> ports,
+                                      @JsonProperty("resources") final CommandResources resources,
                                       @JsonProperty("inputs") final List<CommandInput> inputs,
                                       @JsonProperty("outputs") final List<CommandOutput> outputs,
                                       @JsonProperty("xnat") final List<CommandWrapperCreation> commandWrapperCreations) {
@@ -1329,6 +1388,7 @@ public abstract class Command {
                     mounts == null ? ImmutableList.<CommandMount>of() : ImmutableList.copyOf(mounts),
                     environmentVariables == null ? ImmutableMap.<String, String>of() : ImmutableMap.copyOf(environmentVariables),
                     ports == null ? ImmutableMap.<String, String>of() : ImmutableMap.copyOf(ports),
+                    resources,
                     inputs == null ? ImmutableList.<CommandInput>of() : ImmutableList.copyOf(inputs),
                     outputs == null ? ImmutableList.<CommandOutput>of() : ImmutableList.copyOf(outputs),
                     commandWrapperCreations == null ? ImmutableList.<CommandWrapperCreation>of() : ImmutableList.copyOf(commandWrapperCreations));
@@ -1357,6 +1417,7 @@ public abstract class Command {
         public abstract ImmutableList<CommandMount> mounts();
         public abstract ImmutableMap<String, String> environmentVariables();
         public abstract ImmutableMap<String, String> ports();
+        @Nullable public abstract CommandResources resources();
         public abstract ImmutableList<CommandInput> inputs();
         public abstract ImmutableList<CommandOutput> outputs();
         public abstract CommandWrapper wrapper();
@@ -1379,6 +1440,7 @@ public abstract class Command {
                     .index(command.index())
                     .hash(command.hash())
                     .ports(command.ports())
+                    .resources(command.resources())
                     .outputs(command.outputs());
         }
 
@@ -1424,6 +1486,8 @@ public abstract class Command {
                 return this;
             }
 
+            public abstract Builder resources(CommandResources resources);
+
             public abstract Builder inputs(List<CommandInput> inputs);
             public abstract Builder inputs(CommandInput... inputs);
             abstract ImmutableList.Builder<CommandInput> inputsBuilder();
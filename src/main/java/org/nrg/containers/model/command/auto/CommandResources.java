@@ -0,0 +1,146 @@
+package org.nrg.containers.model.command.auto;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.auto.value.AutoValue;
+import com.google.common.collect.Lists;
+import org.nrg.containers.model.command.entity.CommandResourcesEntity;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.List;
+
+/**
+ * CPU, memory, and process limits and reservations for a container.
+ * Any of them can be left unset, in which case Docker's defaults apply.
+ *
+ * Commands, wrappers, and site- and project-level configuration can all set resources.
+ * See {@link #merge(CommandResources, CommandResources)} for how they are combined.
+ */
+@AutoValue
+@JsonInclude(JsonInclude.Include.ALWAYS)
+public abstract class CommandResources {
+    @Nullable @JsonProperty("cpu-shares") public abstract Long cpuShares();
+    @Nullable @JsonProperty("cpu-limit") public abstract Double cpuLimit();
+    @Nullable @JsonProperty("cpu-reservation") public abstract Double cpuReservation();
+    @Nullable @JsonProperty("memory-limit-mb") public abstract Long memoryLimitMb();
+    @Nullable @JsonProperty("memory-reservation-mb") public abstract Long memoryReservationMb();
+    @Nullable @JsonProperty("pids-limit") public abstract Integer pidsLimit();
+    @Nullable @JsonProperty("shm-size-mb") public abstract Long shmSizeMb();
+
+    @JsonCreator
+    public static CommandResources create(@JsonProperty("cpu-shares") final Long cpuShares,
+                                          @JsonProperty("cpu-limit") final Double cpuLimit,
+                                          @JsonProperty("cpu-reservation") final Double cpuReservation,
+                                          @JsonProperty("memory-limit-mb") final Long memoryLimitMb,
+                                          @JsonProperty("memory-reservation-mb") final Long memoryReservationMb,
+                                          @JsonProperty("pids-limit") final Integer pidsLimit,
+                                          @JsonProperty("shm-size-mb") final Long shmSizeMb) {
+        return builder()
+                .cpuShares(cpuShares)
+                .cpuLimit(cpuLimit)
+                .cpuReservation(cpuReservation)
+                .memoryLimitMb(memoryLimitMb)
+                .memoryReservationMb(memoryReservationMb)
+                .pidsLimit(pidsLimit)
+                .shmSizeMb(shmSizeMb)
+                .build();
+    }
+
+    @Nullable
+    public static CommandResources create(final CommandResourcesEntity entity) {
+        if (entity == null) {
+            return null;
+        }
+        final CommandResources resources = create(entity.getCpuShares(), entity.getCpuLimit(), entity.getCpuReservation(),
+                entity.getMemoryLimitMb(), entity.getMemoryReservationMb(), entity.getPidsLimit(), entity.getShmSizeMb());
+        return resources.isEmpty() ? null : resources;
+    }
+
+    public static Builder builder() {
+        return new AutoValue_CommandResources.Builder();
+    }
+
+    /**
+     * Combine two sets of resources. Anything the override sets wins; anything it leaves unset comes from the base.
+     * Resources are merged from least to most specific: command, wrapper, site configuration, project configuration.
+     *
+     * @return The merged resources, or null if neither sets anything.
+     */
+    @Nullable
+    public static CommandResources merge(final @Nullable CommandResources base, final @Nullable CommandResources override) {
+        if (override == null || override.isEmpty()) {
+            return base == null || base.isEmpty() ? null : base;
+        }
+        if (base == null || base.isEmpty()) {
+            return override;
+        }
+        return create(override.cpuShares() == null ? base.cpuShares() : override.cpuShares(),
+                override.cpuLimit() == null ? base.cpuLimit() : override.cpuLimit(),
+                override.cpuReservation() == null ? base.cpuReservation() : override.cpuReservation(),
+                override.memoryLimitMb() == null ? base.memoryLimitMb() : override.memoryLimitMb(),
+                override.memoryReservationMb() == null ? base.memoryReservationMb() : override.memoryReservationMb(),
+                override.pidsLimit() == null ? base.pidsLimit() : override.pidsLimit(),
+                override.shmSizeMb() == null ? base.shmSizeMb() : override.shmSizeMb());
+    }
+
+    @JsonIgnore
+    public boolean isEmpty() {
+        return cpuShares() == null && cpuLimit() == null && cpuReservation() == null &&
+                memoryLimitMb() == null && memoryReservationMb() == null &&
+                pidsLimit() == null && shmSizeMb() == null;
+    }
+
+    /**
+     * Check the resources on their own. Resources merged from several levels should be checked again once merged,
+     * since each level can be valid while the combination is not, e.g. a reservation from the wrapper above a limit from a project.
+     */
+    @Nonnull
+    public List<String> validate() {
+        final List<String> errors = Lists.newArrayList();
+        if (cpuShares() != null && cpuShares() < 2) {
+            errors.add("resources - \"cpu-shares\" must be at least 2.");
+        }
+        if (cpuLimit() != null && cpuLimit() <= 0) {
+            errors.add("resources - \"cpu-limit\" must be greater than zero.");
+        }
+        if (cpuReservation() != null && cpuReservation() <= 0) {
+            errors.add("resources - \"cpu-reservation\" must be greater than zero.");
+        }
+        if (memoryLimitMb() != null && memoryLimitMb() < 6) {
+            // Docker will not start a container with less than 6 MB
+            errors.add("resources - \"memory-limit-mb\" must be at least 6.");
+        }
+        if (memoryReservationMb() != null && memoryReservationMb() <= 0) {
+            errors.add("resources - \"memory-reservation-mb\" must be greater than zero.");
+        }
+        if (memoryLimitMb() != null && memoryReservationMb() != null && memoryReservationMb() > memoryLimitMb()) {
+            errors.add("resources - \"memory-reservation-mb\" cannot be greater than \"memory-limit-mb\".");
+        }
+        if (cpuLimit() != null && cpuReservation() != null && cpuReservation() > cpuLimit()) {
+            errors.add("resources - \"cpu-reservation\" cannot be greater than \"cpu-limit\".");
+        }
+        if (pidsLimit() != null && pidsLimit() == 0) {
+            errors.add("resources - \"pids-limit\" cannot be zero. Use -1 for no limit.");
+        }
+        if (shmSizeMb() != null && shmSizeMb() <= 0) {
+            errors.add("resources - \"shm-size-mb\" must be greater than zero.");
+        }
+        return errors;
+    }
+
+    @AutoValue.Builder
+    public abstract static class Builder {
+        public abstract Builder cpuShares(Long cpuShares);
+        public abstract Builder cpuLimit(Double cpuLimit);
+        public abstract Builder cpuReservation(Double cpuReservation);
+        public abstract Builder memoryLimitMb(Long memoryLimitMb);
+        public abstract Builder memoryReservationMb(Long memoryReservationMb);
+        public abstract Builder pidsLimit(Integer pidsLimit);
+        public abstract Builder shmSizeMb(Long shmSizeMb);
+
+        public abstract CommandResources build();
+    }
+}
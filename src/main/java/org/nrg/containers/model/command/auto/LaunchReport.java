@@ -24,7 +24,8 @@ public abstract class LaunchReport {
     @JsonTypeInfo(use = JsonTypeInfo.Id.NAME, include = JsonTypeInfo.As.EXISTING_PROPERTY, property = "type")
     @JsonSubTypes({
             @JsonSubTypes.Type(value = ContainerSuccess.class, name = "container"),
-            @JsonSubTypes.Type(value = ServiceSuccess.class, name = "service")
+            @JsonSubTypes.Type(value = ServiceSuccess.class, name = "service"),
+            @JsonSubTypes.Type(value = QueuedSuccess.class, name = "queued")
     })
     public static abstract class Success extends LaunchReport {
         protected final static String STATUS = "success";
@@ -109,6 +110,48 @@ public abstract class LaunchReport {
         }
     }
 
+    /**
+     * The launch was accepted but is waiting in the launch queue. The id is the container's database id,
+     * which can be found in the queue at /xapi/containers/queue.
+     */
+    @AutoValue
+    @JsonInclude(JsonInclude.Include.ALWAYS)
+    public static abstract class QueuedSuccess extends Success {
+        @JsonProperty("id") public abstract long databaseId();
+
+        @Override
+        public String type() {
+            return "queued";
+        }
+
+        @JsonCreator
+        @SuppressWarnings("unused")
+        static QueuedSuccess create(@JsonProperty("id") final long databaseId,
+                                    @JsonProperty("status") final String ignoredStatus,
+                                    @JsonProperty("params") final Map<String, String> launchParams,
+                                    @JsonProperty("command-id") final Long commandId,
+                                    @JsonProperty("wrapper-id") final Long wrapperId) {
+            return create(databaseId, launchParams, commandId, wrapperId);
+        }
+
+        public static QueuedSuccess create(final @Nonnull Container container) {
+            final Long commandId = container.commandId() == 0L ? null : container.commandId();
+            final Long wrapperId = container.wrapperId() == 0L ? null : container.wrapperId();
+            return create(container.databaseId(), container.getRawInputs(), commandId, wrapperId);
+        }
+
+        public static QueuedSuccess create(final long databaseId,
+                                           final Map<String, String> launchParams,
+                                           final Long commandIdString,
+                                           final Long wrapperIdString) {
+            final ImmutableMap<String, String> launchParamsCopy =
+                    launchParams == null ?
+                            ImmutableMap.<String, String>of() :
+                            ImmutableMap.copyOf(launchParams);
+            return new AutoValue_LaunchReport_QueuedSuccess(STATUS, launchParamsCopy, commandIdString, wrapperIdString, databaseId);
+        }
+    }
+
     @AutoValue
     @JsonInclude(JsonInclude.Include.ALWAYS)
     public static abstract class Failure extends LaunchReport {
@@ -8,6 +8,7 @@ import com.fasterxml.jackson.annotation.JsonValue;
 import com.google.auto.value.AutoValue;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import org.nrg.containers.model.command.auto.Command.Input;
@@ -175,7 +176,7 @@ public abstract class LaunchUi {
                         inputConfigurationMap.get(inputName) :
                         CommandInputConfiguration.builder().build();
 
-        final List<LaunchUiInputValue> valueList = Lists.newArrayList();
+        final List<LaunchUiInputValue> derivedValues = Lists.newArrayList();
         final List<String> childNames = Lists.newArrayList();
         for (final ResolvedInputTreeValueAndChildren valueAndChildren : node.valuesAndChildren()) {
             final ResolvedInputValue resolvedValue = valueAndChildren.resolvedValue();
@@ -189,11 +190,13 @@ public abstract class LaunchUi {
 
             // Now add this node's value to the uiInput's values
             if (value == null) {
-                valueList.add(LaunchUiInputValue.createNull());
+                derivedValues.add(LaunchUiInputValue.createNull());
             } else {
-                valueList.add(LaunchUiInputValue.create(value, resolvedValue.valueLabel()));
+                derivedValues.add(LaunchUiInputValue.create(value, resolvedValue.valueLabel()));
             }
         }
+        // Offer each option once, even if several matches derived the same value
+        final List<LaunchUiInputValue> valueList = ImmutableSet.copyOf(derivedValues).asList();
         // TODO figure this out from... I don't know from what
         final UiType uiType;
         final String inputType = commandInput.type();
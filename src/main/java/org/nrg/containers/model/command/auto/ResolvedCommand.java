@@ -6,15 +6,27 @@ import com.google.auto.value.AutoValue;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import org.nrg.containers.model.command.entity.CommandEntity;
 import org.nrg.containers.model.command.entity.CommandType;
 
 import javax.annotation.Nullable;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 @AutoValue
 public abstract class ResolvedCommand {
+    public static final String BATCH_ROOT = "/batch";
+    public static final String BATCH_MANIFEST_MOUNT = "batch-manifest";
+    public static final String BATCH_MANIFEST_FILE = "manifest.json";
+    public static final String BATCH_MANIFEST_ENV = "XNAT_BATCH_MANIFEST";
+    public static final String BATCH_STATUS_MOUNT = "batch-status";
+    public static final String BATCH_STATUS_ENV = "XNAT_BATCH_STATUS_DIR";
+    private static final Pattern BATCH_ITEM_NAME = Pattern.compile("^(.*)\\[(\\d+)\\]$");
+
     private ImmutableMap<String, String> externalWrapperInputValues;
     private ImmutableMap<String, String> derivedWrapperInputValues;
     private ImmutableMap<String, String> commandInputValues;
@@ -33,9 +45,13 @@ public abstract class ResolvedCommand {
     @JsonProperty("environment-variables") public abstract ImmutableMap<String, String> environmentVariables();
     @JsonProperty("ports") public abstract ImmutableMap<String, String> ports();
     @JsonProperty("mounts") public abstract ImmutableList<ResolvedCommandMount> mounts();
+    @JsonProperty("resources") @Nullable public abstract CommandResources resources();
     @JsonProperty("outputs") public abstract ImmutableList<ResolvedCommandOutput> outputs();
     @JsonProperty("working-directory") @Nullable public abstract String workingDirectory();
     @JsonProperty("setup-commands") public abstract ImmutableList<ResolvedCommand> setupCommands();
+    @JsonProperty("project") @Nullable public abstract String project();
+    @JsonProperty("batch-items") public abstract ImmutableList<ResolvedCommand> batchItems();
+    @JsonProperty("priority") @Nullable public abstract String priority();
 
     @JsonProperty("external-wrapper-input-values")
     public ImmutableMap<String, String> externalWrapperInputValues() {
@@ -69,7 +85,17 @@ public abstract class ResolvedCommand {
         return wrapperValuesBuilder.build();
     }
 
+    @JsonIgnore
+    public boolean isBatch() {
+        return !batchItems().isEmpty();
+    }
+
     private void setUpLegacyInputLists() {
+        if (isBatch()) {
+            setUpBatchInputLists();
+            return;
+        }
+
         // Read out all the input trees into Map<String, String>s
         final List<ResolvedInputTreeNode<? extends Command.Input>> flatTrees = flattenInputTrees();
         final ImmutableMap.Builder<String, String> externalWrapperInputValuesBuilder = ImmutableMap.builder();
@@ -93,6 +119,22 @@ public abstract class ResolvedCommand {
         commandInputValues = commandInputValuesBuilder.build();
     }
 
+    private void setUpBatchInputLists() {
+        // Each item's values are kept under item-qualified names, so the finalizer can find each output's parent
+        final ImmutableMap.Builder<String, String> externalWrapperInputValuesBuilder = ImmutableMap.builder();
+        final ImmutableMap.Builder<String, String> derivedWrapperInputValuesBuilder = ImmutableMap.builder();
+        final ImmutableMap.Builder<String, String> commandInputValuesBuilder = ImmutableMap.builder();
+        for (int i = 0; i < batchItems().size(); i++) {
+            final ResolvedCommand item = batchItems().get(i);
+            externalWrapperInputValuesBuilder.putAll(batchItemNames(item.externalWrapperInputValues(), i));
+            derivedWrapperInputValuesBuilder.putAll(batchItemNames(item.derivedWrapperInputValues(), i));
+            commandInputValuesBuilder.putAll(batchItemNames(item.commandInputValues(), i));
+        }
+        externalWrapperInputValues = externalWrapperInputValuesBuilder.build();
+        derivedWrapperInputValues = derivedWrapperInputValuesBuilder.build();
+        commandInputValues = commandInputValuesBuilder.build();
+    }
+
     @JsonIgnore
     public List<ResolvedInputTreeNode<? extends Command.Input>> flattenInputTrees() {
         final List<ResolvedInputTreeNode<? extends Command.Input>> flatTree = Lists.newArrayList();
@@ -126,7 +168,106 @@ public abstract class ResolvedCommand {
 
     public static Builder builder() {
         return new AutoValue_ResolvedCommand.Builder()
-                .type(CommandEntity.DEFAULT_TYPE.getName());
+                .type(CommandEntity.DEFAULT_TYPE.getName())
+                .batchItems(Collections.<ResolvedCommand>emptyList());
+    }
+
+    /**
+     * Pack resolved launches of one wrapper into a single container. Item {@code i}'s mounts are mounted
+     * under {@code /batch/i}, and its inputs, mounts, and outputs are named {@code name[i]}. The image, command line,
+     * environment, and resources come from the first item; the command should read its items from the manifest.
+     * The command writes each item's exit code to a file named for the item's index in the status mount, so
+     * one item failing does not fail the others.
+     *
+     * @param manifestMount A mount holding the batch manifest file, which is mounted at {@code /batch/manifest}
+     * @param statusMount   A writable mount for the items' status files, which is mounted at {@code /batch/status}
+     */
+    public static ResolvedCommand batch(final List<ResolvedCommand> items,
+                                        final ResolvedCommandMount manifestMount,
+                                        final ResolvedCommandMount statusMount) {
+        final ResolvedCommand first = items.get(0);
+        final Builder builder = first.toBuilder()
+                .resolvedInputTrees(Collections.<ResolvedInputTreeNode<? extends Command.Input>>emptyList())
+                .rawInputValues(Collections.<String, String>emptyMap())
+                .mounts(Collections.<ResolvedCommandMount>emptyList())
+                .outputs(Collections.<ResolvedCommandOutput>emptyList())
+                .setupCommands(Collections.<ResolvedCommand>emptyList())
+                .batchItems(items)
+                .addEnvironmentVariable(BATCH_MANIFEST_ENV, manifestMount.containerPath() + "/" + BATCH_MANIFEST_FILE)
+                .addEnvironmentVariable(BATCH_STATUS_ENV, statusMount.containerPath())
+                .addMount(manifestMount)
+                .addMount(statusMount);
+        for (int i = 0; i < items.size(); i++) {
+            final ResolvedCommand item = items.get(i);
+            for (final Map.Entry<String, String> rawInput : item.rawInputValues().entrySet()) {
+                builder.addRawInputValue(batchItemName(rawInput.getKey(), i), rawInput.getValue());
+            }
+            for (final ResolvedCommandMount mount : item.mounts()) {
+                builder.addMount(mount.toBuilder()
+                        .name(batchItemName(mount.name(), i))
+                        .containerPath(batchItemContainerPath(mount.containerPath(), i))
+                        .build());
+            }
+            for (final ResolvedCommandOutput output : item.outputs()) {
+                builder.addOutput(output.toBuilder()
+                        .name(batchItemName(output.name(), i))
+                        .mount(batchItemName(output.mount(), i))
+                        .handledByWrapperInput(batchItemName(output.handledByWrapperInput(), i))
+                        .build());
+            }
+        }
+        return builder.build();
+    }
+
+    public static String batchItemName(final String name, final int index) {
+        return name + "[" + index + "]";
+    }
+
+    /**
+     * @return The name of the file, in the status mount, that a batch item's exit code is written to.
+     */
+    public static String batchItemStatusFile(final int index) {
+        return String.valueOf(index);
+    }
+
+    public static String batchItemContainerPath(final String containerPath, final int index) {
+        return BATCH_ROOT + "/" + index + (containerPath.startsWith("/") ? "" : "/") + containerPath;
+    }
+
+    /**
+     * @return The batch item a name belongs to, or null if it is not an item-qualified name.
+     */
+    @Nullable
+    public static Integer batchItemIndex(final String name) {
+        final Matcher matcher = name == null ? null : BATCH_ITEM_NAME.matcher(name);
+        return matcher != null && matcher.matches() ? Integer.valueOf(matcher.group(2)) : null;
+    }
+
+    /**
+     * Split item-qualified values, such as a batch container's raw inputs, back into one map per item.
+     */
+    public static List<Map<String, String>> splitBatchItems(final Map<String, String> batchValues) {
+        final List<Map<String, String>> items = Lists.newArrayList();
+        for (final Map.Entry<String, String> entry : batchValues.entrySet()) {
+            final Matcher matcher = BATCH_ITEM_NAME.matcher(entry.getKey());
+            if (!matcher.matches()) {
+                continue;
+            }
+            final int index = Integer.parseInt(matcher.group(2));
+            while (items.size() <= index) {
+                items.add(Maps.<String, String>newHashMap());
+            }
+            items.get(index).put(matcher.group(1), entry.getValue());
+        }
+        return items;
+    }
+
+    private static Map<String, String> batchItemNames(final Map<String, String> values, final int index) {
+        final Map<String, String> named = Maps.newLinkedHashMap();
+        for (final Map.Entry<String, String> entry : values.entrySet()) {
+            named.put(batchItemName(entry.getKey(), index), entry.getValue());
+        }
+        return named;
     }
 
     public static ResolvedCommand fromSetupCommand(final Command setupCommand,
@@ -141,6 +282,7 @@ public abstract class ResolvedCommand {
                 .image(setupCommand.image())
                 .commandLine(setupCommand.commandLine())
                 .workingDirectory(setupCommand.workingDirectory())
+                .resources(setupCommand.resources())
                 .addMount(ResolvedCommandMount.builder()
                         .name("input")
                         .containerPath("/input")
@@ -170,6 +312,7 @@ public abstract class ResolvedCommand {
         public abstract Builder commandDescription(String commandDescription);
         public abstract Builder image(String image);
         public abstract Builder type(String type);
+        public abstract Builder project(String project);
         public abstract Builder rawInputValues(Map<String, String> rawInputValues);
         public abstract ImmutableMap.Builder<String, String> rawInputValuesBuilder();
         public Builder addRawInputValue(final String inputName, final String inputValue) {
@@ -208,6 +351,10 @@ public abstract class ResolvedCommand {
             return this;
         }
         public abstract Builder workingDirectory(String workingDirectory);
+        public abstract Builder resources(CommandResources resources);
+
+        public abstract Builder batchItems(List<ResolvedCommand> batchItems);
+        public abstract Builder priority(String priority);
 
         public abstract Builder setupCommands(List<ResolvedCommand> setupCommands);
         public abstract ImmutableList.Builder<ResolvedCommand> setupCommandsBuilder();
@@ -318,6 +465,8 @@ public abstract class ResolvedCommand {
             return new AutoValue_ResolvedCommand_ResolvedCommandOutput.Builder();
         }
 
+        public abstract Builder toBuilder();
+
         @AutoValue.Builder
         public static abstract class Builder {
             public abstract Builder name(String name);
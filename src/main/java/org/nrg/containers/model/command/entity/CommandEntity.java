@@ -12,6 +12,7 @@ import javax.annotation.Nonnull;
 import javax.persistence.CascadeType;
 import javax.persistence.DiscriminatorColumn;
 import javax.persistence.ElementCollection;
+import javax.persistence.Embedded;
 import javax.persistence.Entity;
 import javax.persistence.Inheritance;
 import javax.persistence.InheritanceType;
@@ -45,6 +46,7 @@ public abstract class CommandEntity extends AbstractHibernateEntity {
     private String commandLine;
     private List<CommandMountEntity> mounts;
     private Map<String, String> environmentVariables;
+    private CommandResourcesEntity resources;
     private List<CommandInputEntity> inputs;
     private List<CommandOutputEntity> outputs;
     private List<CommandWrapperEntity> commandWrapperEntities;
@@ -82,6 +84,7 @@ public abstract class CommandEntity extends AbstractHibernateEntity {
         this.setWorkingDirectory(command.workingDirectory());
         this.setCommandLine(command.commandLine());
         this.setEnvironmentVariables(command.environmentVariables());
+        this.setResources(CommandResourcesEntity.fromPojo(command.resources()));
 
         final Map<String, Command.CommandMount> mountsByName = new HashMap<>();
         for (final Command.CommandMount commandMount : command.mounts()) {
@@ -275,6 +278,15 @@ public abstract class CommandEntity extends AbstractHibernateEntity {
                 environmentVariables;
     }
 
+    @Embedded
+    public CommandResourcesEntity getResources() {
+        return resources;
+    }
+
+    public void setResources(final CommandResourcesEntity resources) {
+        this.resources = resources;
+    }
+
     @OneToMany(mappedBy = "commandEntity", cascade = CascadeType.ALL, orphanRemoval = true)
     public List<CommandInputEntity> getInputs() {
         return inputs;
@@ -385,6 +397,7 @@ public abstract class CommandEntity extends AbstractHibernateEntity {
                 .add("commandLine", commandLine)
                 .add("mounts", mounts)
                 .add("environmentVariables", environmentVariables)
+                .add("resources", resources)
                 .add("inputs", inputs)
                 .add("outputs", outputs)
                 .add("xnatCommandWrappers", commandWrapperEntities);
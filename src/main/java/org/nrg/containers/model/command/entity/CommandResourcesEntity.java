@@ -0,0 +1,124 @@
+package org.nrg.containers.model.command.entity;
+
+import com.google.common.base.MoreObjects;
+import org.nrg.containers.model.command.auto.CommandResources;
+
+import javax.annotation.Nullable;
+import javax.persistence.Embeddable;
+import java.io.Serializable;
+import java.util.Objects;
+
+@Embeddable
+public class CommandResourcesEntity implements Serializable {
+    private Long cpuShares;
+    private Double cpuLimit;
+    private Double cpuReservation;
+    private Long memoryLimitMb;
+    private Long memoryReservationMb;
+    private Integer pidsLimit;
+    private Long shmSizeMb;
+
+    @Nullable
+    public static CommandResourcesEntity fromPojo(final @Nullable CommandResources commandResources) {
+        if (commandResources == null || commandResources.isEmpty()) {
+            return null;
+        }
+        final CommandResourcesEntity commandResourcesEntity = new CommandResourcesEntity();
+        commandResourcesEntity.setCpuShares(commandResources.cpuShares());
+        commandResourcesEntity.setCpuLimit(commandResources.cpuLimit());
+        commandResourcesEntity.setCpuReservation(commandResources.cpuReservation());
+        commandResourcesEntity.setMemoryLimitMb(commandResources.memoryLimitMb());
+        commandResourcesEntity.setMemoryReservationMb(commandResources.memoryReservationMb());
+        commandResourcesEntity.setPidsLimit(commandResources.pidsLimit());
+        commandResourcesEntity.setShmSizeMb(commandResources.shmSizeMb());
+        return commandResourcesEntity;
+    }
+
+    public Long getCpuShares() {
+        return cpuShares;
+    }
+
+    public void setCpuShares(final Long cpuShares) {
+        this.cpuShares = cpuShares;
+    }
+
+    public Double getCpuLimit() {
+        return cpuLimit;
+    }
+
+    public void setCpuLimit(final Double cpuLimit) {
+        this.cpuLimit = cpuLimit;
+    }
+
+    public Double getCpuReservation() {
+        return cpuReservation;
+    }
+
+    public void setCpuReservation(final Double cpuReservation) {
+        this.cpuReservation = cpuReservation;
+    }
+
+    public Long getMemoryLimitMb() {
+        return memoryLimitMb;
+    }
+
+    public void setMemoryLimitMb(final Long memoryLimitMb) {
+        this.memoryLimitMb = memoryLimitMb;
+    }
+
+    public Long getMemoryReservationMb() {
+        return memoryReservationMb;
+    }
+
+    public void setMemoryReservationMb(final Long memoryReservationMb) {
+        this.memoryReservationMb = memoryReservationMb;
+    }
+
+    public Integer getPidsLimit() {
+        return pidsLimit;
+    }
+
+    public void setPidsLimit(final Integer pidsLimit) {
+        this.pidsLimit = pidsLimit;
+    }
+
+    public Long getShmSizeMb() {
+        return shmSizeMb;
+    }
+
+    public void setShmSizeMb(final Long shmSizeMb) {
+        this.shmSizeMb = shmSizeMb;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        final CommandResourcesEntity that = (CommandResourcesEntity) o;
+        return Objects.equals(this.cpuShares, that.cpuShares) &&
+                Objects.equals(this.cpuLimit, that.cpuLimit) &&
+                Objects.equals(this.cpuReservation, that.cpuReservation) &&
+                Objects.equals(this.memoryLimitMb, that.memoryLimitMb) &&
+                Objects.equals(this.memoryReservationMb, that.memoryReservationMb) &&
+                Objects.equals(this.pidsLimit, that.pidsLimit) &&
+                Objects.equals(this.shmSizeMb, that.shmSizeMb);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(cpuShares, cpuLimit, cpuReservation, memoryLimitMb, memoryReservationMb, pidsLimit, shmSizeMb);
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("cpuShares", cpuShares)
+                .add("cpuLimit", cpuLimit)
+                .add("cpuReservation", cpuReservation)
+                .add("memoryLimitMb", memoryLimitMb)
+                .add("memoryReservationMb", memoryReservationMb)
+                .add("pidsLimit", pidsLimit)
+                .add("shmSizeMb", shmSizeMb)
+                .toString();
+    }
+}
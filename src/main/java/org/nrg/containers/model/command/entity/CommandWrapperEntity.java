@@ -10,6 +10,7 @@ import org.nrg.containers.model.command.auto.Command;
 import javax.annotation.Nonnull;
 import javax.persistence.CascadeType;
 import javax.persistence.ElementCollection;
+import javax.persistence.Embedded;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
@@ -32,6 +33,9 @@ public class CommandWrapperEntity implements Serializable {
     private String description;
     private CommandEntity commandEntity;
     private Set<String> contexts;
+    private CommandResourcesEntity resources;
+    private Integer batchSize;
+    private String priority;
     private List<CommandWrapperExternalInputEntity> externalInputs;
     private List<CommandWrapperDerivedInputEntity> derivedInputs;
     private List<CommandWrapperOutputEntity> outputHandlers;
@@ -49,6 +53,9 @@ public class CommandWrapperEntity implements Serializable {
         this.setName(commandWrapper.name());
         this.setDescription(commandWrapper.description());
         this.setContexts(commandWrapper.contexts());
+        this.setResources(CommandResourcesEntity.fromPojo(commandWrapper.resources()));
+        this.setBatchSize(commandWrapper.batchSize());
+        this.setPriority(commandWrapper.priority());
 
         final Map<String, Command.CommandWrapperExternalInput> externalInputsByName = new HashMap<>();
         for (final Command.CommandWrapperExternalInput externalCommandWrapperInput : commandWrapper.externalInputs()) {
@@ -160,6 +167,31 @@ public class CommandWrapperEntity implements Serializable {
         this.contexts.add(context);
     }
 
+    @Embedded
+    public CommandResourcesEntity getResources() {
+        return resources;
+    }
+
+    public void setResources(final CommandResourcesEntity resources) {
+        this.resources = resources;
+    }
+
+    public Integer getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(final Integer batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public String getPriority() {
+        return priority;
+    }
+
+    public void setPriority(final String priority) {
+        this.priority = priority;
+    }
+
     @OneToMany(mappedBy = "commandWrapperEntity", cascade = CascadeType.ALL, orphanRemoval = true)
     public List<CommandWrapperExternalInputEntity> getExternalInputs() {
         return externalInputs;
@@ -267,6 +299,9 @@ public class CommandWrapperEntity implements Serializable {
                 .add("name", name)
                 .add("description", description)
                 .add("contexts", contexts)
+                .add("resources", resources)
+                .add("batchSize", batchSize)
+                .add("priority", priority)
                 .add("externalInputs", externalInputs)
                 .add("derivedInputs", derivedInputs)
                 .add("outputHandlers", outputHandlers)
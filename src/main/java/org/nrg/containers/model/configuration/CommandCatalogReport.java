@@ -0,0 +1,58 @@
+package org.nrg.containers.model.configuration;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.auto.value.AutoValue;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.nrg.containers.model.command.auto.Command;
+
+import javax.annotation.Nullable;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Everything the site admin and project settings pages need to draw their command tables:
+ * all commands, plus the enabled flags and merged configuration of each wrapper, keyed by wrapper id.
+ * The project is null for the site report.
+ */
+@AutoValue
+@JsonInclude(Include.ALWAYS)
+public abstract class CommandCatalogReport {
+    @Nullable @JsonProperty("project") public abstract String project();
+    @JsonProperty("commands") public abstract ImmutableList<Command> commands();
+    @JsonProperty("wrappers") public abstract ImmutableMap<Long, WrapperReport> wrappers();
+
+    @JsonCreator
+    public static CommandCatalogReport create(@JsonProperty("project") final String project,
+                                              @JsonProperty("commands") final List<Command> commands,
+                                              @JsonProperty("wrappers") final Map<Long, WrapperReport> wrappers) {
+        return new AutoValue_CommandCatalogReport(project,
+                commands == null ? ImmutableList.<Command>of() : ImmutableList.copyOf(commands),
+                wrappers == null ? ImmutableMap.<Long, WrapperReport>of() : ImmutableMap.copyOf(wrappers));
+    }
+
+    @AutoValue
+    @JsonInclude(Include.ALWAYS)
+    public static abstract class WrapperReport {
+        @JsonProperty("command-id") public abstract long commandId();
+        @JsonProperty("wrapper-id") public abstract long wrapperId();
+        @Nullable @JsonProperty("wrapper-name") public abstract String wrapperName();
+        @JsonProperty("enabled-for-site") public abstract boolean enabledForSite();
+        @Nullable @JsonProperty("enabled-for-project") public abstract Boolean enabledForProject();
+        @JsonProperty("configuration") public abstract CommandConfiguration configuration();
+
+        @JsonCreator
+        public static WrapperReport create(@JsonProperty("command-id") final long commandId,
+                                           @JsonProperty("wrapper-id") final long wrapperId,
+                                           @JsonProperty("wrapper-name") final String wrapperName,
+                                           @JsonProperty("enabled-for-site") final boolean enabledForSite,
+                                           @JsonProperty("enabled-for-project") final Boolean enabledForProject,
+                                           @JsonProperty("configuration") final CommandConfiguration configuration) {
+            return new AutoValue_CommandCatalogReport_WrapperReport(commandId, wrapperId, wrapperName,
+                    enabledForSite, enabledForProject, configuration);
+        }
+    }
+}
@@ -14,6 +14,7 @@ import org.nrg.containers.model.command.auto.Command.CommandWrapperDerivedInput;
 import org.nrg.containers.model.command.auto.Command.CommandWrapperExternalInput;
 import org.nrg.containers.model.command.auto.Command.CommandWrapperOutput;
 import org.nrg.containers.model.command.auto.Command.ConfiguredCommand;
+import org.nrg.containers.model.command.auto.CommandResources;
 import org.nrg.containers.model.configuration.CommandConfiguration.Builder;
 import org.nrg.containers.model.configuration.CommandConfigurationInternal.CommandInputConfiguration;
 
@@ -28,16 +29,24 @@ import java.util.Set;
 public abstract class CommandConfiguration {
     @JsonProperty("inputs") public abstract ImmutableMap<String, CommandInputConfiguration> inputs();
     @JsonProperty("outputs") public abstract ImmutableMap<String, CommandOutputConfiguration> outputs();
+    @Nullable @JsonProperty("resources") public abstract CommandResources resources();
 
     @JsonCreator
     public static CommandConfiguration create(@JsonProperty("inputs") final Map<String, CommandInputConfiguration> inputs,
-                                              @JsonProperty("outputs") final Map<String, CommandOutputConfiguration> outputs) {
+                                              @JsonProperty("outputs") final Map<String, CommandOutputConfiguration> outputs,
+                                              @JsonProperty("resources") final CommandResources resources) {
         return builder()
                 .inputs(inputs == null ? Collections.<String, CommandInputConfiguration>emptyMap() : inputs)
                 .outputs(outputs == null ? Collections.<String, CommandOutputConfiguration>emptyMap() : outputs)
+                .resources(resources)
                 .build();
     }
 
+    public static CommandConfiguration create(final Map<String, CommandInputConfiguration> inputs,
+                                              final Map<String, CommandOutputConfiguration> outputs) {
+        return create(inputs, outputs, null);
+    }
+
     public static CommandConfiguration create(final @Nonnull Command command,
                                               final @Nonnull CommandWrapper commandWrapper,
                                               final @Nullable CommandConfigurationInternal commandConfigurationInternal) {
@@ -75,6 +84,11 @@ public abstract class CommandConfiguration {
             }
         }
 
+        // Show the resources a launch would get: the command's, then the wrapper's, then the configured ones
+        builder.resources(CommandResources.merge(
+                CommandResources.merge(command.resources(), commandWrapper.resources()),
+                commandConfigurationInternal == null ? null : commandConfigurationInternal.resources()));
+
         return builder.build();
     }
 
@@ -98,6 +112,8 @@ public abstract class CommandConfiguration {
             return this;
         }
 
+        public abstract Builder resources(CommandResources resources);
+
         public abstract CommandConfiguration build();
     }
 
@@ -257,6 +273,7 @@ public abstract class CommandConfiguration {
         // command inputs
         // wrapper inputs
         // wrapper outputs
+        // resources
 
         for (final CommandInput commandInput : commandWithOneWrapper.inputs()) {
             commandBuilder.addInput(
@@ -271,7 +288,14 @@ public abstract class CommandConfiguration {
                 .id(originalCommandWrapper.id())
                 .name(originalCommandWrapper.name())
                 .description(originalCommandWrapper.description())
-                .contexts(originalCommandWrapper.contexts());
+                .contexts(originalCommandWrapper.contexts())
+                .resources(originalCommandWrapper.resources())
+                .batchSize(originalCommandWrapper.batchSize())
+                .priority(originalCommandWrapper.priority());
+
+        commandBuilder.resources(CommandResources.merge(
+                CommandResources.merge(commandWithOneWrapper.resources(), originalCommandWrapper.resources()),
+                this.resources()));
 
         for (final CommandWrapperExternalInput externalInput : originalCommandWrapper.externalInputs()) {
             commandWrapperBuilder.addExternalInput(
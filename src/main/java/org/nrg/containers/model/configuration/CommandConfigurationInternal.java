@@ -6,6 +6,7 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 import com.google.auto.value.AutoValue;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Maps;
+import org.nrg.containers.model.command.auto.CommandResources;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -18,18 +19,27 @@ public abstract class CommandConfigurationInternal {
     @Nullable @JsonProperty("enabled") public abstract Boolean enabled();
     @JsonProperty("inputs") abstract ImmutableMap<String, CommandInputConfiguration> inputs();
     @JsonProperty("outputs") abstract ImmutableMap<String, CommandOutputConfiguration> outputs();
+    @Nullable @JsonProperty("resources") public abstract CommandResources resources();
 
     @JsonCreator
     public static CommandConfigurationInternal create(@JsonProperty("enabled") final Boolean enabled,
                                                       @JsonProperty("inputs") final Map<String, CommandInputConfiguration> inputs,
-                                                      @JsonProperty("outputs") final Map<String, CommandOutputConfiguration> outputs) {
+                                                      @JsonProperty("outputs") final Map<String, CommandOutputConfiguration> outputs,
+                                                      @JsonProperty("resources") final CommandResources resources) {
         return builder()
                 .enabled(enabled)
                 .inputs(inputs == null ? Collections.<String, CommandInputConfiguration>emptyMap() : inputs)
                 .outputs(outputs == null ? Collections.<String, CommandOutputConfiguration>emptyMap() : outputs)
+                .resources(resources)
                 .build();
     }
 
+    public static CommandConfigurationInternal create(final Boolean enabled,
+                                                      final Map<String, CommandInputConfiguration> inputs,
+                                                      final Map<String, CommandOutputConfiguration> outputs) {
+        return create(enabled, inputs, outputs, null);
+    }
+
     public static CommandConfigurationInternal create(final Boolean enabled,
                                                       final CommandConfiguration configuration) {
         final Builder builder = builder().enabled(enabled);
@@ -41,6 +51,7 @@ public abstract class CommandConfigurationInternal {
             for (final Map.Entry<String, CommandConfiguration.CommandOutputConfiguration> outputEntry : configuration.outputs().entrySet()) {
                 builder.addOutput(outputEntry.getKey(), outputEntry.getValue());
             }
+            builder.resources(configuration.resources());
         }
         return builder.build();
     }
@@ -74,6 +85,7 @@ public abstract class CommandConfigurationInternal {
                 .enabled(enabled)
                 .inputs(mergedInputs)
                 .outputs(mergedOutputs)
+                .resources(CommandResources.merge(this.resources(), overlay.resources()))
                 .build();
     }
 
@@ -103,6 +115,8 @@ public abstract class CommandConfigurationInternal {
             return this;
         }
 
+        public abstract Builder resources(CommandResources resources);
+
         public abstract CommandConfigurationInternal build();
     }
 
@@ -0,0 +1,414 @@
+package org.nrg.containers.model.configuration;
+
+import com.google.common.base.MoreObjects;
+import org.nrg.containers.model.container.ContainerAuditGranularity;
+import org.nrg.containers.model.container.ContainerRemovalPolicy;
+import org.nrg.containers.model.server.docker.DockerServerPlacementStrategy;
+import org.nrg.framework.configuration.ConfigPaths;
+import org.nrg.prefs.annotations.NrgPreference;
+import org.nrg.prefs.annotations.NrgPreferenceBean;
+import org.nrg.prefs.beans.AbstractPreferenceBean;
+import org.nrg.prefs.exceptions.InvalidPreferenceName;
+import org.nrg.prefs.services.NrgPreferenceService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.Map;
+
+/**
+ * Site-wide settings that control how the container service itself behaves,
+ * as opposed to how individual commands are configured.
+ * @since 1.5
+ */
+@NrgPreferenceBean(toolId = "container-service-settings",
+        toolName = "Container Service Settings",
+        description = "Site-wide settings that control the behavior of the container service")
+public class ContainerServicePrefsBean extends AbstractPreferenceBean {
+    private static final Logger log = LoggerFactory.getLogger(ContainerServicePrefsBean.class);
+
+    @Autowired
+    public ContainerServicePrefsBean(final NrgPreferenceService preferenceService) {
+        super(preferenceService);
+    }
+
+    public ContainerServicePrefsBean(final NrgPreferenceService preferenceService, final ConfigPaths configFolderPaths) {
+        super(preferenceService, configFolderPaths);
+    }
+
+    @NrgPreference(defaultValue = "full")
+    public String getAuditGranularity() {
+        return getValue("auditGranularity");
+    }
+
+    /**
+     * @throws IllegalArgumentException If the name is not a {@link ContainerAuditGranularity}.
+     */
+    public void setAuditGranularity(final String auditGranularity) {
+        setPreference("auditGranularity", ContainerAuditGranularity.fromName(auditGranularity).getName());
+    }
+
+    public ContainerAuditGranularity auditGranularity() {
+        try {
+            return ContainerAuditGranularity.fromName(getAuditGranularity());
+        } catch (IllegalArgumentException e) {
+            // Stored some other way than through the setter
+            log.warn("{} Using \"{}\".", e.getMessage(), ContainerAuditGranularity.FULL.getName());
+            return ContainerAuditGranularity.FULL;
+        }
+    }
+
+    /**
+     * Finalized containers whose status has not changed for this many days are moved to the archive.
+     * Zero or less turns the retention job off.
+     */
+    @NrgPreference(defaultValue = "0")
+    public Integer getRetentionDays() {
+        return getIntegerValue("retentionDays");
+    }
+
+    public void setRetentionDays(final Integer retentionDays) {
+        setPreference("retentionDays", retentionDays == null ? null : String.valueOf(retentionDays));
+    }
+
+    @NrgPreference(defaultValue = "100")
+    public Integer getRetentionBatchSize() {
+        return getIntegerValue("retentionBatchSize");
+    }
+
+    public void setRetentionBatchSize(final Integer retentionBatchSize) {
+        setPreference("retentionBatchSize", retentionBatchSize == null ? null : String.valueOf(retentionBatchSize));
+    }
+
+    @NrgPreference(defaultValue = "50")
+    public Integer getRetentionMaxBatchesPerRun() {
+        return getIntegerValue("retentionMaxBatchesPerRun");
+    }
+
+    public void setRetentionMaxBatchesPerRun(final Integer retentionMaxBatchesPerRun) {
+        setPreference("retentionMaxBatchesPerRun", retentionMaxBatchesPerRun == null ? null : String.valueOf(retentionMaxBatchesPerRun));
+    }
+
+    /**
+     * How long, in seconds, parsed command configurations are cached. 0 turns the cache off.
+     */
+    @NrgPreference(defaultValue = "300")
+    public Integer getCommandConfigCacheSeconds() {
+        return getIntegerValue("commandConfigCacheSeconds");
+    }
+
+    public void setCommandConfigCacheSeconds(final Integer commandConfigCacheSeconds) {
+        setPreference("commandConfigCacheSeconds", commandConfigCacheSeconds == null ? null : String.valueOf(commandConfigCacheSeconds));
+    }
+
+    /**
+     * How often, in seconds, to check whether another node changed a command configuration.
+     * 0 turns this off, which is fine when there is only one node.
+     */
+    @NrgPreference(defaultValue = "10")
+    public Integer getCommandConfigSyncSeconds() {
+        return getIntegerValue("commandConfigSyncSeconds");
+    }
+
+    public void setCommandConfigSyncSeconds(final Integer commandConfigSyncSeconds) {
+        setPreference("commandConfigSyncSeconds", commandConfigSyncSeconds == null ? null : String.valueOf(commandConfigSyncSeconds));
+    }
+
+    /**
+     * How often, in minutes, to pre-pull the images of event-triggered and recently used commands. 0 turns this off.
+     */
+    @NrgPreference(defaultValue = "30")
+    public Integer getImageWarmerIntervalMinutes() {
+        return getIntegerValue("imageWarmerIntervalMinutes");
+    }
+
+    public void setImageWarmerIntervalMinutes(final Integer imageWarmerIntervalMinutes) {
+        setPreference("imageWarmerIntervalMinutes", imageWarmerIntervalMinutes == null ? null : String.valueOf(imageWarmerIntervalMinutes));
+    }
+
+    /**
+     * How far back, in days, to look for recently used images to pre-pull.
+     */
+    @NrgPreference(defaultValue = "7")
+    public Integer getImageWarmerRecentDays() {
+        return getIntegerValue("imageWarmerRecentDays");
+    }
+
+    public void setImageWarmerRecentDays(final Integer imageWarmerRecentDays) {
+        setPreference("imageWarmerRecentDays", imageWarmerRecentDays == null ? null : String.valueOf(imageWarmerRecentDays));
+    }
+
+    /**
+     * Whether to remove finalized containers from the Docker server. One of "never", "always", or "keep-failed".
+     */
+    @NrgPreference(defaultValue = "never")
+    public String getContainerRemovalPolicy() {
+        return getValue("containerRemovalPolicy");
+    }
+
+    /**
+     * @throws IllegalArgumentException If the name is not a {@link ContainerRemovalPolicy}.
+     */
+    public void setContainerRemovalPolicy(final String containerRemovalPolicy) {
+        setPreference("containerRemovalPolicy", ContainerRemovalPolicy.fromName(containerRemovalPolicy).getName());
+    }
+
+    public ContainerRemovalPolicy containerRemovalPolicy() {
+        try {
+            return ContainerRemovalPolicy.fromName(getContainerRemovalPolicy());
+        } catch (IllegalArgumentException e) {
+            log.warn("{} Using \"{}\".", e.getMessage(), ContainerRemovalPolicy.NEVER.getName());
+            return ContainerRemovalPolicy.NEVER;
+        }
+    }
+
+    /**
+     * How long, in hours, to keep a finalized container before removing it. 0 removes it as soon as it is finalized.
+     */
+    @NrgPreference(defaultValue = "0")
+    public Integer getContainerRemovalDelayHours() {
+        return getIntegerValue("containerRemovalDelayHours");
+    }
+
+    public void setContainerRemovalDelayHours(final Integer containerRemovalDelayHours) {
+        setPreference("containerRemovalDelayHours", containerRemovalDelayHours == null ? null : String.valueOf(containerRemovalDelayHours));
+    }
+
+    /**
+     * How often, in hours, to prune finalized containers, stopped setup containers, and dangling images
+     * from the Docker server. 0 turns the pruner off.
+     */
+    @NrgPreference(defaultValue = "1")
+    public Integer getDockerPruneIntervalHours() {
+        return getIntegerValue("dockerPruneIntervalHours");
+    }
+
+    public void setDockerPruneIntervalHours(final Integer dockerPruneIntervalHours) {
+        setPreference("dockerPruneIntervalHours", dockerPruneIntervalHours == null ? null : String.valueOf(dockerPruneIntervalHours));
+    }
+
+    /**
+     * How many containers one project may have running at once. Launches over the limit wait in the launch queue.
+     * 0 means no limit.
+     */
+    @NrgPreference(defaultValue = "0")
+    public Integer getMaxConcurrentContainersPerProject() {
+        return getIntegerValue("maxConcurrentContainersPerProject");
+    }
+
+    public void setMaxConcurrentContainersPerProject(final Integer maxConcurrentContainersPerProject) {
+        setPreference("maxConcurrentContainersPerProject", maxConcurrentContainersPerProject == null ? null : String.valueOf(maxConcurrentContainersPerProject));
+    }
+
+    /**
+     * How many containers one user may have running at once. Launches over the limit wait in the launch queue.
+     * 0 means no limit.
+     */
+    @NrgPreference(defaultValue = "0")
+    public Integer getMaxConcurrentContainersPerUser() {
+        return getIntegerValue("maxConcurrentContainersPerUser");
+    }
+
+    public void setMaxConcurrentContainersPerUser(final Integer maxConcurrentContainersPerUser) {
+        setPreference("maxConcurrentContainersPerUser", maxConcurrentContainersPerUser == null ? null : String.valueOf(maxConcurrentContainersPerUser));
+    }
+
+    /**
+     * How many containers of one command wrapper may run at once. Launches over the limit wait in the launch queue.
+     * 0 means no limit.
+     */
+    @NrgPreference(defaultValue = "0")
+    public Integer getMaxConcurrentContainersPerWrapper() {
+        return getIntegerValue("maxConcurrentContainersPerWrapper");
+    }
+
+    public void setMaxConcurrentContainersPerWrapper(final Integer maxConcurrentContainersPerWrapper) {
+        setPreference("maxConcurrentContainersPerWrapper", maxConcurrentContainersPerWrapper == null ? null : String.valueOf(maxConcurrentContainersPerWrapper));
+    }
+
+    /**
+     * How many items of a bulk launch are resolved and launched at once, across all bulk launches on this node.
+     */
+    @NrgPreference(defaultValue = "4")
+    public Integer getBulkLaunchParallelism() {
+        return getIntegerValue("bulkLaunchParallelism");
+    }
+
+    public void setBulkLaunchParallelism(final Integer bulkLaunchParallelism) {
+        setPreference("bulkLaunchParallelism", bulkLaunchParallelism == null ? null : String.valueOf(bulkLaunchParallelism));
+    }
+
+    /**
+     * The most items a bulk launch UI will be built for. Each comma-separated request parameter multiplies the item count,
+     * so this guards against a request that would resolve the command a huge number of times. Launches over a search
+     * are capped the same way, since all their items are stored in one transaction. 0 means no limit.
+     */
+    @NrgPreference(defaultValue = "1000")
+    public Integer getBulkLaunchUiMaxItems() {
+        return getIntegerValue("bulkLaunchUiMaxItems");
+    }
+
+    public void setBulkLaunchUiMaxItems(final Integer bulkLaunchUiMaxItems) {
+        setPreference("bulkLaunchUiMaxItems", bulkLaunchUiMaxItems == null ? null : String.valueOf(bulkLaunchUiMaxItems));
+    }
+
+    /**
+     * Queued launches and finalizations go in priority order: interactive, then bulk, then event-triggered.
+     * For every this many minutes a launch or finalization waits, it moves up one priority level.
+     * 0 means no aging, so lower priority work waits as long as there is higher priority work.
+     */
+    @NrgPreference(defaultValue = "10")
+    public Integer getLaunchPriorityAgingMinutes() {
+        return getIntegerValue("launchPriorityAgingMinutes");
+    }
+
+    public void setLaunchPriorityAgingMinutes(final Integer launchPriorityAgingMinutes) {
+        setPreference("launchPriorityAgingMinutes", launchPriorityAgingMinutes == null ? null : String.valueOf(launchPriorityAgingMinutes));
+    }
+
+    /**
+     * How many finished containers are finalized at once. Finalizations waiting for a worker go in priority order.
+     */
+    @NrgPreference(defaultValue = "4")
+    public Integer getFinalizationParallelism() {
+        return getIntegerValue("finalizationParallelism");
+    }
+
+    public void setFinalizationParallelism(final Integer finalizationParallelism) {
+        setPreference("finalizationParallelism", finalizationParallelism == null ? null : String.valueOf(finalizationParallelism));
+    }
+
+    /**
+     * How long, in seconds, a node's lease on polling Docker for container status lasts. Only the node holding
+     * the lease polls. It renews the lease every time it polls, and if it stops, another node takes over within
+     * this long. It is at least 30 seconds, three polls, and a long poll renews it partway through.
+     * 0 turns the lease off, so every node polls, as is right for a single node.
+     */
+    @NrgPreference(defaultValue = "30")
+    public Integer getStatusUpdaterLeaseSeconds() {
+        return getIntegerValue("statusUpdaterLeaseSeconds");
+    }
+
+    public void setStatusUpdaterLeaseSeconds(final Integer statusUpdaterLeaseSeconds) {
+        setPreference("statusUpdaterLeaseSeconds", statusUpdaterLeaseSeconds == null ? null : String.valueOf(statusUpdaterLeaseSeconds));
+    }
+
+    /**
+     * How long, in minutes, a node's claim on finalizing a container lasts. The node renews the claim while it
+     * finalizes. If the node goes away, another node finalizes the container once the claim runs out.
+     */
+    @NrgPreference(defaultValue = "10")
+    public Integer getFinalizationLeaseMinutes() {
+        return getIntegerValue("finalizationLeaseMinutes");
+    }
+
+    public void setFinalizationLeaseMinutes(final Integer finalizationLeaseMinutes) {
+        setPreference("finalizationLeaseMinutes", finalizationLeaseMinutes == null ? null : String.valueOf(finalizationLeaseMinutes));
+    }
+
+    /**
+     * How often, in minutes, the node polling Docker for status also checks every running container directly,
+     * to catch exits whose events were missed. It also checks at startup and after Docker could not be reached.
+     * 0 means only then.
+     */
+    @NrgPreference(defaultValue = "15")
+    public Integer getReconciliationSweepMinutes() {
+        return getIntegerValue("reconciliationSweepMinutes");
+    }
+
+    public void setReconciliationSweepMinutes(final Integer reconciliationSweepMinutes) {
+        setPreference("reconciliationSweepMinutes", reconciliationSweepMinutes == null ? null : String.valueOf(reconciliationSweepMinutes));
+    }
+
+    /**
+     * How to pick the Docker server for a new container when more than one is enabled.
+     * One of "least-containers", "most-free-memory", or "weighted".
+     */
+    @NrgPreference(defaultValue = "least-containers")
+    public String getDockerPlacementStrategy() {
+        return getValue("dockerPlacementStrategy");
+    }
+
+    /**
+     * @throws IllegalArgumentException If the name is not a {@link DockerServerPlacementStrategy}.
+     */
+    public void setDockerPlacementStrategy(final String dockerPlacementStrategy) {
+        setPreference("dockerPlacementStrategy", DockerServerPlacementStrategy.fromName(dockerPlacementStrategy).getName());
+    }
+
+    public DockerServerPlacementStrategy dockerPlacementStrategy() {
+        try {
+            return DockerServerPlacementStrategy.fromName(getDockerPlacementStrategy());
+        } catch (IllegalArgumentException e) {
+            log.warn("{} Using \"{}\".", e.getMessage(), DockerServerPlacementStrategy.LEAST_CONTAINERS.getName());
+            return DockerServerPlacementStrategy.LEAST_CONTAINERS;
+        }
+    }
+
+    /**
+     * Set several settings at once. Values for typed settings are normalized before they are stored.
+     *
+     * @throws IllegalArgumentException If a typed setting is given a value it does not have.
+     */
+    public void setPreferences(final Map<String, String> preferences) throws InvalidPreferenceName {
+        if (preferences == null) {
+            return;
+        }
+        // Check the typed settings first, so a bad value does not leave the others half set
+        ContainerAuditGranularity.fromName(preferences.get("auditGranularity"));
+        ContainerRemovalPolicy.fromName(preferences.get("containerRemovalPolicy"));
+        DockerServerPlacementStrategy.fromName(preferences.get("dockerPlacementStrategy"));
+
+        for (final Map.Entry<String, String> entry : preferences.entrySet()) {
+            final String name = entry.getKey();
+            final String value = entry.getValue();
+            if ("auditGranularity".equals(name)) {
+                setAuditGranularity(value);
+            } else if ("containerRemovalPolicy".equals(name)) {
+                setContainerRemovalPolicy(value);
+            } else if ("dockerPlacementStrategy".equals(name)) {
+                setDockerPlacementStrategy(value);
+            } else if (value != null) {
+                set(value, name);
+            }
+        }
+    }
+
+    private void setPreference(final String name, final String value) {
+        if (value != null) {
+            try {
+                set(value, name);
+            } catch (InvalidPreferenceName e) {
+                log.error("Error setting container service preference \"{}\".", name, e);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("auditGranularity", getAuditGranularity())
+                .add("retentionDays", getRetentionDays())
+                .add("retentionBatchSize", getRetentionBatchSize())
+                .add("retentionMaxBatchesPerRun", getRetentionMaxBatchesPerRun())
+                .add("commandConfigCacheSeconds", getCommandConfigCacheSeconds())
+                .add("commandConfigSyncSeconds", getCommandConfigSyncSeconds())
+                .add("imageWarmerIntervalMinutes", getImageWarmerIntervalMinutes())
+                .add("imageWarmerRecentDays", getImageWarmerRecentDays())
+                .add("containerRemovalPolicy", getContainerRemovalPolicy())
+                .add("containerRemovalDelayHours", getContainerRemovalDelayHours())
+                .add("dockerPruneIntervalHours", getDockerPruneIntervalHours())
+                .add("maxConcurrentContainersPerProject", getMaxConcurrentContainersPerProject())
+                .add("maxConcurrentContainersPerUser", getMaxConcurrentContainersPerUser())
+                .add("maxConcurrentContainersPerWrapper", getMaxConcurrentContainersPerWrapper())
+                .add("bulkLaunchParallelism", getBulkLaunchParallelism())
+                .add("bulkLaunchUiMaxItems", getBulkLaunchUiMaxItems())
+                .add("launchPriorityAgingMinutes", getLaunchPriorityAgingMinutes())
+                .add("finalizationParallelism", getFinalizationParallelism())
+                .add("dockerPlacementStrategy", getDockerPlacementStrategy())
+                .add("statusUpdaterLeaseSeconds", getStatusUpdaterLeaseSeconds())
+                .add("finalizationLeaseMinutes", getFinalizationLeaseMinutes())
+                .add("reconciliationSweepMinutes", getReconciliationSweepMinutes())
+                .toString();
+    }
+}
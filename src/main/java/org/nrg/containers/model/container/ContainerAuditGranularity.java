@@ -0,0 +1,56 @@
+package org.nrg.containers.model.container;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * How much of the container entity graph is written to the Envers audit tables.
+ *
+ * FULL: Every insert, update, and collection change on the container and its children (the pre-1.5 behavior).
+ * ENTITY: Only the container row itself. History, inputs, outputs, mounts, env, and log paths are not audited.
+ *         The container history table already records every status change.
+ * LIFECYCLE: Like ENTITY, but updates to the container row are only audited when the container
+ *            reaches a terminal status. Creation and deletion are always audited.
+ * NONE: Nothing in the container graph is audited.
+ */
+public enum ContainerAuditGranularity {
+    FULL("full"),
+    ENTITY("entity"),
+    LIFECYCLE("lifecycle"),
+    NONE("none");
+
+    private final String name;
+
+    ContainerAuditGranularity(final String name) {
+        this.name = name;
+    }
+
+    @JsonValue
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return The audit granularity with the given name, or FULL if the name is blank.
+     * @throws IllegalArgumentException If there is no audit granularity with the given name.
+     */
+    @JsonCreator
+    public static ContainerAuditGranularity fromName(final String name) {
+        if (name == null || name.trim().isEmpty()) {
+            return FULL;
+        }
+        for (final ContainerAuditGranularity granularity : values()) {
+            if (granularity.name.equalsIgnoreCase(name.trim())) {
+                return granularity;
+            }
+        }
+        final List<String> names = new ArrayList<>();
+        for (final ContainerAuditGranularity granularity : values()) {
+            names.add(granularity.name);
+        }
+        throw new IllegalArgumentException("Unknown audit granularity \"" + name + "\". Use one of " + names + ".");
+    }
+}
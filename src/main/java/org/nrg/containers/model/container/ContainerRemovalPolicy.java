@@ -0,0 +1,52 @@
+package org.nrg.containers.model.container;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * What to do with a container on the Docker server once it has been finalized and its logs and outputs uploaded.
+ *
+ * NEVER: Leave it on the server (the pre-1.5 behavior).
+ * ALWAYS: Remove it, after the configured delay.
+ * KEEP_FAILED: Remove it after the configured delay, unless it failed. Failed containers are kept for debugging.
+ */
+public enum ContainerRemovalPolicy {
+    NEVER("never"),
+    ALWAYS("always"),
+    KEEP_FAILED("keep-failed");
+
+    private final String name;
+
+    ContainerRemovalPolicy(final String name) {
+        this.name = name;
+    }
+
+    @JsonValue
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return The container removal policy with the given name, or NEVER if the name is blank.
+     * @throws IllegalArgumentException If there is no container removal policy with the given name.
+     */
+    @JsonCreator
+    public static ContainerRemovalPolicy fromName(final String name) {
+        if (name == null || name.trim().isEmpty()) {
+            return NEVER;
+        }
+        for (final ContainerRemovalPolicy policy : values()) {
+            if (policy.name.equalsIgnoreCase(name.trim())) {
+                return policy;
+            }
+        }
+        final List<String> names = new ArrayList<>();
+        for (final ContainerRemovalPolicy policy : values()) {
+            names.add(policy.name);
+        }
+        throw new IllegalArgumentException("Unknown container removal policy \"" + name + "\". Use one of " + names + ".");
+    }
+}
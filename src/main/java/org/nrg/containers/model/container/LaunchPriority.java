@@ -0,0 +1,87 @@
+package org.nrg.containers.model.container;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+
+import javax.annotation.Nullable;
+
+/**
+ * How urgently a launch should be scheduled, relative to others.
+ *
+ * INTERACTIVE: A single launch by a user, who is probably waiting for it.
+ * BULK: One item of a bulk launch.
+ * EVENT: A launch triggered by an event mapping, such as a session being archived.
+ *
+ * Higher priority work goes first, but waiting work ages: for every aging interval it waits, it moves up one level,
+ * so lower priority work is never starved.
+ */
+public enum LaunchPriority {
+    EVENT("event", 0, 256L),
+    BULK("bulk", 1, 512L),
+    INTERACTIVE("interactive", 2, 1024L);
+
+    private final String name;
+    private final int level;
+    private final long cpuShares;
+
+    LaunchPriority(final String name, final int level, final long cpuShares) {
+        this.name = name;
+        this.level = level;
+        this.cpuShares = cpuShares;
+    }
+
+    @JsonValue
+    public String getName() {
+        return name;
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    /**
+     * The relative CPU weight a container of this priority gets on a busy Docker server, if its command does not set one.
+     * Docker's own default is 1024.
+     */
+    public long getCpuShares() {
+        return cpuShares;
+    }
+
+    /**
+     * @param waitedMillis How long the work has been waiting.
+     * @param agingMillis How long it takes to move up a level. 0 or less turns aging off.
+     * @return The level the work has aged to, no higher than the top level.
+     */
+    public int agedLevel(final long waitedMillis, final long agingMillis) {
+        if (agingMillis <= 0 || waitedMillis <= 0) {
+            return level;
+        }
+        return (int) Math.min(INTERACTIVE.level, level + waitedMillis / agingMillis);
+    }
+
+    /**
+     * Order work by its arrival time, moved earlier by one aging interval per level. Sorting on this key
+     * matches the aged level, but the key does not change while the work waits. Only meaningful when aging is on.
+     */
+    public long agedSortTime(final long enqueuedMillis, final long agingMillis) {
+        return enqueuedMillis - level * agingMillis;
+    }
+
+    @JsonCreator
+    @Nullable
+    public static LaunchPriority fromName(final String name) {
+        if (name != null) {
+            for (final LaunchPriority priority : values()) {
+                if (priority.name.equalsIgnoreCase(name.trim())) {
+                    return priority;
+                }
+            }
+        }
+        return null;
+    }
+
+    public static LaunchPriority fromName(final String name, final LaunchPriority defaultPriority) {
+        final LaunchPriority priority = fromName(name);
+        return priority == null ? defaultPriority : priority;
+    }
+}
@@ -52,6 +52,9 @@ public abstract class Container {
     @Nullable @JsonProperty("subtype") public abstract String subtype();
     @Nullable @JsonProperty("parent-database-id") public abstract Long parentDatabaseId();
     @Nullable @JsonProperty("parent-container-id") public abstract String parentContainerId();
+    @Nullable @JsonProperty("project") public abstract String project();
+    @Nullable @JsonProperty("priority") public abstract String priority();
+    @Nullable @JsonProperty("docker-server-id") public abstract Long dockerServerId();
     @JsonIgnore @Nullable public abstract Container parentContainer();
     @JsonProperty("env") public abstract ImmutableMap<String, String> environmentVariables();
     @JsonProperty("mounts") public abstract ImmutableList<ContainerMount> mounts();
@@ -103,6 +106,9 @@ public abstract class Container {
                                    @JsonProperty("subtype") final String subtype,
                                    @JsonProperty("parent-database-id") final long parentDatabaseId,
                                    @JsonProperty("parent-container-id") final String parentContainerId,
+                                   @JsonProperty("project") final String project,
+                                   @JsonProperty("priority") final String priority,
+                                   @JsonProperty("docker-server-id") final Long dockerServerId,
                                    @JsonProperty("env") final Map<String, String> environmentVariables,
                                    @JsonProperty("mounts") final List<ContainerMount> mounts,
                                    @JsonProperty("inputs") final List<ContainerInput> inputs,
@@ -129,6 +135,9 @@ public abstract class Container {
                 .subtype(subtype)
                 .parentDatabaseId(parentDatabaseId)
                 .parentContainerId(parentContainerId)
+                .project(project)
+                .priority(priority)
+                .dockerServerId(dockerServerId)
                 .environmentVariables(environmentVariables == null ? Collections.<String, String>emptyMap() : environmentVariables)
                 .mounts(mounts == null ? Collections.<ContainerMount>emptyList() : mounts)
                 .inputs(inputs == null ? Collections.<ContainerInput>emptyList() : inputs)
@@ -162,6 +171,9 @@ public abstract class Container {
                 .parentContainer(create(containerEntity.getParentContainerEntity()))
                 .parentDatabaseId(containerEntity.getParentContainerEntity() != null ? containerEntity.getParentContainerEntity().getId() : null)
                 .parentContainerId(containerEntity.getParentContainerEntity() != null ? containerEntity.getParentContainerEntity().getContainerId() : null)
+                .project(containerEntity.getProject())
+                .priority(containerEntity.getPriority())
+                .dockerServerId(containerEntity.getDockerServerId())
                 .environmentVariables(containerEntity.getEnvironmentVariables() == null ? Collections.<String, String>emptyMap() : containerEntity.getEnvironmentVariables())
                 .logPaths(containerEntity.getLogPaths() == null ? Collections.<String>emptyList() : containerEntity.getLogPaths())
                 .mounts(containerEntity.getMounts() == null ?
@@ -222,6 +234,19 @@ public abstract class Container {
                 .build();
     }
 
+    /**
+     * A launch waiting in the launch queue. It has no Docker id yet, and its environment
+     * does not hold the XNAT credentials; those are issued when it is dispatched.
+     */
+    public static Container queuedFromResolvedCommand(final ResolvedCommand resolvedCommand,
+                                                      final String userId) {
+        return buildFromResolvedCommand(resolvedCommand)
+                .userId(userId)
+                .status(ContainerEntity.QUEUED)
+                .statusTime(new Date())
+                .build();
+    }
+
     private static Container.Builder buildFromResolvedCommand(final ResolvedCommand resolvedCommand) {
         String containerSubtype = null;
         if (resolvedCommand.type().equals(CommandType.DOCKER_SETUP.getName())) {
@@ -236,6 +261,8 @@ public abstract class Container {
                 .workingDirectory(resolvedCommand.workingDirectory())
                 .environmentVariables(resolvedCommand.environmentVariables())
                 .subtype(containerSubtype)
+                .project(resolvedCommand.project())
+                .priority(resolvedCommand.priority())
                 .mountsFromResolvedCommand(resolvedCommand.mounts())
                 .addRawInputs(resolvedCommand.rawInputValues())
                 .addCommandInputs(resolvedCommand.commandInputValues())
@@ -334,8 +361,16 @@ public abstract class Container {
         public abstract Builder parentDatabaseId(Long parentDatabaseId);
         public abstract Builder parentContainerId(String parentContainerId);
         public abstract Builder parentContainer(Container parentContainer);
+        public abstract Builder project(String project);
+
+        public abstract Builder priority(String priority);
+        public abstract Builder dockerServerId(Long dockerServerId);
 
         public Builder setParentProperties(final Container parentContainer) {
+            if (parentContainer != null && parentContainer.project() != null) {
+                // Setup containers run on behalf of their parent's project
+                project(parentContainer.project());
+            }
             return this
                     .parentContainer(parentContainer)
                     .parentContainerId(parentContainer == null ? null : parentContainer.containerId())
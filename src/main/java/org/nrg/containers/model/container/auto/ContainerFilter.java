@@ -0,0 +1,43 @@
+package org.nrg.containers.model.container.auto;
+
+import com.google.auto.value.AutoValue;
+
+import javax.annotation.Nullable;
+import java.util.Date;
+
+/**
+ * Optional restrictions used when listing or exporting containers. Unset properties match everything.
+ * The status matches by prefix, so "Failed" matches "Failed (rejected)".
+ * The since / until dates are compared with the container's status time.
+ */
+@AutoValue
+public abstract class ContainerFilter {
+    @Nullable public abstract String status();
+    @Nullable public abstract Long commandId();
+    @Nullable public abstract Long wrapperId();
+    @Nullable public abstract String userId();
+    @Nullable public abstract String project();
+    @Nullable public abstract Date since();
+    @Nullable public abstract Date until();
+
+    public static ContainerFilter all() {
+        return builder().build();
+    }
+
+    public static Builder builder() {
+        return new AutoValue_ContainerFilter.Builder();
+    }
+
+    @AutoValue.Builder
+    public abstract static class Builder {
+        public abstract Builder status(final String status);
+        public abstract Builder commandId(final Long commandId);
+        public abstract Builder wrapperId(final Long wrapperId);
+        public abstract Builder userId(final String userId);
+        public abstract Builder project(final String project);
+        public abstract Builder since(final Date since);
+        public abstract Builder until(final Date until);
+
+        public abstract ContainerFilter build();
+    }
+}
@@ -0,0 +1,42 @@
+package org.nrg.containers.model.container.auto;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.auto.value.AutoValue;
+
+import javax.annotation.Nullable;
+import java.util.Date;
+
+/**
+ * What one run of the Docker pruner removed. Byte counts are what Docker reported before removal.
+ * Container sizes are only the writable layers, and services in swarm mode have no size.
+ * The message is set when the run could not finish, for instance because the Docker server did not answer.
+ */
+@AutoValue
+public abstract class ContainerPruneReport {
+    @JsonProperty("started") public abstract Date started();
+    @JsonProperty("finished") public abstract Date finished();
+    @JsonProperty("containers-removed") public abstract int containersRemoved();
+    @JsonProperty("containers-failed") public abstract int containersFailed();
+    @JsonProperty("container-bytes-reclaimed") public abstract long containerBytesReclaimed();
+    @JsonProperty("images-removed") public abstract int imagesRemoved();
+    @JsonProperty("images-failed") public abstract int imagesFailed();
+    @JsonProperty("image-bytes-reclaimed") public abstract long imageBytesReclaimed();
+    @Nullable @JsonProperty("message") public abstract String message();
+
+    @JsonCreator
+    public static ContainerPruneReport create(@JsonProperty("started") final Date started,
+                                              @JsonProperty("finished") final Date finished,
+                                              @JsonProperty("containers-removed") final int containersRemoved,
+                                              @JsonProperty("containers-failed") final int containersFailed,
+                                              @JsonProperty("container-bytes-reclaimed") final long containerBytesReclaimed,
+                                              @JsonProperty("images-removed") final int imagesRemoved,
+                                              @JsonProperty("images-failed") final int imagesFailed,
+                                              @JsonProperty("image-bytes-reclaimed") final long imageBytesReclaimed,
+                                              @JsonProperty("message") final String message) {
+        return new AutoValue_ContainerPruneReport(started, finished,
+                containersRemoved, containersFailed, containerBytesReclaimed,
+                imagesRemoved, imagesFailed, imageBytesReclaimed,
+                message);
+    }
+}
@@ -0,0 +1,80 @@
+package org.nrg.containers.model.container.auto;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.auto.value.AutoValue;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import javax.annotation.Nullable;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Aggregate container counts and runtimes, computed in the database.
+ * Runtimes are measured from the first history entry of a finalized container that has it running
+ * to its last history entry, so time spent queued is not counted. They are taken over the 10,000 most
+ * recently created finalized containers.
+ */
+@AutoValue
+public abstract class ContainerStats {
+    @JsonProperty("generated") public abstract Date generated();
+    @JsonProperty("total") public abstract long total();
+    @JsonProperty("by-status") public abstract ImmutableMap<String, Long> byStatus();
+    @JsonProperty("by-user") public abstract ImmutableMap<String, Long> byUser();
+    @JsonProperty("by-project") public abstract ImmutableMap<String, Long> byProject();
+    @JsonProperty("by-wrapper") public abstract ImmutableList<WrapperStats> byWrapper();
+    @Nullable @JsonProperty("average-runtime-seconds") public abstract Double averageRuntimeSeconds();
+
+    @JsonCreator
+    public static ContainerStats create(@JsonProperty("generated") final Date generated,
+                                        @JsonProperty("total") final long total,
+                                        @JsonProperty("by-status") final Map<String, Long> byStatus,
+                                        @JsonProperty("by-user") final Map<String, Long> byUser,
+                                        @JsonProperty("by-project") final Map<String, Long> byProject,
+                                        @JsonProperty("by-wrapper") final List<WrapperStats> byWrapper,
+                                        @JsonProperty("average-runtime-seconds") final Double averageRuntimeSeconds) {
+        return new AutoValue_ContainerStats(
+                generated,
+                total,
+                byStatus == null ? ImmutableMap.<String, Long>of() : ImmutableMap.copyOf(byStatus),
+                byUser == null ? ImmutableMap.<String, Long>of() : ImmutableMap.copyOf(byUser),
+                byProject == null ? ImmutableMap.<String, Long>of() : ImmutableMap.copyOf(byProject),
+                byWrapper == null ? ImmutableList.<WrapperStats>of() : ImmutableList.copyOf(byWrapper),
+                averageRuntimeSeconds);
+    }
+
+    public static ContainerStats empty() {
+        return create(new Date(), 0L,
+                Collections.<String, Long>emptyMap(),
+                Collections.<String, Long>emptyMap(),
+                Collections.<String, Long>emptyMap(),
+                Collections.<WrapperStats>emptyList(),
+                null);
+    }
+
+    @AutoValue
+    public static abstract class WrapperStats {
+        @JsonProperty("wrapper-id") public abstract long wrapperId();
+        @JsonProperty("command-id") public abstract long commandId();
+        @JsonProperty("count") public abstract long count();
+        @JsonProperty("finalized-count") public abstract long finalizedCount();
+        @Nullable @JsonProperty("average-runtime-seconds") public abstract Double averageRuntimeSeconds();
+        @Nullable @JsonProperty("p50-runtime-seconds") public abstract Double p50RuntimeSeconds();
+        @Nullable @JsonProperty("p95-runtime-seconds") public abstract Double p95RuntimeSeconds();
+
+        @JsonCreator
+        public static WrapperStats create(@JsonProperty("wrapper-id") final long wrapperId,
+                                          @JsonProperty("command-id") final long commandId,
+                                          @JsonProperty("count") final long count,
+                                          @JsonProperty("finalized-count") final long finalizedCount,
+                                          @JsonProperty("average-runtime-seconds") final Double averageRuntimeSeconds,
+                                          @JsonProperty("p50-runtime-seconds") final Double p50RuntimeSeconds,
+                                          @JsonProperty("p95-runtime-seconds") final Double p95RuntimeSeconds) {
+            return new AutoValue_ContainerStats_WrapperStats(wrapperId, commandId, count, finalizedCount,
+                    averageRuntimeSeconds, p50RuntimeSeconds, p95RuntimeSeconds);
+        }
+    }
+}
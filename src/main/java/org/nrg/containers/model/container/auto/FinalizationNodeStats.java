@@ -0,0 +1,29 @@
+package org.nrg.containers.model.container.auto;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.auto.value.AutoValue;
+
+/**
+ * How much finalization work one node of the cluster has claimed and finished over the last hour,
+ * and how much it is finalizing now. Work that another node took over after a lease expired counts for the node
+ * that took it over. Only the last claim of each work item is recorded, so the node whose lease expired does not
+ * count that claim, and its claimed count can be lower than the number of items it actually started.
+ */
+@AutoValue
+public abstract class FinalizationNodeStats {
+    @JsonProperty("node-id") public abstract String nodeId();
+    @JsonProperty("claimed-last-hour") public abstract long claimedLastHour();
+    @JsonProperty("finished-last-hour") public abstract long finishedLastHour();
+    @JsonProperty("failed-last-hour") public abstract long failedLastHour();
+    @JsonProperty("in-progress") public abstract long inProgress();
+
+    @JsonCreator
+    public static FinalizationNodeStats create(@JsonProperty("node-id") final String nodeId,
+                                               @JsonProperty("claimed-last-hour") final long claimedLastHour,
+                                               @JsonProperty("finished-last-hour") final long finishedLastHour,
+                                               @JsonProperty("failed-last-hour") final long failedLastHour,
+                                               @JsonProperty("in-progress") final long inProgress) {
+        return new AutoValue_FinalizationNodeStats(nodeId, claimedLastHour, finishedLastHour, failedLastHour, inProgress);
+    }
+}
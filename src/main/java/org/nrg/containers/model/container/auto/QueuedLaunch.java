@@ -0,0 +1,40 @@
+package org.nrg.containers.model.container.auto;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.auto.value.AutoValue;
+
+import javax.annotation.Nullable;
+import java.util.Date;
+
+/**
+ * A launch waiting in the launch queue. The position is 1-based in the order launches will be dispatched,
+ * which is by priority, then fair-share across users, rather than strictly first-in, first-out.
+ * "Waiting on" names the limit that currently holds the launch back: "project", "user", or "wrapper".
+ * It is null for a launch that fits within the limits and will go out with the next dispatch.
+ */
+@AutoValue
+public abstract class QueuedLaunch {
+    @JsonProperty("id") public abstract long databaseId();
+    @JsonProperty("user-id") public abstract String userId();
+    @Nullable @JsonProperty("project") public abstract String project();
+    @JsonProperty("wrapper-id") public abstract long wrapperId();
+    @JsonProperty("position") public abstract int position();
+    @JsonProperty("queued-at") public abstract Date queuedAt();
+    @JsonProperty("wait-millis") public abstract long waitMillis();
+    @Nullable @JsonProperty("waiting-on") public abstract String waitingOn();
+    @Nullable @JsonProperty("priority") public abstract String priority();
+
+    @JsonCreator
+    public static QueuedLaunch create(@JsonProperty("id") final long databaseId,
+                                      @JsonProperty("user-id") final String userId,
+                                      @JsonProperty("project") final String project,
+                                      @JsonProperty("wrapper-id") final long wrapperId,
+                                      @JsonProperty("position") final int position,
+                                      @JsonProperty("queued-at") final Date queuedAt,
+                                      @JsonProperty("wait-millis") final long waitMillis,
+                                      @JsonProperty("waiting-on") final String waitingOn,
+                                      @JsonProperty("priority") final String priority) {
+        return new AutoValue_QueuedLaunch(databaseId, userId, project, wrapperId, position, queuedAt, waitMillis, waitingOn, priority);
+    }
+}
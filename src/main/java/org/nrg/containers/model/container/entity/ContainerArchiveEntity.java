@@ -0,0 +1,167 @@
+package org.nrg.containers.model.container.entity;
+
+import com.google.common.base.MoreObjects;
+import org.nrg.framework.orm.hibernate.AbstractHibernateEntity;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Table;
+import javax.persistence.UniqueConstraint;
+import java.util.Date;
+import java.util.Objects;
+
+/**
+ * A finalized container that has been moved out of the live container tables by the retention job.
+ * The few columns we filter on are kept as columns; everything else is kept as the container's JSON.
+ * Archived containers are read-only.
+ */
+@Entity
+@Table(uniqueConstraints = {@UniqueConstraint(columnNames = {"containerDatabaseId"})})
+public class ContainerArchiveEntity extends AbstractHibernateEntity {
+    private long containerDatabaseId;
+    private String containerId;
+    private String serviceId;
+    private long commandId;
+    private long wrapperId;
+    private String userId;
+    private String status;
+    private Date statusTime;
+    private String subtype;
+    private Long parentContainerDatabaseId;
+    private String containerJson;
+
+    public static ContainerArchiveEntity create(final ContainerEntity containerEntity, final String containerJson) {
+        final ContainerArchiveEntity archiveEntity = new ContainerArchiveEntity();
+        archiveEntity.containerDatabaseId = containerEntity.getId();
+        archiveEntity.containerId = containerEntity.getContainerId();
+        archiveEntity.serviceId = containerEntity.getServiceId();
+        archiveEntity.commandId = containerEntity.getCommandId();
+        archiveEntity.wrapperId = containerEntity.getWrapperId();
+        archiveEntity.userId = containerEntity.getUserId();
+        archiveEntity.status = containerEntity.getStatus();
+        archiveEntity.statusTime = containerEntity.getStatusTime();
+        archiveEntity.subtype = containerEntity.getSubtype();
+        archiveEntity.parentContainerDatabaseId = containerEntity.getParentContainerEntity() == null ?
+                null : containerEntity.getParentContainerEntity().getId();
+        archiveEntity.containerJson = containerJson;
+        return archiveEntity;
+    }
+
+    public long getContainerDatabaseId() {
+        return containerDatabaseId;
+    }
+
+    public void setContainerDatabaseId(final long containerDatabaseId) {
+        this.containerDatabaseId = containerDatabaseId;
+    }
+
+    public String getContainerId() {
+        return containerId;
+    }
+
+    public void setContainerId(final String containerId) {
+        this.containerId = containerId;
+    }
+
+    public String getServiceId() {
+        return serviceId;
+    }
+
+    public void setServiceId(final String serviceId) {
+        this.serviceId = serviceId;
+    }
+
+    public long getCommandId() {
+        return commandId;
+    }
+
+    public void setCommandId(final long commandId) {
+        this.commandId = commandId;
+    }
+
+    public long getWrapperId() {
+        return wrapperId;
+    }
+
+    public void setWrapperId(final long wrapperId) {
+        this.wrapperId = wrapperId;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public void setUserId(final String userId) {
+        this.userId = userId;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(final String status) {
+        this.status = status;
+    }
+
+    public Date getStatusTime() {
+        return statusTime;
+    }
+
+    public void setStatusTime(final Date statusTime) {
+        this.statusTime = statusTime;
+    }
+
+    public String getSubtype() {
+        return subtype;
+    }
+
+    public void setSubtype(final String subtype) {
+        this.subtype = subtype;
+    }
+
+    public Long getParentContainerDatabaseId() {
+        return parentContainerDatabaseId;
+    }
+
+    public void setParentContainerDatabaseId(final Long parentContainerDatabaseId) {
+        this.parentContainerDatabaseId = parentContainerDatabaseId;
+    }
+
+    @Column(columnDefinition = "TEXT")
+    public String getContainerJson() {
+        return containerJson;
+    }
+
+    public void setContainerJson(final String containerJson) {
+        this.containerJson = containerJson;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        final ContainerArchiveEntity that = (ContainerArchiveEntity) o;
+        return containerDatabaseId == that.containerDatabaseId;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(containerDatabaseId);
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("containerDatabaseId", containerDatabaseId)
+                .add("containerId", containerId)
+                .add("serviceId", serviceId)
+                .add("commandId", commandId)
+                .add("wrapperId", wrapperId)
+                .add("userId", userId)
+                .add("status", status)
+                .add("statusTime", statusTime)
+                .add("subtype", subtype)
+                .add("parentContainerDatabaseId", parentContainerDatabaseId)
+                .toString();
+    }
+}
@@ -40,6 +40,9 @@ public class ContainerEntity extends AbstractHibernateEntity {
             .put("oom", "Killed (Out of Memory)")
             .put("starting", "Starting")
             .build();
+    public static final String FINALIZING = "Finalizing";
+    public static final String QUEUED = "Queued";
+    public static final String DISPATCHING = "Dispatching";
     private static final Set<String> TERMINAL_STATI = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
             "Complete", "Failed", "Killed"
     )));
@@ -61,6 +64,10 @@ public class ContainerEntity extends AbstractHibernateEntity {
     private String taskId;
     private String nodeId;
     private String subtype;
+    private String project;
+    private String priority;
+    private Long dockerServerId;
+    private Boolean finalized = Boolean.FALSE;
     private ContainerEntity parentContainerEntity;
     private List<ContainerEntityInput> inputs;
     private List<ContainerEntityOutput> outputs;
@@ -96,6 +103,9 @@ public class ContainerEntity extends AbstractHibernateEntity {
         this.setCommandLine(containerPojo.commandLine());
         this.setWorkingDirectory(containerPojo.workingDirectory());
         this.setSubtype(containerPojo.subtype());
+        this.setProject(containerPojo.project());
+        this.setPriority(containerPojo.priority());
+        this.setDockerServerId(containerPojo.dockerServerId());
         this.setParentContainerEntity(fromPojo(containerPojo.parentContainer()));
         this.setEnvironmentVariables(containerPojo.environmentVariables());
         this.setLogPaths(containerPojo.logPaths());
@@ -171,6 +181,29 @@ public class ContainerEntity extends AbstractHibernateEntity {
         return false;
     }
 
+    /**
+     * Whether finalization has run. Statuses cannot tell: a swarm service is "Complete" or "Failed" as soon as its
+     * task is, before it is finalized.
+     */
+    @Transient
+    public boolean hasBeenFinalized() {
+        if (finalized == null) {
+            // Saved before this was recorded, when a complete or failed status meant the container had been finalized
+            return status != null && (status.contains("Complete") || status.contains("Failed"));
+        }
+        return finalized;
+    }
+
+    @Transient
+    public boolean statusIsFinalizing() {
+        return FINALIZING.equals(status);
+    }
+
+    @Transient
+    public boolean statusIsQueued() {
+        return QUEUED.equals(status);
+    }
+
     public Date getStatusTime() {
         return statusTime;
     }
@@ -222,6 +255,46 @@ public class ContainerEntity extends AbstractHibernateEntity {
         this.subtype = subtype;
     }
 
+    public String getProject() {
+        return project;
+    }
+
+    public void setProject(final String project) {
+        this.project = project;
+    }
+
+    public String getPriority() {
+        return priority;
+    }
+
+    public void setPriority(final String priority) {
+        this.priority = priority;
+    }
+
+    /**
+     * The Docker server this container was placed on. Null for containers from before servers were recorded,
+     * which all ran on the default server.
+     */
+    public Long getDockerServerId() {
+        return dockerServerId;
+    }
+
+    public void setDockerServerId(final Long dockerServerId) {
+        this.dockerServerId = dockerServerId;
+    }
+
+    /**
+     * @return Whether the container has been finalized. Only finalization sets this.
+     * It is null for containers saved before it was recorded; see {@link #hasBeenFinalized()}.
+     */
+    public Boolean getFinalized() {
+        return finalized;
+    }
+
+    public void setFinalized(final Boolean finalized) {
+        this.finalized = finalized;
+    }
+
     @OneToMany(mappedBy = "containerEntity", cascade = CascadeType.ALL, orphanRemoval = true)
     public List<ContainerEntityMount> getMounts() {
         return mounts;
@@ -487,6 +560,10 @@ public class ContainerEntity extends AbstractHibernateEntity {
                 .add("nodeId", nodeId)
                 .add("userId", userId)
                 .add("subtype", subtype)
+                .add("project", project)
+                .add("priority", priority)
+                .add("dockerServerId", dockerServerId)
+                .add("finalized", finalized)
                 .add("parentContainerEntityId", parentContainerEntity == null ? null : parentContainerEntity.getId())
                 .add("parentContainerEntityContainerId", parentContainerEntity == null ? null : parentContainerEntity.getContainerId())
                 .add("workflowId", workflowId)
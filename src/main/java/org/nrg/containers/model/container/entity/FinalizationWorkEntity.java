@@ -0,0 +1,167 @@
+package org.nrg.containers.model.container.entity;
+
+import com.google.common.base.MoreObjects;
+import org.nrg.framework.orm.hibernate.AbstractHibernateEntity;
+
+import javax.persistence.Entity;
+import javax.persistence.Table;
+import javax.persistence.UniqueConstraint;
+import java.util.Date;
+import java.util.Objects;
+
+/**
+ * A finished container waiting to be finalized, or being finalized, by any node of the cluster.
+ * A node claims the work by taking a lease on it, and renews the lease while it finalizes. If the node goes away,
+ * the lease expires and another node claims the work again. Finished work is kept for a while for reporting.
+ */
+@Entity
+@Table(uniqueConstraints = {@UniqueConstraint(columnNames = {"containerDatabaseId"})})
+public class FinalizationWorkEntity extends AbstractHibernateEntity {
+    private long containerDatabaseId;
+    private String userId;
+    private String exitCode;
+    private String containerStatus;
+    private long sortTime;
+    private String claimedBy;
+    private Date claimed;
+    private Date leaseExpires;
+    private int attempts;
+    private Date finished;
+    private boolean failed;
+
+    public static FinalizationWorkEntity create(final long containerDatabaseId,
+                                                final String userId,
+                                                final String exitCode,
+                                                final String containerStatus,
+                                                final long sortTime) {
+        final FinalizationWorkEntity finalizationWorkEntity = new FinalizationWorkEntity();
+        finalizationWorkEntity.containerDatabaseId = containerDatabaseId;
+        finalizationWorkEntity.userId = userId;
+        finalizationWorkEntity.exitCode = exitCode;
+        finalizationWorkEntity.containerStatus = containerStatus;
+        finalizationWorkEntity.sortTime = sortTime;
+        return finalizationWorkEntity;
+    }
+
+    public long getContainerDatabaseId() {
+        return containerDatabaseId;
+    }
+
+    public void setContainerDatabaseId(final long containerDatabaseId) {
+        this.containerDatabaseId = containerDatabaseId;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public void setUserId(final String userId) {
+        this.userId = userId;
+    }
+
+    public String getExitCode() {
+        return exitCode;
+    }
+
+    public void setExitCode(final String exitCode) {
+        this.exitCode = exitCode;
+    }
+
+    /**
+     * @return The container's status when the work was enqueued, to give back to it if a claim is abandoned mid-finalization.
+     */
+    public String getContainerStatus() {
+        return containerStatus;
+    }
+
+    public void setContainerStatus(final String containerStatus) {
+        this.containerStatus = containerStatus;
+    }
+
+    /**
+     * @return Work is claimed in ascending order of this key, which is the aged priority sort time.
+     */
+    public long getSortTime() {
+        return sortTime;
+    }
+
+    public void setSortTime(final long sortTime) {
+        this.sortTime = sortTime;
+    }
+
+    public String getClaimedBy() {
+        return claimedBy;
+    }
+
+    public void setClaimedBy(final String claimedBy) {
+        this.claimedBy = claimedBy;
+    }
+
+    public Date getClaimed() {
+        return claimed;
+    }
+
+    public void setClaimed(final Date claimed) {
+        this.claimed = claimed;
+    }
+
+    public Date getLeaseExpires() {
+        return leaseExpires;
+    }
+
+    public void setLeaseExpires(final Date leaseExpires) {
+        this.leaseExpires = leaseExpires;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public void setAttempts(final int attempts) {
+        this.attempts = attempts;
+    }
+
+    public Date getFinished() {
+        return finished;
+    }
+
+    public void setFinished(final Date finished) {
+        this.finished = finished;
+    }
+
+    public boolean isFailed() {
+        return failed;
+    }
+
+    public void setFailed(final boolean failed) {
+        this.failed = failed;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        final FinalizationWorkEntity that = (FinalizationWorkEntity) o;
+        return this.containerDatabaseId == that.containerDatabaseId;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(containerDatabaseId);
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("containerDatabaseId", containerDatabaseId)
+                .add("userId", userId)
+                .add("exitCode", exitCode)
+                .add("sortTime", sortTime)
+                .add("claimedBy", claimedBy)
+                .add("leaseExpires", leaseExpires)
+                .add("attempts", attempts)
+                .add("finished", finished)
+                .add("failed", failed)
+                .toString();
+    }
+}
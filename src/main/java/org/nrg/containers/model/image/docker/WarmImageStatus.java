@@ -0,0 +1,75 @@
+package org.nrg.containers.model.image.docker;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.auto.value.AutoValue;
+import com.google.common.collect.ImmutableSet;
+
+import javax.annotation.Nullable;
+import java.util.Date;
+import java.util.Set;
+
+/**
+ * Whether an image the image warmer keeps on a Docker server is there, and how its last pull went.
+ * The sources say why the warmer wants the image: because an event mapping uses it, because it was used recently, or both.
+ */
+@AutoValue
+@JsonInclude(JsonInclude.Include.ALWAYS)
+public abstract class WarmImageStatus {
+    public static final String QUEUED = "queued";
+    public static final String PULLING = "pulling";
+    public static final String PRESENT = "present";
+    public static final String PULLED = "pulled";
+    public static final String FAILED = "failed";
+
+    public static final String SOURCE_EVENT_MAPPING = "event-mapping";
+    public static final String SOURCE_RECENTLY_USED = "recently-used";
+
+    @JsonProperty("image") public abstract String image();
+    @Nullable @JsonProperty("server-id") public abstract Long serverId();
+    @Nullable @JsonProperty("server") public abstract String server();
+    @JsonProperty("state") public abstract String state();
+    @JsonProperty("sources") public abstract ImmutableSet<String> sources();
+    @Nullable @JsonProperty("last-checked") public abstract Date lastChecked();
+    @Nullable @JsonProperty("pull-started") public abstract Date pullStarted();
+    @Nullable @JsonProperty("pull-millis") public abstract Long pullMillis();
+    @Nullable @JsonProperty("message") public abstract String message();
+
+    @JsonCreator
+    public static WarmImageStatus create(@JsonProperty("image") final String image,
+                                         @JsonProperty("server-id") final Long serverId,
+                                         @JsonProperty("server") final String server,
+                                         @JsonProperty("state") final String state,
+                                         @JsonProperty("sources") final Set<String> sources,
+                                         @JsonProperty("last-checked") final Date lastChecked,
+                                         @JsonProperty("pull-started") final Date pullStarted,
+                                         @JsonProperty("pull-millis") final Long pullMillis,
+                                         @JsonProperty("message") final String message) {
+        return new AutoValue_WarmImageStatus(image, serverId, server, state,
+                sources == null ? ImmutableSet.<String>of() : ImmutableSet.copyOf(sources),
+                lastChecked, pullStarted, pullMillis, message);
+    }
+
+    public static WarmImageStatus queued(final String image, final Long serverId, final String server, final Set<String> sources) {
+        return create(image, serverId, server, QUEUED, sources, null, null, null, null);
+    }
+
+    public WarmImageStatus withState(final String state,
+                                     final Date lastChecked,
+                                     final Date pullStarted,
+                                     final Long pullMillis,
+                                     final String message) {
+        return create(image(), serverId(), server(), state, sources(), lastChecked, pullStarted, pullMillis, message);
+    }
+
+    public WarmImageStatus withSources(final Set<String> sources) {
+        return create(image(), serverId(), server(), state(), sources, lastChecked(), pullStarted(), pullMillis(), message());
+    }
+
+    @JsonIgnore
+    public boolean isPulling() {
+        return QUEUED.equals(state()) || PULLING.equals(state());
+    }
+}
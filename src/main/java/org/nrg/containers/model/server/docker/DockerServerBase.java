@@ -18,18 +18,36 @@ public abstract class DockerServerBase {
     @JsonProperty("swarm-mode") public abstract boolean swarmMode();
     @JsonIgnore public abstract Date lastEventCheckTime();
 
+    /**
+     * The server's share of launches under weighted placement, relative to the other enabled servers. At least 1.
+     */
+    @JsonProperty("weight") public abstract int weight();
+
+    static int weightOrDefault(final Integer weight) {
+        return weight == null || weight < 1 ? 1 : weight;
+    }
+
     @AutoValue
     @JsonInclude(JsonInclude.Include.ALWAYS)
     public abstract static class DockerServer extends DockerServerBase {
         public static final DockerServer DEFAULT_SOCKET = DockerServer.create(0L, "Local socket", "unix:///var/run/docker.sock", null, false);
 
+        public static DockerServer create(final Long id,
+                                          final String name,
+                                          final String host,
+                                          final String certPath,
+                                          final Boolean swarmMode) {
+            return create(id, name, host, certPath, swarmMode, (Integer) null);
+        }
+
         @JsonCreator
         public static DockerServer create(@JsonProperty("id") final Long id,
                                           @JsonProperty("name") final String name,
                                           @JsonProperty("host") final String host,
                                           @JsonProperty("cert-path") final String certPath,
-                                          @JsonProperty("swarm-mode") final Boolean swarmMode) {
-            return create(id, name, host, certPath, swarmMode, null);
+                                          @JsonProperty("swarm-mode") final Boolean swarmMode,
+                                          @JsonProperty("weight") final Integer weight) {
+            return create(id, name, host, certPath, swarmMode, null, weight);
         }
 
         public static DockerServer create(final Long id,
@@ -38,13 +56,24 @@ public abstract class DockerServerBase {
                                           final String certPath,
                                           final Boolean swarmMode,
                                           final Date lastEventCheckTime) {
+            return create(id, name, host, certPath, swarmMode, lastEventCheckTime, null);
+        }
+
+        public static DockerServer create(final Long id,
+                                          final String name,
+                                          final String host,
+                                          final String certPath,
+                                          final Boolean swarmMode,
+                                          final Date lastEventCheckTime,
+                                          final Integer weight) {
             return new AutoValue_DockerServerBase_DockerServer(
                     id == null ? 0L : id,
                     StringUtils.isBlank(name) ? host : name,
                     host,
                     certPath,
                     swarmMode != null && swarmMode,
-                    lastEventCheckTime != null ? lastEventCheckTime : new Date()
+                    lastEventCheckTime != null ? lastEventCheckTime : new Date(),
+                    weightOrDefault(weight)
             );
         }
 
@@ -55,7 +84,8 @@ public abstract class DockerServerBase {
                     dockerServerEntity.getHost(),
                     dockerServerEntity.getCertPath(),
                     dockerServerEntity.getSwarmMode(),
-                    dockerServerEntity.getLastEventCheckTime()
+                    dockerServerEntity.getLastEventCheckTime(),
+                    dockerServerEntity.getWeight()
             );
         }
 
@@ -79,7 +109,8 @@ public abstract class DockerServerBase {
                             this.host(),
                             this.certPath(),
                             this.swarmMode(),
-                            newLastEventCheckTime
+                            newLastEventCheckTime,
+                            this.weight()
                     );
         }
     }
@@ -95,8 +126,9 @@ public abstract class DockerServerBase {
                                                   @JsonProperty("host") final String host,
                                                   @JsonProperty("cert-path") final String certPath,
                                                   @JsonProperty("swarm-mode") final Boolean swarmMode,
+                                                  @JsonProperty("weight") final Integer weight,
                                                   @JsonProperty("ping") final Boolean ping) {
-            return create(id == null ? 0L : id, name, host, certPath, swarmMode, new Date(0), ping);
+            return create(id == null ? 0L : id, name, host, certPath, swarmMode, new Date(0), weight, ping);
         }
 
         public static DockerServerWithPing create(final Long id,
@@ -105,6 +137,7 @@ public abstract class DockerServerBase {
                                                   final String certPath,
                                                   final Boolean swarmMode,
                                                   final Date lastEventCheckTime,
+                                                  final Integer weight,
                                                   final Boolean ping) {
             return new AutoValue_DockerServerBase_DockerServerWithPing(
                     id == null ? 0L : id,
@@ -113,6 +146,7 @@ public abstract class DockerServerBase {
                     certPath,
                     swarmMode != null && swarmMode,
                     lastEventCheckTime != null ? lastEventCheckTime : new Date(0),
+                    weightOrDefault(weight),
                     ping != null && ping);
         }
 
@@ -125,6 +159,7 @@ public abstract class DockerServerBase {
                     dockerServer.certPath(),
                     dockerServer.swarmMode(),
                     dockerServer.lastEventCheckTime(),
+                    dockerServer.weight(),
                     ping
             );
         }
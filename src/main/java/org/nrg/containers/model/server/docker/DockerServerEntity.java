@@ -17,6 +17,8 @@ public class DockerServerEntity extends AbstractHibernateEntity {
     private String certPath;
     private Date lastEventCheckTime;
     private boolean swarmMode;
+    private Integer weight;
+    private Boolean additional;
 
     public static DockerServerEntity create(final DockerServer dockerServer) {
         return new DockerServerEntity().update(dockerServer);
@@ -28,6 +30,7 @@ public class DockerServerEntity extends AbstractHibernateEntity {
         this.certPath = dockerServer.certPath();
         this.swarmMode = dockerServer.swarmMode();
         this.lastEventCheckTime = dockerServer.lastEventCheckTime();
+        this.weight = dockerServer.weight();
         return this;
     }
 
@@ -75,6 +78,25 @@ public class DockerServerEntity extends AbstractHibernateEntity {
         this.swarmMode = swarmMode;
     }
 
+    public Integer getWeight() {
+        return weight;
+    }
+
+    public void setWeight(final Integer weight) {
+        this.weight = weight;
+    }
+
+    /**
+     * Whether this server was added alongside the default server, rather than set as the default server.
+     */
+    public Boolean getAdditional() {
+        return additional;
+    }
+
+    public void setAdditional(final Boolean additional) {
+        this.additional = additional;
+    }
+
     @Override
     public boolean equals(final Object o) {
         if (this == o) return true;
@@ -85,12 +107,14 @@ public class DockerServerEntity extends AbstractHibernateEntity {
                 Objects.equals(this.name, that.name) &&
                 Objects.equals(this.host, that.host) &&
                 Objects.equals(this.certPath, that.certPath) &&
-                Objects.equals(this.lastEventCheckTime, that.lastEventCheckTime);
+                Objects.equals(this.lastEventCheckTime, that.lastEventCheckTime) &&
+                Objects.equals(this.weight, that.weight) &&
+                Objects.equals(this.additional, that.additional);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(super.hashCode(), name, host, certPath, lastEventCheckTime, swarmMode);
+        return Objects.hash(super.hashCode(), name, host, certPath, lastEventCheckTime, swarmMode, weight, additional);
     }
 
 }
@@ -0,0 +1,33 @@
+package org.nrg.containers.model.server.docker;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.auto.value.AutoValue;
+
+/**
+ * How busy an enabled Docker server is, as reported by {@code docker info}. Used to place new containers.
+ */
+@AutoValue
+public abstract class DockerServerLoad {
+    @JsonProperty("server-id") public abstract long serverId();
+    @JsonProperty("server-name") public abstract String serverName();
+    @JsonProperty("running-containers") public abstract int runningContainers();
+    @JsonProperty("memory-bytes") public abstract long memoryBytes();
+    @JsonProperty("weight") public abstract int weight();
+
+    @JsonCreator
+    public static DockerServerLoad create(@JsonProperty("server-id") final long serverId,
+                                          @JsonProperty("server-name") final String serverName,
+                                          @JsonProperty("running-containers") final int runningContainers,
+                                          @JsonProperty("memory-bytes") final long memoryBytes,
+                                          @JsonProperty("weight") final int weight) {
+        return new AutoValue_DockerServerLoad(serverId, serverName, runningContainers, memoryBytes, weight);
+    }
+
+    /**
+     * Count one more running container, for a container placed here since the load was read.
+     */
+    public DockerServerLoad plusOne() {
+        return create(serverId(), serverName(), runningContainers() + 1, memoryBytes(), weight());
+    }
+}
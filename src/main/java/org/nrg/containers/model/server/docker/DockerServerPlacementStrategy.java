@@ -0,0 +1,86 @@
+package org.nrg.containers.model.server.docker;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * How to pick the Docker server for a new container when more than one server is enabled.
+ *
+ * LEAST_CONTAINERS: The server running the fewest containers.
+ * MOST_FREE_MEMORY: The server with the most memory per container, counting the new one. Docker reports a server's
+ *                   total memory, not what is free, so the memory is assumed to be shared evenly by its containers.
+ * WEIGHTED: The server running the fewest containers relative to its weight.
+ *
+ * Ties go to the server listed first.
+ */
+public enum DockerServerPlacementStrategy {
+    LEAST_CONTAINERS("least-containers"),
+    MOST_FREE_MEMORY("most-free-memory"),
+    WEIGHTED("weighted");
+
+    private final String name;
+
+    DockerServerPlacementStrategy(final String name) {
+        this.name = name;
+    }
+
+    @JsonValue
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return The load of the server to place the next container on, or null if there are no servers.
+     */
+    @Nullable
+    public DockerServerLoad choose(final List<DockerServerLoad> loads) {
+        DockerServerLoad chosen = null;
+        double chosenScore = Double.MAX_VALUE;
+        for (final DockerServerLoad load : loads) {
+            final double score = score(load);
+            if (chosen == null || score < chosenScore) {
+                chosen = load;
+                chosenScore = score;
+            }
+        }
+        return chosen;
+    }
+
+    // Lower is better
+    private double score(final DockerServerLoad load) {
+        switch (this) {
+            case MOST_FREE_MEMORY:
+                return -((double) load.memoryBytes() / (load.runningContainers() + 1));
+            case WEIGHTED:
+                return (double) (load.runningContainers() + 1) / Math.max(1, load.weight());
+            case LEAST_CONTAINERS:
+            default:
+                return load.runningContainers();
+        }
+    }
+
+    /**
+     * @return The Docker placement strategy with the given name, or LEAST_CONTAINERS if the name is blank.
+     * @throws IllegalArgumentException If there is no Docker placement strategy with the given name.
+     */
+    @JsonCreator
+    public static DockerServerPlacementStrategy fromName(final String name) {
+        if (name == null || name.trim().isEmpty()) {
+            return LEAST_CONTAINERS;
+        }
+        for (final DockerServerPlacementStrategy strategy : values()) {
+            if (strategy.name.equalsIgnoreCase(name.trim())) {
+                return strategy;
+            }
+        }
+        final List<String> names = new ArrayList<>();
+        for (final DockerServerPlacementStrategy strategy : values()) {
+            names.add(strategy.name);
+        }
+        throw new IllegalArgumentException("Unknown Docker placement strategy \"" + name + "\". Use one of " + names + ".");
+    }
+}
@@ -1,5 +1,7 @@
 package org.nrg.containers.rest;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import org.apache.commons.lang3.StringUtils;
@@ -9,6 +11,7 @@ import org.nrg.containers.exceptions.CommandValidationException;
 import org.nrg.containers.exceptions.ContainerException;
 import org.nrg.containers.exceptions.DockerServerException;
 import org.nrg.containers.exceptions.NoDockerServerException;
+import org.nrg.containers.model.configuration.CommandCatalogReport;
 import org.nrg.containers.model.configuration.CommandConfiguration;
 import org.nrg.containers.model.configuration.ProjectEnabledReport;
 import org.nrg.containers.services.CommandService;
@@ -24,15 +27,22 @@ import org.nrg.xft.security.UserI;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.util.DigestUtils;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.bind.annotation.ResponseStatus;
 
+import java.nio.charset.StandardCharsets;
+
 import static org.nrg.xdat.security.helpers.AccessLevel.Admin;
 import static org.nrg.xdat.security.helpers.AccessLevel.Owner;
 import static org.nrg.xdat.security.helpers.AccessLevel.Read;
@@ -46,14 +56,61 @@ import static org.springframework.web.bind.annotation.RequestMethod.PUT;
 public class CommandConfigurationRestApi extends AbstractXapiRestController {
     private static final Logger log = LoggerFactory.getLogger(CommandConfigurationRestApi.class);
 
+    private static final String JSON = MediaType.APPLICATION_JSON_UTF8_VALUE;
+
     private CommandService commandService;
+    private ObjectMapper mapper;
 
     @Autowired
     public CommandConfigurationRestApi(final CommandService commandService,
+                                       final ObjectMapper objectMapper,
                                        final UserManagementServiceI userManagementService,
                                        final RoleHolder roleHolder) {
         super(userManagementService, roleHolder);
         this.commandService = commandService;
+        this.mapper = objectMapper;
+    }
+
+    // Everything the settings pages need, in one request
+    @XapiRequestMapping(value = {"/commands/catalog"}, method = GET, produces = JSON, restrictTo = Admin)
+    @ApiOperation(value = "Get all commands with their wrapper configurations (site)",
+            notes = "Send the ETag back in If-None-Match to get a 304 when nothing has changed.")
+    public ResponseEntity<String> getCatalog(final @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch)
+            throws JsonProcessingException {
+        return catalogResponse(commandService.getCatalogReport(null), ifNoneMatch);
+    }
+
+    @XapiRequestMapping(value = {"/projects/{project}/commands/catalog"}, method = GET, produces = JSON, restrictTo = Read)
+    @ApiOperation(value = "Get all commands with their wrapper configurations (project)",
+            notes = "Send the ETag back in If-None-Match to get a 304 when nothing has changed.")
+    public ResponseEntity<String> getCatalog(final @PathVariable String project,
+                                             final @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch)
+            throws JsonProcessingException {
+        return catalogResponse(commandService.getCatalogReport(project), ifNoneMatch);
+    }
+
+    private ResponseEntity<String> catalogResponse(final CommandCatalogReport report, final String ifNoneMatch)
+            throws JsonProcessingException {
+        // The ETag is a hash of the body, so it is the same on every node and only changes when the content does
+        final String body = mapper.writeValueAsString(report);
+        final String etag = "\"" + DigestUtils.md5DigestAsHex(body.getBytes(StandardCharsets.UTF_8)) + "\"";
+        if (etagMatches(etag, ifNoneMatch)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).cacheControl(CacheControl.noCache()).build();
+        }
+        return ResponseEntity.ok().eTag(etag).cacheControl(CacheControl.noCache()).body(body);
+    }
+
+    private static boolean etagMatches(final String etag, final String ifNoneMatch) {
+        if (StringUtils.isBlank(ifNoneMatch)) {
+            return false;
+        }
+        for (final String candidate : ifNoneMatch.split(",")) {
+            final String trimmed = StringUtils.removeStart(candidate.trim(), "W/");
+            if (trimmed.equals("*") || trimmed.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
     }
 
     // Configure for site + command wrapper
@@ -64,7 +121,7 @@ public class CommandConfigurationRestApi extends AbstractXapiRestController {
                                                     final @PathVariable String wrapperName,
                                                     final @RequestParam(required = false, defaultValue = "true") boolean enable,
                                                     final @RequestParam(required = false) String reason)
-            throws CommandConfigurationException, NotFoundException {
+            throws CommandConfigurationException, CommandValidationException, NotFoundException {
         final UserI userI = XDAT.getUserDetails();
 
         commandService.configureForSite(commandConfiguration, commandId, wrapperName, enable, userI.getLogin(), reason);
@@ -77,7 +134,7 @@ public class CommandConfigurationRestApi extends AbstractXapiRestController {
                                                     final @PathVariable long wrapperId,
                                                     final @RequestParam(required = false, defaultValue = "true") boolean enable,
                                                     final @RequestParam(required = false) String reason)
-            throws CommandConfigurationException, NotFoundException {
+            throws CommandConfigurationException, CommandValidationException, NotFoundException {
         final UserI userI = XDAT.getUserDetails();
 
         commandService.configureForSite(commandConfiguration, wrapperId, enable, userI.getLogin(), reason);
@@ -129,7 +186,7 @@ public class CommandConfigurationRestApi extends AbstractXapiRestController {
                                                     final @PathVariable String wrapperName,
                                                     final @RequestParam(required = false, defaultValue = "true") boolean enable,
                                                     final @RequestParam(required = false) String reason)
-            throws CommandConfigurationException, NotFoundException {
+            throws CommandConfigurationException, CommandValidationException, NotFoundException {
         final UserI userI = XDAT.getUserDetails();
 
         commandService.configureForProject(commandConfiguration, project, commandId, wrapperName, enable, userI.getLogin(), reason);
@@ -143,7 +200,7 @@ public class CommandConfigurationRestApi extends AbstractXapiRestController {
                                                     final @PathVariable long wrapperId,
                                                     final @RequestParam(required = false, defaultValue = "true") boolean enable,
                                                     final @RequestParam(required = false) String reason)
-            throws CommandConfigurationException, NotFoundException {
+            throws CommandConfigurationException, CommandValidationException, NotFoundException {
         final UserI userI = XDAT.getUserDetails();
 
         commandService.configureForProject(commandConfiguration, project, wrapperId, enable, userI.getLogin(), reason);
@@ -370,7 +427,7 @@ public class CommandConfigurationRestApi extends AbstractXapiRestController {
     @ResponseStatus(value = HttpStatus.BAD_REQUEST)
     @ExceptionHandler(value = {CommandValidationException.class})
     public String handleBadCommand(final CommandValidationException e) {
-        String message = "Invalid command";
+        String message = "Invalid configuration";
         if (e != null && e.getErrors() != null && !e.getErrors().isEmpty()) {
             message += ":\n\t";
             message += StringUtils.join(e.getErrors(), "\n\t");
@@ -6,6 +6,7 @@ import io.swagger.annotations.ApiOperation;
 import org.apache.commons.lang3.StringUtils;
 import org.nrg.containers.exceptions.BadRequestException;
 import org.nrg.containers.model.CommandEventMapping;
+import org.nrg.containers.model.container.LaunchPriority;
 import org.nrg.containers.services.CommandEventMappingService;
 import org.nrg.framework.annotations.XapiRestController;
 import org.nrg.framework.exceptions.NotFoundException;
@@ -89,6 +90,9 @@ public class CommandEventMappingRestApi extends AbstractXapiRestController {
             if(StringUtils.isBlank(commandEventMapping.getEventType())){
                 throw new BadRequestException("Event type must be defined and cannot be empty.");
             }
+            if (StringUtils.isNotBlank(commandEventMapping.getPriority()) && LaunchPriority.fromName(commandEventMapping.getPriority()) == null) {
+                throw new BadRequestException("Priority must be \"interactive\", \"bulk\", or \"event\".");
+            }
             final UserI userI = XDAT.getUserDetails();
             commandEventMapping.setSubscriptionUserName(userI.getUsername());
             final CommandEventMapping created = commandEventMappingService.create(commandEventMapping);
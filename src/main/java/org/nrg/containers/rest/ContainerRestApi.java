@@ -1,13 +1,22 @@
 package org.nrg.containers.rest;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.base.Function;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiParam;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.time.DateFormatUtils;
+import org.nrg.containers.exceptions.BadRequestException;
 import org.nrg.containers.exceptions.DockerServerException;
 import org.nrg.containers.exceptions.NoDockerServerException;
 import org.nrg.containers.model.container.auto.Container;
+import org.nrg.containers.model.container.auto.ContainerFilter;
+import org.nrg.containers.model.container.auto.ContainerStats;
+import org.nrg.containers.model.container.auto.FinalizationNodeStats;
+import org.nrg.containers.model.container.auto.QueuedLaunch;
+import org.nrg.containers.services.ContainerArchiveService;
 import org.nrg.containers.services.ContainerService;
 import org.nrg.framework.annotations.XapiRestController;
 import org.nrg.framework.exceptions.NotFoundException;
@@ -21,6 +30,7 @@ import org.nrg.xft.security.UserI;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
@@ -28,16 +38,24 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.bind.annotation.ResponseStatus;
 
 import javax.servlet.http.HttpServletResponse;
+import java.io.BufferedWriter;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Date;
 import java.util.List;
 import java.util.Map;
+import java.util.zip.GZIPOutputStream;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
@@ -54,23 +72,43 @@ public class ContainerRestApi extends AbstractXapiRestController {
     private static final String JSON = MediaType.APPLICATION_JSON_UTF8_VALUE;
     private static final String TEXT = MediaType.TEXT_PLAIN_VALUE;
     private static final String ZIP = "application/zip";
+    private static final String GZIP = "application/gzip";
+    private static final String NDJSON = "application/x-ndjson";
+    private static final String CSV = "text/csv";
     private static final String ATTACHMENT_DISPOSITION = "attachment; filename=\"%s.%s\"";
+    private static final int EXPORT_BUFFER_SIZE = 64 * 1024;
+    private static final List<String> CSV_HEADERS = Arrays.asList(
+            "id", "command-id", "wrapper-id", "container-id", "service-id", "workflow-id", "user-id",
+            "project", "status", "status-time", "docker-image", "subtype", "parent-database-id", "exit-code");
 
     private ContainerService containerService;
+    private ContainerArchiveService containerArchiveService;
+    private ObjectMapper mapper;
 
     @Autowired
     public ContainerRestApi(final ContainerService containerService,
+                            final ContainerArchiveService containerArchiveService,
+                            final ObjectMapper objectMapper,
                             final UserManagementServiceI userManagementService,
                             final RoleHolder roleHolder) {
         super(userManagementService, roleHolder);
         this.containerService = containerService;
+        this.containerArchiveService = containerArchiveService;
+        this.mapper = objectMapper;
     }
 
     @XapiRequestMapping(method = GET, restrictTo = Admin)
-    @ApiOperation(value = "Get all Containers")
+    @ApiOperation(value = "Get all Containers", notes = "Optionally filtered by status (prefix match), command, wrapper, user, project, and status time")
     @ResponseBody
-    public List<Container> getAll() {
-        return Lists.transform(containerService.getAll(), new Function<Container, Container>() {
+    public List<Container> getAll(final @RequestParam(required = false) String status,
+                                  final @RequestParam(required = false) Long commandId,
+                                  final @RequestParam(required = false) Long wrapperId,
+                                  final @RequestParam(required = false) String userId,
+                                  final @RequestParam(required = false) String project,
+                                  final @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date since,
+                                  final @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date until) {
+        final ContainerFilter filter = buildFilter(status, commandId, wrapperId, userId, project, since, until);
+        return Lists.transform(containerService.getAll(filter), new Function<Container, Container>() {
             @Override
             public Container apply(final Container input) {
                 return scrubPasswordEnv(input);
@@ -78,6 +116,76 @@ public class ContainerRestApi extends AbstractXapiRestController {
         });
     }
 
+    @XapiRequestMapping(value = "/stats", method = GET, produces = JSON, restrictTo = Admin)
+    @ApiOperation(value = "Get Container statistics",
+            notes = "Counts by status, user, project, and wrapper, with runtime averages and p50 / p95 per wrapper. Cached briefly.")
+    @ResponseBody
+    public ContainerStats getStats() {
+        return containerService.getStats();
+    }
+
+    @XapiRequestMapping(value = "/queue", method = GET, produces = JSON, restrictTo = Admin)
+    @ApiOperation(value = "Get the launch queue",
+            notes = "Launches waiting for the per-project, per-user, or per-wrapper concurrency limits, in the order they will be dispatched, with queue position and time waited.")
+    @ResponseBody
+    public List<QueuedLaunch> getLaunchQueue() {
+        return containerService.getLaunchQueue();
+    }
+
+    @XapiRequestMapping(value = "/finalization/nodes", method = GET, produces = JSON, restrictTo = Admin)
+    @ApiOperation(value = "Get finalization throughput by node",
+            notes = "Finalization work each node of the cluster claimed, finished, and failed over the last hour, and how much it is finalizing now.")
+    @ResponseBody
+    public List<FinalizationNodeStats> getFinalizationNodeStats() {
+        return containerService.getFinalizationNodeStats();
+    }
+
+    @XapiRequestMapping(value = "/export", method = GET, restrictTo = Admin)
+    @ApiOperation(value = "Export Containers",
+            notes = "Streams containers as NDJSON (one container JSON per line) or CSV, gzipped by default. Takes the same filters as the list of all containers.")
+    public void export(final @RequestParam(required = false, defaultValue = "ndjson") @ApiParam(allowableValues = "ndjson, csv") String format,
+                       final @RequestParam(required = false, defaultValue = "true") boolean gzip,
+                       final @RequestParam(required = false) String status,
+                       final @RequestParam(required = false) Long commandId,
+                       final @RequestParam(required = false) Long wrapperId,
+                       final @RequestParam(required = false) String userId,
+                       final @RequestParam(required = false) String project,
+                       final @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date since,
+                       final @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date until,
+                       final HttpServletResponse response) throws IOException, BadRequestException {
+        final boolean csv = "csv".equalsIgnoreCase(format);
+        if (!csv && !"ndjson".equalsIgnoreCase(format)) {
+            throw new BadRequestException("Export format must be \"ndjson\" or \"csv\".");
+        }
+        final ContainerFilter filter = buildFilter(status, commandId, wrapperId, userId, project, since, until);
+
+        final String extension = (csv ? "csv" : "ndjson") + (gzip ? ".gz" : "");
+        response.setStatus(HttpStatus.OK.value());
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, getAttachmentDisposition("containers", extension));
+        response.setHeader(HttpHeaders.CONTENT_TYPE, gzip ? GZIP : (csv ? CSV : NDJSON));
+
+        final OutputStream outputStream = gzip ?
+                new GZIPOutputStream(response.getOutputStream(), EXPORT_BUFFER_SIZE) :
+                response.getOutputStream();
+        try (final Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8), EXPORT_BUFFER_SIZE)) {
+            if (csv) {
+                writeCsvLine(writer, CSV_HEADERS);
+            }
+            containerService.export(filter, new ContainerService.ContainerHandler() {
+                @Override
+                public void handle(final Container container) throws IOException {
+                    final Container scrubbed = scrubPasswordEnv(container);
+                    if (csv) {
+                        writeCsvLine(writer, toCsvValues(scrubbed));
+                    } else {
+                        writer.write(mapper.writeValueAsString(scrubbed));
+                        writer.write('\n');
+                    }
+                }
+            });
+        }
+    }
+
     @XapiRequestMapping(value = "/{id}", method = GET, restrictTo = Admin)
     @ApiOperation(value = "Get Containers by database ID")
     @ResponseBody
@@ -85,6 +193,28 @@ public class ContainerRestApi extends AbstractXapiRestController {
         return scrubPasswordEnv(containerService.get(id));
     }
 
+    @XapiRequestMapping(value = "/archive", method = GET, restrictTo = Admin)
+    @ApiOperation(value = "Get archived Containers", notes = "Finalized containers moved out of the live tables by the retention job, newest first")
+    @ResponseBody
+    public List<Container> getArchived(final @RequestParam(required = false, defaultValue = "0") int page,
+                                       final @RequestParam(required = false, defaultValue = "100") int size) {
+        final int pageSize = Math.max(1, Math.min(size, 1000));
+        return Lists.transform(containerArchiveService.getArchived(Math.max(0, page) * pageSize, pageSize),
+                new Function<Container, Container>() {
+                    @Override
+                    public Container apply(final Container input) {
+                        return scrubPasswordEnv(input);
+                    }
+                });
+    }
+
+    @XapiRequestMapping(value = "/archive/{id}", method = GET, restrictTo = Admin)
+    @ApiOperation(value = "Get archived Container by database ID or container server ID")
+    @ResponseBody
+    public Container getArchived(final @PathVariable String id) throws NotFoundException {
+        return scrubPasswordEnv(containerArchiveService.getArchived(id));
+    }
+
     @XapiRequestMapping(value = "/{id}", method = DELETE, restrictTo = Admin)
     @ApiOperation(value = "Get Container by container server ID")
     public ResponseEntity<Void> delete(final @PathVariable String id) throws NotFoundException {
@@ -181,10 +311,73 @@ public class ContainerRestApi extends AbstractXapiRestController {
 
     }
 
+    private ContainerFilter buildFilter(final String status,
+                                        final Long commandId,
+                                        final Long wrapperId,
+                                        final String userId,
+                                        final String project,
+                                        final Date since,
+                                        final Date until) {
+        return ContainerFilter.builder()
+                .status(status)
+                .commandId(commandId)
+                .wrapperId(wrapperId)
+                .userId(userId)
+                .project(project)
+                .since(since)
+                .until(until)
+                .build();
+    }
+
+    private static List<String> toCsvValues(final Container container) {
+        return Arrays.asList(
+                String.valueOf(container.databaseId()),
+                String.valueOf(container.commandId()),
+                String.valueOf(container.wrapperId()),
+                container.containerId(),
+                container.serviceId(),
+                container.workflowId(),
+                container.userId(),
+                container.project(),
+                container.status(),
+                container.statusTime() == null ? null : DateFormatUtils.ISO_DATETIME_TIME_ZONE_FORMAT.format(container.statusTime()),
+                container.dockerImage(),
+                container.subtype(),
+                container.parentDatabaseId() == null ? null : String.valueOf(container.parentDatabaseId()),
+                container.exitCode()
+        );
+    }
+
+    private static void writeCsvLine(final Writer writer, final List<String> values) throws IOException {
+        for (int i = 0; i < values.size(); i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            final String value = values.get(i);
+            if (value == null) {
+                continue;
+            }
+            if (StringUtils.containsAny(value, ',', '"', '\n', '\r')) {
+                writer.write('"');
+                writer.write(value.replace("\"", "\"\""));
+                writer.write('"');
+            } else {
+                writer.write(value);
+            }
+        }
+        writer.write('\n');
+    }
+
     private static String getAttachmentDisposition(final String name, final String extension) {
         return String.format(ATTACHMENT_DISPOSITION, name, extension);
     }
 
+    @ResponseStatus(value = HttpStatus.BAD_REQUEST)
+    @ExceptionHandler(value = {BadRequestException.class})
+    public String handleBadRequest(final Exception e) {
+        return e.getMessage();
+    }
+
     @ResponseStatus(value = HttpStatus.NOT_FOUND)
     @ExceptionHandler(value = {NotFoundException.class})
     public String handleNotFound(final Exception e) {
@@ -0,0 +1,96 @@
+package org.nrg.containers.rest;
+
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import org.nrg.containers.exceptions.BadRequestException;
+import org.nrg.containers.model.configuration.ContainerServicePrefsBean;
+import org.nrg.framework.annotations.XapiRestController;
+import org.nrg.framework.exceptions.NotFoundException;
+import org.nrg.prefs.exceptions.InvalidPreferenceName;
+import org.nrg.xapi.rest.AbstractXapiRestController;
+import org.nrg.xapi.rest.XapiRequestMapping;
+import org.nrg.xdat.security.services.RoleHolder;
+import org.nrg.xdat.security.services.UserManagementServiceI;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import java.util.Map;
+
+import static org.nrg.xdat.security.helpers.AccessLevel.Admin;
+import static org.springframework.web.bind.annotation.RequestMethod.GET;
+import static org.springframework.web.bind.annotation.RequestMethod.POST;
+
+@XapiRestController
+@RequestMapping("/container-service/settings")
+@Api("Site-wide settings for the XNAT Container Service")
+public class ContainerServiceSettingsRestApi extends AbstractXapiRestController {
+    private static final Logger log = LoggerFactory.getLogger(ContainerServiceSettingsRestApi.class);
+
+    private static final String JSON = MediaType.APPLICATION_JSON_UTF8_VALUE;
+
+    private final ContainerServicePrefsBean containerServicePrefsBean;
+
+    @Autowired
+    public ContainerServiceSettingsRestApi(final ContainerServicePrefsBean containerServicePrefsBean,
+                                           final UserManagementServiceI userManagementService,
+                                           final RoleHolder roleHolder) {
+        super(userManagementService, roleHolder);
+        this.containerServicePrefsBean = containerServicePrefsBean;
+    }
+
+    @XapiRequestMapping(method = GET, produces = JSON, restrictTo = Admin)
+    @ApiOperation(value = "Get all container service settings")
+    @ResponseBody
+    public Map<String, Object> getSettings() {
+        return containerServicePrefsBean.getPreferenceMap();
+    }
+
+    @XapiRequestMapping(value = "/{name}", method = GET, produces = JSON, restrictTo = Admin)
+    @ApiOperation(value = "Get one container service setting")
+    @ResponseBody
+    public Object getSetting(final @PathVariable String name) throws NotFoundException {
+        final Map<String, Object> settings = containerServicePrefsBean.getPreferenceMap();
+        if (!settings.containsKey(name)) {
+            throw new NotFoundException("No container service setting named \"" + name + "\".");
+        }
+        return settings.get(name);
+    }
+
+    @XapiRequestMapping(method = POST, consumes = JSON, restrictTo = Admin)
+    @ApiOperation(value = "Set container service settings")
+    public ResponseEntity<Void> setSettings(final @RequestBody Map<String, String> settings)
+            throws InvalidPreferenceName, BadRequestException {
+        try {
+            containerServicePrefsBean.setPreferences(settings);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException(e.getMessage());
+        }
+        return ResponseEntity.ok().build();
+    }
+
+    @ResponseStatus(value = HttpStatus.NOT_FOUND)
+    @ExceptionHandler(value = {NotFoundException.class})
+    public String handleNotFound(final Exception e) {
+        final String message = e.getMessage();
+        log.debug(message);
+        return message;
+    }
+
+    @ResponseStatus(value = HttpStatus.BAD_REQUEST)
+    @ExceptionHandler(value = {BadRequestException.class, InvalidPreferenceName.class})
+    public String handleBadRequest(final Exception e) {
+        final String message = "Bad request:\n" + e.getMessage();
+        log.debug(message);
+        return message;
+    }
+}
@@ -13,14 +13,19 @@ import org.nrg.containers.exceptions.NoDockerServerException;
 import org.nrg.containers.exceptions.NotUniqueException;
 import org.nrg.containers.exceptions.UnauthorizedException;
 import org.nrg.containers.model.command.auto.Command;
+import org.nrg.containers.model.container.auto.ContainerPruneReport;
 import org.nrg.containers.model.dockerhub.DockerHubBase.DockerHub;
 import org.nrg.containers.model.dockerhub.DockerHubBase.DockerHubWithPing;
 import org.nrg.containers.model.image.docker.DockerImage;
 import org.nrg.containers.model.image.docker.DockerImageAndCommandSummary;
+import org.nrg.containers.model.image.docker.WarmImageStatus;
 import org.nrg.containers.model.server.docker.DockerServerBase.DockerServer;
 import org.nrg.containers.model.server.docker.DockerServerBase.DockerServerWithPing;
+import org.nrg.containers.model.server.docker.DockerServerLoad;
+import org.nrg.containers.services.ContainerCleanupService;
 import org.nrg.containers.services.DockerHubService.DockerHubDeleteDefaultException;
 import org.nrg.containers.services.DockerService;
+import org.nrg.containers.services.ImageWarmerService;
 import org.nrg.framework.annotations.XapiRestController;
 import org.nrg.framework.exceptions.NotFoundException;
 import org.nrg.framework.exceptions.NrgServiceRuntimeException;
@@ -64,15 +69,21 @@ public class DockerRestApi extends AbstractXapiRestController {
     private static final String ALL = MediaType.ALL_VALUE;
 
     private DockerService dockerService;
+    private ImageWarmerService imageWarmerService;
+    private ContainerCleanupService containerCleanupService;
     private ObjectMapper mapper;
 
     @Autowired
     public DockerRestApi(final DockerService dockerService,
+                         final ImageWarmerService imageWarmerService,
+                         final ContainerCleanupService containerCleanupService,
                          final ObjectMapper objectMapper,
                          final UserManagementServiceI userManagementService,
                          final RoleHolder roleHolder) {
         super(userManagementService, roleHolder);
         this.dockerService = dockerService;
+        this.imageWarmerService = imageWarmerService;
+        this.containerCleanupService = containerCleanupService;
         this.mapper = objectMapper;
     }
 
@@ -105,6 +116,49 @@ public class DockerRestApi extends AbstractXapiRestController {
         return new ResponseEntity<>(server, HttpStatus.CREATED);
     }
 
+    @ApiOperation(value = "Enabled Docker servers",
+            notes = "Returns the default Docker server, then any servers added alongside it. New containers are placed on any of them.")
+    @XapiRequestMapping(value = "/servers", method = GET, produces = JSON)
+    @ResponseBody
+    public List<DockerServer> getServers() {
+        return dockerService.getEnabledServers();
+    }
+
+    @ApiOperation(value = "Add a Docker server",
+            notes = "Enable another Docker server alongside the default server. Its mount paths must reach the same files as the XNAT server's.")
+    @ApiResponses({
+            @ApiResponse(code = 201, message = "The Docker server was added"),
+            @ApiResponse(code = 400, message = "Must set the \"host\" property in request body"),
+            @ApiResponse(code = 500, message = "Unexpected error")})
+    @XapiRequestMapping(value = "/servers", method = POST, restrictTo = Admin)
+    public ResponseEntity<DockerServer> addServer(final @RequestBody DockerServer dockerServer)
+            throws BadRequestException {
+        if (StringUtils.isBlank(dockerServer.host())) {
+            throw new BadRequestException("Must set the \"host\" property in request body.");
+        }
+        return new ResponseEntity<>(dockerService.addServer(dockerServer), HttpStatus.CREATED);
+    }
+
+    @ApiOperation(value = "Disable a Docker server", notes = "Stop placing new containers on the server.")
+    @ApiResponses({
+            @ApiResponse(code = 204, message = "The Docker server was disabled"),
+            @ApiResponse(code = 404, message = "No enabled Docker server with that id"),
+            @ApiResponse(code = 500, message = "Unexpected error")})
+    @XapiRequestMapping(value = "/servers/{id:" + ID_REGEX + "}", method = DELETE, restrictTo = Admin)
+    @ResponseBody
+    public ResponseEntity<Void> disableServer(final @PathVariable long id) throws NotFoundException {
+        dockerService.disableServer(id);
+        return ResponseEntity.noContent().build();
+    }
+
+    @ApiOperation(value = "Docker server loads",
+            notes = "Running containers, memory, and weight of each enabled Docker server that answers, as used to place new containers.")
+    @XapiRequestMapping(value = "/servers/load", method = GET, produces = JSON, restrictTo = Admin)
+    @ResponseBody
+    public List<DockerServerLoad> getServerLoads() {
+        return dockerService.getServerLoads();
+    }
+
     @XapiRequestMapping(value = "/server/ping", method = GET)
     @ApiOperation(value = "Ping docker server.", notes = "Returns \"OK\" on success.")
     @ResponseBody
@@ -312,6 +366,48 @@ public class DockerRestApi extends AbstractXapiRestController {
         return dockerService.saveFromImageLabels(imageId);
     }
 
+    @ApiOperation(value = "Get image warmer status",
+            notes = "Returns the images the image warmer keeps on the Docker server, and whether each is there or being pulled.")
+    @XapiRequestMapping(value = "/image-warmer", method = GET, produces = JSON, restrictTo = Admin)
+    @ResponseBody
+    public List<WarmImageStatus> getImageWarmerStatus() {
+        return imageWarmerService.getStatus();
+    }
+
+    @ApiOperation(value = "Warm images now",
+            notes = "Starts pulling every image the image warmer keeps on the Docker server that is not there yet. " +
+                    "Returns without waiting for the pulls.")
+    @XapiRequestMapping(value = "/image-warmer", method = POST, produces = JSON, restrictTo = Admin)
+    @ResponseBody
+    public List<WarmImageStatus> warmImages() {
+        imageWarmerService.warmAll();
+        return imageWarmerService.getStatus();
+    }
+
+    @ApiOperation(value = "Get last prune report",
+            notes = "Returns what the last prune of the Docker server on this node removed.")
+    @ApiResponses({
+            @ApiResponse(code = 200, message = "The last prune report"),
+            @ApiResponse(code = 204, message = "This node has not pruned the Docker server yet")})
+    @XapiRequestMapping(value = "/prune", method = GET, produces = JSON, restrictTo = Admin)
+    @ResponseBody
+    public ResponseEntity<ContainerPruneReport> getLastPruneReport() {
+        final ContainerPruneReport report = containerCleanupService.getLastPruneReport();
+        if (report == null) {
+            return ResponseEntity.noContent().build();
+        }
+        return ResponseEntity.ok(report);
+    }
+
+    @ApiOperation(value = "Prune the Docker server now",
+            notes = "Removes finalized containers the removal policy no longer keeps, finalized setup containers, " +
+                    "and dangling images. Returns what was removed.")
+    @XapiRequestMapping(value = "/prune", method = POST, produces = JSON, restrictTo = Admin)
+    @ResponseBody
+    public ContainerPruneReport prune() {
+        return containerCleanupService.prune();
+    }
+
     private void checkImageOrThrow(final String image) throws BadRequestException {
         if (!image.contains("/")) {
             throw new BadRequestException(String.format("Cannot pull an image by ID."));
@@ -12,11 +12,13 @@ import org.nrg.containers.exceptions.ContainerException;
 import org.nrg.containers.exceptions.DockerServerException;
 import org.nrg.containers.exceptions.NoDockerServerException;
 import org.nrg.containers.exceptions.UnauthorizedException;
+import org.nrg.containers.model.bulklaunch.auto.BulkLaunchJob;
 import org.nrg.containers.model.command.auto.LaunchReport;
 import org.nrg.containers.model.command.auto.LaunchUi;
 import org.nrg.containers.model.command.auto.ResolvedCommand.PartiallyResolvedCommand;
 import org.nrg.containers.model.configuration.CommandConfiguration;
-import org.nrg.containers.model.container.auto.Container;
+import org.nrg.containers.services.BulkLaunchJobService;
+import org.nrg.containers.services.BulkLaunchService;
 import org.nrg.containers.services.CommandResolutionService;
 import org.nrg.containers.services.CommandService;
 import org.nrg.containers.services.ContainerService;
@@ -27,10 +29,14 @@ import org.nrg.xapi.rest.XapiRequestMapping;
 import org.nrg.xdat.XDAT;
 import org.nrg.xdat.security.services.RoleHolder;
 import org.nrg.xdat.security.services.UserManagementServiceI;
+import org.nrg.xft.XFTTable;
+import org.nrg.xft.db.MaterializedView;
+import org.nrg.xft.db.MaterializedViewI;
 import org.nrg.xft.security.UserI;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -44,6 +50,12 @@ import springfox.documentation.annotations.ApiIgnore;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import javax.servlet.http.HttpServletResponse;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Map;
 
@@ -59,6 +71,10 @@ public class LaunchRestApi extends AbstractXapiRestController {
     private static final String JSON = MediaType.APPLICATION_JSON_UTF8_VALUE;
     private static final String TEXT = MediaType.TEXT_PLAIN_VALUE;
     private static final String FORM = MediaType.APPLICATION_FORM_URLENCODED_VALUE;
+    private static final String NDJSON = "application/x-ndjson";
+
+    private static final int SEARCH_LAUNCH_PAGE_SIZE = 500;
+    private static final String SEARCH_KEY_COLUMN = "key";
 
     private static final String ID_REGEX = "\\d+";
     private static final String NAME_REGEX = "\\d*[^\\d]+\\d*";
@@ -66,17 +82,23 @@ public class LaunchRestApi extends AbstractXapiRestController {
     private final CommandService commandService;
     private final ContainerService containerService;
     private final CommandResolutionService commandResolutionService;
+    private final BulkLaunchService bulkLaunchService;
+    private final BulkLaunchJobService bulkLaunchJobService;
 
     @Autowired
     public LaunchRestApi(final CommandService commandService,
                          final ContainerService containerService,
                          final CommandResolutionService commandResolutionService,
+                         final BulkLaunchService bulkLaunchService,
+                         final BulkLaunchJobService bulkLaunchJobService,
                          final UserManagementServiceI userManagementService,
                          final RoleHolder roleHolder) {
         super(userManagementService, roleHolder);
         this.commandService = commandService;
         this.containerService = containerService;
         this.commandResolutionService = commandResolutionService;
+        this.bulkLaunchService = bulkLaunchService;
+        this.bulkLaunchJobService = bulkLaunchJobService;
     }
 
     /*
@@ -194,7 +216,7 @@ public class LaunchRestApi extends AbstractXapiRestController {
     @ResponseBody
     public LaunchUi.BulkLaunchUi getBulkLaunchUi(final @PathVariable long wrapperId,
                                                  final @RequestParam Map<String, String> allRequestParams)
-            throws NotFoundException, CommandResolutionException, UnauthorizedException {
+            throws NotFoundException, CommandResolutionException, UnauthorizedException, BadRequestException {
         log.info("Launch UI requested for wrapper {}", wrapperId);
 
         return getBulkLaunchUi(null, 0L, null, wrapperId, allRequestParams);
@@ -206,7 +228,7 @@ public class LaunchRestApi extends AbstractXapiRestController {
     public LaunchUi.BulkLaunchUi getBulkLaunchUi(final @PathVariable long commandId,
                                                  final @PathVariable String wrapperName,
                                                  final @RequestParam Map<String, String> allRequestParams)
-            throws NotFoundException, CommandResolutionException, UnauthorizedException {
+            throws NotFoundException, CommandResolutionException, UnauthorizedException, BadRequestException {
         log.info("Bulk Launch UI requested for command {}, wrapper {}", commandId, wrapperName);
 
         return getBulkLaunchUi(null, commandId, wrapperName, 0L, allRequestParams);
@@ -218,7 +240,7 @@ public class LaunchRestApi extends AbstractXapiRestController {
     public LaunchUi.BulkLaunchUi getBulkLaunchUi(final @PathVariable String project,
                                                  final @PathVariable long wrapperId,
                                                  final @RequestParam Map<String, String> allRequestParams)
-            throws NotFoundException, CommandResolutionException, UnauthorizedException {
+            throws NotFoundException, CommandResolutionException, UnauthorizedException, BadRequestException {
         log.info("Launch UI requested for project {}, wrapper {}", project, wrapperId);
 
         return getBulkLaunchUi(project, 0L, null, wrapperId, allRequestParams);
@@ -231,7 +253,7 @@ public class LaunchRestApi extends AbstractXapiRestController {
                                                  final @PathVariable long commandId,
                                                  final @PathVariable String wrapperName,
                                                  final @RequestParam Map<String, String> allRequestParams)
-            throws NotFoundException, CommandResolutionException, UnauthorizedException {
+            throws NotFoundException, CommandResolutionException, UnauthorizedException, BadRequestException {
         log.info("Launch UI requested for project {}, command {}, wrapper {}", project, commandId, wrapperName);
 
         return getBulkLaunchUi(project, commandId, wrapperName, 0L, allRequestParams);
@@ -242,30 +264,7 @@ public class LaunchRestApi extends AbstractXapiRestController {
                                                   final String wrapperName,
                                                   final long wrapperId,
                                                   final Map<String, String> allRequestParams)
-            throws NotFoundException, CommandResolutionException, UnauthorizedException {
-
-        final List<Map<String, String>> paramsMapList = Lists.newArrayList();
-        paramsMapList.add(Maps.<String, String>newHashMap());
-        for (final Map.Entry<String, String> param : allRequestParams.entrySet()) {
-            final String[] splitValue = StringUtils.split(param.getValue(), ",");
-            if (splitValue.length > 1) {
-                // The param is a CSV. We must add each value in the CSV to each param map in the list.
-                final List<Map<String, String>> paramsMapListCopy = Lists.newArrayList(paramsMapList);
-                paramsMapList.clear();
-                for (final Map<String, String> paramsMap : paramsMapListCopy) {
-                    for (final String value : splitValue) {
-                        final Map<String, String> paramsMapCopy = Maps.newHashMap(paramsMap);
-                        paramsMapCopy.put(param.getKey(), value);
-                        paramsMapList.add(paramsMapCopy);
-                    }
-                }
-            } else {
-                // The param was not a CSV, so add it to all the maps in the list
-                for (final Map<String, String> paramsMap : paramsMapList) {
-                    paramsMap.put(param.getKey(), param.getValue());
-                }
-            }
-        }
+            throws NotFoundException, CommandResolutionException, UnauthorizedException, BadRequestException {
 
         try {
             log.debug("Getting {} configuration for command {}, wrapper name {}, wrapper id {}.", project == null ? "site" : "project " + project, commandId, wrapperName, wrapperId);
@@ -273,12 +272,13 @@ public class LaunchRestApi extends AbstractXapiRestController {
 
             final UserI userI = XDAT.getUserDetails();
 
-            LaunchUi.BulkLaunchUi.Builder bulkLaunchUiBuilder = null;
-            for (final Map<String, String> paramsMap : paramsMapList) {
-                log.debug("Preparing to pre-resolve command {}, wrapperName {}, wrapperId {}, in project {} with inputs {}.", commandId, wrapperName, wrapperId, project, paramsMap);
-                final PartiallyResolvedCommand partiallyResolvedCommand = preResolve(project, commandId, wrapperName, wrapperId, paramsMap, userI);
-                log.debug("Done pre-resolving command {}, wrapperName {}, wrapperId {}, in project {}.", commandId, wrapperName, project);
+            log.debug("Preparing to pre-resolve command {}, wrapperName {}, wrapperId {}, in project {} with inputs {}.", commandId, wrapperName, wrapperId, project, allRequestParams);
+            final List<PartiallyResolvedCommand> partiallyResolvedCommands =
+                    bulkLaunchService.preResolve(project, commandId, wrapperName, wrapperId, allRequestParams, userI);
+            log.debug("Done pre-resolving command {}, wrapperName {}, wrapperId {}, in project {}.", commandId, wrapperName, wrapperId, project);
 
+            LaunchUi.BulkLaunchUi.Builder bulkLaunchUiBuilder = null;
+            for (final PartiallyResolvedCommand partiallyResolvedCommand : partiallyResolvedCommands) {
                 bulkLaunchUiBuilder = bulkLaunchUiBuilder == null ?
                         LaunchUi.BulkLaunchUi.builder(partiallyResolvedCommand, commandConfiguration) :
                         bulkLaunchUiBuilder.addInputsFromInputTrees(partiallyResolvedCommand, commandConfiguration);
@@ -391,48 +391,7 @@ public class LaunchRestApi extends AbstractXapiRestController {
                                          @Nullable final String wrapperName,
                                          final long wrapperId,
                                          final Map<String, String> allRequestParams) {
-        final UserI userI = XDAT.getUserDetails();
-        try {
-            final Container container =
-                    project == null ?
-                            (commandId == 0L && wrapperName == null ?
-                                    containerService.resolveCommandAndLaunchContainer(wrapperId, allRequestParams, userI) :
-                                    containerService.resolveCommandAndLaunchContainer(commandId, wrapperName, allRequestParams, userI)) :
-                            (commandId == 0L && wrapperName == null ?
-                                    containerService.resolveCommandAndLaunchContainer(project, wrapperId, allRequestParams, userI) :
-                                    containerService.resolveCommandAndLaunchContainer(project, commandId, wrapperName, allRequestParams, userI));
-            if (container == null) {
-                throw new CommandResolutionException("Something happened but I do not know what.");
-            }
-            if (log.isInfoEnabled()) {
-                log.info("Launched command {}, wrapper {} {}. Produced container {}.", commandId, wrapperId, wrapperName, container.databaseId());
-                if (log.isDebugEnabled()) {
-                    log.debug("" + container);
-                }
-            }
-
-            return container.isSwarmService() ?
-                    LaunchReport.ServiceSuccess.create(container) :
-                    LaunchReport.ContainerSuccess.create(container);
-        } catch (Throwable t) {
-            if (log.isInfoEnabled()) {
-                log.error("Launch failed for command wrapper name {}.", wrapperName);
-                log.error(mapLogString("Params: ", allRequestParams));
-                log.error("Exception: ", t);
-            }
-            return LaunchReport.Failure.create(t.getMessage() != null ? t.getMessage() : "", allRequestParams, commandId, wrapperId);
-        }
-    }
-
-    private String mapLogString(final String title, final Map<String, String> map) {
-        final StringBuilder messageBuilder = new StringBuilder(title);
-        for (Map.Entry<String, String> entry : map.entrySet()) {
-            messageBuilder.append(entry.getKey());
-            messageBuilder.append(": ");
-            messageBuilder.append(entry.getValue());
-            messageBuilder.append(", ");
-        }
-        return messageBuilder.substring(0, messageBuilder.length() - 2);
+        return bulkLaunchService.launch(project, commandId, wrapperName, wrapperId, allRequestParams, XDAT.getUserDetails());
     }
 
     private ResponseEntity<LaunchReport> returnLaunchReportWithStatus(final LaunchReport launchReport) {
@@ -451,57 +410,191 @@ public class LaunchRestApi extends AbstractXapiRestController {
     BULK LAUNCH
      */
     @XapiRequestMapping(value = {"/commands/{commandId}/wrappers/{wrapperName}/bulklaunch"}, method = POST, consumes = {JSON})
-    @ApiOperation(value = "Resolve a command from the variable values in the request body, and launch it")
+    @ApiOperation(value = "Resolve a command from the variable values in the request body, and launch it",
+            notes = "With async=true, the launch is stored as a background job and the job is returned right away")
     @ResponseBody
-    public LaunchReport.BulkLaunchReport bulklaunch(final @PathVariable long commandId,
-                                                    final @PathVariable String wrapperName,
-                                                    final @RequestBody List<Map<String, String>> allRequestParams) {
+    public ResponseEntity<Object> bulklaunch(final @PathVariable long commandId,
+                                             final @PathVariable String wrapperName,
+                                             final @RequestParam(required = false, defaultValue = "false") boolean async,
+                                             final @RequestBody List<Map<String, String>> allRequestParams) {
         log.info("Launch requested for command {}, wrapper name {}.", commandId, wrapperName);
-        return bulkLaunch(null, commandId, wrapperName, 0L, allRequestParams);
+        return bulkLaunch(null, commandId, wrapperName, 0L, async, allRequestParams);
     }
 
     @XapiRequestMapping(value = {"/wrappers/{wrapperId}/bulklaunch"}, method = POST, consumes = {JSON})
-    @ApiOperation(value = "Resolve a command from the variable values in the request body, and launch it")
+    @ApiOperation(value = "Resolve a command from the variable values in the request body, and launch it",
+            notes = "With async=true, the launch is stored as a background job and the job is returned right away")
     @ResponseBody
-    public LaunchReport.BulkLaunchReport bulklaunch(final @PathVariable long wrapperId,
-                                                    final @RequestBody List<Map<String, String>> allRequestParams) {
+    public ResponseEntity<Object> bulklaunch(final @PathVariable long wrapperId,
+                                             final @RequestParam(required = false, defaultValue = "false") boolean async,
+                                             final @RequestBody List<Map<String, String>> allRequestParams) {
         log.info("Launch requested for wrapper id {}.", wrapperId);
-        return bulkLaunch(null, 0L, null, wrapperId, allRequestParams);
+        return bulkLaunch(null, 0L, null, wrapperId, async, allRequestParams);
     }
 
     @XapiRequestMapping(value = {"/projects/{project}/commands/{commandId}/wrappers/{wrapperName}/bulklaunch"}, method = POST, consumes = {JSON})
-    @ApiOperation(value = "Resolve a command from the variable values in the request body, and launch it")
+    @ApiOperation(value = "Resolve a command from the variable values in the request body, and launch it",
+            notes = "With async=true, the launch is stored as a background job and the job is returned right away")
     @ResponseBody
-    public LaunchReport.BulkLaunchReport bulklaunch(final @PathVariable String project,
-                                                    final @PathVariable long commandId,
-                                                    final @PathVariable String wrapperName,
-                                                    final @RequestBody List<Map<String, String>> allRequestParams) {
+    public ResponseEntity<Object> bulklaunch(final @PathVariable String project,
+                                             final @PathVariable long commandId,
+                                             final @PathVariable String wrapperName,
+                                             final @RequestParam(required = false, defaultValue = "false") boolean async,
+                                             final @RequestBody List<Map<String, String>> allRequestParams) {
         log.info("Launch requested for command {}, wrapper name {}, project {}.", commandId, wrapperName, project);
-        return bulkLaunch(project, commandId, wrapperName, 0L, allRequestParams);
+        return bulkLaunch(project, commandId, wrapperName, 0L, async, allRequestParams);
     }
 
     @XapiRequestMapping(value = {"/projects/{project}/wrappers/{wrapperId}/bulklaunch"}, method = POST, consumes = {JSON})
-    @ApiOperation(value = "Resolve a command from the variable values in the request body, and launch it")
+    @ApiOperation(value = "Resolve a command from the variable values in the request body, and launch it",
+            notes = "With async=true, the launch is stored as a background job and the job is returned right away")
     @ResponseBody
-    public LaunchReport.BulkLaunchReport bulklaunch(final @PathVariable String project,
-                                                    final @PathVariable long wrapperId,
-                                                    final @RequestBody List<Map<String, String>> allRequestParams) {
+    public ResponseEntity<Object> bulklaunch(final @PathVariable String project,
+                                             final @PathVariable long wrapperId,
+                                             final @RequestParam(required = false, defaultValue = "false") boolean async,
+                                             final @RequestBody List<Map<String, String>> allRequestParams) {
         log.info("Launch requested for wrapper id {}, project {}.", wrapperId, project);
-        return bulkLaunch(project, 0L, null, wrapperId, allRequestParams);
+        return bulkLaunch(project, 0L, null, wrapperId, async, allRequestParams);
+    }
+
+    private ResponseEntity<Object> bulkLaunch(final String project,
+                                              final long commandId,
+                                              final String wrapperName,
+                                              final long wrapperId,
+                                              final boolean async,
+                                              final List<Map<String, String>> allRequestParams) {
+        final UserI userI = XDAT.getUserDetails();
+        if (async) {
+            final BulkLaunchJob job = bulkLaunchJobService.create(project, commandId, wrapperName, wrapperId, allRequestParams, userI);
+            return ResponseEntity.status(HttpStatus.ACCEPTED).<Object>body(job);
+        }
+        // Items are launched on worker threads, which do not have the request's security context
+        return ResponseEntity.<Object>ok(bulkLaunchService.bulkLaunch(project, commandId, wrapperName, wrapperId, allRequestParams, userI));
+    }
+
+    @XapiRequestMapping(value = {"/bulklaunch/jobs/{id}"}, method = GET)
+    @ApiOperation(value = "Get the progress of a background bulk launch")
+    @ResponseBody
+    public BulkLaunchJob getBulkLaunchJob(final @PathVariable long id) throws NotFoundException {
+        return getVisibleBulkLaunchJob(id);
     }
 
-    private LaunchReport.BulkLaunchReport bulkLaunch(final String project,
-                                                     final long commandId,
-                                                     final String wrapperName,
-                                                     final long wrapperId,
-                                                     final List<Map<String, String>> allRequestParams) {
+    @XapiRequestMapping(value = {"/bulklaunch/jobs/{id}/reports"}, method = GET)
+    @ApiOperation(value = "Get the launch reports of a background bulk launch",
+            notes = "Streams the reports of the items launched so far as NDJSON (one launch report per line), in item order")
+    public void getBulkLaunchJobReports(final @PathVariable long id,
+                                        final HttpServletResponse response) throws NotFoundException, IOException {
+        getVisibleBulkLaunchJob(id);
 
-        final LaunchReport.BulkLaunchReport.Builder reportBuilder = LaunchReport.BulkLaunchReport.builder();
-        for (final Map<String, String> paramsSet : allRequestParams) {
-            reportBuilder.addReport(launchContainer(project, commandId, wrapperName, wrapperId, paramsSet));
+        response.setStatus(HttpStatus.OK.value());
+        response.setHeader(HttpHeaders.CONTENT_TYPE, NDJSON);
+        try (final Writer writer = new BufferedWriter(new OutputStreamWriter(response.getOutputStream(), StandardCharsets.UTF_8))) {
+            bulkLaunchJobService.writeReports(id, writer);
         }
+    }
 
-        return reportBuilder.build();
+    private BulkLaunchJob getVisibleBulkLaunchJob(final long id) throws NotFoundException {
+        final BulkLaunchJob job = bulkLaunchJobService.getJob(id);
+        final UserI userI = XDAT.getUserDetails();
+        if (!job.userId().equals(userI.getLogin()) && !getRoleHolder().isSiteAdmin(userI)) {
+            // Do not tell other users that the job exists
+            throw new NotFoundException("No bulk launch job with id " + id + ".");
+        }
+        return job;
+    }
+
+    /*
+    LAUNCH OVER A STORED SEARCH
+     */
+    @XapiRequestMapping(value = {"/wrappers/{wrapperId}/searchlaunch"}, method = POST)
+    @ApiOperation(value = "Launch a wrapper on every result of a cached search",
+            notes = "The searchId is the ID of the cached results of a search the user has run, as returned by /data/search, " +
+                    "not the ID of a saved search; run a saved search first and pass the ID of its results. " +
+                    "Each search result's key is passed as the root element input; the JSON body, if any, sets the other inputs. " +
+                    "The launch runs in the background; the bulk launch job is returned right away. " +
+                    "A search with more results than the bulkLaunchUiMaxItems setting allows gets a 400.")
+    @ResponseBody
+    public ResponseEntity<BulkLaunchJob> searchLaunch(final @PathVariable long wrapperId,
+                                                      final @RequestParam String searchId,
+                                                      final @RequestParam String rootElement,
+                                                      final @RequestBody(required = false) Map<String, String> otherParams)
+            throws NotFoundException, IOException, BadRequestException {
+        log.info("Launch requested for wrapper id {} over stored search {}.", wrapperId, searchId);
+        return searchLaunch(null, wrapperId, searchId, rootElement, otherParams);
+    }
+
+    @XapiRequestMapping(value = {"/projects/{project}/wrappers/{wrapperId}/searchlaunch"}, method = POST, restrictTo = Member)
+    @ApiOperation(value = "Launch a wrapper on every result of a cached search",
+            notes = "The searchId is the ID of the cached results of a search the user has run, as returned by /data/search, " +
+                    "not the ID of a saved search; run a saved search first and pass the ID of its results. " +
+                    "Each search result's key is passed as the root element input; the JSON body, if any, sets the other inputs. " +
+                    "The launch runs in the background; the bulk launch job is returned right away. " +
+                    "A search with more results than the bulkLaunchUiMaxItems setting allows gets a 400.")
+    @ResponseBody
+    public ResponseEntity<BulkLaunchJob> searchLaunch(final @PathVariable String project,
+                                                      final @PathVariable long wrapperId,
+                                                      final @RequestParam String searchId,
+                                                      final @RequestParam String rootElement,
+                                                      final @RequestBody(required = false) Map<String, String> otherParams)
+            throws NotFoundException, IOException, BadRequestException {
+        log.info("Launch requested for wrapper id {}, project {}, over stored search {}.", wrapperId, project, searchId);
+        return searchLaunch(project, wrapperId, searchId, rootElement, otherParams);
+    }
+
+    private ResponseEntity<BulkLaunchJob> searchLaunch(final String project,
+                                                       final long wrapperId,
+                                                       final String searchId,
+                                                       final String rootElement,
+                                                       final Map<String, String> otherParams)
+            throws NotFoundException, IOException, BadRequestException {
+        final UserI userI = XDAT.getUserDetails();
+        final MaterializedViewI storedSearch;
+        try {
+            storedSearch = MaterializedView.retrieveView(searchId, userI);
+        } catch (Exception e) {
+            throw new IOException("Could not read stored search " + searchId + ".", e);
+        }
+        if (storedSearch == null || !userI.getLogin().equals(storedSearch.getUser_name())) {
+            throw new NotFoundException("No stored search with id " + searchId + ".");
+        }
+
+        // The search results go straight into the job's items a page at a time, without a trip through the browser
+        final BulkLaunchJob job = bulkLaunchJobService.create(project, 0L, null, wrapperId, new BulkLaunchJobService.LaunchParamPages() {
+            private int offset = 0;
+
+            @Override
+            public List<Map<String, String>> nextPage() throws IOException {
+                final List<Map<String, String>> launchParamSets = Lists.newArrayList();
+                while (launchParamSets.isEmpty()) {
+                    final XFTTable page;
+                    try {
+                        page = storedSearch.getData(null, offset, SEARCH_LAUNCH_PAGE_SIZE);
+                    } catch (Exception e) {
+                        throw new IOException("Could not read stored search " + searchId + ".", e);
+                    }
+                    if (page == null || page.rows().isEmpty()) {
+                        break;
+                    }
+                    final Integer keyColumn = page.getColumnIndex(SEARCH_KEY_COLUMN);
+                    if (keyColumn == null) {
+                        throw new IOException("Stored search " + searchId + " has no \"" + SEARCH_KEY_COLUMN + "\" column.");
+                    }
+
+                    for (final Object[] row : page.rows()) {
+                        if (row[keyColumn] != null) {
+                            final Map<String, String> launchParams = otherParams == null ?
+                                    Maps.<String, String>newHashMap() :
+                                    Maps.newHashMap(otherParams);
+                            launchParams.put(rootElement, row[keyColumn].toString());
+                            launchParamSets.add(launchParams);
+                        }
+                    }
+                    offset += page.rows().size();
+                }
+                return launchParamSets;
+            }
+        }, userI);
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(job);
     }
 
     /*
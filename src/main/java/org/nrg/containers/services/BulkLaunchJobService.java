@@ -0,0 +1,73 @@
+package org.nrg.containers.services;
+
+import org.nrg.containers.exceptions.BadRequestException;
+import org.nrg.containers.model.bulklaunch.auto.BulkLaunchJob;
+import org.nrg.containers.model.bulklaunch.entity.BulkLaunchJobEntity;
+import org.nrg.containers.model.command.auto.LaunchReport;
+import org.nrg.framework.exceptions.NotFoundException;
+import org.nrg.framework.orm.hibernate.BaseHibernateService;
+import org.nrg.xft.security.UserI;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Stores bulk launches that run in the background, so they do not depend on one HTTP request
+ * and pick up where they left off after a restart.
+ */
+public interface BulkLaunchJobService extends BaseHibernateService<BulkLaunchJobEntity> {
+    /**
+     * Store a bulk launch to be launched in the background by the given user.
+     */
+    BulkLaunchJob create(String project, long commandId, String wrapperName, long wrapperId,
+                         List<Map<String, String>> launchParamSets, UserI userI);
+
+    /**
+     * Store a bulk launch whose parameter sets are read a page at a time, so only one page is held in memory.
+     * The job is stored only if every page is read.
+     *
+     * @throws BadRequestException If there are more items than the bulkLaunchUiMaxItems setting allows.
+     */
+    BulkLaunchJob create(String project, long commandId, String wrapperName, long wrapperId,
+                         LaunchParamPages launchParamPages, UserI userI) throws IOException, BadRequestException;
+
+    BulkLaunchJob getJob(long id) throws NotFoundException;
+
+    List<BulkLaunchJob> getUnfinishedJobs();
+
+    /**
+     * Claim the next items of a job by moving its cursor. Only one caller, on any node, gets a given item.
+     *
+     * @return Launch parameters by item id, in item order. Empty if there was nothing left to claim,
+     * or another caller claimed the items first.
+     */
+    Map<Long, Map<String, String>> claimItems(long jobId, int maxItems);
+
+    /**
+     * Store launch reports for claimed items, update the job's counts, and complete the job if every item has a report.
+     */
+    void recordReports(long jobId, Map<Long, LaunchReport> reportsByItemId);
+
+    /**
+     * Fail items that were claimed before the cutoff but never got a report, for instance because the node
+     * launching them went down. They are not launched again, since they may have started a container.
+     *
+     * @return The number of items failed.
+     */
+    int failAbandonedItems(Date claimedBefore, int maxItems);
+
+    /**
+     * Write the launch reports a job has so far, as one JSON report per line, in item order.
+     */
+    void writeReports(long jobId, Writer writer) throws IOException;
+
+    interface LaunchParamPages {
+        /**
+         * @return The next page of launch parameter sets, or an empty list when there are no more.
+         */
+        List<Map<String, String>> nextPage() throws IOException;
+    }
+}
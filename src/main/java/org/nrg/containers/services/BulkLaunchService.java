@@ -0,0 +1,49 @@
+package org.nrg.containers.services;
+
+import org.nrg.containers.exceptions.BadRequestException;
+import org.nrg.containers.exceptions.CommandResolutionException;
+import org.nrg.containers.exceptions.UnauthorizedException;
+import org.nrg.containers.model.command.auto.LaunchReport;
+import org.nrg.containers.model.command.auto.ResolvedCommand.PartiallyResolvedCommand;
+import org.nrg.framework.exceptions.NotFoundException;
+import org.nrg.xft.security.UserI;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Resolves commands and launches containers, reporting failures instead of throwing them.
+ * The command is identified either by wrapper id, or by command id and wrapper name; pass 0 or null for the other.
+ */
+public interface BulkLaunchService {
+    /**
+     * Resolve and launch one container. Never throws; a failure is returned as a {@link LaunchReport.Failure}.
+     */
+    LaunchReport launch(String project, long commandId, String wrapperName, long wrapperId,
+                        Map<String, String> launchParams, UserI userI);
+
+    /**
+     * Resolve and launch a container for each set of parameters. Items are launched in parallel, up to the
+     * configured bulk launch parallelism, and a failure of one item does not affect the others.
+     * The reports are in the same order as the parameter sets.
+     */
+    List<LaunchReport> launch(String project, long commandId, String wrapperName, long wrapperId,
+                              List<Map<String, String>> launchParamSets, UserI userI);
+
+    /**
+     * Like {@link #launch(String, long, String, long, List, UserI)}, collected into successes and failures.
+     */
+    LaunchReport.BulkLaunchReport bulkLaunch(String project, long commandId, String wrapperName, long wrapperId,
+                                             List<Map<String, String>> launchParamSets, UserI userI);
+
+    /**
+     * Pre-resolve the command for every item of a bulk launch UI. Each comma-separated parameter value is split, and
+     * there is one item per combination of values. The command is configured once, and each distinct item is
+     * pre-resolved once, in parallel on the bulk launch workers. The results are in item order.
+     *
+     * @throws BadRequestException if there are more items than the configured bulk launch UI limit
+     */
+    List<PartiallyResolvedCommand> preResolve(String project, long commandId, String wrapperName, long wrapperId,
+                                              Map<String, String> allRequestParams, UserI userI)
+            throws NotFoundException, CommandResolutionException, UnauthorizedException, BadRequestException;
+}
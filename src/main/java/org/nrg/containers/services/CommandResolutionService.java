@@ -8,6 +8,7 @@ import org.nrg.containers.model.command.auto.ResolvedCommand.PartiallyResolvedCo
 import org.nrg.framework.exceptions.NotFoundException;
 import org.nrg.xft.security.UserI;
 
+import java.util.List;
 import java.util.Map;
 
 public interface CommandResolutionService {
@@ -62,4 +63,12 @@ public interface CommandResolutionService {
                             Map<String, String> inputValues,
                             UserI userI)
             throws NotFoundException, CommandResolutionException, UnauthorizedException;
+
+    /**
+     * Pack resolved launches of one batched wrapper into a single command. A manifest listing each item's
+     * inputs, mounts, outputs, and status file is written to a new build directory and mounted into the container.
+     *
+     * @see ResolvedCommand#batch(List, org.nrg.containers.model.command.auto.ResolvedCommandMount, org.nrg.containers.model.command.auto.ResolvedCommandMount)
+     */
+    ResolvedCommand resolveBatch(List<ResolvedCommand> items) throws CommandResolutionException;
 }
@@ -5,6 +5,7 @@ import org.nrg.containers.model.command.auto.Command;
 import org.nrg.containers.model.command.auto.Command.CommandWrapper;
 import org.nrg.containers.model.command.auto.Command.ConfiguredCommand;
 import org.nrg.containers.model.command.auto.CommandSummaryForContext;
+import org.nrg.containers.model.configuration.CommandCatalogReport;
 import org.nrg.containers.model.configuration.CommandConfiguration;
 import org.nrg.containers.model.configuration.ProjectEnabledReport;
 import org.nrg.containers.services.ContainerConfigService.CommandConfigurationException;
@@ -38,10 +39,10 @@ public interface CommandService {
     CommandWrapper updateWrapper(long commandId, CommandWrapper updates) throws CommandValidationException, NotFoundException;
     void deleteWrapper(long wrapperId);
 
-    void configureForSite(CommandConfiguration commandConfiguration, long wrapperId, boolean enable, String username, String reason) throws CommandConfigurationException, NotFoundException;
-    void configureForSite(CommandConfiguration commandConfiguration, long commandId, String wrapperName, boolean enable, String username, String reason) throws CommandConfigurationException, NotFoundException;
-    void configureForProject(CommandConfiguration commandConfiguration, String project, long wrapperId, boolean enable, String username, String reason) throws CommandConfigurationException, NotFoundException;
-    void configureForProject(CommandConfiguration commandConfiguration, String project, long commandId, String wrapperName, boolean enable, String username, String reason) throws CommandConfigurationException, NotFoundException;
+    void configureForSite(CommandConfiguration commandConfiguration, long wrapperId, boolean enable, String username, String reason) throws CommandConfigurationException, CommandValidationException, NotFoundException;
+    void configureForSite(CommandConfiguration commandConfiguration, long commandId, String wrapperName, boolean enable, String username, String reason) throws CommandConfigurationException, CommandValidationException, NotFoundException;
+    void configureForProject(CommandConfiguration commandConfiguration, String project, long wrapperId, boolean enable, String username, String reason) throws CommandConfigurationException, CommandValidationException, NotFoundException;
+    void configureForProject(CommandConfiguration commandConfiguration, String project, long commandId, String wrapperName, boolean enable, String username, String reason) throws CommandConfigurationException, CommandValidationException, NotFoundException;
 
     CommandConfiguration getSiteConfiguration(long wrapperId) throws NotFoundException;
     CommandConfiguration getSiteConfiguration(long commandId, String wrapperName) throws NotFoundException;
@@ -72,11 +73,22 @@ public interface CommandService {
     ProjectEnabledReport isEnabledForProjectAsReport(String project, long wrapperId) throws NotFoundException;
     ProjectEnabledReport isEnabledForProjectAsReport(String project, long commandId, String wrapperName) throws NotFoundException;
 
+    /**
+     * All commands, with the enabled flags and merged configuration of every wrapper, for a project or, if project is null, for the site.
+     */
+    CommandCatalogReport getCatalogReport(String project);
+
     List<CommandSummaryForContext> available(String project,
                                              String xsiType,
                                              UserI userI) throws ElementNotFoundException;
     List<CommandSummaryForContext> available(String xsiType,
                                              UserI userI) throws ElementNotFoundException;
 
+    /**
+     * The version of the in-memory command catalog. It changes whenever a command or wrapper is changed,
+     * so it can be used to key anything derived from the full list of commands.
+     */
+    long getCatalogVersion();
+
     void throwExceptionIfCommandExists(Command command) throws NrgRuntimeException;
 }
@@ -0,0 +1,20 @@
+package org.nrg.containers.services;
+
+import org.nrg.containers.model.container.auto.Container;
+import org.nrg.containers.model.container.entity.ContainerArchiveEntity;
+import org.nrg.framework.exceptions.NotFoundException;
+import org.nrg.framework.orm.hibernate.BaseHibernateService;
+
+import java.util.Date;
+import java.util.List;
+
+public interface ContainerArchiveService extends BaseHibernateService<ContainerArchiveEntity> {
+    /**
+     * Move one batch of finalized containers, and their child containers, into the archive.
+     * @return The number of top-level containers archived. Fewer than batchSize means there is nothing left to archive.
+     */
+    int archiveFinalizedContainers(Date finalizedBefore, int batchSize);
+
+    List<Container> getArchived(int firstResult, int maxResults);
+    Container getArchived(String containerId) throws NotFoundException;
+}
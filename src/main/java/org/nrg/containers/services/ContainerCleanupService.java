@@ -0,0 +1,27 @@
+package org.nrg.containers.services;
+
+import org.nrg.containers.model.container.auto.Container;
+import org.nrg.containers.model.container.auto.ContainerPruneReport;
+
+/**
+ * Removes finished containers and dangling images from the Docker server, so they do not pile up there.
+ * Which finalized containers are removed, and when, is set by the container removal policy.
+ */
+public interface ContainerCleanupService {
+    /**
+     * Called once a container has been finalized. Removes it from the Docker server right away
+     * if the removal policy says to and there is no removal delay. Never throws.
+     */
+    void onFinalized(Container container);
+
+    /**
+     * Remove finalized containers the removal policy no longer wants to keep, finalized setup containers,
+     * and dangling images from the Docker server.
+     */
+    ContainerPruneReport prune();
+
+    /**
+     * @return The report from the last prune on this node, or null if it has not pruned yet.
+     */
+    ContainerPruneReport getLastPruneReport();
+}
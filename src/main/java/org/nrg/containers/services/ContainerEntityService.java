@@ -1,6 +1,8 @@
 package org.nrg.containers.services;
 
 import org.nrg.containers.events.model.ContainerEvent;
+import org.nrg.containers.model.container.auto.ContainerFilter;
+import org.nrg.containers.model.container.auto.ContainerStats;
 import org.nrg.containers.model.container.entity.ContainerEntity;
 import org.nrg.containers.model.container.entity.ContainerEntityHistory;
 import org.nrg.containers.model.command.auto.ResolvedCommand;
@@ -8,7 +10,12 @@ import org.nrg.framework.exceptions.NotFoundException;
 import org.nrg.framework.orm.hibernate.BaseHibernateService;
 import org.nrg.xft.security.UserI;
 
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Date;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public interface ContainerEntityService extends BaseHibernateService<ContainerEntity> {
     ContainerEntity save(final ContainerEntity toCreate,
@@ -18,12 +25,98 @@ public interface ContainerEntityService extends BaseHibernateService<ContainerEn
     ContainerEntity get(final String containerId) throws NotFoundException;
     void delete(final String containerId) throws NotFoundException;
 
+    List<ContainerEntity> getAll(ContainerFilter filter);
+
+    /**
+     * Hand every container matching the filter to the handler, one at a time, without loading them all into memory.
+     * Entities are detached after they are handled.
+     */
+    void scroll(ContainerFilter filter, int fetchSize, ContainerEntityHandler handler) throws IOException;
+
+    /**
+     * Compute container counts and runtime statistics in the database. This is not cached; see {@link ContainerService#getStats()}.
+     */
+    ContainerStats computeStats();
+
+    /**
+     * Atomically claim a container for finalization by moving it to the "Finalizing" status.
+     * Only one caller, on any node, gets {@code true} for a given container.
+     */
+    boolean claimForFinalization(long containerDatabaseId);
+    boolean compareAndSetStatus(long containerDatabaseId, String expectedStatus, String newStatus);
+
+    /**
+     * Like {@link #compareAndSetStatus(long, String, String)}, and also mark the container finalized.
+     */
+    boolean compareAndFinalize(long containerDatabaseId, String expectedStatus, String newStatus);
+
+    /**
+     * Change a container's status and mark it finalized, whatever its status, unless it is already finalized.
+     */
+    boolean finalizeUnlessFinalized(long containerDatabaseId, String newStatus);
+
+    /**
+     * @return Ids of containers that exited before the cutoff, are not finalized, and have no finalization work.
+     */
+    List<Long> retrieveExitedWithoutFinalizationWork(Date exitedBefore);
+
     List<ContainerEntity> retrieveServices();
     List<ContainerEntity> retrieveNonfinalizedServices();
 
+    /**
+     * @return Docker container ids of containers that are not services and have not exited, each with the id of the
+     * server it was placed on. The server id is null for containers placed before there were several servers.
+     */
+    Map<String, Long> retrieveNonfinalizedContainerIds();
+
+    /**
+     * @return Ids of the servers that containers and services not yet finalized were placed on.
+     */
+    Set<Long> retrieveServerIdsWithNonfinalizedContainers();
+
+    /**
+     * @return Containers whose Docker container id or service id is one of the given ids.
+     *         Only the container rows are loaded, so do not touch their collections.
+     */
+    List<ContainerEntity> retrieveByDockerIds(Collection<String> dockerIds);
+
+    /**
+     * @return Distinct images of containers launched since the given date, most used first.
+     */
+    List<String> getImagesUsedSince(Date since);
+
+    /**
+     * Count top-level containers that are occupying the cluster (not queued, finalizing, or finished).
+     *
+     * @param property The property to group by: "project", "userId", or "wrapperId".
+     * @return Active container count for each value of the property.
+     */
+    Map<String, Long> countActiveContainers(String property);
+
+    /**
+     * @return Top-level containers waiting in the launch queue, oldest first.
+     */
+    List<ContainerEntity> retrieveQueued();
+
+    /**
+     * @return Whether anything is waiting in the launch queue, without loading the queue.
+     */
+    boolean hasQueued();
+
+    /**
+     * Put launches back in the launch queue that have been dispatching since before the cutoff.
+     *
+     * @return The number of launches put back.
+     */
+    int requeueStaleDispatches(Date cutoff);
+
     List<ContainerEntity> retrieveSetupContainersForParent(long parentId);
 
     ContainerEntity addContainerEventToHistory(final ContainerEvent containerEvent, final UserI userI);
     ContainerEntityHistory addContainerHistoryItem(final ContainerEntity containerEntity,
                                                    final ContainerEntityHistory history, final UserI userI);
+
+    interface ContainerEntityHandler {
+        void handle(ContainerEntity containerEntity) throws IOException;
+    }
 }
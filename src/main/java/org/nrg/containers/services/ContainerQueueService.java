@@ -0,0 +1,29 @@
+package org.nrg.containers.services;
+
+import org.nrg.containers.model.container.auto.QueuedLaunch;
+import org.nrg.containers.model.container.entity.ContainerEntity;
+
+import java.util.List;
+
+/**
+ * Admission control for launches. When the per-project, per-user, or per-wrapper concurrency limits
+ * are reached, launches wait in the launch queue as containers with status "Queued".
+ * Queued launches are dispatched in fair-share order: the user with the fewest active containers goes next,
+ * so one user's bulk launch cannot starve everyone else.
+ */
+public interface ContainerQueueService {
+    /**
+     * @return {@code true} if a new launch with these properties has to wait in the launch queue.
+     */
+    boolean mustQueue(String project, String userId, long wrapperId);
+
+    /**
+     * @return Queued launches that fit within the limits right now, in the order they should be dispatched.
+     */
+    List<ContainerEntity> getDispatchable();
+
+    /**
+     * @return Everything in the launch queue, in the order it will be dispatched.
+     */
+    List<QueuedLaunch> getQueue();
+}
@@ -8,10 +8,17 @@ import org.nrg.containers.exceptions.DockerServerException;
 import org.nrg.containers.exceptions.NoDockerServerException;
 import org.nrg.containers.exceptions.UnauthorizedException;
 import org.nrg.containers.model.command.auto.ResolvedCommand;
+import org.nrg.containers.model.container.LaunchPriority;
 import org.nrg.containers.model.container.auto.Container;
+import org.nrg.containers.model.container.auto.ContainerFilter;
+import org.nrg.containers.model.container.auto.ContainerStats;
+import org.nrg.containers.model.container.auto.FinalizationNodeStats;
+import org.nrg.containers.model.container.auto.QueuedLaunch;
 import org.nrg.framework.exceptions.NotFoundException;
 import org.nrg.xft.security.UserI;
 
+import javax.annotation.Nullable;
+import java.io.IOException;
 import java.io.InputStream;
 import java.util.List;
 import java.util.Map;
@@ -22,6 +29,18 @@ public interface ContainerService {
     String[] LOG_NAMES = new String[] {STDOUT_LOG_NAME, STDERR_LOG_NAME};
 
     List<Container> getAll();
+    List<Container> getAll(ContainerFilter filter);
+
+    /**
+     * Stream every container matching the filter to the handler, holding only one page of containers in memory at a time.
+     */
+    void export(ContainerFilter filter, ContainerHandler handler) throws IOException;
+
+    /**
+     * Aggregate container statistics. Cached for a short time, and recomputed after any container is finalized.
+     */
+    ContainerStats getStats();
+    void invalidateStats();
     Container retrieve(final long id);
     Container retrieve(final String containerId);
     Container get(final long id) throws NotFoundException;
@@ -32,6 +51,12 @@ public interface ContainerService {
     List<Container> retrieveServices();
     List<Container> retrieveNonfinalizedServices();
 
+    /**
+     * @return Docker container ids of containers that are not services and have not exited, each with the id of the
+     * server it was placed on, or null for the default server.
+     */
+    Map<String, Long> retrieveNonfinalizedContainerIds();
+
     List<Container> retrieveSetupContainersForParent(long parentId);
 
     Container addContainerEventToHistory(final ContainerEvent containerEvent, final UserI userI);
@@ -61,6 +86,63 @@ public interface ContainerService {
     Container launchResolvedCommand(final ResolvedCommand resolvedCommand, final UserI userI)
             throws NoDockerServerException, DockerServerException, ContainerException;
 
+    /**
+     * Resolve and launch a command at a given priority. The command is identified either by wrapper id,
+     * or by command id and wrapper name; pass 0 or null for the other. Pass a null project for a site-wide launch.
+     *
+     * @param defaultPriority The priority of this kind of launch, used if neither priority nor the wrapper sets one.
+     * @param priority An explicit priority, such as an event mapping's, which takes precedence over the wrapper's. May be null.
+     */
+    Container resolveCommandAndLaunchContainer(String project,
+                                               long commandId,
+                                               String wrapperName,
+                                               long wrapperId,
+                                               Map<String, String> inputValues,
+                                               UserI userI,
+                                               LaunchPriority defaultPriority,
+                                               @Nullable LaunchPriority priority)
+            throws NoDockerServerException, DockerServerException, NotFoundException, CommandResolutionException, ContainerException, UnauthorizedException;
+
+    /**
+     * Launch a resolved command. Its priority is the wrapper's, if the wrapper sets one, or else the default.
+     * Launches that do not say otherwise are interactive.
+     */
+    Container launchResolvedCommand(ResolvedCommand resolvedCommand, UserI userI, LaunchPriority defaultPriority)
+            throws NoDockerServerException, DockerServerException, ContainerException;
+
+    /**
+     * Launch whatever in the launch queue now fits within the concurrency limits, in fair-share order.
+     * Runs on the caller's thread. Launches and finalizations ask for it on a dispatch thread of their own,
+     * and the launch queue job calls it periodically in case a launch was missed.
+     * Launches left dispatching by a node that went down go back in the queue first.
+     */
+    void dispatchQueued();
+
+    /**
+     * @return Launches waiting in the launch queue, in the order they will be dispatched.
+     */
+    List<QueuedLaunch> getLaunchQueue();
+
+    /**
+     * Claim finalization work from the cluster's work table for this node's free finalization workers,
+     * and renew this node's claims on the work it is still finalizing.
+     * Called when a container finishes or a worker frees up, and periodically for work enqueued on other nodes.
+     */
+    void claimFinalizationWork();
+
+    /**
+     * Add containers that exited but never made it into the finalization work table, because adding them failed.
+     * Called by the reconciliation sweep.
+     *
+     * @return The number of containers added.
+     */
+    int scheduleMissedFinalizations();
+
+    /**
+     * @return Finalization work claimed and finished over the last hour, by node.
+     */
+    List<FinalizationNodeStats> getFinalizationNodeStats();
+
     void processEvent(final ContainerEvent event);
     void processEvent(final ServiceTaskEvent event);
 
@@ -75,4 +157,8 @@ public interface ContainerService {
     Map<String, InputStream> getLogStreams(String containerId) throws NotFoundException, NoDockerServerException, DockerServerException;
     InputStream getLogStream(long id, String logFileName) throws NotFoundException, NoDockerServerException, DockerServerException;
     InputStream getLogStream(String containerId, String logFileName) throws NotFoundException, NoDockerServerException, DockerServerException;
+
+    interface ContainerHandler {
+        void handle(Container container) throws IOException;
+    }
 }
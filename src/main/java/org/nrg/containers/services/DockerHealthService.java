@@ -0,0 +1,43 @@
+package org.nrg.containers.services;
+
+import org.nrg.containers.model.dockerhub.DockerHubBase.DockerHub;
+import org.nrg.containers.model.dockerhub.DockerHubBase.DockerHubWithPing;
+import org.nrg.containers.model.server.docker.DockerServerBase.DockerServer;
+
+import java.util.List;
+
+/**
+ * Remembers whether the Docker server and the hubs answered their last pings, so that pages and
+ * status checks do not have to wait on the network. The answers are refreshed in the background.
+ */
+public interface DockerHealthService {
+    /**
+     * @return Whether the Docker server answered its last ping. Pings it again first if that answer is too old.
+     */
+    boolean isServerReachable();
+
+    /**
+     * @return Whether the given server answered its last ping. Pings it again first if that answer is too old.
+     */
+    boolean isServerReachable(DockerServer server);
+
+    /**
+     * Ping the Docker server now, and remember the answer.
+     */
+    boolean refreshServer();
+
+    /**
+     * @return The hub with whether it answered its last ping, or null if it has not answered in time.
+     */
+    DockerHubWithPing ping(DockerHub hub);
+
+    /**
+     * Ping all the hubs with old or missing answers at the same time, and wait a short while for them to answer.
+     */
+    List<DockerHubWithPing> ping(List<DockerHub> hubs);
+
+    /**
+     * Refresh the server answer and any hub answers that will soon be too old. Called on a schedule.
+     */
+    void refresh();
+}
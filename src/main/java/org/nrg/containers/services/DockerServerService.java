@@ -1,5 +1,6 @@
 package org.nrg.containers.services;
 
+import org.nrg.containers.model.container.auto.Container;
 import org.nrg.containers.model.server.docker.DockerServerBase.DockerServer;
 import org.nrg.framework.exceptions.NotFoundException;
 
@@ -11,4 +12,31 @@ public interface DockerServerService {
     DockerServer getServer() throws NotFoundException;
     DockerServer setServer(DockerServer dockerServer);
     void update(DockerServer dockerServer);
+
+    /**
+     * @return The default server, then any servers added alongside it.
+     */
+    List<DockerServer> getEnabledServers();
+
+    /**
+     * @return The enabled servers, then any disabled servers that still have containers not yet finalized.
+     * These are the servers whose status is followed and whose containers are cleaned up.
+     */
+    List<DockerServer> getServersInUse();
+
+    /**
+     * Enable another server alongside the default server. New containers are placed on any enabled server.
+     */
+    DockerServer addServer(DockerServer dockerServer);
+
+    /**
+     * Stop placing new containers on a server. Its status is still followed until its containers are finalized,
+     * and their logs and cleanup still go to it.
+     */
+    void disableServer(long id) throws NotFoundException;
+
+    /**
+     * @return The server the container was placed on. Containers from before servers were recorded ran on the default server.
+     */
+    DockerServer getServerFor(Container container) throws NotFoundException;
 }
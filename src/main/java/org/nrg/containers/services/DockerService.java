@@ -10,6 +10,7 @@ import org.nrg.containers.model.image.docker.DockerImage;
 import org.nrg.containers.model.image.docker.DockerImageAndCommandSummary;
 import org.nrg.containers.model.server.docker.DockerServerBase.DockerServer;
 import org.nrg.containers.model.server.docker.DockerServerBase.DockerServerWithPing;
+import org.nrg.containers.model.server.docker.DockerServerLoad;
 import org.nrg.containers.services.DockerHubService.DockerHubDeleteDefaultException;
 import org.nrg.framework.exceptions.NotFoundException;
 
@@ -45,6 +46,10 @@ public interface DockerService {
     DockerServerWithPing getServer() throws NotFoundException;
     DockerServerWithPing setServer(DockerServer server);
     String ping() throws NoDockerServerException, DockerServerException;
+    List<DockerServer> getEnabledServers();
+    DockerServer addServer(DockerServer server);
+    void disableServer(long id) throws NotFoundException;
+    List<DockerServerLoad> getServerLoads();
 
     List<DockerImage> getImages() throws NoDockerServerException, DockerServerException;
     List<DockerImageAndCommandSummary> getImageSummaries() throws NoDockerServerException, DockerServerException;
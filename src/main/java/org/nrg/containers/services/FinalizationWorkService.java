@@ -0,0 +1,53 @@
+package org.nrg.containers.services;
+
+import org.nrg.containers.model.container.auto.FinalizationNodeStats;
+import org.nrg.containers.model.container.entity.FinalizationWorkEntity;
+import org.nrg.framework.orm.hibernate.BaseHibernateService;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * A work table of containers to finalize, shared by every node of the cluster, so finalization runs on whichever
+ * node has a free worker rather than the node that saw the container finish. Lease times come from each node's
+ * clock, so the nodes' clocks should be kept in sync.
+ */
+public interface FinalizationWorkService extends BaseHibernateService<FinalizationWorkEntity> {
+    /**
+     * Add a container to the work table.
+     *
+     * @return {@code false} if the container was already in it.
+     */
+    boolean enqueue(long containerDatabaseId, String userId, String exitCode, String containerStatus, long sortTime);
+
+    /**
+     * Claim up to the given number of unclaimed or abandoned work items for this node, in sort order.
+     * Only one node gets a given item while its lease lasts. Each item is claimed in its own transaction
+     * unless the caller already has one.
+     */
+    List<FinalizationWorkEntity> claim(int maxItems, long leaseMillis);
+
+    /**
+     * Extend this node's leases on work it is still finalizing.
+     */
+    void renew(Collection<Long> ids, long leaseMillis);
+
+    /**
+     * Record that this node is done with a work item.
+     */
+    void finish(long id, boolean failed);
+
+    /**
+     * @return Claims and finalizations over the last hour by node, busiest first. Claims are counted for the node
+     * that last claimed each item. See {@link FinalizationNodeStats}.
+     */
+    List<FinalizationNodeStats> getNodeStats();
+
+    /**
+     * Remove work that finished before the cutoff.
+     *
+     * @return The number of items removed.
+     */
+    int purgeFinishedBefore(Date cutoff);
+}
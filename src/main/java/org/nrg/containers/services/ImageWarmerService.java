@@ -0,0 +1,51 @@
+package org.nrg.containers.services;
+
+import org.nrg.containers.exceptions.DockerServerException;
+import org.nrg.containers.exceptions.NoDockerServerException;
+import org.nrg.containers.model.dockerhub.DockerHubBase.DockerHub;
+import org.nrg.containers.model.image.docker.DockerImage;
+import org.nrg.containers.model.server.docker.DockerServerBase.DockerServer;
+import org.nrg.containers.model.image.docker.WarmImageStatus;
+import org.nrg.framework.exceptions.NotFoundException;
+
+import javax.annotation.Nullable;
+import java.util.List;
+import java.util.concurrent.Future;
+
+/**
+ * Pulls images onto the Docker servers before anyone launches them, so that launches do not have to wait on a pull.
+ * The images to keep warm are the ones used by enabled command event mappings and the ones launched recently.
+ */
+public interface ImageWarmerService {
+    /**
+     * Pull every image we want to keep warm onto every enabled server that does not already have it.
+     * Returns without waiting for the pulls.
+     */
+    void warmAll();
+
+    /**
+     * Pull the image if it is not already on the server. If the image is already being pulled onto that server,
+     * returns that pull instead of starting another one.
+     */
+    Future<DockerImage> warm(DockerServer server, String imageName);
+
+    /**
+     * Pull the image from the hub onto the default server and wait for it, even if the image is already there,
+     * so its tag is brought up to date. If the image is already being pulled onto that server, returns what that
+     * pull gets instead of pulling again. Launches on the server wait for this pull like any other.
+     */
+    @Nullable
+    DockerImage pull(String imageName, @Nullable DockerHub hub, @Nullable String username, @Nullable String password)
+            throws NoDockerServerException, DockerServerException, NotFoundException;
+
+    /**
+     * If the image is being pulled onto the server, wait a bounded time for the pull to finish. Returns right away otherwise.
+     * Called before a launch on that server so that it does not race an in-flight pull of its own image.
+     */
+    void awaitPull(DockerServer server, String imageName);
+
+    /**
+     * @return The state of every image the warmer knows about, on each server.
+     */
+    List<WarmImageStatus> getStatus();
+}
@@ -0,0 +1,36 @@
+package org.nrg.containers.services;
+
+import org.nrg.containers.model.cluster.entity.TaskLeaseEntity;
+import org.nrg.framework.orm.hibernate.BaseHibernateService;
+
+import javax.annotation.Nullable;
+import java.util.Date;
+
+/**
+ * Leases that let exactly one node of a cluster run a task. Lease times come from each node's clock,
+ * so the nodes' clocks should be kept in sync.
+ */
+public interface TaskLeaseService extends BaseHibernateService<TaskLeaseEntity> {
+    /**
+     * @return An id for this node, unique in the cluster, used as the holder of its leases.
+     */
+    String getNodeId();
+
+    /**
+     * Take the lease on a task for this node, or renew it if this node already has it.
+     *
+     * @return {@code true} if this node now has the lease for the given time.
+     */
+    boolean tryAcquire(String name, long leaseMillis);
+
+    /**
+     * @return When the current lease on the task expires, or null if there has never been one.
+     */
+    @Nullable
+    Date getExpiry(String name);
+
+    /**
+     * Give up this node's lease on a task, if it has it.
+     */
+    void release(String name);
+}
@@ -0,0 +1,451 @@
+package org.nrg.containers.services.impl;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.commons.lang3.StringUtils;
+import org.nrg.containers.exceptions.BadRequestException;
+import org.nrg.containers.exceptions.CommandResolutionException;
+import org.nrg.containers.exceptions.UnauthorizedException;
+import org.nrg.containers.model.command.auto.Command.ConfiguredCommand;
+import org.nrg.containers.model.command.auto.LaunchReport;
+import org.nrg.containers.model.command.auto.ResolvedCommand;
+import org.nrg.containers.model.command.auto.ResolvedCommand.PartiallyResolvedCommand;
+import org.nrg.containers.model.configuration.ContainerServicePrefsBean;
+import org.nrg.containers.model.container.LaunchPriority;
+import org.nrg.containers.model.container.auto.Container;
+import org.nrg.containers.model.container.entity.ContainerEntity;
+import org.nrg.containers.services.BulkLaunchService;
+import org.nrg.containers.services.CommandResolutionService;
+import org.nrg.containers.services.CommandService;
+import org.nrg.containers.services.ContainerService;
+import org.nrg.framework.exceptions.NotFoundException;
+import org.nrg.xft.security.UserI;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.Nonnull;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+@Service
+public class BulkLaunchServiceImpl implements BulkLaunchService, DisposableBean {
+    private static final Logger log = LoggerFactory.getLogger(BulkLaunchServiceImpl.class);
+
+    private static final int DEFAULT_PARALLELISM = 4;
+    private static final int MAX_PARALLELISM = 64;
+    private static final int PRE_RESOLVE_PARALLELISM = 4;
+
+    private final ContainerService containerService;
+    private final CommandService commandService;
+    private final CommandResolutionService commandResolutionService;
+    private final ContainerServicePrefsBean containerServicePrefsBean;
+
+    // Shared by all bulk launches, so the total load on the database and Docker server stays bounded.
+    // The pool is resized to the configured parallelism at the start of each bulk launch.
+    private final ThreadPoolExecutor launchExecutor = new ThreadPoolExecutor(DEFAULT_PARALLELISM, DEFAULT_PARALLELISM,
+            1L, TimeUnit.MINUTES, new LinkedBlockingQueue<Runnable>(),
+            new ThreadFactoryBuilder().setNameFormat("container-bulk-launch-%d").setDaemon(true).build());
+    // Building the bulk launch UI only reads, so it gets a small pool of its own and does not wait behind launches
+    private final ThreadPoolExecutor preResolveExecutor = new ThreadPoolExecutor(PRE_RESOLVE_PARALLELISM, PRE_RESOLVE_PARALLELISM,
+            1L, TimeUnit.MINUTES, new LinkedBlockingQueue<Runnable>(),
+            new ThreadFactoryBuilder().setNameFormat("container-bulk-launch-ui-%d").setDaemon(true).build());
+
+    @Autowired
+    public BulkLaunchServiceImpl(final ContainerService containerService,
+                                 final CommandService commandService,
+                                 final CommandResolutionService commandResolutionService,
+                                 final ContainerServicePrefsBean containerServicePrefsBean) {
+        this.containerService = containerService;
+        this.commandService = commandService;
+        this.commandResolutionService = commandResolutionService;
+        this.containerServicePrefsBean = containerServicePrefsBean;
+        launchExecutor.allowCoreThreadTimeOut(true);
+        preResolveExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    @Override
+    @Nonnull
+    public LaunchReport launch(final String project,
+                               final long commandId,
+                               final String wrapperName,
+                               final long wrapperId,
+                               final Map<String, String> launchParams,
+                               final UserI userI) {
+        return launch(project, commandId, wrapperName, wrapperId, launchParams, userI, LaunchPriority.INTERACTIVE);
+    }
+
+    private LaunchReport launch(final String project,
+                                final long commandId,
+                                final String wrapperName,
+                                final long wrapperId,
+                                final Map<String, String> launchParams,
+                                final UserI userI,
+                                final LaunchPriority defaultPriority) {
+        try {
+            final Container container = containerService.resolveCommandAndLaunchContainer(project, commandId, wrapperName, wrapperId,
+                    launchParams, userI, defaultPriority, null);
+            if (container == null) {
+                throw new CommandResolutionException("Something happened but I do not know what.");
+            }
+            if (log.isInfoEnabled()) {
+                log.info("Launched command {}, wrapper {} {}. Produced container {}.", commandId, wrapperId, wrapperName, container.databaseId());
+                if (log.isDebugEnabled()) {
+                    log.debug("" + container);
+                }
+            }
+
+            return successReport(container, container.getRawInputs());
+        } catch (Throwable t) {
+            if (log.isInfoEnabled()) {
+                log.error("Launch failed for command wrapper name {}.", wrapperName);
+                log.error(mapLogString("Params: ", launchParams));
+                log.error("Exception: ", t);
+            }
+            return LaunchReport.Failure.create(t.getMessage() != null ? t.getMessage() : "", launchParams, commandId, wrapperId);
+        }
+    }
+
+    @Override
+    @Nonnull
+    public List<LaunchReport> launch(final String project,
+                                     final long commandId,
+                                     final String wrapperName,
+                                     final long wrapperId,
+                                     final List<Map<String, String>> launchParamSets,
+                                     final UserI userI) {
+        resizePool();
+
+        final ConfiguredCommand batchedCommand = getBatchedCommand(project, commandId, wrapperName, wrapperId);
+        if (batchedCommand != null && launchParamSets.size() > 1) {
+            return launchBatched(batchedCommand, project, commandId, wrapperId, launchParamSets, userI);
+        }
+
+        final List<Future<LaunchReport>> futures = Lists.newArrayListWithCapacity(launchParamSets.size());
+        for (final Map<String, String> launchParams : launchParamSets) {
+            futures.add(launchExecutor.submit(new Callable<LaunchReport>() {
+                @Override
+                public LaunchReport call() {
+                    return launch(project, commandId, wrapperName, wrapperId, launchParams, userI, LaunchPriority.BULK);
+                }
+            }));
+        }
+
+        final List<LaunchReport> reports = Lists.newArrayListWithCapacity(futures.size());
+        boolean interrupted = false;
+        for (int i = 0; i < futures.size(); i++) {
+            final Map<String, String> launchParams = launchParamSets.get(i);
+            if (interrupted) {
+                futures.get(i).cancel(false);
+                reports.add(LaunchReport.Failure.create("The bulk launch was interrupted before this item was launched.", launchParams, commandId, wrapperId));
+                continue;
+            }
+            try {
+                reports.add(futures.get(i).get());
+            } catch (InterruptedException e) {
+                interrupted = true;
+                futures.get(i).cancel(false);
+                reports.add(LaunchReport.Failure.create("The bulk launch was interrupted before this item was launched.", launchParams, commandId, wrapperId));
+            } catch (ExecutionException e) {
+                // launch() catches everything, so this should not happen
+                final Throwable cause = e.getCause() == null ? e : e.getCause();
+                reports.add(LaunchReport.Failure.create(cause.getMessage() != null ? cause.getMessage() : "", launchParams, commandId, wrapperId));
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        return reports;
+    }
+
+    @Override
+    @Nonnull
+    public LaunchReport.BulkLaunchReport bulkLaunch(final String project,
+                                                    final long commandId,
+                                                    final String wrapperName,
+                                                    final long wrapperId,
+                                                    final List<Map<String, String>> launchParamSets,
+                                                    final UserI userI) {
+        final LaunchReport.BulkLaunchReport.Builder reportBuilder = LaunchReport.BulkLaunchReport.builder();
+        for (final LaunchReport report : launch(project, commandId, wrapperName, wrapperId, launchParamSets, userI)) {
+            reportBuilder.addReport(report);
+        }
+        return reportBuilder.build();
+    }
+
+    @Override
+    @Nonnull
+    public List<PartiallyResolvedCommand> preResolve(final String project,
+                                                     final long commandId,
+                                                     final String wrapperName,
+                                                     final long wrapperId,
+                                                     final Map<String, String> allRequestParams,
+                                                     final UserI userI)
+            throws NotFoundException, CommandResolutionException, UnauthorizedException, BadRequestException {
+        final List<Map<String, String>> paramsMapList = expandParams(allRequestParams, containerServicePrefsBean.getBulkLaunchUiMaxItems());
+
+        final ConfiguredCommand configuredCommand = configure(project, commandId, wrapperName, wrapperId);
+
+        // Items differ only in the inputs given several values, which are the selected root objects.
+        // The same root can be selected more than once; resolve it only once.
+        final List<String> rootInputs = multiValuedInputs(allRequestParams);
+        final Map<List<String>, Future<PartiallyResolvedCommand>> futuresByRootIds = Maps.newLinkedHashMap();
+        for (final Map<String, String> paramsMap : paramsMapList) {
+            final List<String> rootIds = rootIds(rootInputs, paramsMap);
+            if (!futuresByRootIds.containsKey(rootIds)) {
+                futuresByRootIds.put(rootIds, preResolveExecutor.submit(new Callable<PartiallyResolvedCommand>() {
+                    @Override
+                    public PartiallyResolvedCommand call() throws Exception {
+                        return commandResolutionService.preResolve(configuredCommand, paramsMap, userI);
+                    }
+                }));
+            }
+        }
+        log.debug("Pre-resolving {} distinct of {} bulk launch items for wrapper {} {}.", futuresByRootIds.size(), paramsMapList.size(), wrapperId, wrapperName);
+
+        final Map<List<String>, PartiallyResolvedCommand> resolvedByRootIds = Maps.newHashMap();
+        try {
+            for (final Map.Entry<List<String>, Future<PartiallyResolvedCommand>> entry : futuresByRootIds.entrySet()) {
+                resolvedByRootIds.put(entry.getKey(), entry.getValue().get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CommandResolutionException("Interrupted while building the bulk launch UI.", e);
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause() == null ? e : e.getCause();
+            if (cause instanceof CommandResolutionException) {
+                throw (CommandResolutionException) cause;
+            } else if (cause instanceof UnauthorizedException) {
+                throw (UnauthorizedException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new CommandResolutionException(cause);
+        } finally {
+            for (final Future<PartiallyResolvedCommand> future : futuresByRootIds.values()) {
+                future.cancel(false);
+            }
+        }
+
+        final List<PartiallyResolvedCommand> resolved = Lists.newArrayListWithCapacity(paramsMapList.size());
+        for (final Map<String, String> paramsMap : paramsMapList) {
+            resolved.add(resolvedByRootIds.get(rootIds(rootInputs, paramsMap)));
+        }
+        return resolved;
+    }
+
+    /**
+     * @return Names of the inputs given more than one comma-separated value, in request order.
+     */
+    private static List<String> multiValuedInputs(final Map<String, String> allRequestParams) {
+        final List<String> multiValued = Lists.newArrayList();
+        for (final Map.Entry<String, String> param : allRequestParams.entrySet()) {
+            final String[] values = StringUtils.split(param.getValue(), ",");
+            if (values != null && values.length > 1) {
+                multiValued.add(param.getKey());
+            }
+        }
+        return multiValued;
+    }
+
+    private static List<String> rootIds(final List<String> rootInputs, final Map<String, String> paramsMap) {
+        final List<String> rootIds = Lists.newArrayListWithCapacity(rootInputs.size());
+        for (final String rootInput : rootInputs) {
+            rootIds.add(paramsMap.get(rootInput));
+        }
+        return rootIds;
+    }
+
+    private ConfiguredCommand configure(final String project,
+                                        final long commandId,
+                                        final String wrapperName,
+                                        final long wrapperId) throws NotFoundException {
+        return project == null ?
+                (commandId == 0L && wrapperName == null ?
+                        commandService.getAndConfigure(wrapperId) :
+                        commandService.getAndConfigure(commandId, wrapperName)) :
+                (commandId == 0L && wrapperName == null ?
+                        commandService.getAndConfigure(project, wrapperId) :
+                        commandService.getAndConfigure(project, commandId, wrapperName));
+    }
+
+    /**
+     * @return The configured command, if its wrapper runs in batches. Otherwise, or if the command cannot be
+     * configured, null; the items are then launched one at a time, and report their own failures.
+     */
+    private ConfiguredCommand getBatchedCommand(final String project,
+                                                final long commandId,
+                                                final String wrapperName,
+                                                final long wrapperId) {
+        try {
+            final ConfiguredCommand configuredCommand = configure(project, commandId, wrapperName, wrapperId);
+            return configuredCommand != null && configuredCommand.wrapper().isBatched() ? configuredCommand : null;
+        } catch (Exception e) {
+            log.debug("Could not configure command {}, wrapper {} {} to check for batch mode.", commandId, wrapperId, wrapperName, e);
+            return null;
+        }
+    }
+
+    /**
+     * Resolve every item in parallel, then launch the items that resolved in batches of the wrapper's batch size,
+     * one container per batch. Every item in a batch gets a report for the batch's container.
+     */
+    private List<LaunchReport> launchBatched(final ConfiguredCommand configuredCommand,
+                                             final String project,
+                                             final long commandId,
+                                             final long wrapperId,
+                                             final List<Map<String, String>> launchParamSets,
+                                             final UserI userI) {
+        final int batchSize = configuredCommand.wrapper().batchSize();
+        final List<Future<ResolvedCommand>> resolveFutures = Lists.newArrayListWithCapacity(launchParamSets.size());
+        for (final Map<String, String> launchParams : launchParamSets) {
+            resolveFutures.add(launchExecutor.submit(new Callable<ResolvedCommand>() {
+                @Override
+                public ResolvedCommand call() throws Exception {
+                    final ResolvedCommand resolvedCommand = commandResolutionService.resolve(configuredCommand, launchParams, userI);
+                    return project == null ? resolvedCommand : resolvedCommand.toBuilder().project(project).build();
+                }
+            }));
+        }
+
+        final LaunchReport[] reports = new LaunchReport[launchParamSets.size()];
+        final List<Integer> resolvedIndices = Lists.newArrayList();
+        final List<ResolvedCommand> resolved = Lists.newArrayList();
+        for (int i = 0; i < resolveFutures.size(); i++) {
+            try {
+                resolved.add(resolveFutures.get(i).get());
+                resolvedIndices.add(i);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                reports[i] = LaunchReport.Failure.create("The bulk launch was interrupted before this item was launched.", launchParamSets.get(i), commandId, wrapperId);
+            } catch (ExecutionException e) {
+                final Throwable cause = e.getCause() == null ? e : e.getCause();
+                log.error("Could not resolve bulk launch item {} for batched wrapper {}.", i, wrapperId, cause);
+                reports[i] = LaunchReport.Failure.create(cause.getMessage() != null ? cause.getMessage() : "", launchParamSets.get(i), commandId, wrapperId);
+            }
+        }
+
+        final List<List<Integer>> batchIndices = Lists.partition(resolvedIndices, batchSize);
+        final List<Future<Container>> launchFutures = Lists.newArrayListWithCapacity(batchIndices.size());
+        for (final List<ResolvedCommand> batch : Lists.partition(resolved, batchSize)) {
+            launchFutures.add(launchExecutor.submit(new Callable<Container>() {
+                @Override
+                public Container call() throws Exception {
+                    return containerService.launchResolvedCommand(commandResolutionService.resolveBatch(batch), userI, LaunchPriority.BULK);
+                }
+            }));
+        }
+        for (int b = 0; b < launchFutures.size(); b++) {
+            Container container = null;
+            String message = null;
+            try {
+                container = launchFutures.get(b).get();
+                log.info("Launched a batch of {} items for wrapper {}. Produced container {}.", batchIndices.get(b).size(), wrapperId, container.databaseId());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                message = "The bulk launch was interrupted before this item was launched.";
+            } catch (ExecutionException e) {
+                final Throwable cause = e.getCause() == null ? e : e.getCause();
+                log.error("Could not launch a batch of {} items for wrapper {}.", batchIndices.get(b).size(), wrapperId, cause);
+                message = cause.getMessage() != null ? cause.getMessage() : "";
+            }
+            for (final Integer i : batchIndices.get(b)) {
+                reports[i] = container == null ?
+                        LaunchReport.Failure.create(message, launchParamSets.get(i), commandId, wrapperId) :
+                        successReport(container, launchParamSets.get(i));
+            }
+        }
+        return Lists.newArrayList(reports);
+    }
+
+    private LaunchReport successReport(final Container container, final Map<String, String> launchParams) {
+        final Long commandId = container.commandId() == 0L ? null : container.commandId();
+        final Long wrapperId = container.wrapperId() == 0L ? null : container.wrapperId();
+        if (ContainerEntity.QUEUED.equals(container.status())) {
+            return LaunchReport.QueuedSuccess.create(container.databaseId(), launchParams, commandId, wrapperId);
+        }
+        return container.isSwarmService() ?
+                LaunchReport.ServiceSuccess.create(StringUtils.defaultString(container.serviceId()), launchParams, commandId, wrapperId) :
+                LaunchReport.ContainerSuccess.create(StringUtils.defaultString(container.containerId()), launchParams, commandId, wrapperId);
+    }
+
+    /**
+     * Split comma-separated parameter values, and make one parameter map per combination of values.
+     * The number of combinations is checked against the limit before any of them are made.
+     */
+    private List<Map<String, String>> expandParams(final Map<String, String> allRequestParams,
+                                                  final Integer maxItems) throws BadRequestException {
+        final Map<String, String[]> splitParams = Maps.newLinkedHashMap();
+        long itemCount = 1L;
+        for (final Map.Entry<String, String> param : allRequestParams.entrySet()) {
+            final String[] splitValue = StringUtils.split(param.getValue(), ",");
+            splitParams.put(param.getKey(), splitValue.length > 1 ? splitValue : new String[]{param.getValue()});
+            itemCount *= Math.max(1, splitValue.length);
+            if (maxItems != null && maxItems > 0 && itemCount > maxItems) {
+                throw new BadRequestException(String.format("The bulk launch would have more than %d items. Select fewer items, or ask an administrator to raise the limit.", maxItems));
+            }
+        }
+
+        List<Map<String, String>> paramsMapList = Lists.newArrayList();
+        paramsMapList.add(Maps.<String, String>newHashMap());
+        for (final Map.Entry<String, String[]> param : splitParams.entrySet()) {
+            final List<Map<String, String>> expanded = Lists.newArrayListWithCapacity(paramsMapList.size() * param.getValue().length);
+            for (final Map<String, String> paramsMap : paramsMapList) {
+                for (final String value : param.getValue()) {
+                    final Map<String, String> paramsMapCopy = Maps.newHashMap(paramsMap);
+                    paramsMapCopy.put(param.getKey(), value);
+                    expanded.add(paramsMapCopy);
+                }
+            }
+            paramsMapList = expanded;
+        }
+        return paramsMapList;
+    }
+
+    @Override
+    public void destroy() {
+        launchExecutor.shutdownNow();
+        preResolveExecutor.shutdownNow();
+    }
+
+    private synchronized void resizePool() {
+        final Integer configured = containerServicePrefsBean.getBulkLaunchParallelism();
+        final int parallelism = configured == null || configured <= 0 ? DEFAULT_PARALLELISM : Math.min(configured, MAX_PARALLELISM);
+        if (parallelism == launchExecutor.getCorePoolSize()) {
+            return;
+        }
+        log.debug("Setting bulk launch parallelism to {}.", parallelism);
+        if (parallelism > launchExecutor.getMaximumPoolSize()) {
+            launchExecutor.setMaximumPoolSize(parallelism);
+            launchExecutor.setCorePoolSize(parallelism);
+        } else {
+            launchExecutor.setCorePoolSize(parallelism);
+            launchExecutor.setMaximumPoolSize(parallelism);
+        }
+    }
+
+    private String mapLogString(final String title, final Map<String, String> map) {
+        final StringBuilder messageBuilder = new StringBuilder(title);
+        if (map == null || map.isEmpty()) {
+            return title;
+        }
+        for (Map.Entry<String, String> entry : map.entrySet()) {
+            messageBuilder.append(entry.getKey());
+            messageBuilder.append(": ");
+            messageBuilder.append(entry.getValue());
+            messageBuilder.append(", ");
+        }
+        return messageBuilder.substring(0, messageBuilder.length() - 2);
+    }
+}
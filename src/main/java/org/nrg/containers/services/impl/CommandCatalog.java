@@ -0,0 +1,201 @@
+package org.nrg.containers.services.impl;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import org.nrg.containers.model.command.auto.Command;
+import org.nrg.containers.model.command.auto.Command.CommandWrapper;
+import org.nrg.xdat.schema.SchemaElement;
+import org.nrg.xft.exception.ElementNotFoundException;
+import org.nrg.xft.exception.XFTInitException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * An immutable snapshot of all commands and their wrappers, converted to POJOs, indexed by command id, by wrapper id,
+ * and for the "what can I run on this xsiType?" lookups.
+ *
+ * A snapshot is never modified. Changes to commands produce a new snapshot with a higher version,
+ * so readers can use whatever snapshot they hold without locking. A snapshot derived from another one
+ * is as old as the one it was derived from, since it has only caught up with changes made on this node.
+ *
+ * For each requested xsiType, the wrappers whose contexts are that type or one of its ancestors
+ * are computed once per snapshot and remembered.
+ */
+final class CommandCatalog {
+    private static final Logger log = LoggerFactory.getLogger(CommandCatalog.class);
+
+    // Requested xsiTypes come from users, so do not let the index grow without bound
+    private static final int MAX_INDEXED_XSI_TYPES = 500;
+
+    private final long version;
+    private final long created;
+    private final ImmutableMap<Long, Command> commandsById;
+    private final ImmutableMap<Long, Entry> entriesByWrapperId;
+    private final ImmutableList<Entry> entries;
+    private final ImmutableSet<String> contexts;
+    private final ConcurrentMap<String, ImmutableList<Entry>> entriesByXsiType = new ConcurrentHashMap<>();
+
+    private CommandCatalog(final long version, final long created, final Map<Long, Command> commandsById) {
+        this.version = version;
+        this.created = created;
+        this.commandsById = ImmutableMap.copyOf(commandsById);
+
+        final ImmutableMap.Builder<Long, Entry> entriesByWrapperId = ImmutableMap.builder();
+        final ImmutableList.Builder<Entry> entries = ImmutableList.builder();
+        final ImmutableSet.Builder<String> contexts = ImmutableSet.builder();
+        for (final Command command : this.commandsById.values()) {
+            for (final CommandWrapper wrapper : command.xnatCommandWrappers()) {
+                final Entry entry = new Entry(command, wrapper);
+                entriesByWrapperId.put(wrapper.id(), entry);
+                entries.add(entry);
+                contexts.addAll(wrapper.contexts());
+            }
+        }
+        this.entriesByWrapperId = entriesByWrapperId.build();
+        this.entries = entries.build();
+        this.contexts = contexts.build();
+    }
+
+    @Nonnull
+    static CommandCatalog build(final long version, final @Nonnull List<Command> commands) {
+        return build(version, commands, System.currentTimeMillis());
+    }
+
+    @Nonnull
+    @VisibleForTesting
+    static CommandCatalog build(final long version, final @Nonnull List<Command> commands, final long created) {
+        final Map<Long, Command> commandsById = Maps.newLinkedHashMap();
+        for (final Command command : commands) {
+            commandsById.put(command.id(), command);
+        }
+        return new CommandCatalog(version, created, commandsById);
+    }
+
+    /**
+     * @return A new snapshot in which the given command (and all its wrappers) replaces any previous version of it.
+     */
+    @Nonnull
+    CommandCatalog withCommand(final @Nonnull Command command) {
+        final Map<Long, Command> commandsById = Maps.newLinkedHashMap(this.commandsById);
+        commandsById.put(command.id(), command);
+        return new CommandCatalog(version + 1, created, commandsById);
+    }
+
+    /**
+     * @return A new snapshot without the command with the given id or any of its wrappers.
+     */
+    @Nonnull
+    CommandCatalog withoutCommand(final long commandId) {
+        final Map<Long, Command> commandsById = Maps.newLinkedHashMap(this.commandsById);
+        commandsById.remove(commandId);
+        return new CommandCatalog(version + 1, created, commandsById);
+    }
+
+    long version() {
+        return version;
+    }
+
+    boolean isOlderThan(final long maxAgeMillis) {
+        return System.currentTimeMillis() - created > maxAgeMillis;
+    }
+
+    @Nonnull
+    Collection<Command> commands() {
+        return commandsById.values();
+    }
+
+    @Nullable
+    Command command(final long commandId) {
+        return commandsById.get(commandId);
+    }
+
+    /**
+     * @return The wrapper with the given id, along with the command it belongs to.
+     */
+    @Nullable
+    Entry entry(final long wrapperId) {
+        return entriesByWrapperId.get(wrapperId);
+    }
+
+    /**
+     * Find the wrappers that can run on the xsiType, i.e. those with a context that is equal to the xsiType
+     * or is one of its ancestors. Wrappers are returned in catalog order.
+     */
+    @Nonnull
+    List<Entry> entriesFor(final @Nonnull String xsiType) {
+        final ImmutableList<Entry> indexed = entriesByXsiType.get(xsiType);
+        if (indexed != null) {
+            return indexed;
+        }
+
+        final ImmutableList<Entry> computed = computeEntriesFor(xsiType);
+        if (entriesByXsiType.size() < MAX_INDEXED_XSI_TYPES) {
+            final ImmutableList<Entry> raced = entriesByXsiType.putIfAbsent(xsiType, computed);
+            return raced == null ? computed : raced;
+        }
+        return computed;
+    }
+
+    @Nonnull
+    private ImmutableList<Entry> computeEntriesFor(final @Nonnull String xsiType) {
+        final Set<String> matchingContexts = Sets.newHashSet();
+        for (final String context : contexts) {
+            if (context.equals(xsiType) || isDescendedFrom(xsiType, context)) {
+                matchingContexts.add(context);
+            }
+        }
+
+        final ImmutableList.Builder<Entry> matching = ImmutableList.builder();
+        if (!matchingContexts.isEmpty()) {
+            for (final Entry entry : entries) {
+                if (!Sets.intersection(entry.wrapper().contexts(), matchingContexts).isEmpty()) {
+                    matching.add(entry);
+                }
+            }
+        }
+        return matching.build();
+    }
+
+    private static boolean isDescendedFrom(final @Nonnull String xsiType, final @Nonnull String ancestorXsiType) {
+        try {
+            return SchemaElement.GetElement(xsiType).getGenericXFTElement().instanceOf(ancestorXsiType);
+        } catch (XFTInitException e) {
+            log.error("XFT not initialized."); // If this happens, we have a lot of other problems.
+        } catch (ElementNotFoundException e) {
+            // Users may set whatever they want as the context and request it by name.
+            log.debug("Did not find XSI type \"{}\".", xsiType);
+        }
+        return false;
+    }
+
+    static final class Entry {
+        private final Command command;
+        private final CommandWrapper wrapper;
+
+        private Entry(final Command command, final CommandWrapper wrapper) {
+            this.command = command;
+            this.wrapper = wrapper;
+        }
+
+        Command command() {
+            return command;
+        }
+
+        CommandWrapper wrapper() {
+            return wrapper;
+        }
+    }
+}
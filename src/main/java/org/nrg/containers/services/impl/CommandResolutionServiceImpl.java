@@ -100,6 +100,9 @@ import static org.nrg.containers.model.command.entity.CommandWrapperInputType.SU
 public class CommandResolutionServiceImpl implements CommandResolutionService {
     private final Logger log = LoggerFactory.getLogger(CommandResolutionServiceImpl.class);
 
+    private static final String BATCH_STATUS_DIR = "status";
+    private static final String BATCH_STATUS_PATH = ResolvedCommand.BATCH_ROOT + "/" + BATCH_STATUS_DIR;
+
     private final CommandService commandService;
     private final ConfigService configService;
     private final SiteConfigPreferences siteConfigPreferences;
@@ -187,7 +190,10 @@ public class CommandResolutionServiceImpl implements CommandResolutionService {
                                    final Map<String, String> inputValues,
                                    final UserI userI)
             throws NotFoundException, CommandResolutionException, UnauthorizedException {
-        return resolve(commandService.getAndConfigure(project, wrapperId), inputValues, userI);
+        return resolve(commandService.getAndConfigure(project, wrapperId), inputValues, userI)
+                .toBuilder()
+                .project(project)
+                .build();
     }
 
     @Override
@@ -197,7 +203,10 @@ public class CommandResolutionServiceImpl implements CommandResolutionService {
                                    final Map<String, String> inputValues,
                                    final UserI userI)
             throws NotFoundException, CommandResolutionException, UnauthorizedException {
-        return resolve(commandService.getAndConfigure(project, commandId, wrapperName), inputValues, userI);
+        return resolve(commandService.getAndConfigure(project, commandId, wrapperName), inputValues, userI)
+                .toBuilder()
+                .project(project)
+                .build();
     }
 
     // @Override
@@ -234,6 +243,72 @@ public class CommandResolutionServiceImpl implements CommandResolutionService {
         return helper.resolve();
     }
 
+    @Override
+    @Nonnull
+    public ResolvedCommand resolveBatch(final List<ResolvedCommand> items) throws CommandResolutionException {
+        if (items == null || items.isEmpty()) {
+            throw new CommandResolutionException("Cannot resolve an empty batch.");
+        }
+        final ResolvedCommand first = items.get(0);
+        final List<Map<String, Object>> manifestItems = Lists.newArrayList();
+        for (int i = 0; i < items.size(); i++) {
+            final ResolvedCommand item = items.get(i);
+            if (item.isBatch() || !item.setupCommands().isEmpty()) {
+                throw new CommandResolutionException(String.format("Batch item %d cannot be batched: it has setup commands.", i));
+            }
+            if (!first.wrapperId().equals(item.wrapperId())) {
+                throw new CommandResolutionException(String.format("Batch item %d is for wrapper %d, not %d.", i, item.wrapperId(), first.wrapperId()));
+            }
+
+            final Map<String, String> mounts = Maps.newLinkedHashMap();
+            for (final ResolvedCommandMount mount : item.mounts()) {
+                mounts.put(mount.name(), ResolvedCommand.batchItemContainerPath(mount.containerPath(), i));
+            }
+            final Map<String, String> outputs = Maps.newLinkedHashMap();
+            for (final ResolvedCommandOutput output : item.outputs()) {
+                final String mountPath = mounts.get(output.mount());
+                outputs.put(output.name(), StringUtils.isBlank(output.path()) ? mountPath : mountPath + "/" + output.path());
+            }
+
+            final Map<String, Object> manifestItem = Maps.newLinkedHashMap();
+            manifestItem.put("index", i);
+            manifestItem.put("wrapper-inputs", item.wrapperInputValues());
+            manifestItem.put("command-inputs", item.commandInputValues());
+            manifestItem.put("mounts", mounts);
+            manifestItem.put("outputs", outputs);
+            manifestItem.put("status-file", BATCH_STATUS_PATH + "/" + ResolvedCommand.batchItemStatusFile(i));
+            manifestItems.add(manifestItem);
+        }
+
+        final String buildDir = siteConfigPreferences.getBuildPath() == null ? null :
+                FilenameUtils.concat(siteConfigPreferences.getBuildPath(), UUID.randomUUID().toString());
+        try {
+            if (buildDir == null) {
+                throw new IOException("No build path is configured.");
+            }
+            final Path created = Files.createDirectory(Paths.get(buildDir));
+            mapper.writeValue(created.resolve(ResolvedCommand.BATCH_MANIFEST_FILE).toFile(),
+                    Collections.singletonMap("items", manifestItems));
+            Files.createDirectory(created.resolve(BATCH_STATUS_DIR));
+        } catch (IOException e) {
+            throw new CommandResolutionException("Could not write batch manifest to build directory " + buildDir, e);
+        }
+
+        return ResolvedCommand.batch(items, ResolvedCommandMount.builder()
+                .name(ResolvedCommand.BATCH_MANIFEST_MOUNT)
+                .containerPath(ResolvedCommand.BATCH_ROOT + "/manifest")
+                .xnatHostPath(buildDir)
+                .containerHostPath(buildDir)
+                .writable(false)
+                .build(), ResolvedCommandMount.builder()
+                .name(ResolvedCommand.BATCH_STATUS_MOUNT)
+                .containerPath(BATCH_STATUS_PATH)
+                .xnatHostPath(FilenameUtils.concat(buildDir, BATCH_STATUS_DIR))
+                .containerHostPath(FilenameUtils.concat(buildDir, BATCH_STATUS_DIR))
+                .writable(true)
+                .build());
+    }
+
     private class CommandResolutionHelper {
         private final String JSONPATH_SUBSTRING_REGEX = "\\^(wrapper:)?(.+)\\^";
 
@@ -351,6 +426,18 @@ public class CommandResolutionServiceImpl implements CommandResolutionService {
                 );
             }
 
+            // The command's resources were merged from the command, wrapper, site, and project. Each was checked
+            // when it was saved, but the combination may still not make sense.
+            if (command.resources() != null) {
+                final List<String> resourceErrors = command.resources().validate();
+                if (!resourceErrors.isEmpty()) {
+                    throw new CommandResolutionException(
+                            String.format("The resources configured for wrapper \"%s\" cannot be used. %s",
+                                    commandWrapper.name(), StringUtils.join(resourceErrors, " "))
+                    );
+                }
+            }
+
             final ResolvedCommand resolvedCommand = ResolvedCommand.builder()
                     .wrapperId(commandWrapper.id())
                     .wrapperName(commandWrapper.name())
@@ -368,6 +455,8 @@ public class CommandResolutionServiceImpl implements CommandResolutionService {
                     .workingDirectory(resolveWorkingDirectory(resolvedInputValuesByReplacementKey))
                     .ports(resolvePorts(resolvedInputValuesByReplacementKey))
                     .mounts(resolveCommandMounts(resolvedInputTrees, resolvedInputValuesByReplacementKey))
+                    .resources(command.resources())
+                    .priority(commandWrapper.priority())
                     .setupCommands(resolvedSetupCommands)
                     .build();
 
@@ -2,6 +2,7 @@ package org.nrg.containers.services.impl;
 
 import com.google.common.base.Function;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import com.jayway.jsonpath.Configuration;
 import com.jayway.jsonpath.Option;
@@ -11,10 +12,13 @@ import com.jayway.jsonpath.spi.mapper.JacksonMappingProvider;
 import com.jayway.jsonpath.spi.mapper.MappingProvider;
 import org.nrg.containers.exceptions.CommandValidationException;
 import org.nrg.containers.model.command.auto.CommandSummaryForContext;
+import org.nrg.containers.model.configuration.CommandCatalogReport;
+import org.nrg.containers.model.configuration.CommandCatalogReport.WrapperReport;
 import org.nrg.containers.model.configuration.CommandConfiguration;
 import org.nrg.containers.model.command.entity.CommandEntity;
 import org.nrg.containers.model.command.entity.CommandWrapperEntity;
 import org.nrg.containers.model.command.auto.Command;
+import org.nrg.containers.model.command.auto.CommandResources;
 import org.nrg.containers.model.command.auto.Command.CommandWrapper;
 import org.nrg.containers.model.configuration.CommandConfigurationInternal;
 import org.nrg.containers.model.configuration.ProjectEnabledReport;
@@ -25,10 +29,8 @@ import org.nrg.containers.services.ContainerConfigService.CommandConfigurationEx
 import org.nrg.framework.exceptions.NotFoundException;
 import org.nrg.framework.exceptions.NrgRuntimeException;
 import org.nrg.framework.exceptions.NrgServiceRuntimeException;
-import org.nrg.xdat.schema.SchemaElement;
 import org.nrg.xdat.security.helpers.Permissions;
 import org.nrg.xft.exception.ElementNotFoundException;
-import org.nrg.xft.exception.XFTInitException;
 import org.nrg.xft.security.UserI;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -36,23 +38,38 @@ import org.springframework.beans.factory.InitializingBean;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
 
 @Service
 public class CommandServiceImpl implements CommandService, InitializingBean {
     private static final Logger log = LoggerFactory.getLogger(CommandServiceImpl.class);
 
+    // Commands changed through this service update the catalog immediately. Rebuild it periodically anyway
+    // to pick up changes made on other nodes.
+    private static final long CATALOG_MAX_AGE_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
     private final CommandEntityService commandEntityService;
     private final ContainerConfigService containerConfigService;
 
+    // Only writers take the lock. Readers read the volatile snapshot, which is never changed once published.
+    private final ReentrantLock catalogLock = new ReentrantLock();
+    private volatile CommandCatalog catalog;
+    // Versions keep increasing even when the catalog is thrown away, so callers can key caches by them
+    private long lastCatalogVersion = -1;
+
     @Autowired
     public CommandServiceImpl(final CommandEntityService commandEntityService,
                               final ContainerConfigService containerConfigService) {
@@ -98,7 +115,9 @@ public class CommandServiceImpl implements CommandService, InitializingBean {
             log.error(sb.toString());
             throw new CommandValidationException(errors);
         }
-        return toPojo(commandEntityService.create(fromPojo(command)));
+        final Command created = toPojo(commandEntityService.create(fromPojo(command)));
+        refreshCatalog(created);
+        return created;
     }
 
     @Override
@@ -110,6 +129,10 @@ public class CommandServiceImpl implements CommandService, InitializingBean {
     @Override
     @Nullable
     public Command retrieve(final long id) {
+        final Command cached = catalog().command(id);
+        if (cached != null) {
+            return cached;
+        }
         final CommandEntity commandEntity = commandEntityService.retrieve(id);
         return commandEntity == null ? null : toPojo(commandEntity);
     }
@@ -117,7 +140,8 @@ public class CommandServiceImpl implements CommandService, InitializingBean {
     @Override
     @Nonnull
     public Command get(final long id) throws NotFoundException {
-        return toPojo(commandEntityService.get(id));
+        final Command cached = catalog().command(id);
+        return cached != null ? cached : toPojo(commandEntityService.get(id));
     }
 
     @Override
@@ -136,7 +160,9 @@ public class CommandServiceImpl implements CommandService, InitializingBean {
         }
         final CommandEntity updatableEntity = fromPojo(toUpdate);
         commandEntityService.update(updatableEntity);
-        return toPojo(updatableEntity);
+        final Command updated = toPojo(updatableEntity);
+        refreshCatalog(updated);
+        return updated;
     }
 
     @Override
@@ -151,6 +177,7 @@ public class CommandServiceImpl implements CommandService, InitializingBean {
         }
 
         commandEntityService.delete(command.id());
+        removeFromCatalog(command.id());
     }
 
     @Override
@@ -196,7 +223,9 @@ public class CommandServiceImpl implements CommandService, InitializingBean {
     public CommandWrapper addWrapper(final @Nonnull Command command, final @Nonnull CommandWrapper wrapperToAdd) throws CommandValidationException, NotFoundException {
         final CommandWrapper created = toPojo(commandEntityService.addWrapper(fromPojo(command), fromPojo(wrapperToAdd)));
 
-        final List<String> errors = get(command.id()).validate();
+        final Command withAddedWrapper = get(command.id());
+        refreshCatalog(withAddedWrapper);
+        final List<String> errors = withAddedWrapper.validate();
         if (!errors.isEmpty()) {
             throw new CommandValidationException(errors);
         }
@@ -206,6 +235,10 @@ public class CommandServiceImpl implements CommandService, InitializingBean {
     @Override
     @Nullable
     public CommandWrapper retrieveWrapper(final long wrapperId) {
+        final CommandCatalog.Entry cached = catalog().entry(wrapperId);
+        if (cached != null) {
+            return cached.wrapper();
+        }
         final CommandWrapperEntity commandWrapperEntity = commandEntityService.retrieveWrapper(wrapperId);
         return commandWrapperEntity == null ? null : toPojo(commandWrapperEntity);
     }
@@ -213,6 +246,10 @@ public class CommandServiceImpl implements CommandService, InitializingBean {
     @Override
     @Nullable
     public CommandWrapper retrieveWrapper(final long commandId, final String wrapperName) {
+        final CommandWrapper cached = cachedWrapper(commandId, wrapperName);
+        if (cached != null) {
+            return cached;
+        }
         final CommandWrapperEntity commandWrapperEntity = commandEntityService.retrieveWrapper(commandId, wrapperName);
         return commandWrapperEntity == null ? null : toPojo(commandWrapperEntity);
     }
@@ -220,12 +257,20 @@ public class CommandServiceImpl implements CommandService, InitializingBean {
     @Override
     @Nonnull
     public CommandWrapper getWrapper(final long wrapperId) throws NotFoundException {
+        final CommandCatalog.Entry cached = catalog().entry(wrapperId);
+        if (cached != null) {
+            return cached.wrapper();
+        }
         return toPojo(commandEntityService.getWrapper(wrapperId));
     }
 
     @Override
     @Nonnull
     public CommandWrapper getWrapper(final long commandId, final String wrapperName) throws NotFoundException {
+        final CommandWrapper cached = cachedWrapper(commandId, wrapperName);
+        if (cached != null) {
+            return cached;
+        }
         return toPojo(commandEntityService.getWrapper(commandId, wrapperName));
     }
 
@@ -237,7 +282,9 @@ public class CommandServiceImpl implements CommandService, InitializingBean {
         final CommandWrapperEntity template = commandEntityService.getWrapper(toUpdate.id());
         final CommandWrapper updated = toPojo(commandEntityService.update(template.update(toUpdate)));
 
-        final List<String> errors = toPojo(commandEntity).validate();
+        final Command withUpdatedWrapper = toPojo(commandEntity);
+        refreshCatalog(withUpdatedWrapper);
+        final List<String> errors = withUpdatedWrapper.validate();
         if (!errors.isEmpty()) {
             throw new CommandValidationException(errors);
         }
@@ -247,12 +294,24 @@ public class CommandServiceImpl implements CommandService, InitializingBean {
     @Override
     @Transactional
     public void deleteWrapper(final long wrapperId) {
+        final CommandCatalog current = catalog;
+        final CommandCatalog.Entry entry = current == null ? null : current.entry(wrapperId);
+        final Long commandId = entry == null ? null : entry.command().id();
+
         commandEntityService.deleteWrapper(wrapperId);
+
+        if (commandId != null) {
+            refreshCatalog(commandId);
+        } else {
+            invalidateCatalog();
+        }
     }
 
     @Override
     public void configureForSite(final CommandConfiguration commandConfiguration, final long wrapperId, final boolean enable, final String username, final String reason)
-            throws CommandConfigurationException, NotFoundException {
+            throws CommandConfigurationException, CommandValidationException, NotFoundException {
+        validateResources(commandConfiguration.resources(), wrapperId, null);
+
         // If the "enable" param is true, we enable the configuration.
         // Otherwise, we leave the existing "enabled" setting alone (even if it is null).
         // We will never change "enabled" to "false" here.
@@ -264,12 +323,15 @@ public class CommandServiceImpl implements CommandService, InitializingBean {
 
     @Override
     public void configureForSite(final CommandConfiguration commandConfiguration, final long commandId, final String wrapperName, final boolean enable, final String username, final String reason)
-            throws CommandConfigurationException, NotFoundException {
+            throws CommandConfigurationException, CommandValidationException, NotFoundException {
         configureForSite(commandConfiguration, getWrapperId(commandId, wrapperName), enable, username, reason);
     }
 
     @Override
-    public void configureForProject(final CommandConfiguration commandConfiguration, final String project, final long wrapperId, final boolean enable, final String username, final String reason) throws CommandConfigurationException, NotFoundException {
+    public void configureForProject(final CommandConfiguration commandConfiguration, final String project, final long wrapperId, final boolean enable, final String username, final String reason)
+            throws CommandConfigurationException, CommandValidationException, NotFoundException {
+        validateResources(commandConfiguration.resources(), wrapperId, project);
+
         // If the "enable" param is true, we enable the configuration.
         // Otherwise, we leave the existing "enabled" setting alone (even if it is null).
         // We will never change "enabled" to "false" here.
@@ -280,7 +342,8 @@ public class CommandServiceImpl implements CommandService, InitializingBean {
     }
 
     @Override
-    public void configureForProject(final CommandConfiguration commandConfiguration, final String project, final long commandId, final String wrapperName, final boolean enable, final String username, final String reason) throws CommandConfigurationException, NotFoundException {
+    public void configureForProject(final CommandConfiguration commandConfiguration, final String project, final long commandId, final String wrapperName, final boolean enable, final String username, final String reason)
+            throws CommandConfigurationException, CommandValidationException, NotFoundException {
         configureForProject(commandConfiguration, project, getWrapperId(commandId, wrapperName), enable, username, reason);
     }
 
@@ -436,6 +499,32 @@ public class CommandServiceImpl implements CommandService, InitializingBean {
         return ProjectEnabledReport.create(isEnabledForSite, isEnabledForProject, project);
     }
 
+    @Override
+    @Nonnull
+    public CommandCatalogReport getCatalogReport(final @Nullable String project) {
+        // Read one snapshot so the commands and the wrapper reports agree with each other
+        final Collection<Command> commands = catalog().commands();
+        final Map<Long, WrapperReport> wrappers = Maps.newLinkedHashMap();
+        for (final Command command : commands) {
+            for (final CommandWrapper wrapper : command.xnatCommandWrappers()) {
+                final boolean enabledForSite = containerConfigService.isEnabledForSite(wrapper.id());
+                final Boolean enabledForProject;
+                final CommandConfigurationInternal commandConfigurationInternal;
+                if (project == null) {
+                    enabledForProject = null;
+                    commandConfigurationInternal = containerConfigService.getSiteConfiguration(wrapper.id());
+                } else {
+                    enabledForProject = containerConfigService.isEnabledForProject(project, wrapper.id());
+                    commandConfigurationInternal = containerConfigService.getProjectConfiguration(project, wrapper.id());
+                }
+                wrappers.put(wrapper.id(), WrapperReport.create(command.id(), wrapper.id(), wrapper.name(),
+                        enabledForSite, enabledForProject,
+                        CommandConfiguration.create(command, wrapper, commandConfigurationInternal)));
+            }
+        }
+        return CommandCatalogReport.create(project, Lists.newArrayList(commands), wrappers);
+    }
+
     @Override
     @Nonnull
     public List<CommandSummaryForContext> available(final String project,
@@ -443,35 +532,30 @@ public class CommandServiceImpl implements CommandService, InitializingBean {
                                                     final UserI userI) throws ElementNotFoundException {
         final List<CommandSummaryForContext> available = new ArrayList<>();
 
-        for (final Command command : getAll()) {
-            for (final CommandWrapper wrapper : command.xnatCommandWrappers()) {
+        // The catalog only gives us wrappers with a context that matches the xsiType the user gave us
+        for (final CommandCatalog.Entry entry : catalog().entriesFor(xsiType)) {
+            final Command command = entry.command();
+            final CommandWrapper wrapper = entry.wrapper();
 
-                // Can only launch if the user gave us an xsiType that matches
-                // one of the wrapper's contexts
-                if (!xsiTypesMatch(xsiType, wrapper.contexts())) {
-                    continue;
-                }
-
-                // Can only launch if this user has permission
-                if (!userCanLaunch(userI, project, wrapper)) {
-                    continue;
-                }
-
-                // Can only launch with a single external input
-                // It seems iffy to me to bake this into the code, but I don't know a way around it.
-                // We don't have any UI right now where a user can sensibly launch
-                //   on two completely unconnected objects.
-                final String externalInputName;
-                if (wrapper.externalInputs().size() == 1) {
-                    externalInputName = wrapper.externalInputs().get(0).name();
-                } else {
-                    continue;
-                }
+            // Can only launch if this user has permission
+            if (!userCanLaunch(userI, project, wrapper)) {
+                continue;
+            }
 
-                available.add(CommandSummaryForContext.create(command, wrapper,
-                        containerConfigService.isEnabledForProject(project, wrapper.id()),
-                        externalInputName));
+            // Can only launch with a single external input
+            // It seems iffy to me to bake this into the code, but I don't know a way around it.
+            // We don't have any UI right now where a user can sensibly launch
+            //   on two completely unconnected objects.
+            final String externalInputName;
+            if (wrapper.externalInputs().size() == 1) {
+                externalInputName = wrapper.externalInputs().get(0).name();
+            } else {
+                continue;
             }
+
+            available.add(CommandSummaryForContext.create(command, wrapper,
+                    containerConfigService.isEnabledForProject(project, wrapper.id()),
+                    externalInputName));
         }
 
         return available;
@@ -483,105 +567,147 @@ public class CommandServiceImpl implements CommandService, InitializingBean {
                                                     final UserI userI) throws ElementNotFoundException {
         final List<CommandSummaryForContext> available = new ArrayList<>();
 
-        for (final Command command : getAll()) {
-            for (final CommandWrapper wrapper : command.xnatCommandWrappers()) {
-
-                // Can only launch if the user gave us an xsiType that matches
-                // one of the wrapper's contexts
-                if (!xsiTypesMatch(xsiType, wrapper.contexts())) {
-                    continue;
-                }
-
-                // Can only launch with a single external input
-                // It seems iffy to me to bake this into the code, but I don't know a way around it.
-                // We don't have any UI right now where a user can sensibly launch
-                //   on two completely unconnected objects.
-                final String externalInputName;
-                if (wrapper.externalInputs().size() == 1) {
-                    externalInputName = wrapper.externalInputs().get(0).name();
-                } else if (wrapper.externalInputs().size() == 0) {
-                    // I guess it's fine to have no external inputs. Site-wide command wrappers won't have any.
-                    //      - JF 2017-09-28
-                    externalInputName = "";
-                } else {
-                    continue;
-                }
-
-                available.add(CommandSummaryForContext.create(command, wrapper,
-                        containerConfigService.isEnabledForSite(wrapper.id()),
-                        externalInputName));
+        // The catalog only gives us wrappers with a context that matches the xsiType the user gave us
+        for (final CommandCatalog.Entry entry : catalog().entriesFor(xsiType)) {
+            final Command command = entry.command();
+            final CommandWrapper wrapper = entry.wrapper();
+
+            // Can only launch with a single external input
+            // It seems iffy to me to bake this into the code, but I don't know a way around it.
+            // We don't have any UI right now where a user can sensibly launch
+            //   on two completely unconnected objects.
+            final String externalInputName;
+            if (wrapper.externalInputs().size() == 1) {
+                externalInputName = wrapper.externalInputs().get(0).name();
+            } else if (wrapper.externalInputs().size() == 0) {
+                // I guess it's fine to have no external inputs. Site-wide command wrappers won't have any.
+                //      - JF 2017-09-28
+                externalInputName = "";
+            } else {
+                continue;
             }
+
+            available.add(CommandSummaryForContext.create(command, wrapper,
+                    containerConfigService.isEnabledForSite(wrapper.id()),
+                    externalInputName));
         }
 
         return available;
     }
 
+    @Override
+    public long getCatalogVersion() {
+        return catalog().version();
+    }
+
     @Override
     public void throwExceptionIfCommandExists(@Nonnull Command command) throws NrgRuntimeException {
         commandEntityService.throwExceptionIfCommandExists(fromPojo(command));
     }
 
-    // Cache the pairs of (parent, child) xsiType relationships.
-    // If child is descended from parent, return true. Else return false.
-    private Map<XsiTypePair, Boolean> xsiTypePairCache = new HashMap<>();
-
     /**
-     * Check if the xsiType that the user gave us is equal to *or* *descended* *from*
-     * one of the xsiTypes in the wrapper's contexts set.
-     *
-     * Example
-     * If a wrapper can run on {"xnat:mrSessionData", "xnat:petSessionData"}, and
-     * the user asks 'what can I run on an "xnat:mrSessionData"?' we return true.
-     *
-     * If a wrapper can run on {"xnat:imageSessionData", "xnat:imageAssessorData"}, and
-     * the user asks 'what can I run on an "xnat:mrSessionData"?' we return true.
-
-     * If a wrapper can run on {"xnat:mrSessionData"}, and
-     * the user asks 'what can I run on an "xnat:imageSessionData"?' we return false.
-     *
-     * @param xsiType A user asked "what commands can run on this xsiType"?
-     * @param wrapperXsiTypes For a particular command wrapper, there are the xsiTypes it can run on.
-     *                        This may include "parent" xsiTypes. We want all the "child" types of that
-     *                        "parent" type to match as well.
-     * @return Can this wrapper run on this xsiType?
+     * Get the current catalog snapshot, building it first if there is none or it is too old.
      */
-    private boolean xsiTypesMatch(final @Nonnull String xsiType,
-                                  final @Nonnull Set<String> wrapperXsiTypes) throws ElementNotFoundException {
-        if (wrapperXsiTypes.contains(xsiType)) {
-            return true;
+    @Nonnull
+    private CommandCatalog catalog() {
+        final CommandCatalog current = catalog;
+        if (current != null && !current.isOlderThan(CATALOG_MAX_AGE_MILLIS)) {
+            return current;
+        }
+        if (current == null) {
+            catalogLock.lock();
+        } else if (!catalogLock.tryLock()) {
+            // Someone else is rebuilding it. The old snapshot will do until they are done.
+            return current;
+        }
+        try {
+            // Someone else may have rebuilt it while we waited
+            if (catalog == current) {
+                final List<Command> commands = getAll();
+                // Rebuilding without finding any changes does not need a new version
+                final boolean unchanged = current != null && Lists.newArrayList(current.commands()).equals(commands);
+                publish(CommandCatalog.build(unchanged ? current.version() : lastCatalogVersion + 1, commands));
+            }
+            return catalog;
+        } finally {
+            catalogLock.unlock();
         }
+    }
 
-        for (final String wrapperXsiType : wrapperXsiTypes) {
-            final XsiTypePair xsiTypeKey = new XsiTypePair(wrapperXsiType, xsiType);
+    private void refreshCatalog(final long commandId) {
+        if (catalog == null) {
+            return; // Nothing to update. It will be built on first use.
+        }
+        // Go to the database, not the catalog we are about to update
+        final CommandEntity commandEntity = commandEntityService.retrieve(commandId);
+        if (commandEntity == null) {
+            removeFromCatalog(commandId);
+        } else {
+            refreshCatalog(toPojo(commandEntity));
+        }
+    }
 
-            // Return a result from the cache if it exists.
-            if (xsiTypePairCache.containsKey(xsiTypeKey)) {
-                final Boolean cached = xsiTypePairCache.get(xsiTypeKey);
-                return cached == null ? false : cached; // Should never be null. But let's check for safety.
+    private void refreshCatalog(final @Nonnull Command command) {
+        catalogLock.lock();
+        try {
+            if (catalog != null) {
+                publish(catalog.withCommand(command));
             }
+        } finally {
+            catalogLock.unlock();
+        }
+    }
 
-            // Compute new result
-            boolean match = false;
-            try {
-                match = SchemaElement.GetElement(xsiType).getGenericXFTElement().instanceOf(wrapperXsiType);
-            } catch (XFTInitException e) {
-                log.error("XFT not initialized."); // If this happens, we have a lot of other problems.
-            } catch (ElementNotFoundException e) {
-                // I was treating this as an error. Now I want to log it and move on.
-                // This will allow users to set whatever they want as the context and request it by name.
-                //      - JF 2017-09-28
-                log.debug("Did not find XSI type \"{}\".", xsiType);
+    private void removeFromCatalog(final long commandId) {
+        catalogLock.lock();
+        try {
+            if (catalog != null) {
+                publish(catalog.withoutCommand(commandId));
             }
+        } finally {
+            catalogLock.unlock();
+        }
+    }
 
-            // Add result to cache
-            xsiTypePairCache.put(xsiTypeKey, match);
+    /**
+     * Make the snapshot current. If it was made inside a transaction, it may contain changes that are never committed,
+     * so throw it away if the transaction rolls back.
+     */
+    private void publish(final @Nonnull CommandCatalog snapshot) {
+        catalog = snapshot;
+        lastCatalogVersion = Math.max(lastCatalogVersion, snapshot.version());
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCompletion(final int status) {
+                    if (status != STATUS_COMMITTED) {
+                        invalidateCatalog();
+                    }
+                }
+            });
+        }
+    }
 
-            // Shortcut loop if a result is true
-            if (match) {
-                return true;
+    @Nullable
+    private CommandWrapper cachedWrapper(final long commandId, final String wrapperName) {
+        final Command command = catalog().command(commandId);
+        if (command != null) {
+            for (final CommandWrapper wrapper : command.xnatCommandWrappers()) {
+                if (Objects.equals(wrapper.name(), wrapperName)) {
+                    return wrapper;
+                }
             }
         }
-        return false;
+        return null;
+    }
+
+    private void invalidateCatalog() {
+        catalogLock.lock();
+        try {
+            catalog = null;
+        } finally {
+            catalogLock.unlock();
+        }
     }
 
     private boolean userCanLaunch(final UserI userI, final String project, final CommandWrapper wrapper) {
@@ -627,11 +753,48 @@ public class CommandServiceImpl implements CommandService, InitializingBean {
     }
 
     private long getWrapperId(final long commandId, final String wrapperName) throws NotFoundException {
-        return commandEntityService.getWrapperId(commandId, wrapperName);
+        final CommandWrapper cached = cachedWrapper(commandId, wrapperName);
+        return cached != null ? cached.id() : commandEntityService.getWrapperId(commandId, wrapperName);
     }
 
     @Nonnull
+    /**
+     * Check the resources a site or project configuration sets, both on their own and merged with the command's,
+     * the wrapper's, and (for a project) the site's, the way they will be merged at launch.
+     *
+     * @param project The project being configured, or null for the site.
+     */
+    private void validateResources(final @Nullable CommandResources resources, final long wrapperId, final @Nullable String project)
+            throws CommandValidationException, NotFoundException {
+        if (resources == null || resources.isEmpty()) {
+            return;
+        }
+        final Set<String> errors = Sets.newLinkedHashSet(resources.validate());
+
+        final Command command = getCommandWithOneWrapper(wrapperId);
+        CommandResources merged = CommandResources.merge(command.resources(), command.xnatCommandWrappers().get(0).resources());
+        if (project != null) {
+            final CommandConfigurationInternal siteConfiguration = containerConfigService.getSiteConfiguration(wrapperId);
+            merged = CommandResources.merge(merged, siteConfiguration == null ? null : siteConfiguration.resources());
+        }
+        merged = CommandResources.merge(merged, resources);
+        if (merged != null) {
+            errors.addAll(merged.validate());
+        }
+
+        if (!errors.isEmpty()) {
+            throw new CommandValidationException(Lists.newArrayList(errors));
+        }
+    }
+
     private Command getCommandWithOneWrapper(final long wrapperId) throws NotFoundException {
+        final CommandCatalog.Entry cached = catalog().entry(wrapperId);
+        if (cached != null) {
+            return cached.command().toBuilder()
+                    .xnatCommandWrappers(Collections.singletonList(cached.wrapper()))
+                    .build();
+        }
+
         final CommandEntity commandEntity = commandEntityService.getCommandByWrapperId(wrapperId);
         final List<CommandWrapperEntity> listWithOneWrapper = Lists.newArrayList();
         for (final CommandWrapperEntity wrapper : commandEntity.getCommandWrapperEntities()) {
@@ -644,29 +807,4 @@ public class CommandServiceImpl implements CommandService, InitializingBean {
         return toPojo(commandEntity);
 
     }
-
-    private static class XsiTypePair {
-        private String wrapperXsiType;
-        private String userRequestedXsiType;
-
-        XsiTypePair(final String wrapperXsiType,
-                    final String userRequestedXsiType) {
-            this.wrapperXsiType = wrapperXsiType;
-            this.userRequestedXsiType = userRequestedXsiType;
-        }
-
-        @Override
-        public boolean equals(final Object o) {
-            if (this == o) return true;
-            if (o == null || getClass() != o.getClass()) return false;
-            final XsiTypePair that = (XsiTypePair) o;
-            return Objects.equals(this.wrapperXsiType, that.wrapperXsiType) &&
-                    Objects.equals(this.userRequestedXsiType, that.userRequestedXsiType);
-        }
-
-        @Override
-        public int hashCode() {
-            return Objects.hash(wrapperXsiType, userRequestedXsiType);
-        }
-    }
 }
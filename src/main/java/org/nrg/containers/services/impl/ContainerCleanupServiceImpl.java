@@ -0,0 +1,209 @@
+package org.nrg.containers.services.impl;
+
+import com.google.common.base.Joiner;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import org.apache.commons.lang3.StringUtils;
+import org.nrg.containers.api.ContainerControlApi;
+import org.nrg.containers.exceptions.DockerServerException;
+import org.nrg.containers.model.configuration.ContainerServicePrefsBean;
+import org.nrg.containers.model.container.ContainerRemovalPolicy;
+import org.nrg.containers.model.container.auto.Container;
+import org.nrg.containers.model.container.auto.ContainerPruneReport;
+import org.nrg.containers.model.container.entity.ContainerEntity;
+import org.nrg.containers.model.server.docker.DockerServerBase.DockerServer;
+import org.nrg.containers.services.ContainerCleanupService;
+import org.nrg.containers.services.ContainerEntityService;
+import org.nrg.containers.services.DockerServerService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+@Service
+public class ContainerCleanupServiceImpl implements ContainerCleanupService {
+    private static final Logger log = LoggerFactory.getLogger(ContainerCleanupServiceImpl.class);
+
+    private static final String SETUP_SUBTYPE = "setup";
+
+    // How many Docker ids to look up in the database at once
+    private static final int LOOKUP_BATCH_SIZE = 500;
+
+    private final ContainerControlApi controlApi;
+    private final ContainerEntityService containerEntityService;
+    private final DockerServerService dockerServerService;
+    private final ContainerServicePrefsBean containerServicePrefsBean;
+
+    private volatile ContainerPruneReport lastPruneReport;
+
+    @Autowired
+    public ContainerCleanupServiceImpl(final ContainerControlApi controlApi,
+                                       final ContainerEntityService containerEntityService,
+                                       final DockerServerService dockerServerService,
+                                       final ContainerServicePrefsBean containerServicePrefsBean) {
+        this.controlApi = controlApi;
+        this.containerEntityService = containerEntityService;
+        this.dockerServerService = dockerServerService;
+        this.containerServicePrefsBean = containerServicePrefsBean;
+    }
+
+    @Override
+    public void onFinalized(final Container container) {
+        try {
+            if (removalDelayHours() > 0 ||
+                    !shouldRemove(container.status(), container.statusTime(), container.subtype(), new Date())) {
+                return;
+            }
+            log.debug("Removing Container {} from the Docker server.", container.databaseId());
+            final DockerServer server = dockerServerService.getServerFor(container);
+            if (StringUtils.isNotBlank(container.serviceId())) {
+                controlApi.removeService(server, container.serviceId());
+            } else if (StringUtils.isNotBlank(container.containerId())) {
+                controlApi.removeContainer(server, container.containerId());
+            }
+        } catch (Exception e) {
+            // The pruner will try again later
+            log.warn("Could not remove Container {} from the Docker server: {}", container.databaseId(), e.getMessage());
+        }
+    }
+
+    @Override
+    @Nonnull
+    public ContainerPruneReport prune() {
+        final Date started = new Date();
+        final Tally containers = new Tally();
+        final Tally images = new Tally();
+        final List<String> messages = Lists.newArrayList();
+        // Disabled servers still have containers to clean up until those are finalized
+        final List<DockerServer> servers = dockerServerService.getServersInUse();
+        if (servers.isEmpty()) {
+            messages.add("No container server defined.");
+        }
+        // One server being down does not keep the others from being pruned
+        for (final DockerServer server : servers) {
+            try {
+                pruneContainers(server, started, containers);
+                pruneImages(server, images);
+            } catch (DockerServerException e) {
+                log.warn("Could not finish pruning Docker server {}: {}", server.name(), e.getMessage());
+                messages.add(servers.size() == 1 ? e.getMessage() : server.name() + ": " + e.getMessage());
+            }
+        }
+        final String message = messages.isEmpty() ? null : Joiner.on("; ").join(messages);
+
+        final ContainerPruneReport report = ContainerPruneReport.create(started, new Date(),
+                containers.removed, containers.failed, containers.bytes,
+                images.removed, images.failed, images.bytes,
+                message);
+        if (containers.removed > 0 || images.removed > 0) {
+            log.info("Pruned {} container{} and {} image{} from the Docker server, reclaiming {} bytes.",
+                    containers.removed, containers.removed == 1 ? "" : "s",
+                    images.removed, images.removed == 1 ? "" : "s",
+                    containers.bytes + images.bytes);
+        }
+        lastPruneReport = report;
+        return report;
+    }
+
+    @Override
+    @Nullable
+    public ContainerPruneReport getLastPruneReport() {
+        return lastPruneReport;
+    }
+
+    private void pruneContainers(final DockerServer server, final Date now, final Tally tally)
+            throws DockerServerException {
+        final boolean swarmMode = server.swarmMode();
+
+        // Find out what we want to remove before asking Docker for sizes, which can be slow
+        final Collection<String> dockerIds = swarmMode ?
+                controlApi.getServiceIds(server) :
+                controlApi.getExitedContainerSizes(server, false).keySet();
+        final List<String> toRemove = Lists.newArrayList();
+        for (final List<String> batch : Iterables.partition(dockerIds, LOOKUP_BATCH_SIZE)) {
+            for (final ContainerEntity containerEntity : containerEntityService.retrieveByDockerIds(batch)) {
+                // A killed container, or a service whose task is done, may still be waiting for its logs and outputs to be collected
+                if (containerEntity.hasBeenFinalized() &&
+                        shouldRemove(containerEntity.getStatus(), containerEntity.getStatusTime(), containerEntity.getSubtype(), now)) {
+                    toRemove.add(swarmMode ? containerEntity.getServiceId() : containerEntity.getContainerId());
+                }
+            }
+        }
+        if (toRemove.isEmpty()) {
+            return;
+        }
+
+        final Map<String, Long> sizes = swarmMode ?
+                Collections.<String, Long>emptyMap() :
+                controlApi.getExitedContainerSizes(server, toRemove);
+        for (final String dockerId : toRemove) {
+            try {
+                if (swarmMode) {
+                    controlApi.removeService(server, dockerId);
+                } else {
+                    controlApi.removeContainer(server, dockerId);
+                }
+                tally.removed++;
+                final Long size = sizes.get(dockerId);
+                tally.bytes += size == null ? 0L : size;
+            } catch (DockerServerException e) {
+                log.debug("Could not remove {} from the Docker server: {}", dockerId, e.getMessage());
+                tally.failed++;
+            }
+        }
+    }
+
+    private void pruneImages(final DockerServer server, final Tally tally) throws DockerServerException {
+        for (final Map.Entry<String, Long> image : controlApi.getDanglingImageSizes(server).entrySet()) {
+            try {
+                controlApi.deleteImageById(server, image.getKey(), false);
+                tally.removed++;
+                tally.bytes += image.getValue() == null ? 0L : image.getValue();
+            } catch (DockerServerException e) {
+                // Most likely a stopped container still uses it
+                log.debug("Could not remove dangling image {}: {}", image.getKey(), e.getMessage());
+                tally.failed++;
+            }
+        }
+    }
+
+    /**
+     * Setup containers are removed once they are finalized, unless they failed and failed containers are kept.
+     * Other containers follow the removal policy and delay.
+     */
+    private boolean shouldRemove(final String status, final Date statusTime, final String subtype, final Date now) {
+        final ContainerRemovalPolicy policy = containerServicePrefsBean.containerRemovalPolicy();
+        final boolean failed = status != null && status.contains("Failed");
+        if (policy == ContainerRemovalPolicy.KEEP_FAILED && failed) {
+            return false;
+        }
+        if (SETUP_SUBTYPE.equals(subtype)) {
+            return true;
+        }
+        if (policy == ContainerRemovalPolicy.NEVER) {
+            return false;
+        }
+        final long delayMillis = TimeUnit.HOURS.toMillis(removalDelayHours());
+        return delayMillis == 0L || (statusTime != null && now.getTime() - statusTime.getTime() >= delayMillis);
+    }
+
+    private int removalDelayHours() {
+        final Integer delayHours = containerServicePrefsBean.getContainerRemovalDelayHours();
+        return delayHours == null || delayHours < 0 ? 0 : delayHours;
+    }
+
+    private static final class Tally {
+        private int removed = 0;
+        private int failed = 0;
+        private long bytes = 0L;
+    }
+}
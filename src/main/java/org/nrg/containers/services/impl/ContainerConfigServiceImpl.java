@@ -7,6 +7,7 @@ import org.nrg.config.entities.Configuration;
 import org.nrg.config.exceptions.ConfigServiceException;
 import org.nrg.config.services.ConfigService;
 import org.nrg.containers.model.configuration.CommandConfigurationInternal;
+import org.nrg.containers.model.configuration.ContainerServicePrefsBean;
 import org.nrg.containers.services.ContainerConfigService;
 import org.nrg.framework.constants.Scope;
 import org.slf4j.Logger;
@@ -16,19 +17,36 @@ import org.springframework.stereotype.Service;
 
 import javax.annotation.Nullable;
 import java.io.IOException;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Service
 public class ContainerConfigServiceImpl implements ContainerConfigService {
     private static final Logger log = LoggerFactory.getLogger(ContainerConfigService.class);
 
+    // Every node that changes a command configuration writes a new value here, so the other nodes know to drop their caches
+    private static final String CONFIG_GENERATION_PATH = "wrapper-config-generation";
+
     private final ConfigService configService;
     private final ObjectMapper mapper;
+    private final ContainerServicePrefsBean containerServicePrefsBean;
+
+    private final ConcurrentMap<ConfigurationKey, CachedConfiguration> configurationCache = new ConcurrentHashMap<>();
+    private final AtomicLong configurationChanges = new AtomicLong();
+    private volatile String knownGeneration;
+    private volatile long lastGenerationCheck;
 
     @Autowired
     public ContainerConfigServiceImpl(final ConfigService configService,
-                                      final ObjectMapper mapper) {
+                                      final ObjectMapper mapper,
+                                      final ContainerServicePrefsBean containerServicePrefsBean) {
         this.configService = configService;
         this.mapper = mapper;
+        this.containerServicePrefsBean = containerServicePrefsBean;
     }
 
     @Override
@@ -166,6 +184,7 @@ public class ContainerConfigServiceImpl implements ContainerConfigService {
             log.error(message);
             throw new CommandConfigurationException(message, e);
         }
+        configurationChanged(scope, project, wrapperId, commandConfigurationInternal, username);
     }
 
     @Nullable
@@ -176,6 +195,30 @@ public class ContainerConfigServiceImpl implements ContainerConfigService {
 
     @Nullable
     private CommandConfigurationInternal getCommandConfiguration(final Scope scope, final String project, final long wrapperId) {
+        final long cacheMillis = secondsToMillis(containerServicePrefsBean.getCommandConfigCacheSeconds());
+        if (cacheMillis <= 0) {
+            return readCommandConfiguration(scope, project, wrapperId);
+        }
+
+        dropCacheIfChangedElsewhere();
+
+        final ConfigurationKey key = new ConfigurationKey(scope, project, wrapperId);
+        final CachedConfiguration cached = configurationCache.get(key);
+        if (cached != null && !cached.isOlderThan(cacheMillis)) {
+            return cached.configuration;
+        }
+
+        // If the configuration changes while we read it, what we read may already be stale. Do not cache it.
+        final long changesBeforeRead = configurationChanges.get();
+        final CommandConfigurationInternal read = readCommandConfiguration(scope, project, wrapperId);
+        if (configurationChanges.get() == changesBeforeRead) {
+            configurationCache.put(key, new CachedConfiguration(read));
+        }
+        return read;
+    }
+
+    @Nullable
+    private CommandConfigurationInternal readCommandConfiguration(final Scope scope, final String project, final long wrapperId) {
         if (scope.equals(Scope.Project) && StringUtils.isBlank(project)) {
             // TODO error: project can't be blank
         }
@@ -223,10 +266,101 @@ public class ContainerConfigServiceImpl implements ContainerConfigService {
         if (commandConfigurationInternal.enabled() == null) {
             final String path = String.format(WRAPPER_CONFIG_PATH_TEMPLATE, wrapperId);
             configService.delete(configService.getConfig(TOOL_ID, path, scope, project));
+            configurationChanged(scope, project, wrapperId, null, username);
             return;
         }
 
         setCommandConfigurationInternal(CommandConfigurationInternal.create(commandConfigurationInternal.enabled(), null),
                 scope, project, wrapperId, username, "Deleting command configuration");
     }
+
+    /**
+     * Write through to the cache on this node, and tell the other nodes to drop theirs.
+     */
+    private void configurationChanged(final Scope scope, final String project, final long wrapperId,
+                                      final @Nullable CommandConfigurationInternal configuration, final String username) {
+        configurationChanges.incrementAndGet();
+        if (secondsToMillis(containerServicePrefsBean.getCommandConfigCacheSeconds()) > 0) {
+            configurationCache.put(new ConfigurationKey(scope, project, wrapperId), new CachedConfiguration(configuration));
+        }
+
+        if (secondsToMillis(containerServicePrefsBean.getCommandConfigSyncSeconds()) > 0) {
+            final String generation = UUID.randomUUID().toString();
+            try {
+                configService.replaceConfig(username, "Command configuration changed", TOOL_ID, CONFIG_GENERATION_PATH, generation);
+                knownGeneration = generation;
+            } catch (ConfigServiceException e) {
+                log.error("Could not tell other nodes that the configuration for wrapper id {} changed.", wrapperId, e);
+            }
+        }
+    }
+
+    /**
+     * At most once per sync interval, check whether another node has changed any command configuration.
+     * If it has, we do not know which, so drop everything.
+     */
+    private void dropCacheIfChangedElsewhere() {
+        final long syncMillis = secondsToMillis(containerServicePrefsBean.getCommandConfigSyncSeconds());
+        final long now = System.currentTimeMillis();
+        if (syncMillis <= 0 || now - lastGenerationCheck < syncMillis) {
+            return;
+        }
+        lastGenerationCheck = now;
+
+        final Configuration generationConfig = configService.getConfig(TOOL_ID, CONFIG_GENERATION_PATH);
+        final String generation = generationConfig == null ? null : generationConfig.getContents();
+        if (!Objects.equals(generation, knownGeneration)) {
+            log.debug("Command configurations were changed on another node. Clearing the configuration cache.");
+            configurationChanges.incrementAndGet();
+            configurationCache.clear();
+            knownGeneration = generation;
+        }
+    }
+
+    private static long secondsToMillis(final Integer seconds) {
+        // A missing value turns the feature off
+        return seconds == null ? 0L : TimeUnit.SECONDS.toMillis(seconds);
+    }
+
+    private static class ConfigurationKey {
+        private final Scope scope;
+        private final String project;
+        private final long wrapperId;
+
+        ConfigurationKey(final Scope scope, final String project, final long wrapperId) {
+            this.scope = scope;
+            this.project = Scope.Site.equals(scope) ? null : project;
+            this.wrapperId = wrapperId;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            final ConfigurationKey that = (ConfigurationKey) o;
+            return this.wrapperId == that.wrapperId &&
+                    this.scope == that.scope &&
+                    Objects.equals(this.project, that.project);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(scope, project, wrapperId);
+        }
+    }
+
+    private static class CachedConfiguration {
+        // May be null. We cache the absence of a configuration too, since most wrappers have no project configuration.
+        private final CommandConfigurationInternal configuration;
+        private final long cachedAt;
+
+        CachedConfiguration(final CommandConfigurationInternal configuration) {
+            this.configuration = configuration;
+            this.cachedAt = System.currentTimeMillis();
+        }
+
+        boolean isOlderThan(final long millis) {
+            return System.currentTimeMillis() - cachedAt > millis;
+        }
+    }
 }
@@ -4,20 +4,24 @@ import com.google.common.base.Function;
 import com.google.common.base.Joiner;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.nrg.action.ClientException;
 import org.nrg.containers.api.ContainerControlApi;
 import org.nrg.containers.exceptions.ContainerException;
 import org.nrg.containers.exceptions.DockerServerException;
-import org.nrg.containers.exceptions.NoDockerServerException;
 import org.nrg.containers.exceptions.UnauthorizedException;
+import org.nrg.containers.model.command.auto.ResolvedCommand;
 import org.nrg.containers.model.container.auto.Container;
 import org.nrg.containers.model.container.auto.Container.ContainerMount;
 import org.nrg.containers.model.container.auto.Container.ContainerOutput;
+import org.nrg.containers.model.server.docker.DockerServerBase.DockerServer;
 import org.nrg.containers.services.ContainerFinalizeService;
 import org.nrg.containers.services.ContainerService;
 import org.nrg.containers.services.ContainerUtils;
+import org.nrg.containers.services.DockerServerService;
+import org.nrg.framework.exceptions.NotFoundException;
 import org.nrg.transporter.TransportService;
 import org.nrg.xdat.om.XnatResourcecatalog;
 import org.nrg.xdat.preferences.SiteConfigPreferences;
@@ -35,13 +39,18 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.text.SimpleDateFormat;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import static org.nrg.containers.model.command.entity.CommandWrapperOutputEntity.Type.ASSESSOR;
 import static org.nrg.containers.model.command.entity.CommandWrapperOutputEntity.Type.RESOURCE;
@@ -50,20 +59,26 @@ import static org.nrg.containers.model.command.entity.CommandWrapperOutputEntity
 public class ContainerFinalizeServiceImpl implements ContainerFinalizeService {
     private static final Logger log = LoggerFactory.getLogger(ContainerFinalizeServiceImpl.class);
 
+    private static final String BATCH_ITEM_COMPLETE = "Batch item complete";
+    private static final String BATCH_ITEM_FAILED = "Batch item failed";
+
     private final ContainerControlApi containerControlApi;
     private final SiteConfigPreferences siteConfigPreferences;
     private final TransportService transportService;
     private final CatalogService catalogService;
+    private final DockerServerService dockerServerService;
 
     @Autowired
     public ContainerFinalizeServiceImpl(final ContainerControlApi containerControlApi,
                                         final SiteConfigPreferences siteConfigPreferences,
                                         final TransportService transportService,
-                                        final CatalogService catalogService) {
+                                        final CatalogService catalogService,
+                                        final DockerServerService dockerServerService) {
         this.containerControlApi = containerControlApi;
         this.siteConfigPreferences = siteConfigPreferences;
         this.transportService = transportService;
         this.catalogService = catalogService;
+        this.dockerServerService = dockerServerService;
     }
 
     @Override
@@ -102,22 +117,47 @@ public class ContainerFinalizeServiceImpl implements ContainerFinalizeService {
             final Container.Builder finalizedContainerBuilder = toFinalize.toBuilder();
             finalizedContainerBuilder.logPaths(uploadLogs());
 
-            if (!isFailed) {
+            final int batchItems = ResolvedCommand.splitBatchItems(toFinalize.getRawInputs()).size();
+            if (batchItems > 0) {
+                // Each item of a batch succeeds or fails on its own status file and outputs. The container fails only if they all do.
+                final Set<Integer> failedItems = readFailedBatchItems(batchItems);
+                for (final ContainerMount mountOut : toFinalize.mounts()) {
+                    untransportedMounts.put(mountOut.name(), mountOut);
+                }
+
+                final OutputsAndExceptions outputsAndExceptions = uploadOutputs(failedItems);
+                for (int i = 0; i < batchItems; i++) {
+                    final List<Exception> failedItemOutputs = outputsAndExceptions.exceptionsByBatchItem.get(i);
+                    final Container.ContainerHistory itemHistoryItem;
+                    if (failedItems.contains(i)) {
+                        itemHistoryItem = Container.ContainerHistory.fromSystem(BATCH_ITEM_FAILED, "Batch item " + i + " failed.");
+                    } else if (failedItemOutputs != null) {
+                        failedItems.add(i);
+                        itemHistoryItem = Container.ContainerHistory.fromSystem(BATCH_ITEM_FAILED,
+                                "Batch item " + i + " failed to upload required outputs.\n" + joinMessages(failedItemOutputs));
+                    } else {
+                        itemHistoryItem = Container.ContainerHistory.fromSystem(BATCH_ITEM_COMPLETE, "Batch item " + i + " is complete.");
+                    }
+                    finalizedContainerBuilder.addHistoryItem(itemHistoryItem);
+                }
+
+                final boolean allFailed = failedItems.size() == batchItems;
+                ContainerUtils.updateWorkflowStatus(toFinalize.workflowId(),
+                        allFailed ? PersistentWorkflowUtils.FAILED : PersistentWorkflowUtils.COMPLETE, userI);
+                finalizedContainerBuilder.outputs(outputsAndExceptions.outputs)
+                        .status(allFailed ? "Failed" : "Complete")
+                        .statusTime(new Date());
+            } else if (!isFailed) {
                 // Do not try to upload outputs if we know the container failed.
                 for (final ContainerMount mountOut : toFinalize.mounts()) {
                     untransportedMounts.put(mountOut.name(), mountOut);
                 }
 
-                final OutputsAndExceptions outputsAndExceptions = uploadOutputs();
+                final OutputsAndExceptions outputsAndExceptions = uploadOutputs(Collections.<Integer>emptySet());
                 final List<Exception> failedRequiredOutputs = outputsAndExceptions.exceptions;
                 if (!failedRequiredOutputs.isEmpty()) {
                     final Container.ContainerHistory failedHistoryItem = Container.ContainerHistory.fromSystem("Failed",
-                            "Failed to upload required outputs.\n" + Joiner.on("\n").join(Lists.transform(failedRequiredOutputs, new Function<Exception, String>() {
-                                @Override
-                                public String apply(final Exception input) {
-                                    return input.getMessage();
-                                }
-                            })));
+                            "Failed to upload required outputs.\n" + joinMessages(failedRequiredOutputs));
                     finalizedContainerBuilder.addHistoryItem(failedHistoryItem)
                             .outputs(outputsAndExceptions.outputs)
                             .status(failedHistoryItem.status())
@@ -140,6 +180,50 @@ public class ContainerFinalizeServiceImpl implements ContainerFinalizeService {
             return finalizedContainerBuilder.build();
         }
 
+        /**
+         * Read the exit code each batch item wrote to its status file. An item with a nonzero or unreadable
+         * exit code has failed. An item that wrote no status file has the container's exit status.
+         */
+        private Set<Integer> readFailedBatchItems(final int batchItems) {
+            String statusDir = null;
+            for (final ContainerMount mount : toFinalize.mounts()) {
+                if (ResolvedCommand.BATCH_STATUS_MOUNT.equals(mount.name())) {
+                    statusDir = mount.xnatHostPath();
+                }
+            }
+
+            final Set<Integer> failedItems = Sets.newHashSet();
+            for (int i = 0; i < batchItems; i++) {
+                final File statusFile = statusDir == null ? null : new File(statusDir, ResolvedCommand.batchItemStatusFile(i));
+                if (statusFile == null || !statusFile.isFile()) {
+                    if (isFailed) {
+                        failedItems.add(i);
+                    }
+                    continue;
+                }
+                try {
+                    final String exitCode = new String(Files.readAllBytes(statusFile.toPath()), StandardCharsets.UTF_8).trim();
+                    if (!"0".equals(exitCode)) {
+                        log.info(prefix + "Batch item {} exited with code \"{}\".", i, exitCode);
+                        failedItems.add(i);
+                    }
+                } catch (IOException e) {
+                    log.error(prefix + "Could not read the status file of batch item " + i, e);
+                    failedItems.add(i);
+                }
+            }
+            return failedItems;
+        }
+
+        private String joinMessages(final List<Exception> exceptions) {
+            return Joiner.on("\n").join(Lists.transform(exceptions, new Function<Exception, String>() {
+                @Override
+                public String apply(final Exception input) {
+                    return input.getMessage();
+                }
+            }));
+        }
+
         private List<String> uploadLogs() {
             log.info(prefix + "Getting logs.");
             final List<String> logPaths = Lists.newArrayList();
@@ -189,14 +273,14 @@ public class ContainerFinalizeServiceImpl implements ContainerFinalizeService {
         private String getStderrLogStr() {
             if (toFinalize.isSwarmService()) {
                 try {
-                    return containerControlApi.getServiceStderrLog(toFinalize.serviceId());
-                } catch (DockerServerException | NoDockerServerException e) {
+                    return containerControlApi.getServiceStderrLog(server(), toFinalize.serviceId());
+                } catch (DockerServerException | NotFoundException e) {
                     log.error(prefix + "Could not get service stderr log.", e);
                 }
             } else {
                 try {
-                    return containerControlApi.getContainerStderrLog(toFinalize.containerId());
-                } catch (DockerServerException | NoDockerServerException e) {
+                    return containerControlApi.getContainerStderrLog(server(), toFinalize.containerId());
+                } catch (DockerServerException | NotFoundException e) {
                     log.error(prefix + "Could not get container stderr log.", e);
                 }
             }
@@ -206,39 +290,59 @@ public class ContainerFinalizeServiceImpl implements ContainerFinalizeService {
         private String getStdoutLogStr() {
             if (toFinalize.isSwarmService()) {
                 try {
-                    return containerControlApi.getServiceStdoutLog(toFinalize.serviceId());
-                } catch (DockerServerException | NoDockerServerException e) {
+                    return containerControlApi.getServiceStdoutLog(server(), toFinalize.serviceId());
+                } catch (DockerServerException | NotFoundException e) {
                     log.error(prefix + "Could not get service stdout log.", e);
                 }
             } else {
                 try {
-                    return containerControlApi.getContainerStdoutLog(toFinalize.containerId());
-                } catch (DockerServerException | NoDockerServerException e) {
+                    return containerControlApi.getContainerStdoutLog(server(), toFinalize.containerId());
+                } catch (DockerServerException | NotFoundException e) {
                     log.error(prefix + "Could not get container stdout log.", e);
                 }
             }
             return null;
         }
 
-        private OutputsAndExceptions uploadOutputs() {
+        // The logs are on the server the container ran on
+        private DockerServer server() throws NotFoundException {
+            return dockerServerService.getServerFor(toFinalize);
+        }
+
+        /**
+         * @param skippedBatchItems Batch items that failed. Their outputs are not uploaded.
+         */
+        private OutputsAndExceptions uploadOutputs(final Set<Integer> skippedBatchItems) {
             log.info(prefix + "Uploading outputs.");
 
             final List<ContainerOutput> outputs = Lists.newArrayList();
             final List<Exception> exceptions = Lists.newArrayList();
+            final Map<Integer, List<Exception>> exceptionsByBatchItem = Maps.newHashMap();
             for (final ContainerOutput nonUploadedOuput: toFinalize.outputs()) {
+                if (skippedBatchItems.contains(ResolvedCommand.batchItemIndex(nonUploadedOuput.name()))) {
+                    outputs.add(nonUploadedOuput);
+                    continue;
+                }
                 try {
                     outputs.add(uploadOutput(nonUploadedOuput));
                 } catch (UnauthorizedException | ContainerException | RuntimeException e) {
                     log.error("Cannot upload files for command output " + nonUploadedOuput.name(), e);
                     if (nonUploadedOuput.required()) {
                         exceptions.add(e);
+                        final Integer batchItem = ResolvedCommand.batchItemIndex(nonUploadedOuput.name());
+                        if (batchItem != null) {
+                            if (!exceptionsByBatchItem.containsKey(batchItem)) {
+                                exceptionsByBatchItem.put(batchItem, Lists.<Exception>newArrayList());
+                            }
+                            exceptionsByBatchItem.get(batchItem).add(e);
+                        }
                     }
                     outputs.add(nonUploadedOuput);
                 }
             }
 
             log.info(prefix + "Done uploading outputs.");
-            return new OutputsAndExceptions(outputs, exceptions);
+            return new OutputsAndExceptions(outputs, exceptions, exceptionsByBatchItem);
         }
 
         private ContainerOutput uploadOutput(final ContainerOutput output) throws ContainerException, UnauthorizedException {
@@ -425,11 +529,14 @@ public class ContainerFinalizeServiceImpl implements ContainerFinalizeService {
     private static class OutputsAndExceptions {
         List<ContainerOutput> outputs;
         List<Exception> exceptions;
+        Map<Integer, List<Exception>> exceptionsByBatchItem;
 
         OutputsAndExceptions(final List<ContainerOutput> outputs,
-                             final List<Exception> exceptions) {
+                             final List<Exception> exceptions,
+                             final Map<Integer, List<Exception>> exceptionsByBatchItem) {
             this.outputs = outputs;
             this.exceptions = exceptions;
+            this.exceptionsByBatchItem = exceptionsByBatchItem;
         }
     }
 }
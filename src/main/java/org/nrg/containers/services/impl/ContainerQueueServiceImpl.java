@@ -0,0 +1,305 @@
+package org.nrg.containers.services.impl;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.apache.commons.lang3.StringUtils;
+import org.nrg.containers.model.configuration.ContainerServicePrefsBean;
+import org.nrg.containers.model.container.LaunchPriority;
+import org.nrg.containers.model.container.auto.QueuedLaunch;
+import org.nrg.containers.model.container.entity.ContainerEntity;
+import org.nrg.containers.services.ContainerEntityService;
+import org.nrg.containers.services.ContainerQueueService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+@Service
+public class ContainerQueueServiceImpl implements ContainerQueueService {
+    private static final Logger log = LoggerFactory.getLogger(ContainerQueueServiceImpl.class);
+
+    private static final String PROJECT = "project";
+    private static final String USER = "user";
+    private static final String WRAPPER = "wrapper";
+
+    private final ContainerEntityService containerEntityService;
+    private final ContainerServicePrefsBean containerServicePrefsBean;
+
+    @Autowired
+    public ContainerQueueServiceImpl(final ContainerEntityService containerEntityService,
+                                     final ContainerServicePrefsBean containerServicePrefsBean) {
+        this.containerEntityService = containerEntityService;
+        this.containerServicePrefsBean = containerServicePrefsBean;
+    }
+
+    @Override
+    public boolean mustQueue(final String project, final String userId, final long wrapperId) {
+        final Limits limits = limits();
+        if (limits.none()) {
+            return false;
+        }
+
+        // Anyone already waiting goes first. The new launch is dispatched right away if the fair-share order allows it.
+        if (containerEntityService.hasQueued()) {
+            return true;
+        }
+
+        final Tallies active = activeTallies(limits);
+        final String waitingOn = waitingOn(limits, active, project, userId, String.valueOf(wrapperId));
+        if (waitingOn != null) {
+            log.debug("Launch of wrapper {} by user {} in project {} is over the {} limit.", wrapperId, userId, project, waitingOn);
+        }
+        return waitingOn != null;
+    }
+
+    @Override
+    @Nonnull
+    public List<ContainerEntity> getDispatchable() {
+        final List<ContainerEntity> dispatchable = Lists.newArrayList();
+        for (final Planned planned : plan()) {
+            if (planned.waitingOn == null) {
+                dispatchable.add(planned.entity);
+            }
+        }
+        return dispatchable;
+    }
+
+    @Override
+    @Nonnull
+    public List<QueuedLaunch> getQueue() {
+        final long now = System.currentTimeMillis();
+        final List<QueuedLaunch> queue = Lists.newArrayList();
+        int position = 0;
+        for (final Planned planned : plan()) {
+            final ContainerEntity entity = planned.entity;
+            final Date queuedAt = queuedAt(entity);
+            queue.add(QueuedLaunch.create(entity.getId(), entity.getUserId(), entity.getProject(), entity.getWrapperId(),
+                    ++position, queuedAt, queuedAt == null ? 0L : Math.max(0L, now - queuedAt.getTime()), planned.waitingOn,
+                    priority(entity).getName()));
+        }
+        return queue;
+    }
+
+    /**
+     * Walk the queue in priority and fair-share order, as though each launch that fits were dispatched in turn.
+     * A launch held back by a limit does not hold back launches behind it that the limit does not apply to.
+     */
+    @Nonnull
+    private List<Planned> plan() {
+        final List<ContainerEntity> queued = containerEntityService.retrieveQueued();
+        if (queued.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        final Limits limits = limits();
+        final Tallies tallies = activeTallies(limits);
+        final Map<String, Long> activeByUser = limits.perUser > 0 ?
+                tallies.byUser :
+                containerEntityService.countActiveContainers("userId");
+
+        final List<Planned> plan = Lists.newArrayList();
+        for (final ContainerEntity entity : priorityOrder(queued, activeByUser, System.currentTimeMillis(), agingMillis())) {
+            final String wrapperId = String.valueOf(entity.getWrapperId());
+            final String waitingOn = waitingOn(limits, tallies, entity.getProject(), entity.getUserId(), wrapperId);
+            if (waitingOn == null) {
+                increment(tallies.byProject, entity.getProject());
+                increment(tallies.byUser, entity.getUserId());
+                increment(tallies.byWrapper, wrapperId);
+            }
+            plan.add(new Planned(entity, waitingOn));
+        }
+        return plan;
+    }
+
+    /**
+     * Order queued launches by priority level, highest first, and in fair-share order within a level.
+     * A launch moves up one level for every aging interval it has waited, so no launch waits forever.
+     *
+     * @param queued Queued launches, oldest first.
+     * @param activeByUser Active container counts by user id.
+     * @param agingMillis How long a launch waits to move up a level. 0 turns aging off.
+     */
+    @VisibleForTesting
+    @Nonnull
+    public static List<ContainerEntity> priorityOrder(final @Nonnull List<ContainerEntity> queued,
+                                                      final @Nonnull Map<String, Long> activeByUser,
+                                                      final long now,
+                                                      final long agingMillis) {
+        final SortedMap<Integer, List<ContainerEntity>> byLevel = new TreeMap<>(Collections.<Integer>reverseOrder());
+        for (final ContainerEntity entity : queued) {
+            final Date queuedAt = queuedAt(entity);
+            final int level = priority(entity).agedLevel(queuedAt == null ? 0L : now - queuedAt.getTime(), agingMillis);
+            if (!byLevel.containsKey(level)) {
+                byLevel.put(level, Lists.<ContainerEntity>newArrayList());
+            }
+            byLevel.get(level).add(entity);
+        }
+
+        // Launches placed at a higher level count toward their users' shares at the lower levels
+        final Map<String, Long> counts = Maps.newHashMap(activeByUser);
+        final List<ContainerEntity> ordered = Lists.newArrayListWithCapacity(queued.size());
+        for (final List<ContainerEntity> level : byLevel.values()) {
+            for (final ContainerEntity entity : fairShareOrder(level, counts)) {
+                ordered.add(entity);
+                increment(counts, entity.getUserId());
+            }
+        }
+        return ordered;
+    }
+
+    /**
+     * Order queued launches so that the next one always belongs to the user with the fewest containers,
+     * counting both active containers and launches already placed ahead in this order.
+     * Each user's own launches stay oldest first, and ties go to the user whose next launch has waited longest.
+     *
+     * @param queued Queued launches, oldest first.
+     * @param activeByUser Active container counts by user id.
+     */
+    @VisibleForTesting
+    @Nonnull
+    public static List<ContainerEntity> fairShareOrder(final @Nonnull List<ContainerEntity> queued,
+                                                       final @Nonnull Map<String, Long> activeByUser) {
+        final Map<String, Deque<ContainerEntity>> byUser = Maps.newLinkedHashMap();
+        for (final ContainerEntity entity : queued) {
+            Deque<ContainerEntity> userQueue = byUser.get(entity.getUserId());
+            if (userQueue == null) {
+                userQueue = new ArrayDeque<>();
+                byUser.put(entity.getUserId(), userQueue);
+            }
+            userQueue.add(entity);
+        }
+
+        final Map<String, Long> counts = Maps.newHashMap(activeByUser);
+        final List<ContainerEntity> ordered = Lists.newArrayListWithCapacity(queued.size());
+        while (ordered.size() < queued.size()) {
+            String nextUser = null;
+            long nextCount = Long.MAX_VALUE;
+            long nextId = Long.MAX_VALUE;
+            for (final Map.Entry<String, Deque<ContainerEntity>> userQueue : byUser.entrySet()) {
+                final ContainerEntity head = userQueue.getValue().peek();
+                if (head == null) {
+                    continue;
+                }
+                final long count = count(counts, userQueue.getKey());
+                if (count < nextCount || (count == nextCount && head.getId() < nextId)) {
+                    nextUser = userQueue.getKey();
+                    nextCount = count;
+                    nextId = head.getId();
+                }
+            }
+            ordered.add(byUser.get(nextUser).poll());
+            counts.put(nextUser, nextCount + 1);
+        }
+        return ordered;
+    }
+
+    @Nullable
+    private static Date queuedAt(final ContainerEntity entity) {
+        return entity.getCreated() != null ? entity.getCreated() : entity.getStatusTime();
+    }
+
+    private static LaunchPriority priority(final ContainerEntity entity) {
+        // Launches queued before priorities existed were all treated alike
+        return LaunchPriority.fromName(entity.getPriority(), LaunchPriority.INTERACTIVE);
+    }
+
+    private long agingMillis() {
+        final Integer agingMinutes = containerServicePrefsBean.getLaunchPriorityAgingMinutes();
+        return agingMinutes == null || agingMinutes < 0 ? 0L : TimeUnit.MINUTES.toMillis(agingMinutes);
+    }
+
+    @Nullable
+    private static String waitingOn(final Limits limits, final Tallies tallies,
+                                    final String project, final String userId, final String wrapperId) {
+        if (limits.perProject > 0 && StringUtils.isNotBlank(project) && count(tallies.byProject, project) >= limits.perProject) {
+            return PROJECT;
+        }
+        if (limits.perUser > 0 && count(tallies.byUser, userId) >= limits.perUser) {
+            return USER;
+        }
+        if (limits.perWrapper > 0 && count(tallies.byWrapper, wrapperId) >= limits.perWrapper) {
+            return WRAPPER;
+        }
+        return null;
+    }
+
+    private Tallies activeTallies(final Limits limits) {
+        final Map<String, Long> none = Collections.emptyMap();
+        return new Tallies(
+                limits.perProject > 0 ? containerEntityService.countActiveContainers("project") : none,
+                limits.perUser > 0 ? containerEntityService.countActiveContainers("userId") : none,
+                limits.perWrapper > 0 ? containerEntityService.countActiveContainers("wrapperId") : none);
+    }
+
+    private Limits limits() {
+        return new Limits(limit(containerServicePrefsBean.getMaxConcurrentContainersPerProject()),
+                limit(containerServicePrefsBean.getMaxConcurrentContainersPerUser()),
+                limit(containerServicePrefsBean.getMaxConcurrentContainersPerWrapper()));
+    }
+
+    private static int limit(final Integer limit) {
+        return limit == null || limit < 0 ? 0 : limit;
+    }
+
+    private static long count(final Map<String, Long> counts, final String key) {
+        final Long count = key == null ? null : counts.get(key);
+        return count == null ? 0L : count;
+    }
+
+    private static void increment(final Map<String, Long> counts, final String key) {
+        if (key != null) {
+            counts.put(key, count(counts, key) + 1);
+        }
+    }
+
+    private static final class Limits {
+        private final int perProject;
+        private final int perUser;
+        private final int perWrapper;
+
+        private Limits(final int perProject, final int perUser, final int perWrapper) {
+            this.perProject = perProject;
+            this.perUser = perUser;
+            this.perWrapper = perWrapper;
+        }
+
+        private boolean none() {
+            return perProject == 0 && perUser == 0 && perWrapper == 0;
+        }
+    }
+
+    private static final class Tallies {
+        private final Map<String, Long> byProject;
+        private final Map<String, Long> byUser;
+        private final Map<String, Long> byWrapper;
+
+        private Tallies(final Map<String, Long> byProject, final Map<String, Long> byUser, final Map<String, Long> byWrapper) {
+            this.byProject = Maps.newHashMap(byProject);
+            this.byUser = Maps.newHashMap(byUser);
+            this.byWrapper = Maps.newHashMap(byWrapper);
+        }
+    }
+
+    private static final class Planned {
+        private final ContainerEntity entity;
+        private final String waitingOn;
+
+        private Planned(final ContainerEntity entity, final String waitingOn) {
+            this.entity = entity;
+            this.waitingOn = waitingOn;
+        }
+    }
+}
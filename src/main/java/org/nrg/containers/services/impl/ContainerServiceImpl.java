@@ -3,6 +3,7 @@ package org.nrg.containers.services.impl;
 import com.google.common.base.Function;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.apache.commons.lang3.StringUtils;
 import org.nrg.containers.api.ContainerControlApi;
 import org.nrg.containers.events.model.ContainerEvent;
@@ -13,20 +14,35 @@ import org.nrg.containers.exceptions.DockerServerException;
 import org.nrg.containers.exceptions.NoDockerServerException;
 import org.nrg.containers.exceptions.UnauthorizedException;
 import org.nrg.containers.model.command.auto.Command;
+import org.nrg.containers.model.command.auto.CommandResources;
 import org.nrg.containers.model.command.auto.ResolvedCommand;
 import org.nrg.containers.model.command.auto.ResolvedInputTreeNode;
 import org.nrg.containers.model.command.auto.ResolvedInputValue;
+import org.nrg.containers.model.configuration.ContainerServicePrefsBean;
+import org.nrg.containers.model.container.LaunchPriority;
 import org.nrg.containers.model.container.auto.Container;
 import org.nrg.containers.model.container.auto.Container.ContainerHistory;
+import org.nrg.containers.model.container.auto.ContainerFilter;
+import org.nrg.containers.model.container.auto.ContainerStats;
+import org.nrg.containers.model.container.auto.FinalizationNodeStats;
+import org.nrg.containers.model.container.auto.QueuedLaunch;
 import org.nrg.containers.model.container.auto.ServiceTask;
 import org.nrg.containers.model.container.entity.ContainerEntity;
 import org.nrg.containers.model.container.entity.ContainerEntityHistory;
+import org.nrg.containers.model.container.entity.FinalizationWorkEntity;
+import org.nrg.containers.model.server.docker.DockerServerBase.DockerServer;
+import org.nrg.containers.model.server.docker.DockerServerLoad;
 import org.nrg.containers.model.xnat.Scan;
 import org.nrg.containers.model.xnat.XnatModelObject;
 import org.nrg.containers.services.CommandResolutionService;
+import org.nrg.containers.services.ContainerCleanupService;
 import org.nrg.containers.services.ContainerEntityService;
 import org.nrg.containers.services.ContainerFinalizeService;
+import org.nrg.containers.services.ContainerQueueService;
 import org.nrg.containers.services.ContainerService;
+import org.nrg.containers.services.DockerServerService;
+import org.nrg.containers.services.FinalizationWorkService;
+import org.nrg.containers.services.ImageWarmerService;
 import org.nrg.framework.exceptions.NotFoundException;
 import org.nrg.xdat.entities.AliasToken;
 import org.nrg.xdat.preferences.SiteConfigPreferences;
@@ -41,7 +57,9 @@ import org.nrg.xft.security.UserI;
 import org.nrg.xnat.utils.WorkflowUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
 
 import javax.annotation.Nonnull;
@@ -49,10 +67,22 @@ import javax.annotation.Nullable;
 import java.io.ByteArrayInputStream;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.regex.Pattern;
 
 import static org.nrg.containers.model.command.entity.CommandType.DOCKER;
@@ -65,9 +95,27 @@ import static org.nrg.containers.model.command.entity.CommandWrapperInputType.SE
 import static org.nrg.containers.model.command.entity.CommandWrapperInputType.SUBJECT;
 
 @Service
-public class ContainerServiceImpl implements ContainerService {
+public class ContainerServiceImpl implements ContainerService, DisposableBean {
     private static final Logger log = LoggerFactory.getLogger(ContainerServiceImpl.class);
     private static final Pattern exitCodePattern = Pattern.compile("kill|die|oom\\((\\d+|x)\\)");
+    private static final int EXPORT_FETCH_SIZE = 500;
+    private static final long STATS_CACHE_TTL_MILLIS = TimeUnit.SECONDS.toMillis(60);
+    private static final int MAX_UPDATE_ATTEMPTS = 3;
+    private static final int DEFAULT_FINALIZATION_PARALLELISM = 4;
+    private static final int MAX_FINALIZATION_PARALLELISM = 32;
+    private static final int DEFAULT_FINALIZATION_LEASE_MINUTES = 10;
+    // A container whose finalization was abandoned this many times is failed rather than tried again
+    private static final int MAX_FINALIZATION_ATTEMPTS = 3;
+    private static final String ABANDONED_FINALIZATION_STATUS = "Finalization Abandoned";
+    private static final long FINALIZATION_SHUTDOWN_SECONDS = 30L;
+    // An exit recorded this long ago that is not in the finalization work table was never added to it
+    private static final long MISSED_FINALIZATION_MILLIS = TimeUnit.MINUTES.toMillis(1);
+    // A launch still dispatching after this long was left behind by a node that went down, and goes back in the queue
+    private static final long STALE_DISPATCH_MILLIS = TimeUnit.MINUTES.toMillis(15);
+    // Server loads are read at most this often for placement. Containers placed in between are counted in.
+    private static final long SERVER_LOAD_CACHE_TTL_MILLIS = TimeUnit.SECONDS.toMillis(5);
+    // Without aging, a priority level outweighs any wait
+    private static final long UNAGED_LEVEL_MILLIS = TimeUnit.DAYS.toMillis(365L * 100L);
 
     private final ContainerControlApi containerControlApi;
     private final ContainerEntityService containerEntityService;
@@ -75,6 +123,39 @@ public class ContainerServiceImpl implements ContainerService {
     private final AliasTokenService aliasTokenService;
     private final SiteConfigPreferences siteConfigPreferences;
     private final ContainerFinalizeService containerFinalizeService;
+    private final ImageWarmerService imageWarmerService;
+    private final ContainerCleanupService containerCleanupService;
+    private final ContainerQueueService containerQueueService;
+    private final ContainerServicePrefsBean containerServicePrefsBean;
+    private final DockerServerService dockerServerService;
+    private final FinalizationWorkService finalizationWorkService;
+
+    // Finalization work claimed by this node waits here for a worker, in priority order
+    private final ThreadPoolExecutor finalizationExecutor = new ThreadPoolExecutor(DEFAULT_FINALIZATION_PARALLELISM, DEFAULT_FINALIZATION_PARALLELISM,
+            1L, TimeUnit.MINUTES, new PriorityBlockingQueue<Runnable>(),
+            new ThreadFactoryBuilder().setNameFormat("container-finalization-%d").setDaemon(true).build());
+    private final AtomicLong finalizationSequence = new AtomicLong();
+    // Ids of finalization work this node has claimed and not yet finished. Claims are made under finalizationClaimLock.
+    private final Set<Long> runningFinalizations = Collections.newSetFromMap(new ConcurrentHashMap<Long, Boolean>());
+    private final Object finalizationClaimLock = new Object();
+
+    private volatile CachedStats cachedStats;
+
+    // Only one dispatch runs at a time on this node. A request that comes in while one is running makes it go again.
+    private final ReentrantLock dispatchLock = new ReentrantLock();
+    private final AtomicBoolean dispatchRequested = new AtomicBoolean(false);
+    // Dispatches requested by launches and finalizations run here, not on the caller's thread.
+    // One dispatch runs and at most one waits; a later request is covered by the one waiting.
+    private final ThreadPoolExecutor dispatchExecutor = new ThreadPoolExecutor(1, 1,
+            1L, TimeUnit.MINUTES, new ArrayBlockingQueue<Runnable>(1),
+            new ThreadFactoryBuilder().setNameFormat("container-dispatch-%d").setDaemon(true).build(),
+            new ThreadPoolExecutor.DiscardPolicy());
+
+    // Loads of the enabled servers, by server id, as of cachedLoadsTime. Guarded by placementLock.
+    private final Object placementLock = new Object();
+    private Map<Long, DockerServerLoad> cachedLoads = Collections.emptyMap();
+    private List<Long> cachedLoadsServerIds = Collections.emptyList();
+    private long cachedLoadsTime = 0L;
 
     @Autowired
     public ContainerServiceImpl(final ContainerControlApi containerControlApi,
@@ -82,13 +163,43 @@ public class ContainerServiceImpl implements ContainerService {
                                 final CommandResolutionService commandResolutionService,
                                 final AliasTokenService aliasTokenService,
                                 final SiteConfigPreferences siteConfigPreferences,
-                                final ContainerFinalizeService containerFinalizeService) {
+                                final ContainerFinalizeService containerFinalizeService,
+                                final ImageWarmerService imageWarmerService,
+                                final ContainerCleanupService containerCleanupService,
+                                final ContainerQueueService containerQueueService,
+                                final ContainerServicePrefsBean containerServicePrefsBean,
+                                final DockerServerService dockerServerService,
+                                final FinalizationWorkService finalizationWorkService) {
         this.containerControlApi = containerControlApi;
         this.containerEntityService = containerEntityService;
         this.commandResolutionService = commandResolutionService;
         this.aliasTokenService = aliasTokenService;
         this.siteConfigPreferences = siteConfigPreferences;
         this.containerFinalizeService = containerFinalizeService;
+        this.imageWarmerService = imageWarmerService;
+        this.containerCleanupService = containerCleanupService;
+        this.containerQueueService = containerQueueService;
+        this.containerServicePrefsBean = containerServicePrefsBean;
+        this.dockerServerService = dockerServerService;
+        this.finalizationWorkService = finalizationWorkService;
+        finalizationExecutor.allowCoreThreadTimeOut(true);
+        dispatchExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    @Override
+    public void destroy() {
+        dispatchExecutor.shutdownNow();
+        // Let claimed finalizations finish. Any still waiting when time runs out are picked up by another node once their lease expires.
+        finalizationExecutor.shutdown();
+        try {
+            if (!finalizationExecutor.awaitTermination(FINALIZATION_SHUTDOWN_SECONDS, TimeUnit.SECONDS)) {
+                log.warn("Finalizations were still running after {} seconds. Stopping them.", FINALIZATION_SHUTDOWN_SECONDS);
+                finalizationExecutor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            finalizationExecutor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
     }
 
     @Override
@@ -96,6 +207,38 @@ public class ContainerServiceImpl implements ContainerService {
         return toPojo(containerEntityService.getAll());
     }
 
+    @Override
+    public List<Container> getAll(final ContainerFilter filter) {
+        return toPojo(containerEntityService.getAll(filter));
+    }
+
+    @Override
+    @Nonnull
+    public ContainerStats getStats() {
+        final CachedStats cached = cachedStats;
+        if (cached != null && System.currentTimeMillis() - cached.computedAt < STATS_CACHE_TTL_MILLIS) {
+            return cached.stats;
+        }
+        final ContainerStats stats = containerEntityService.computeStats();
+        cachedStats = new CachedStats(stats, System.currentTimeMillis());
+        return stats;
+    }
+
+    @Override
+    public void invalidateStats() {
+        cachedStats = null;
+    }
+
+    @Override
+    public void export(final ContainerFilter filter, final ContainerHandler handler) throws IOException {
+        containerEntityService.scroll(filter, EXPORT_FETCH_SIZE, new ContainerEntityService.ContainerEntityHandler() {
+            @Override
+            public void handle(final ContainerEntity containerEntity) throws IOException {
+                handler.handle(toPojo(containerEntity));
+            }
+        });
+    }
+
     @Override
     @Nullable
     public Container retrieve(final String containerId) {
@@ -144,6 +287,11 @@ public class ContainerServiceImpl implements ContainerService {
         return toPojo(containerEntityService.retrieveNonfinalizedServices());
     }
 
+    @Override
+    public Map<String, Long> retrieveNonfinalizedContainerIds() {
+        return containerEntityService.retrieveNonfinalizedContainerIds();
+    }
+
     @Override
     public List<Container> retrieveSetupContainersForParent(final long parentId) {
         return toPojo(containerEntityService.retrieveSetupContainersForParent(parentId));
@@ -152,15 +300,34 @@ public class ContainerServiceImpl implements ContainerService {
     @Override
     @Nullable
     public Container addContainerEventToHistory(final ContainerEvent containerEvent, final UserI userI) {
-        final ContainerEntity containerEntity = containerEntityService.addContainerEventToHistory(containerEvent, userI);
-        return containerEntity == null ? null : toPojo(containerEntity);
+        for (int attempt = 1; ; attempt++) {
+            try {
+                final ContainerEntity containerEntity = containerEntityService.addContainerEventToHistory(containerEvent, userI);
+                return containerEntity == null ? null : toPojo(containerEntity);
+            } catch (OptimisticLockingFailureException e) {
+                // Adding history is idempotent, so it is safe to try again against the latest version of the container
+                if (attempt >= MAX_UPDATE_ATTEMPTS) {
+                    throw e;
+                }
+                log.debug("Container {} was updated concurrently while adding an event to its history. Trying again.", containerEvent.containerId());
+            }
+        }
     }
 
     @Override
     @Nullable
     public ContainerHistory addContainerHistoryItem(final Container container, final ContainerHistory history, final UserI userI) {
-        final ContainerEntityHistory containerEntityHistoryItem = containerEntityService.addContainerHistoryItem(fromPojo(container), fromPojo(history), userI);
-        return containerEntityHistoryItem == null ? null : toPojo(containerEntityHistoryItem);
+        for (int attempt = 1; ; attempt++) {
+            try {
+                final ContainerEntityHistory containerEntityHistoryItem = containerEntityService.addContainerHistoryItem(fromPojo(container), fromPojo(history), userI);
+                return containerEntityHistoryItem == null ? null : toPojo(containerEntityHistoryItem);
+            } catch (OptimisticLockingFailureException e) {
+                if (attempt >= MAX_UPDATE_ATTEMPTS) {
+                    throw e;
+                }
+                log.debug("Container {} was updated concurrently while adding a history item. Trying again.", container.databaseId());
+            }
+        }
     }
 
     @Override
@@ -205,49 +372,219 @@ public class ContainerServiceImpl implements ContainerService {
 
     }
 
+    @Override
+    @Nonnull
+    public Container resolveCommandAndLaunchContainer(final String project,
+                                                      final long commandId,
+                                                      final String wrapperName,
+                                                      final long wrapperId,
+                                                      final Map<String, String> inputValues,
+                                                      final UserI userI,
+                                                      final LaunchPriority defaultPriority,
+                                                      final @Nullable LaunchPriority priority)
+            throws NoDockerServerException, DockerServerException, NotFoundException, CommandResolutionException, ContainerException, UnauthorizedException {
+        final ResolvedCommand resolvedCommand =
+                project == null ?
+                        (commandId == 0L && wrapperName == null ?
+                                commandResolutionService.resolve(wrapperId, inputValues, userI) :
+                                commandResolutionService.resolve(commandId, wrapperName, inputValues, userI)) :
+                        (commandId == 0L && wrapperName == null ?
+                                commandResolutionService.resolve(project, wrapperId, inputValues, userI) :
+                                commandResolutionService.resolve(project, commandId, wrapperName, inputValues, userI));
+        return launchResolvedCommand(priority == null ? resolvedCommand : resolvedCommand.toBuilder().priority(priority.getName()).build(),
+                userI, defaultPriority);
+    }
+
     @Override
     @Nonnull
     public Container launchResolvedCommand(final ResolvedCommand resolvedCommand,
                                            final UserI userI)
             throws NoDockerServerException, DockerServerException, ContainerException, UnsupportedOperationException {
-        return launchResolvedCommand(resolvedCommand, userI, null);
+        return launchResolvedCommand(resolvedCommand, userI, LaunchPriority.INTERACTIVE);
     }
 
-    private Container launchResolvedCommand(final ResolvedCommand resolvedCommand,
-                                            final UserI userI,
-                                            final Container parent)
+    @Override
+    @Nonnull
+    public Container launchResolvedCommand(final ResolvedCommand resolvedCommand,
+                                           final UserI userI,
+                                           final LaunchPriority defaultPriority)
+            throws NoDockerServerException, DockerServerException, ContainerException, UnsupportedOperationException {
+        final ResolvedCommand prioritized = resolvedCommand.priority() != null ?
+                resolvedCommand :
+                resolvedCommand.toBuilder().priority(defaultPriority.getName()).build();
+        if (prioritized.type().equals(DOCKER.getName()) &&
+                containerQueueService.mustQueue(prioritized.project(), userI.getLogin(), prioritized.wrapperId())) {
+            return queue(prioritized, userI);
+        }
+        return launchResolvedCommandWithParent(prioritized, userI, null);
+    }
+
+    @Nonnull
+    private Container queue(final ResolvedCommand resolvedCommand, final UserI userI) {
+        log.info("Concurrency limits reached. Adding launch of wrapper {} by user {} to the launch queue.", resolvedCommand.wrapperId(), userI.getLogin());
+        final ContainerEntity queued = containerEntityService.create(
+                ContainerEntity.fromPojo(Container.queuedFromResolvedCommand(resolvedCommand, userI.getLogin())));
+        containerEntityService.addContainerHistoryItem(queued,
+                ContainerEntityHistory.fromUserAction(ContainerEntity.QUEUED, userI.getLogin(), queued), userI);
+        invalidateStats();
+
+        // The limits are checked again in fair-share order; this launch may go out right away
+        requestDispatch();
+
+        final Container current = retrieve(queued.getId());
+        return current == null ? toPojo(queued) : current;
+    }
+
+    @Override
+    public void dispatchQueued() {
+        if (dispatchLock.isHeldByCurrentThread()) {
+            // Asked for again from within a dispatch. The running dispatch will go again.
+            dispatchRequested.set(true);
+            return;
+        }
+        dispatchRequested.set(true);
+        while (dispatchRequested.get() && dispatchLock.tryLock()) {
+            try {
+                dispatchRequested.set(false);
+                final int requeued = containerEntityService.requeueStaleDispatches(new Date(System.currentTimeMillis() - STALE_DISPATCH_MILLIS));
+                if (requeued > 0) {
+                    log.warn("Put {} launches back in the launch queue that were dispatching for more than {} minutes.",
+                            requeued, TimeUnit.MILLISECONDS.toMinutes(STALE_DISPATCH_MILLIS));
+                }
+                for (final ContainerEntity queued : containerQueueService.getDispatchable()) {
+                    dispatch(queued.getId());
+                }
+            } finally {
+                dispatchLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Dispatch queued launches on the dispatch thread, so the launches do not hold up the caller.
+     */
+    private void requestDispatch() {
+        dispatchExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    dispatchQueued();
+                } catch (Exception e) {
+                    log.error("Failed to dispatch queued launches. The launch queue job will try again.", e);
+                }
+            }
+        });
+    }
+
+    @Override
+    @Nonnull
+    public List<QueuedLaunch> getLaunchQueue() {
+        return containerQueueService.getQueue();
+    }
+
+    /**
+     * Launch a queued container. The command is resolved again from the launch's raw inputs, so the launch
+     * picks up configuration changes made while it waited and gets fresh credentials.
+     */
+    private void dispatch(final long databaseId) {
+        // Another node may be dispatching the same launch, or it may have been removed from the queue
+        if (!containerEntityService.compareAndSetStatus(databaseId, ContainerEntity.QUEUED, ContainerEntity.DISPATCHING)) {
+            return;
+        }
+        final Container queued = retrieve(databaseId);
+        if (queued == null) {
+            return;
+        }
+
+        log.info("Dispatching Container {} from the launch queue.", databaseId);
+        UserI userI = null;
+        try {
+            userI = Users.getUser(queued.userId());
+            final List<Map<String, String>> batchItemInputs = ResolvedCommand.splitBatchItems(queued.getRawInputs());
+            final ResolvedCommand resolvedCommand;
+            if (batchItemInputs.isEmpty()) {
+                resolvedCommand = resolveQueued(queued, queued.getRawInputs(), userI);
+            } else {
+                // A queued batch keeps each item's raw inputs under item-qualified names
+                final List<ResolvedCommand> batchItems = Lists.newArrayList();
+                for (final Map<String, String> itemInputs : batchItemInputs) {
+                    batchItems.add(resolveQueued(queued, itemInputs, userI));
+                }
+                resolvedCommand = commandResolutionService.resolveBatch(batchItems);
+            }
+            // It keeps the priority it was queued with
+            launchResolvedDockerCommand(resolvedCommand.toBuilder().priority(queued.priority()).build(), userI, null, queued);
+        } catch (Exception e) {
+            log.error("Could not launch Container {} from the launch queue.", databaseId, e);
+            // Take it out of "Dispatching" so it no longer counts against the limits
+            containerEntityService.compareAndFinalize(databaseId, ContainerEntity.DISPATCHING, "Failed");
+            addContainerHistoryItem(queued, ContainerHistory.fromSystem("Failed", "Could not launch from the launch queue. " + e.getMessage()), userI);
+            invalidateStats();
+        }
+    }
+
+    private ResolvedCommand resolveQueued(final Container queued, final Map<String, String> inputValues, final UserI userI)
+            throws NotFoundException, CommandResolutionException, UnauthorizedException {
+        return StringUtils.isBlank(queued.project()) ?
+                commandResolutionService.resolve(queued.wrapperId(), inputValues, userI) :
+                commandResolutionService.resolve(queued.project(), queued.wrapperId(), inputValues, userI);
+    }
+
+    private Container launchResolvedCommandWithParent(final ResolvedCommand resolvedCommand,
+                                                      final UserI userI,
+                                                      final Container parent)
             throws NoDockerServerException, DockerServerException, ContainerException, UnsupportedOperationException {
         if (resolvedCommand.type().equals(DOCKER.getName()) || resolvedCommand.type().equals(DOCKER_SETUP.getName())) {
-            return launchResolvedDockerCommand(resolvedCommand, userI, parent);
+            return launchResolvedDockerCommand(resolvedCommand, userI, parent, null);
         } else {
             throw new UnsupportedOperationException("Cannot launch a command of type " + resolvedCommand.type());
         }
     }
 
+    /**
+     * @param queued The queued container this launch was dispatched for, or null for a launch that did not wait.
+     *               A dispatched launch keeps the queued container's database id and history.
+     */
     @Nonnull
     private Container launchResolvedDockerCommand(final ResolvedCommand resolvedCommand,
                                                   final UserI userI,
-                                                  final Container parent)
+                                                  final Container parent,
+                                                  final @Nullable Container queued)
             throws NoDockerServerException, DockerServerException, ContainerException {
         log.info("Preparing to launch resolved command.");
         final ResolvedCommand preparedToLaunch = prepareToLaunch(resolvedCommand, userI);
 
-        log.info("Creating container from resolved command.");
-        final Container createdContainerOrService = containerControlApi.createContainerOrSwarmService(preparedToLaunch, userI);
+        // Setup containers write to their parent's mounts, so they go on the parent's server
+        final DockerServer server = parent == null ? chooseServer() : getServerFor(parent);
+
+        imageWarmerService.awaitPull(server, preparedToLaunch.image());
+
+        log.info("Creating container from resolved command on server {}.", server.name());
+        final Container createdContainerOrService = containerControlApi.createContainerOrSwarmService(server, preparedToLaunch, userI);
 
         log.info("Recording container launch.");
         final String workflowId = makeWorkflowIfAppropriate(resolvedCommand, createdContainerOrService, userI);
-        final Container savedContainerOrService = toPojo(containerEntityService.save(fromPojo(
-                createdContainerOrService.toBuilder()
-                        .workflowId(workflowId)
-                        .setParentProperties(parent)
-                        .build()
-        ), userI));
+        final Container toSave = createdContainerOrService.toBuilder()
+                .workflowId(workflowId)
+                .setParentProperties(parent)
+                .build();
+        final Container savedContainerOrService;
+        if (queued == null) {
+            savedContainerOrService = toPojo(containerEntityService.save(fromPojo(toSave), userI));
+        } else {
+            update(toSave.toBuilder()
+                    .databaseId(queued.databaseId())
+                    .history(queued.history())
+                    .build());
+            addContainerHistoryItem(retrieve(queued.databaseId()), ContainerHistory.fromUserAction("Created", userI.getLogin()), userI);
+            savedContainerOrService = retrieve(queued.databaseId());
+        }
 
         if (resolvedCommand.setupCommands().size() > 0) {
             log.info("Launching setup containers.");
             for (final ResolvedCommand resolvedSetupCommand : resolvedCommand.setupCommands()) {
-                launchResolvedCommand(resolvedSetupCommand, userI, savedContainerOrService);
+                launchResolvedCommandWithParent(resolvedSetupCommand.toBuilder().priority(resolvedCommand.priority()).build(),
+                        userI, savedContainerOrService);
             }
         } else {
             startContainer(userI, savedContainerOrService);
@@ -259,7 +596,7 @@ public class ContainerServiceImpl implements ContainerService {
     private void startContainer(final UserI userI, final Container savedContainerOrService) throws NoDockerServerException, ContainerException {
         log.info("Starting container.");
         try {
-            containerControlApi.startContainer(savedContainerOrService.containerId());
+            containerControlApi.startContainer(getServerFor(savedContainerOrService), savedContainerOrService.containerId());
         } catch (DockerServerException e) {
             addContainerHistoryItem(savedContainerOrService, ContainerHistory.fromSystem("Failed", "Did not start." + e.getMessage()), userI);
             handleFailure(savedContainerOrService);
@@ -267,6 +604,75 @@ public class ContainerServiceImpl implements ContainerService {
         }
     }
 
+    /**
+     * Pick the server for a new container with the configured placement strategy.
+     * Servers that cannot report their load are passed over. If none can, the container goes on the default server.
+     */
+    @Nonnull
+    private DockerServer chooseServer() throws NoDockerServerException {
+        final List<DockerServer> servers = dockerServerService.getEnabledServers();
+        if (servers.isEmpty()) {
+            throw new NoDockerServerException("No container server defined.");
+        }
+        if (servers.size() == 1) {
+            return servers.get(0);
+        }
+
+        final List<Long> serverIds = Lists.newArrayList();
+        for (final DockerServer server : servers) {
+            serverIds.add(server.id());
+        }
+
+        final boolean stale;
+        synchronized (placementLock) {
+            stale = System.currentTimeMillis() - cachedLoadsTime > SERVER_LOAD_CACHE_TTL_MILLIS || !serverIds.equals(cachedLoadsServerIds);
+        }
+        if (stale) {
+            // Read the loads outside the lock, so launches do not queue up behind a slow server
+            final long readTime = System.currentTimeMillis();
+            final Map<Long, DockerServerLoad> loads = Maps.newLinkedHashMap();
+            for (final DockerServer server : servers) {
+                try {
+                    loads.put(server.id(), containerControlApi.getServerLoad(server));
+                } catch (DockerServerException e) {
+                    log.warn("Could not read the load on server {}. No containers will be placed there for now.", server.name(), e);
+                }
+            }
+            synchronized (placementLock) {
+                // Another launch may have read them more recently
+                if (readTime > cachedLoadsTime || !serverIds.equals(cachedLoadsServerIds)) {
+                    cachedLoads = loads;
+                    cachedLoadsServerIds = serverIds;
+                    cachedLoadsTime = readTime;
+                }
+            }
+        }
+
+        synchronized (placementLock) {
+            final DockerServerLoad chosen = containerServicePrefsBean.dockerPlacementStrategy()
+                    .choose(Lists.newArrayList(cachedLoads.values()));
+            if (chosen == null) {
+                return servers.get(0);
+            }
+            cachedLoads.put(chosen.serverId(), chosen.plusOne());
+            for (final DockerServer server : servers) {
+                if (server.id() == chosen.serverId()) {
+                    return server;
+                }
+            }
+            return servers.get(0);
+        }
+    }
+
+    @Nonnull
+    private DockerServer getServerFor(final Container container) throws NoDockerServerException {
+        try {
+            return dockerServerService.getServerFor(container);
+        } catch (NotFoundException e) {
+            throw new NoDockerServerException(e);
+        }
+    }
+
     @Nonnull
     private ResolvedCommand prepareToLaunch(final ResolvedCommand resolvedCommand,
                                             final UserI userI) {
@@ -280,6 +686,14 @@ public class ContainerServiceImpl implements ContainerService {
                 .addEnvironmentVariable("XNAT_PASS", token.getSecret())
                 .addEnvironmentVariable("XNAT_HOST", processingUrl);
 
+        // Lower priority containers get less of a busy Docker server's CPU, unless the command says otherwise
+        final LaunchPriority priority = LaunchPriority.fromName(resolvedCommand.priority());
+        if (priority != null && (resolvedCommand.resources() == null || resolvedCommand.resources().cpuShares() == null)) {
+            resolvedCommandBuilder.resources(CommandResources.merge(
+                    CommandResources.builder().cpuShares(priority.getCpuShares()).build(),
+                    resolvedCommand.resources()));
+        }
+
         return resolvedCommandBuilder.build();
     }
 
@@ -301,9 +715,14 @@ public class ContainerServiceImpl implements ContainerService {
                 final UserI userI = Users.getUser(userLogin);
 
                 final Container containerWithAddedEvent = addContainerEventToHistory(event, userI);
-                if (event.isExitStatus()) {
-                    log.debug("Container is dead. Finalizing.");
-                    finalize(containerWithAddedEvent, userI, event.exitCode());
+                if (containerWithAddedEvent == null) {
+                    // Replayed events and exits found by the reconciliation sweep can repeat ones already handled
+                    log.debug("Event was already recorded for Container {}.", container.databaseId());
+                }
+                if (event.isExitStatus() && !ContainerEntity.FINALIZING.equals(container.status())) {
+                    // Even for a repeated exit, in case scheduling it the first time failed. Scheduling twice is harmless.
+                    log.debug("Container is dead. Scheduling finalization.");
+                    scheduleFinalization(containerWithAddedEvent == null ? container : containerWithAddedEvent, userI, event.exitCode());
                 }
             } catch (UserInitException | UserNotFoundException e) {
                 log.error("Could not update container status. Could not get user details for user " + userLogin, e);
@@ -331,7 +750,7 @@ public class ContainerServiceImpl implements ContainerService {
                     .containerId(task.containerId())
                     .nodeId(task.nodeId())
                     .build();
-            containerEntityService.update(fromPojo(serviceToUpdate));
+            update(serviceToUpdate);
             service = retrieve(serviceToUpdate.databaseId());
         } else {
             service = event.service();
@@ -348,10 +767,10 @@ public class ContainerServiceImpl implements ContainerService {
                     log.debug("Skipping task status we have already seen.");
                 } else {
                     if (task.exitCode() != null || task.isExitStatus()) {
-                        log.debug("Service has exited. Finalizing.");
+                        log.debug("Service has exited. Scheduling finalization.");
                         final String exitCodeString = task.exitCode() == null ? null : String.valueOf(task.exitCode());
                         final Container serviceWithAddedEvent = retrieve(service.databaseId());
-                        finalize(serviceWithAddedEvent, userI, exitCodeString);
+                        scheduleFinalization(serviceWithAddedEvent, userI, exitCodeString);
                     }
                 }
             } catch (UserInitException | UserNotFoundException e) {
@@ -364,6 +783,180 @@ public class ContainerServiceImpl implements ContainerService {
         }
     }
 
+    /**
+     * Put the container in the cluster's finalization work table, then claim what this node has free workers for.
+     * Whichever node has a free worker first finalizes it. Work is claimed in aged priority order.
+     */
+    private void scheduleFinalization(final Container container, final UserI userI, final String exitCode) {
+        try {
+            enqueueFinalization(container, userI.getLogin(), exitCode);
+        } catch (RuntimeException e) {
+            // Most likely another node enqueued the same container at the same moment, and this time we find its work.
+            // If it fails again, the reconciliation sweep adds the container later.
+            log.debug("Could not add Container {} to the finalization work table. Trying again.", container.databaseId(), e);
+            enqueueFinalization(container, userI.getLogin(), exitCode);
+        }
+        try {
+            claimFinalizationWork();
+        } catch (RuntimeException e) {
+            log.error("Failed to claim finalization work. Will try again on the next run.", e);
+        }
+    }
+
+    private void enqueueFinalization(final Container container, final String userId, final String exitCode) {
+        final LaunchPriority priority = LaunchPriority.fromName(container.priority(), LaunchPriority.INTERACTIVE);
+        final Integer agingMinutes = containerServicePrefsBean.getLaunchPriorityAgingMinutes();
+        final long levelMillis = agingMinutes == null || agingMinutes <= 0 ? UNAGED_LEVEL_MILLIS : TimeUnit.MINUTES.toMillis(agingMinutes);
+        finalizationWorkService.enqueue(container.databaseId(), userId, exitCode, container.status(),
+                priority.agedSortTime(System.currentTimeMillis(), levelMillis));
+    }
+
+    @Override
+    public int scheduleMissedFinalizations() {
+        int scheduled = 0;
+        final Date exitedBefore = new Date(System.currentTimeMillis() - MISSED_FINALIZATION_MILLIS);
+        for (final Long containerDatabaseId : containerEntityService.retrieveExitedWithoutFinalizationWork(exitedBefore)) {
+            final Container container = retrieve(containerDatabaseId);
+            if (container == null) {
+                continue;
+            }
+            try {
+                enqueueFinalization(container, container.userId(), container.exitCode());
+                scheduled++;
+            } catch (RuntimeException e) {
+                log.warn("Could not add Container {} to the finalization work table. Will try again on the next sweep.",
+                        containerDatabaseId, e);
+            }
+        }
+        if (scheduled > 0) {
+            log.info("Added {} exited containers missing from the finalization work table.", scheduled);
+            claimFinalizationWork();
+        }
+        return scheduled;
+    }
+
+    @Override
+    public void claimFinalizationWork() {
+        if (finalizationExecutor.isShutdown()) {
+            // Shutting down; leave new work for the other nodes
+            return;
+        }
+        resizeFinalizationPool();
+        // One claim at a time on this node, so it never claims more work than it has workers for
+        synchronized (finalizationClaimLock) {
+            final long leaseMillis = finalizationLeaseMillis();
+            finalizationWorkService.renew(Lists.newArrayList(runningFinalizations), leaseMillis);
+
+            final int freeWorkers = finalizationExecutor.getCorePoolSize() - runningFinalizations.size();
+            if (freeWorkers <= 0) {
+                return;
+            }
+            for (final FinalizationWorkEntity work : finalizationWorkService.claim(freeWorkers, leaseMillis)) {
+                runningFinalizations.add(work.getId());
+                finalizationExecutor.execute(new PrioritizedFinalization(work, finalizationSequence.incrementAndGet()));
+            }
+        }
+    }
+
+    @Override
+    public List<FinalizationNodeStats> getFinalizationNodeStats() {
+        return finalizationWorkService.getNodeStats();
+    }
+
+    private long finalizationLeaseMillis() {
+        final Integer configured = containerServicePrefsBean.getFinalizationLeaseMinutes();
+        return TimeUnit.MINUTES.toMillis(configured == null || configured <= 0 ? DEFAULT_FINALIZATION_LEASE_MINUTES : configured);
+    }
+
+    private synchronized void resizeFinalizationPool() {
+        final Integer configured = containerServicePrefsBean.getFinalizationParallelism();
+        final int parallelism = configured == null || configured <= 0 ? DEFAULT_FINALIZATION_PARALLELISM : Math.min(configured, MAX_FINALIZATION_PARALLELISM);
+        if (parallelism == finalizationExecutor.getCorePoolSize()) {
+            return;
+        }
+        if (parallelism > finalizationExecutor.getMaximumPoolSize()) {
+            finalizationExecutor.setMaximumPoolSize(parallelism);
+            finalizationExecutor.setCorePoolSize(parallelism);
+        } else {
+            finalizationExecutor.setCorePoolSize(parallelism);
+            finalizationExecutor.setMaximumPoolSize(parallelism);
+        }
+    }
+
+    /**
+     * Finalize claimed work.
+     *
+     * @return {@code false} if the container could not be finalized.
+     */
+    private boolean finalizeWork(final FinalizationWorkEntity work) throws UserInitException, UserNotFoundException {
+        final long containerDatabaseId = work.getContainerDatabaseId();
+        final Container container = retrieve(containerDatabaseId);
+        if (container == null) {
+            log.info("Container {} no longer exists. Nothing to finalize.", containerDatabaseId);
+            return true;
+        }
+        final UserI userI = Users.getUser(work.getUserId());
+
+        if (work.getAttempts() > 1) {
+            // The node that claimed the work before went away partway through, leaving the container claimed
+            if (work.getAttempts() > MAX_FINALIZATION_ATTEMPTS) {
+                log.error("Finalization of Container {} was abandoned {} times. Failing it.", containerDatabaseId, work.getAttempts() - 1);
+                // The last node to claim it may have gone away before it even set the container finalizing
+                if (containerEntityService.finalizeUnlessFinalized(containerDatabaseId, "Failed")) {
+                    addContainerHistoryItem(container, ContainerHistory.fromSystem("Failed",
+                            "Finalization was abandoned " + (work.getAttempts() - 1) + " times."), userI);
+                    invalidateStats();
+                }
+                return false;
+            }
+            log.info("Retrying finalization of Container {}, abandoned by node {}.", containerDatabaseId, work.getClaimedBy());
+            containerEntityService.compareAndSetStatus(containerDatabaseId, ContainerEntity.FINALIZING,
+                    StringUtils.defaultIfBlank(work.getContainerStatus(), ABANDONED_FINALIZATION_STATUS));
+        }
+
+        // Qualified, or Object.finalize() would hide it
+        ContainerServiceImpl.this.finalize(container, userI, work.getExitCode());
+        return true;
+    }
+
+    private class PrioritizedFinalization implements Runnable, Comparable<PrioritizedFinalization> {
+        private final FinalizationWorkEntity work;
+        private final long sequence;
+
+        private PrioritizedFinalization(final FinalizationWorkEntity work, final long sequence) {
+            this.work = work;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public void run() {
+            boolean failed = true;
+            try {
+                failed = !finalizeWork(work);
+            } catch (Throwable e) {
+                log.error("There was a problem finalizing Container {}.", work.getContainerDatabaseId(), e);
+            } finally {
+                runningFinalizations.remove(work.getId());
+            }
+
+            try {
+                finalizationWorkService.finish(work.getId(), failed);
+                // This worker is free for more
+                claimFinalizationWork();
+            } catch (RuntimeException e) {
+                log.error("Failed to update the finalization work table after finalizing Container {}.", work.getContainerDatabaseId(), e);
+            }
+        }
+
+        @Override
+        public int compareTo(final PrioritizedFinalization other) {
+            if (work.getSortTime() != other.work.getSortTime()) {
+                return work.getSortTime() < other.work.getSortTime() ? -1 : 1;
+            }
+            return sequence < other.sequence ? -1 : (sequence == other.sequence ? 0 : 1);
+        }
+    }
+
     @Override
     public void finalize(final String containerId, final UserI userI) throws NotFoundException {
         finalize(get(containerId), userI);
@@ -376,15 +969,42 @@ public class ContainerServiceImpl implements ContainerService {
 
     @Override
     public void finalize(final Container container, final UserI userI, final String exitCode) {
+        // Events, kills, and the REST API can all get here for the same container, on this node or another.
+        // Only the caller that claims the container finalizes it.
+        if (!containerEntityService.claimForFinalization(container.databaseId())) {
+            log.info("Container {}, container id {}, is already being finalized or has been finalized. Skipping.", container.databaseId(), container.containerId());
+            return;
+        }
         log.info("Finalizing Container {}, container id {}.", container.databaseId(), container.containerId());
 
-        final Container finalized = containerFinalizeService.finalizeContainer(container, userI, exitCodeIsFailed(exitCode));
+        final Container finalized;
+        try {
+            finalized = containerFinalizeService.finalizeContainer(container, userI, exitCodeIsFailed(exitCode));
+        } catch (RuntimeException e) {
+            // Do not leave the container claimed forever
+            log.error("Failed to finalize Container {}.", container.databaseId(), e);
+            containerEntityService.compareAndFinalize(container.databaseId(), ContainerEntity.FINALIZING, "Failed");
+            addContainerHistoryItem(container, ContainerHistory.fromSystem("Failed", "Finalization failed. " + e.getMessage()), userI);
+            invalidateStats();
+            throw e;
+        }
 
         log.info("Done uploading for Container {}. Now saving information about created outputs.", container.databaseId());
 
-        containerEntityService.update(fromPojo(finalized));
+        update(finalized, true);
         log.debug("Done saving outputs for Container {}.", container.databaseId());
 
+        // A container reached a terminal state, so the cached statistics are out of date
+        invalidateStats();
+
+        // Its logs and outputs are uploaded, so the Docker server may not need it anymore
+        containerCleanupService.onFinalized(finalized);
+
+        // It no longer counts against the concurrency limits, so a queued launch may be able to go
+        if (finalized.parentContainer() == null) {
+            requestDispatch();
+        }
+
         final Container parent = finalized.parentContainer();
         if (parent != null) {
             log.info("Container {} is a setup container for parent container {}. Checking whether parent needs a status change.", container.databaseId(), parent.databaseId());
@@ -457,12 +1077,22 @@ public class ContainerServiceImpl implements ContainerService {
         return kill(get(containerId), userI);
     }
 
-    private String kill(final Container container, final UserI userI)
+    private String kill(Container container, final UserI userI)
             throws NoDockerServerException, DockerServerException, NotFoundException {
+        if (ContainerEntity.QUEUED.equals(container.status())) {
+            // Nothing is running yet. Take it out of the queue, unless it is being dispatched right now.
+            if (containerEntityService.compareAndFinalize(container.databaseId(), ContainerEntity.QUEUED, "Killed")) {
+                addContainerHistoryItem(container, ContainerHistory.fromSystem("Killed", "Removed from the launch queue by " + userI.getLogin() + "."), userI);
+                invalidateStats();
+                return container.containerId();
+            }
+            container = get(container.databaseId());
+        }
+
         addContainerHistoryItem(container, ContainerHistory.fromUserAction("Killed", userI.getLogin()), userI);
 
         final String containerDockerId = container.containerId();
-        containerControlApi.killContainer(containerDockerId);
+        containerControlApi.killContainer(getServerFor(container), containerDockerId);
         return containerDockerId;
     }
 
@@ -514,9 +1144,9 @@ public class ContainerServiceImpl implements ContainerService {
         if (StringUtils.isBlank(logPath)) {
             // If log path is blank, that means we have not yet saved the logs from docker. Go fetch them now.
             if (ContainerService.STDOUT_LOG_NAME.contains(logFileName)) {
-                return new ByteArrayInputStream(containerControlApi.getContainerStdoutLog(container.containerId()).getBytes());
+                return new ByteArrayInputStream(containerControlApi.getContainerStdoutLog(getServerFor(container), container.containerId()).getBytes());
             } else if (ContainerService.STDERR_LOG_NAME.contains(logFileName)) {
-                return new ByteArrayInputStream(containerControlApi.getContainerStderrLog(container.containerId()).getBytes());
+                return new ByteArrayInputStream(containerControlApi.getContainerStderrLog(getServerFor(container), container.containerId()).getBytes());
             } else {
                 return null;
             }
@@ -695,6 +1325,34 @@ public class ContainerServiceImpl implements ContainerService {
         return ContainerHistory.create(containerEntityHistory);
     }
 
+    /**
+     * Save the container, trying again against the latest version of the entity if it was updated concurrently.
+     */
+    private void update(@Nonnull final Container container) {
+        update(container, false);
+    }
+
+    /**
+     * Save the container, and mark it finalized if it has just been finalized.
+     */
+    private void update(@Nonnull final Container container, final boolean finalized) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                final ContainerEntity containerEntity = fromPojo(container);
+                if (finalized) {
+                    containerEntity.setFinalized(true);
+                }
+                containerEntityService.update(containerEntity);
+                return;
+            } catch (OptimisticLockingFailureException e) {
+                if (attempt >= MAX_UPDATE_ATTEMPTS) {
+                    throw e;
+                }
+                log.debug("Container {} was updated concurrently. Trying again.", container.databaseId());
+            }
+        }
+    }
+
     @Nonnull
     private ContainerEntity fromPojo(@Nonnull final Container container) {
         final ContainerEntity template = containerEntityService.retrieve(container.databaseId());
@@ -722,4 +1380,14 @@ public class ContainerServiceImpl implements ContainerService {
         }
         return isFailed;
     }
+
+    private static class CachedStats {
+        private final ContainerStats stats;
+        private final long computedAt;
+
+        private CachedStats(final ContainerStats stats, final long computedAt) {
+            this.stats = stats;
+            this.computedAt = computedAt;
+        }
+    }
 }
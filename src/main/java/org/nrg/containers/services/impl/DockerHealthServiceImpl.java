@@ -0,0 +1,245 @@
+package org.nrg.containers.services.impl;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Ticker;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.nrg.containers.api.ContainerControlApi;
+import org.nrg.containers.exceptions.DockerServerException;
+import org.nrg.containers.exceptions.NoDockerServerException;
+import org.nrg.containers.model.dockerhub.DockerHubBase.DockerHub;
+import org.nrg.containers.model.dockerhub.DockerHubBase.DockerHubWithPing;
+import org.nrg.containers.model.server.docker.DockerServerBase.DockerServer;
+import org.nrg.containers.services.DockerHealthService;
+import org.nrg.containers.services.DockerHubService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+@Service
+public class DockerHealthServiceImpl implements DockerHealthService, DisposableBean {
+    private static final Logger log = LoggerFactory.getLogger(DockerHealthServiceImpl.class);
+
+    private static final long SERVER_TTL_MILLIS = TimeUnit.SECONDS.toMillis(30);
+    private static final long HUB_TTL_MILLIS = TimeUnit.MINUTES.toMillis(2);
+
+    // A little longer than the ping timeout in the control API, so a ping that times out there still gets its answer recorded
+    private static final long HUB_PING_WAIT_MILLIS = TimeUnit.SECONDS.toMillis(12);
+    private static final int HUB_PING_THREADS = 4;
+
+    private final ContainerControlApi controlApi;
+    private final DockerHubService dockerHubService;
+    private final Ticker ticker;
+
+    private final Object serverLock = new Object();
+    private volatile Answer serverAnswer;
+    // Answers of each server containers are placed on, by server id
+    private final ConcurrentMap<Long, Answer> serverAnswersById = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<DockerHub, Answer> hubAnswers = new ConcurrentHashMap<>();
+    private final ConcurrentMap<DockerHub, Future<?>> hubPingsInFlight = new ConcurrentHashMap<>();
+    private final ExecutorService hubPingExecutor = Executors.newFixedThreadPool(HUB_PING_THREADS,
+            new ThreadFactoryBuilder().setNameFormat("docker-hub-ping-%d").setDaemon(true).build());
+
+    @Autowired
+    public DockerHealthServiceImpl(final ContainerControlApi controlApi,
+                                   final DockerHubService dockerHubService) {
+        this(controlApi, dockerHubService, Ticker.systemTicker());
+    }
+
+    @VisibleForTesting
+    DockerHealthServiceImpl(final ContainerControlApi controlApi,
+                            final DockerHubService dockerHubService,
+                            final Ticker ticker) {
+        this.controlApi = controlApi;
+        this.dockerHubService = dockerHubService;
+        this.ticker = ticker;
+    }
+
+    @Override
+    public boolean isServerReachable() {
+        final Answer answer = serverAnswer;
+        if (answer != null && isNewerThan(answer, SERVER_TTL_MILLIS)) {
+            return Boolean.TRUE.equals(answer.ping);
+        }
+        synchronized (serverLock) {
+            // Someone else may have pinged while we waited
+            if (serverAnswer != answer) {
+                return Boolean.TRUE.equals(serverAnswer.ping);
+            }
+            return refreshServer();
+        }
+    }
+
+    @Override
+    public boolean isServerReachable(final @Nonnull DockerServer server) {
+        final Answer answer = serverAnswersById.get(server.id());
+        if (answer != null && isNewerThan(answer, SERVER_TTL_MILLIS)) {
+            return Boolean.TRUE.equals(answer.ping);
+        }
+        boolean ping = false;
+        try {
+            ping = "OK".equals(controlApi.ping(server));
+        } catch (DockerServerException e) {
+            log.debug("Docker server {} did not answer ping: {}", server.name(), e.getMessage());
+        }
+        serverAnswersById.put(server.id(), new Answer(ping, now()));
+        return ping;
+    }
+
+    @Override
+    public boolean refreshServer() {
+        boolean ping = false;
+        try {
+            ping = "OK".equals(controlApi.ping());
+        } catch (NoDockerServerException e) {
+            log.debug("No Docker server to ping.");
+        } catch (DockerServerException e) {
+            log.debug("Docker server did not answer ping: {}", e.getMessage());
+        }
+        serverAnswer = new Answer(ping, now());
+        return ping;
+    }
+
+    @Override
+    @Nonnull
+    public DockerHubWithPing ping(final @Nonnull DockerHub hub) {
+        return ping(Lists.newArrayList(hub)).get(0);
+    }
+
+    @Override
+    @Nonnull
+    public List<DockerHubWithPing> ping(final @Nonnull List<DockerHub> hubs) {
+        return ping(hubs, HUB_TTL_MILLIS);
+    }
+
+    @Override
+    public void refresh() {
+        refreshServer();
+
+        final List<DockerHub> hubs = dockerHubService.getHubs();
+
+        // Forget hubs that have been deleted or changed
+        final Set<DockerHub> current = Sets.newHashSet(hubs);
+        hubAnswers.keySet().retainAll(current);
+        hubPingsInFlight.keySet().retainAll(current);
+
+        // Re-ping the ones that will be too old before we run again, so users do not have to wait for them
+        ping(hubs, HUB_TTL_MILLIS / 2);
+    }
+
+    @Override
+    public void destroy() {
+        hubPingExecutor.shutdownNow();
+    }
+
+    @Nonnull
+    private List<DockerHubWithPing> ping(final @Nonnull List<DockerHub> hubs, final long maxAgeMillis) {
+        // Start all the pings we need before waiting on any of them
+        final Map<DockerHub, Future<?>> pending = Maps.newHashMap();
+        for (final DockerHub hub : hubs) {
+            final Answer answer = hubAnswers.get(hub);
+            if (answer == null || !isNewerThan(answer, maxAgeMillis)) {
+                final Future<?> ping = startPing(hub);
+                if (ping != null) {
+                    pending.put(hub, ping);
+                }
+            }
+        }
+
+        final long deadline = System.currentTimeMillis() + HUB_PING_WAIT_MILLIS;
+        for (final Future<?> ping : pending.values()) {
+            final long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                break;
+            }
+            try {
+                ping.get(remaining, TimeUnit.MILLISECONDS);
+            } catch (Exception ignored) {
+                // Either it timed out, and the answer will be recorded whenever it comes, or it failed and has been recorded.
+            }
+        }
+
+        final List<DockerHubWithPing> hubsWithPing = Lists.newArrayList();
+        for (final DockerHub hub : hubs) {
+            final Answer answer = hubAnswers.get(hub);
+            hubsWithPing.add(DockerHubWithPing.create(hub, answer == null ? null : answer.ping));
+        }
+        return hubsWithPing;
+    }
+
+    /**
+     * Start pinging the hub, unless we are already pinging it.
+     */
+    @Nullable
+    private Future<?> startPing(final @Nonnull DockerHub hub) {
+        final Future<?> inFlight = hubPingsInFlight.get(hub);
+        if (inFlight != null && !inFlight.isDone()) {
+            return inFlight;
+        }
+        synchronized (hubPingsInFlight) {
+            final Future<?> raced = hubPingsInFlight.get(hub);
+            if (raced != null && !raced.isDone()) {
+                return raced;
+            }
+            try {
+                final Future<?> ping = hubPingExecutor.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        hubAnswers.put(hub, new Answer(pingHub(hub), now()));
+                    }
+                });
+                hubPingsInFlight.put(hub, ping);
+                return ping;
+            } catch (RejectedExecutionException e) {
+                log.debug("Not pinging hub {}. Shutting down.", hub.name());
+                return null;
+            }
+        }
+    }
+
+    @Nullable
+    private Boolean pingHub(final @Nonnull DockerHub hub) {
+        try {
+            return "OK".equals(controlApi.pingHub(hub, null, null));
+        } catch (DockerServerException | NoDockerServerException e) {
+            log.debug("Hub {} did not answer ping: {}", hub.name(), e.getMessage());
+        }
+        return null;
+    }
+
+    private boolean isNewerThan(final @Nonnull Answer answer, final long maxAgeMillis) {
+        return now() - answer.time < maxAgeMillis;
+    }
+
+    private long now() {
+        return TimeUnit.NANOSECONDS.toMillis(ticker.read());
+    }
+
+    private static final class Answer {
+        private final Boolean ping;
+        private final long time;
+
+        private Answer(final Boolean ping, final long time) {
+            this.ping = ping;
+            this.time = time;
+        }
+    }
+}
@@ -2,8 +2,11 @@ package org.nrg.containers.services.impl;
 
 import com.google.common.base.Function;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import org.nrg.containers.model.container.auto.Container;
 import org.nrg.containers.model.server.docker.DockerServerBase.DockerServer;
 import org.nrg.containers.model.server.docker.DockerServerEntity;
+import org.nrg.containers.services.ContainerEntityService;
 import org.nrg.containers.services.DockerServerEntityService;
 import org.nrg.containers.services.DockerServerService;
 import org.nrg.framework.exceptions.NotFoundException;
@@ -13,14 +16,18 @@ import org.springframework.stereotype.Service;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.util.List;
+import java.util.Set;
 
 @Service
 public class DockerServerServiceImpl implements DockerServerService {
     private final DockerServerEntityService dockerServerEntityService;
+    private final ContainerEntityService containerEntityService;
 
     @Autowired
-    public DockerServerServiceImpl(final DockerServerEntityService dockerServerEntityService) {
+    public DockerServerServiceImpl(final DockerServerEntityService dockerServerEntityService,
+                                   final ContainerEntityService containerEntityService) {
         this.dockerServerEntityService = dockerServerEntityService;
+        this.containerEntityService = containerEntityService;
     }
 
     @Override
@@ -55,6 +62,69 @@ public class DockerServerServiceImpl implements DockerServerService {
         dockerServerEntityService.update(fromPojo(dockerServer));
     }
 
+    @Override
+    @Nonnull
+    public List<DockerServer> getEnabledServers() {
+        final List<DockerServer> servers = Lists.newArrayList();
+        final DockerServer defaultServer = retrieveServer();
+        if (defaultServer != null) {
+            servers.add(defaultServer);
+        }
+        for (final DockerServer server : toPojo(dockerServerEntityService.getEnabledServers())) {
+            if (defaultServer == null || !server.id().equals(defaultServer.id())) {
+                servers.add(server);
+            }
+        }
+        return servers;
+    }
+
+    @Override
+    @Nonnull
+    public List<DockerServer> getServersInUse() {
+        final List<DockerServer> servers = getEnabledServers();
+        final Set<Long> inUse = Sets.newHashSet(containerEntityService.retrieveServerIdsWithNonfinalizedContainers());
+        for (final DockerServer server : servers) {
+            inUse.remove(server.id());
+        }
+        for (final Long serverId : inUse) {
+            final DockerServer server = toPojo(dockerServerEntityService.retrieve(serverId));
+            if (server != null) {
+                servers.add(server);
+            }
+        }
+        return servers;
+    }
+
+    @Override
+    @Nonnull
+    public DockerServer addServer(final DockerServer dockerServer) {
+        return toPojo(dockerServerEntityService.addServer(DockerServerEntity.create(dockerServer)));
+    }
+
+    @Override
+    public void disableServer(final long id) throws NotFoundException {
+        final DockerServerEntity dockerServerEntity = dockerServerEntityService.retrieve(id);
+        if (dockerServerEntity == null || !dockerServerEntity.isEnabled()) {
+            throw new NotFoundException("No enabled container server with id " + id + ".");
+        }
+        dockerServerEntityService.disableServer(dockerServerEntity);
+    }
+
+    @Override
+    @Nonnull
+    public DockerServer getServerFor(final Container container) throws NotFoundException {
+        final Long serverId = container.dockerServerId();
+        if (serverId == null || serverId == 0L) {
+            return getServer();
+        }
+        // Even if the server has since been disabled, the container is still there
+        final DockerServer server = toPojo(dockerServerEntityService.retrieve(serverId));
+        if (server == null) {
+            throw new NotFoundException("Container server " + serverId + " no longer exists.");
+        }
+        return server;
+    }
+
     @Nullable
     public DockerServer toPojo(final DockerServerEntity dockerServerEntity) {
         return dockerServerEntity == null ? null : DockerServer.create(dockerServerEntity);
@@ -1,7 +1,9 @@
 package org.nrg.containers.services.impl;
 
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import org.apache.commons.lang3.StringUtils;
 import org.nrg.containers.api.ContainerControlApi;
 import org.nrg.containers.exceptions.DockerServerException;
@@ -14,12 +16,15 @@ import org.nrg.containers.model.image.docker.DockerImage;
 import org.nrg.containers.model.image.docker.DockerImageAndCommandSummary;
 import org.nrg.containers.model.server.docker.DockerServerBase.DockerServer;
 import org.nrg.containers.model.server.docker.DockerServerBase.DockerServerWithPing;
+import org.nrg.containers.model.server.docker.DockerServerLoad;
 import org.nrg.containers.services.CommandLabelService;
 import org.nrg.containers.services.CommandService;
+import org.nrg.containers.services.DockerHealthService;
 import org.nrg.containers.services.DockerHubService;
 import org.nrg.containers.services.DockerHubService.DockerHubDeleteDefaultException;
 import org.nrg.containers.services.DockerServerService;
 import org.nrg.containers.services.DockerService;
+import org.nrg.containers.services.ImageWarmerService;
 import org.nrg.framework.exceptions.NotFoundException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -27,9 +32,13 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import javax.annotation.Nonnull;
-import javax.annotation.Nullable;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 @Service
 public class DockerServiceImpl implements DockerService {
@@ -40,18 +49,27 @@ public class DockerServiceImpl implements DockerService {
     private CommandService commandService;
     private DockerServerService dockerServerService;
     private final CommandLabelService commandLabelService;
+    private final DockerHealthService dockerHealthService;
+    private final ImageWarmerService imageWarmerService;
+
+    private final ConcurrentMap<String, List<Command>> labelCommandsByImageId = new ConcurrentHashMap<>();
+    private volatile ImageSummaries imageSummaries;
 
     @Autowired
     public DockerServiceImpl(final ContainerControlApi controlApi,
                              final DockerHubService dockerHubService,
                              final CommandService commandService,
                              final DockerServerService dockerServerService,
-                             final CommandLabelService commandLabelService) {
+                             final CommandLabelService commandLabelService,
+                             final DockerHealthService dockerHealthService,
+                             final ImageWarmerService imageWarmerService) {
         this.controlApi = controlApi;
         this.dockerHubService = dockerHubService;
         this.commandService = commandService;
         this.dockerServerService = dockerServerService;
         this.commandLabelService = commandLabelService;
+        this.dockerHealthService = dockerHealthService;
+        this.imageWarmerService = imageWarmerService;
     }
 
     @Override
@@ -139,29 +157,14 @@ public class DockerServiceImpl implements DockerService {
         return controlApi.pingHub(hub, username, password);
     }
 
-    @Nullable
-    private Boolean canConnectToHub(final DockerHub hub) {
-        try {
-            return "OK".equals(pingHub(hub));
-        } catch (DockerServerException | NoDockerServerException e) {
-            // ignored
-        }
-        return null;
-    }
-
     @Nonnull
     private DockerHubWithPing ping(final DockerHub hubBeforePing) {
-        final Boolean ping = canConnectToHub(hubBeforePing);
-        return DockerHubWithPing.create(hubBeforePing, ping);
+        return dockerHealthService.ping(hubBeforePing);
     }
 
     @Nonnull
     private List<DockerHubWithPing> ping(final @Nonnull List<DockerHub> hubsBeforePing) {
-        final List<DockerHubWithPing> hubsAfterPing = Lists.newArrayList();
-        for (final DockerHub hubBeforePing : hubsBeforePing) {
-            hubsAfterPing.add(ping(hubBeforePing));
-        }
-        return hubsAfterPing;
+        return dockerHealthService.ping(hubsBeforePing);
     }
 
     @Override
@@ -205,7 +208,9 @@ public class DockerServiceImpl implements DockerService {
                                     final String username,
                                     final String password)
             throws NoDockerServerException, DockerServerException, NotFoundException {
-        final DockerImage dockerImage = controlApi.pullImage(imageName, hub, username, password);
+        // Through the image warmer, so this does not pull an image the warmer is already pulling, and launches wait for it
+        final DockerImage dockerImage = imageWarmerService.pull(imageName, hub, username, password);
+        invalidateImageSummaries();
         if (saveCommands) {
             saveFromImageLabels(imageName, dockerImage);
         }
@@ -215,14 +220,14 @@ public class DockerServiceImpl implements DockerService {
     @Override
     public DockerServerWithPing getServer() throws NotFoundException {
         final DockerServer dockerServer = dockerServerService.getServer();
-        final boolean ping = controlApi.canConnect();
+        final boolean ping = dockerHealthService.isServerReachable();
         return DockerServerWithPing.create(dockerServer, ping);
     }
 
     @Override
     public DockerServerWithPing setServer(final DockerServer server) {
         final DockerServer dockerServer = dockerServerService.setServer(server);
-        final boolean ping = controlApi.canConnect();
+        final boolean ping = dockerHealthService.refreshServer();
         return DockerServerWithPing.create(dockerServer, ping);
     }
 
@@ -231,6 +236,36 @@ public class DockerServiceImpl implements DockerService {
         return controlApi.ping();
     }
 
+    @Override
+    @Nonnull
+    public List<DockerServer> getEnabledServers() {
+        return dockerServerService.getEnabledServers();
+    }
+
+    @Override
+    public DockerServer addServer(final DockerServer server) {
+        return dockerServerService.addServer(server);
+    }
+
+    @Override
+    public void disableServer(final long id) throws NotFoundException {
+        dockerServerService.disableServer(id);
+    }
+
+    @Override
+    @Nonnull
+    public List<DockerServerLoad> getServerLoads() {
+        final List<DockerServerLoad> loads = Lists.newArrayList();
+        for (final DockerServer server : dockerServerService.getEnabledServers()) {
+            try {
+                loads.add(controlApi.getServerLoad(server));
+            } catch (DockerServerException e) {
+                log.debug("Could not read the load on server {}: {}", server.name(), e.getMessage());
+            }
+        }
+        return loads;
+    }
+
     @Override
     public List<DockerImage> getImages()
             throws NoDockerServerException, DockerServerException {
@@ -252,6 +287,24 @@ public class DockerServiceImpl implements DockerService {
 
         final List<DockerImage> rawImages = controlApi.getAllImages();
 
+        // Read the version before the commands, so a change in between makes us recompute next time rather than never
+        final long catalogVersion = commandService.getCatalogVersion();
+        final ImageSummaries cached = imageSummaries;
+        if (cached != null && cached.isFor(server, catalogVersion, rawImages)) {
+            return cached.summaries;
+        }
+
+        final List<DockerImageAndCommandSummary> summaries = computeImageSummaries(server, rawImages);
+        imageSummaries = new ImageSummaries(server, catalogVersion, rawImages, summaries);
+        return summaries;
+    }
+
+    @Nonnull
+    private List<DockerImageAndCommandSummary> computeImageSummaries(final String server,
+                                                                     final List<DockerImage> rawImages)
+            throws NoDockerServerException, DockerServerException {
+        final Set<String> imageIds = Sets.newHashSet();
+
         // Store the images by every name that someone might call them: all tags and id
         // final Map<String, DockerImage> imagesByIdUniqueValues = Maps.newHashMap();
         final Map<String, String> imageIdsByNameDuplicateValues = Maps.newHashMap();
@@ -281,8 +334,9 @@ public class DockerServiceImpl implements DockerService {
                                 .server(server)
                 );
                 commandListsByImageId.put(image.imageId(),
-                        commandLabelService.parseLabels(image)
+                        Lists.newArrayList(parseLabels(image))
                 );
+                imageIds.add(image.imageId());
             } else {
                 // If image has no ID, then we will have problems tracking it uniquely.
                 // Just skip it.
@@ -362,7 +416,29 @@ public class DockerServiceImpl implements DockerService {
             final List<Command> commands = commandListsByImageId.get(imageId);
             summaries.add(builder.commands(commands).build());
         }
-        return summaries;
+
+        // Forget the labels of images that are gone
+        labelCommandsByImageId.keySet().retainAll(imageIds);
+
+        return Collections.unmodifiableList(summaries);
+    }
+
+    /**
+     * An image's labels cannot change without its id changing, so the commands parsed from them can be kept by id.
+     */
+    @Nonnull
+    private List<Command> parseLabels(final @Nonnull DockerImage image) {
+        final List<Command> memoized = labelCommandsByImageId.get(image.imageId());
+        if (memoized != null) {
+            return memoized;
+        }
+        final List<Command> parsed = Collections.unmodifiableList(Lists.newArrayList(commandLabelService.parseLabels(image)));
+        labelCommandsByImageId.put(image.imageId(), parsed);
+        return parsed;
+    }
+
+    private void invalidateImageSummaries() {
+        imageSummaries = null;
     }
 
     public DockerImage getImage(final String imageId)
@@ -379,6 +455,7 @@ public class DockerServiceImpl implements DockerService {
         final List<DockerImageAndCommandSummary> dockerImageAndCommandSummaries = getImageSummaries();
 
         controlApi.deleteImageById(imageId, force);
+        invalidateImageSummaries();
 
         for (final DockerImageAndCommandSummary dockerImageAndCommandSummary : dockerImageAndCommandSummaries) {
             if (dockerImageAndCommandSummary.imageId() != null &&
@@ -413,7 +490,9 @@ public class DockerServiceImpl implements DockerService {
         }
 
         log.debug("Saving commands from image labels");
-        return commandService.save(parsed);
+        final List<Command> saved = commandService.save(parsed);
+        invalidateImageSummaries();
+        return saved;
     }
 
     private void addOrUpdateCommand(final List<Command> commandsList,
@@ -441,4 +520,31 @@ public class DockerServiceImpl implements DockerService {
             commandsList.add(commandToAddOrUpdate);
         }
     }
+
+    /**
+     * Image summaries, along with what they were computed from. They are good for as long as the server, the images
+     * on it (with their tags), and the commands are the same.
+     */
+    private static final class ImageSummaries {
+        private final String server;
+        private final long catalogVersion;
+        private final Set<DockerImage> images;
+        private final List<DockerImageAndCommandSummary> summaries;
+
+        private ImageSummaries(final String server,
+                               final long catalogVersion,
+                               final List<DockerImage> images,
+                               final List<DockerImageAndCommandSummary> summaries) {
+            this.server = server;
+            this.catalogVersion = catalogVersion;
+            this.images = ImmutableSet.copyOf(images);
+            this.summaries = summaries;
+        }
+
+        private boolean isFor(final String server, final long catalogVersion, final List<DockerImage> images) {
+            return this.catalogVersion == catalogVersion &&
+                    Objects.equals(this.server, server) &&
+                    this.images.equals(Sets.newHashSet(images));
+        }
+    }
 }
@@ -0,0 +1,264 @@
+package org.nrg.containers.services.impl;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.hibernate.ScrollableResults;
+import org.nrg.containers.daos.BulkLaunchItemRepository;
+import org.nrg.containers.daos.BulkLaunchJobRepository;
+import org.nrg.containers.exceptions.BadRequestException;
+import org.nrg.containers.model.bulklaunch.auto.BulkLaunchJob;
+import org.nrg.containers.model.bulklaunch.entity.BulkLaunchItemEntity;
+import org.nrg.containers.model.bulklaunch.entity.BulkLaunchJobEntity;
+import org.nrg.containers.model.command.auto.LaunchReport;
+import org.nrg.containers.model.configuration.ContainerServicePrefsBean;
+import org.nrg.containers.services.BulkLaunchJobService;
+import org.nrg.framework.exceptions.NotFoundException;
+import org.nrg.framework.orm.hibernate.AbstractHibernateEntityService;
+import org.nrg.xft.security.UserI;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+@Service
+@Transactional
+public class HibernateBulkLaunchJobService
+        extends AbstractHibernateEntityService<BulkLaunchJobEntity, BulkLaunchJobRepository>
+        implements BulkLaunchJobService {
+    private static final Logger log = LoggerFactory.getLogger(HibernateBulkLaunchJobService.class);
+
+    private static final int INSERT_BATCH_SIZE = 100;
+    private static final int REPORT_FETCH_SIZE = 500;
+    private static final TypeReference<Map<String, String>> LAUNCH_PARAMS_TYPE = new TypeReference<Map<String, String>>() {};
+
+    private final BulkLaunchItemRepository bulkLaunchItemRepository;
+    private final ObjectMapper mapper;
+    private final ContainerServicePrefsBean containerServicePrefsBean;
+
+    @Autowired
+    public HibernateBulkLaunchJobService(final BulkLaunchItemRepository bulkLaunchItemRepository,
+                                         final ObjectMapper mapper,
+                                         final ContainerServicePrefsBean containerServicePrefsBean) {
+        this.bulkLaunchItemRepository = bulkLaunchItemRepository;
+        this.mapper = mapper;
+        this.containerServicePrefsBean = containerServicePrefsBean;
+    }
+
+    @Override
+    @Nonnull
+    public BulkLaunchJob create(final String project,
+                                final long commandId,
+                                final String wrapperName,
+                                final long wrapperId,
+                                final List<Map<String, String>> launchParamSets,
+                                final UserI userI) {
+        final BulkLaunchJobEntity job = createJob(project, commandId, wrapperName, wrapperId, userI);
+        addItems(job.getId(), 0, launchParamSets);
+        return finishCreating(job, launchParamSets.size());
+    }
+
+    @Override
+    @Nonnull
+    @Transactional(rollbackFor = {IOException.class, BadRequestException.class})
+    public BulkLaunchJob create(final String project,
+                                final long commandId,
+                                final String wrapperName,
+                                final long wrapperId,
+                                final LaunchParamPages launchParamPages,
+                                final UserI userI) throws IOException, BadRequestException {
+        // Every page is written in one transaction, so the number of items is capped
+        final Integer configuredMaxItems = containerServicePrefsBean.getBulkLaunchUiMaxItems();
+        final int maxItems = configuredMaxItems == null || configuredMaxItems <= 0 ? Integer.MAX_VALUE : configuredMaxItems;
+
+        final BulkLaunchJobEntity job = createJob(project, commandId, wrapperName, wrapperId, userI);
+        int itemCount = 0;
+        for (List<Map<String, String>> page = launchParamPages.nextPage(); !page.isEmpty(); page = launchParamPages.nextPage()) {
+            if (page.size() > maxItems - itemCount) {
+                throw new BadRequestException(String.format("The bulk launch would have more than %d items. Launch on fewer items, or ask an administrator to raise the limit.", maxItems));
+            }
+            addItems(job.getId(), itemCount, page);
+            itemCount += page.size();
+        }
+        return finishCreating(job, itemCount);
+    }
+
+    private BulkLaunchJobEntity createJob(final String project,
+                                          final long commandId,
+                                          final String wrapperName,
+                                          final long wrapperId,
+                                          final UserI userI) {
+        final BulkLaunchJobEntity job = new BulkLaunchJobEntity();
+        job.setUserId(userI.getLogin());
+        job.setProject(project);
+        job.setCommandId(commandId);
+        job.setWrapperName(wrapperName);
+        job.setWrapperId(wrapperId);
+        job.setStatus(BulkLaunchJobEntity.PENDING);
+        getDao().create(job);
+        return job;
+    }
+
+    private void addItems(final long jobId, final int firstIndex, final List<Map<String, String>> launchParamSets) {
+        for (int i = 0; i < launchParamSets.size(); i++) {
+            bulkLaunchItemRepository.create(BulkLaunchItemEntity.create(jobId, firstIndex + i, toJson(launchParamSets.get(i))));
+            if ((i + 1) % INSERT_BATCH_SIZE == 0) {
+                bulkLaunchItemRepository.flushAndClear();
+            }
+        }
+        bulkLaunchItemRepository.flushAndClear();
+    }
+
+    private BulkLaunchJob finishCreating(final BulkLaunchJobEntity detachedJob, final int itemCount) {
+        // The session was cleared while storing items, so load the job again
+        final BulkLaunchJobEntity job = getDao().retrieve(detachedJob.getId());
+        job.setItemCount(itemCount);
+        if (itemCount == 0) {
+            job.setStatus(BulkLaunchJobEntity.COMPLETE);
+            job.setFinished(new Date());
+        }
+        getDao().update(job);
+
+        log.info("Stored bulk launch job {} with {} items for user {}.", job.getId(), itemCount, job.getUserId());
+        return BulkLaunchJob.create(job);
+    }
+
+    @Override
+    @Nonnull
+    @Transactional(readOnly = true)
+    public BulkLaunchJob getJob(final long id) throws NotFoundException {
+        final BulkLaunchJobEntity job = getDao().retrieve(id);
+        if (job == null) {
+            throw new NotFoundException("No bulk launch job with id " + id + ".");
+        }
+        return BulkLaunchJob.create(job);
+    }
+
+    @Override
+    @Nonnull
+    @Transactional(readOnly = true)
+    public List<BulkLaunchJob> getUnfinishedJobs() {
+        final List<BulkLaunchJob> jobs = Lists.newArrayList();
+        for (final BulkLaunchJobEntity job : getDao().retrieveUnfinished()) {
+            jobs.add(BulkLaunchJob.create(job));
+        }
+        return jobs;
+    }
+
+    @Override
+    @Nonnull
+    public Map<Long, Map<String, String>> claimItems(final long jobId, final int maxItems) {
+        final BulkLaunchJobEntity job = getDao().retrieve(jobId);
+        if (job == null || job.getLaunchCursor() >= job.getItemCount()) {
+            return Collections.emptyMap();
+        }
+        final int from = job.getLaunchCursor();
+        final int to = Math.min(from + maxItems, job.getItemCount());
+        if (!getDao().moveCursor(jobId, from, to)) {
+            log.debug("Items {} to {} of bulk launch job {} were claimed by someone else.", from, to, jobId);
+            return Collections.emptyMap();
+        }
+
+        final Date now = new Date();
+        final Map<Long, Map<String, String>> claimed = Maps.newLinkedHashMap();
+        for (final BulkLaunchItemEntity item : bulkLaunchItemRepository.retrieveRange(jobId, from, to)) {
+            item.setClaimed(now);
+            bulkLaunchItemRepository.update(item);
+            claimed.put(item.getId(), fromJson(item.getLaunchParamsJson()));
+        }
+        return claimed;
+    }
+
+    @Override
+    public void recordReports(final long jobId, final Map<Long, LaunchReport> reportsByItemId) {
+        int succeeded = 0;
+        int failed = 0;
+        for (final Map.Entry<Long, LaunchReport> entry : reportsByItemId.entrySet()) {
+            final BulkLaunchItemEntity item = bulkLaunchItemRepository.retrieve(entry.getKey());
+            if (item == null || item.getJobId() != jobId || item.getSuccess() != null) {
+                continue;
+            }
+            final boolean success = entry.getValue() instanceof LaunchReport.Success;
+            item.setSuccess(success);
+            item.setReportJson(toJson(entry.getValue()));
+            bulkLaunchItemRepository.update(item);
+            if (success) {
+                succeeded++;
+            } else {
+                failed++;
+            }
+        }
+        getDao().addResults(jobId, succeeded, failed);
+        if (getDao().completeIfDone(jobId)) {
+            log.info("Bulk launch job {} is complete.", jobId);
+        }
+    }
+
+    @Override
+    public int failAbandonedItems(final Date claimedBefore, final int maxItems) {
+        final List<BulkLaunchItemEntity> abandoned = bulkLaunchItemRepository.retrieveClaimedWithoutReport(claimedBefore, maxItems);
+        final Map<Long, Map<Long, LaunchReport>> reportsByJob = Maps.newHashMap();
+        for (final BulkLaunchItemEntity item : abandoned) {
+            final BulkLaunchJobEntity job = getDao().retrieve(item.getJobId());
+            if (job == null) {
+                continue;
+            }
+            Map<Long, LaunchReport> reports = reportsByJob.get(item.getJobId());
+            if (reports == null) {
+                reports = Maps.newLinkedHashMap();
+                reportsByJob.put(item.getJobId(), reports);
+            }
+            reports.put(item.getId(), LaunchReport.Failure.create(
+                    "The launch was interrupted, for instance by a restart. It may or may not have started a container.",
+                    fromJson(item.getLaunchParamsJson()), job.getCommandId(), job.getWrapperId()));
+        }
+        for (final Map.Entry<Long, Map<Long, LaunchReport>> entry : reportsByJob.entrySet()) {
+            log.warn("Failing {} abandoned items of bulk launch job {}.", entry.getValue().size(), entry.getKey());
+            recordReports(entry.getKey(), entry.getValue());
+        }
+        return abandoned.size();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void writeReports(final long jobId, final Writer writer) throws IOException {
+        final ScrollableResults results = bulkLaunchItemRepository.scrollReports(jobId, REPORT_FETCH_SIZE);
+        try {
+            while (results.next()) {
+                writer.write((String) results.get(0));
+                writer.write('\n');
+            }
+        } finally {
+            results.close();
+        }
+    }
+
+    private String toJson(final Object value) {
+        try {
+            return mapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Could not serialize " + value + ".", e);
+        }
+    }
+
+    private Map<String, String> fromJson(final String launchParamsJson) {
+        try {
+            return launchParamsJson == null ?
+                    Collections.<String, String>emptyMap() :
+                    mapper.<Map<String, String>>readValue(launchParamsJson, LAUNCH_PARAMS_TYPE);
+        } catch (IOException e) {
+            throw new RuntimeException("Could not read stored launch parameters.", e);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package org.nrg.containers.services.impl;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.Lists;
+import org.apache.commons.lang3.StringUtils;
+import org.nrg.containers.daos.ContainerArchiveEntityRepository;
+import org.nrg.containers.daos.ContainerEntityRepository;
+import org.nrg.containers.model.container.auto.Container;
+import org.nrg.containers.model.container.entity.ContainerArchiveEntity;
+import org.nrg.containers.model.container.entity.ContainerEntity;
+import org.nrg.containers.services.ContainerArchiveService;
+import org.nrg.framework.exceptions.NotFoundException;
+import org.nrg.framework.orm.hibernate.AbstractHibernateEntityService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.util.Date;
+import java.util.List;
+
+@Service
+@Transactional
+public class HibernateContainerArchiveService
+        extends AbstractHibernateEntityService<ContainerArchiveEntity, ContainerArchiveEntityRepository>
+        implements ContainerArchiveService {
+    private static final Logger log = LoggerFactory.getLogger(HibernateContainerArchiveService.class);
+
+    private final ContainerEntityRepository containerEntityRepository;
+    private final ObjectMapper mapper;
+
+    @Autowired
+    public HibernateContainerArchiveService(final ContainerEntityRepository containerEntityRepository,
+                                            final ObjectMapper mapper) {
+        this.containerEntityRepository = containerEntityRepository;
+        this.mapper = mapper;
+    }
+
+    @Override
+    public int archiveFinalizedContainers(final Date finalizedBefore, final int batchSize) {
+        final List<ContainerEntity> finalized = containerEntityRepository.retrieveFinalizedBefore(finalizedBefore, batchSize);
+        if (finalized.isEmpty()) {
+            return 0;
+        }
+
+        // Children reference their parents, so they are archived and deleted first.
+        final List<ContainerEntity> toArchive = Lists.newArrayList(containerEntityRepository.retrieveChildren(finalized));
+        toArchive.addAll(finalized);
+
+        for (final ContainerEntity containerEntity : toArchive) {
+            final String containerJson;
+            try {
+                containerJson = mapper.writeValueAsString(Container.create(containerEntity));
+            } catch (JsonProcessingException e) {
+                // Do not delete what we could not archive. Roll back the whole batch.
+                throw new RuntimeException("Could not serialize container " + containerEntity.getId() + " for the archive.", e);
+            }
+            if (getDao().retrieveByContainerDatabaseId(containerEntity.getId()) == null) {
+                getDao().create(ContainerArchiveEntity.create(containerEntity, containerJson));
+            }
+        }
+
+        containerEntityRepository.purge(toArchive);
+        log.debug("Archived {} finalized containers ({} including child containers).", finalized.size(), toArchive.size());
+        return finalized.size();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<Container> getArchived(final int firstResult, final int maxResults) {
+        final List<Container> archived = Lists.newArrayList();
+        for (final ContainerArchiveEntity archiveEntity : getDao().retrievePage(firstResult, maxResults)) {
+            final Container container = toPojo(archiveEntity);
+            if (container != null) {
+                archived.add(container);
+            }
+        }
+        return archived;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Container getArchived(final String containerId) throws NotFoundException {
+        ContainerArchiveEntity archiveEntity = null;
+        if (StringUtils.isNotBlank(containerId)) {
+            try {
+                // Like the live containers, allow lookup by database id or docker hash id
+                archiveEntity = getDao().retrieveByContainerDatabaseId(Long.parseLong(containerId));
+            } catch (NumberFormatException e) {
+                archiveEntity = getDao().retrieveByContainerOrServiceId(containerId);
+            }
+        }
+        final Container container = archiveEntity == null ? null : toPojo(archiveEntity);
+        if (container == null) {
+            throw new NotFoundException("No archived container with ID " + containerId);
+        }
+        return container;
+    }
+
+    private Container toPojo(final ContainerArchiveEntity archiveEntity) {
+        try {
+            return mapper.readValue(archiveEntity.getContainerJson(), Container.class);
+        } catch (IOException e) {
+            log.error("Could not deserialize archived container {}.", archiveEntity.getContainerDatabaseId(), e);
+            return null;
+        }
+    }
+}
@@ -1,8 +1,13 @@
 package org.nrg.containers.services.impl;
 
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import org.apache.commons.lang3.StringUtils;
+import org.hibernate.ScrollableResults;
 import org.nrg.containers.daos.ContainerEntityRepository;
 import org.nrg.containers.events.model.ContainerEvent;
+import org.nrg.containers.model.container.auto.ContainerFilter;
+import org.nrg.containers.model.container.auto.ContainerStats;
 import org.nrg.containers.model.container.entity.ContainerEntity;
 import org.nrg.containers.model.container.entity.ContainerEntityHistory;
 import org.nrg.containers.services.ContainerEntityService;
@@ -17,7 +22,13 @@ import org.springframework.transaction.annotation.Transactional;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 @Service
 @Transactional
@@ -25,6 +36,9 @@ public class HibernateContainerEntityService
         extends AbstractHibernateEntityService<ContainerEntity, ContainerEntityRepository>
         implements ContainerEntityService {
     private static final Logger log = LoggerFactory.getLogger(HibernateContainerEntityService.class);
+    private static final int STATS_FETCH_SIZE = 1000;
+    // Runtimes are taken from this many of the most recent finalized containers, so the stats read a bounded number of rows
+    private static final int STATS_MAX_RUNTIME_SAMPLES = 10000;
 
     @Override
     @Nonnull
@@ -68,18 +82,235 @@ public class HibernateContainerEntityService
         delete(toDelete.getId());
     }
 
+    @Override
+    @Nonnull
+    public List<ContainerEntity> getAll(final ContainerFilter filter) {
+        return getDao().retrieve(filter == null ? ContainerFilter.all() : filter);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void scroll(final ContainerFilter filter, final int fetchSize, final ContainerEntityHandler handler)
+            throws IOException {
+        final ScrollableResults results = getDao().scroll(filter == null ? ContainerFilter.all() : filter, fetchSize);
+        try {
+            int handled = 0;
+            final List<ContainerEntity> page = Lists.newArrayListWithCapacity(fetchSize);
+            while (results.next()) {
+                page.add((ContainerEntity) results.get(0));
+                if (page.size() == fetchSize) {
+                    handled += handlePage(page, handler);
+                }
+            }
+            handled += handlePage(page, handler);
+            log.debug("Scrolled through {} containers.", handled);
+        } finally {
+            results.close();
+        }
+    }
+
+    private int handlePage(final List<ContainerEntity> page, final ContainerEntityHandler handler) throws IOException {
+        final int size = page.size();
+        if (size > 0) {
+            getDao().fetchCollections(page);
+            for (final ContainerEntity containerEntity : page) {
+                handler.handle(containerEntity);
+            }
+            page.clear();
+            getDao().clearSession();
+        }
+        return size;
+    }
+
+    @Override
+    @Nonnull
+    @Transactional(readOnly = true)
+    public ContainerStats computeStats() {
+        long total = 0L;
+        final Map<String, Long> byStatus = Maps.newTreeMap();
+        for (final Object[] row : getDao().countGroupedBy("status")) {
+            final long count = (Long) row[1];
+            byStatus.put(groupKey(row[0]), count);
+            total += count;
+        }
+        final Map<String, Long> byUser = Maps.newTreeMap();
+        for (final Object[] row : getDao().countGroupedBy("userId")) {
+            byUser.put(groupKey(row[0]), (Long) row[1]);
+        }
+        final Map<String, Long> byProject = Maps.newTreeMap();
+        for (final Object[] row : getDao().countGroupedBy("project")) {
+            byProject.put(groupKey(row[0]), (Long) row[1]);
+        }
+
+        // Runtimes in milliseconds, by wrapper id
+        final Map<Long, List<Long>> runtimesByWrapper = Maps.newHashMap();
+        long runtimeSum = 0L;
+        long runtimeCount = 0L;
+        final ScrollableResults spans = getDao().scrollFinalizedRunSpans(STATS_FETCH_SIZE, STATS_MAX_RUNTIME_SAMPLES);
+        try {
+            while (spans.next()) {
+                final Long wrapperId = (Long) spans.get(0);
+                final Date first = (Date) spans.get(1);
+                final Date last = (Date) spans.get(2);
+                if (wrapperId == null || first == null || last == null) {
+                    continue;
+                }
+                final long runtime = last.getTime() - first.getTime();
+                if (!runtimesByWrapper.containsKey(wrapperId)) {
+                    runtimesByWrapper.put(wrapperId, Lists.<Long>newArrayList());
+                }
+                runtimesByWrapper.get(wrapperId).add(runtime);
+                runtimeSum += runtime;
+                runtimeCount++;
+            }
+        } finally {
+            spans.close();
+        }
+
+        final Map<Long, Long> finalizedByWrapper = getDao().countFinalizedByWrapper();
+        final List<ContainerStats.WrapperStats> byWrapper = Lists.newArrayList();
+        for (final Object[] row : getDao().countGroupedBy("wrapperId", "commandId")) {
+            final long wrapperId = (Long) row[0];
+            final Long finalized = finalizedByWrapper.get(wrapperId);
+            final List<Long> runtimes = runtimesByWrapper.containsKey(wrapperId) ?
+                    runtimesByWrapper.get(wrapperId) : Collections.<Long>emptyList();
+            Collections.sort(runtimes);
+            long wrapperRuntimeSum = 0L;
+            for (final Long runtime : runtimes) {
+                wrapperRuntimeSum += runtime;
+            }
+            byWrapper.add(ContainerStats.WrapperStats.create(
+                    wrapperId,
+                    (Long) row[1],
+                    (Long) row[2],
+                    finalized == null ? 0L : finalized,
+                    runtimes.isEmpty() ? null : toSeconds((double) wrapperRuntimeSum / runtimes.size()),
+                    percentileSeconds(runtimes, 0.50),
+                    percentileSeconds(runtimes, 0.95)
+            ));
+        }
+
+        return ContainerStats.create(new Date(), total, byStatus, byUser, byProject, byWrapper,
+                runtimeCount == 0 ? null : toSeconds((double) runtimeSum / runtimeCount));
+    }
+
+    private static String groupKey(final Object value) {
+        return value == null ? "" : String.valueOf(value);
+    }
+
+    /**
+     * Nearest-rank percentile of a sorted list of millisecond runtimes.
+     */
+    private static Double percentileSeconds(final List<Long> sortedRuntimes, final double percentile) {
+        if (sortedRuntimes.isEmpty()) {
+            return null;
+        }
+        final int rank = (int) Math.ceil(percentile * sortedRuntimes.size());
+        return toSeconds(sortedRuntimes.get(Math.max(0, rank - 1)));
+    }
+
+    private static double toSeconds(final double millis) {
+        return millis / 1000d;
+    }
+
     @Override
     @Nonnull
     public List<ContainerEntity> retrieveServices() {
         return getDao().retrieveServices();
     }
 
+    @Override
+    @Nonnull
+    @Transactional(readOnly = true)
+    public List<ContainerEntity> retrieveByDockerIds(final @Nonnull Collection<String> dockerIds) {
+        return getDao().retrieveByDockerIds(dockerIds);
+    }
+
+    @Override
+    @Nonnull
+    public List<String> getImagesUsedSince(final @Nonnull Date since) {
+        return getDao().retrieveImagesUsedSince(since);
+    }
+
+    @Override
+    @Nonnull
+    @Transactional(readOnly = true)
+    public Map<String, Long> countActiveContainers(final @Nonnull String property) {
+        final Map<String, Long> counts = Maps.newHashMap();
+        for (final Object[] row : getDao().countActiveGroupedBy(property)) {
+            if (row[0] != null) {
+                counts.put(String.valueOf(row[0]), ((Number) row[1]).longValue());
+            }
+        }
+        return counts;
+    }
+
+    @Override
+    @Nonnull
+    @Transactional(readOnly = true)
+    public List<ContainerEntity> retrieveQueued() {
+        return getDao().retrieveQueued();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public boolean hasQueued() {
+        return getDao().hasQueued();
+    }
+
+    @Override
+    public int requeueStaleDispatches(final Date cutoff) {
+        return getDao().requeueStaleDispatches(cutoff);
+    }
+
     @Override
     @Nonnull
     public List<ContainerEntity> retrieveNonfinalizedServices() {
         return getDao().retrieveNonfinalizedServices();
     }
 
+    @Override
+    @Nonnull
+    public Map<String, Long> retrieveNonfinalizedContainerIds() {
+        return getDao().retrieveNonfinalizedContainerIds();
+    }
+
+    @Override
+    @Nonnull
+    public Set<Long> retrieveServerIdsWithNonfinalizedContainers() {
+        return getDao().retrieveServerIdsWithNonfinalizedContainers();
+    }
+
+    @Override
+    public boolean claimForFinalization(final long containerDatabaseId) {
+        final boolean claimed = getDao().claimForFinalization(containerDatabaseId);
+        if (log.isDebugEnabled()) {
+            log.debug("Container {} {} claimed for finalization.", containerDatabaseId, claimed ? "was" : "could not be");
+        }
+        return claimed;
+    }
+
+    @Override
+    public boolean compareAndSetStatus(final long containerDatabaseId, final String expectedStatus, final String newStatus) {
+        return getDao().compareAndSetStatus(containerDatabaseId, expectedStatus, newStatus);
+    }
+
+    @Override
+    public boolean compareAndFinalize(final long containerDatabaseId, final String expectedStatus, final String newStatus) {
+        return getDao().compareAndFinalize(containerDatabaseId, expectedStatus, newStatus);
+    }
+
+    @Override
+    public boolean finalizeUnlessFinalized(final long containerDatabaseId, final String newStatus) {
+        return getDao().finalizeUnlessFinalized(containerDatabaseId, newStatus);
+    }
+
+    @Override
+    @Nonnull
+    public List<Long> retrieveExitedWithoutFinalizationWork(final Date exitedBefore) {
+        return getDao().retrieveExitedWithoutFinalizationWork(exitedBefore);
+    }
+
     @Override
     public List<ContainerEntity> retrieveSetupContainersForParent(final long parentId) {
         return getDao().retrieveContainersForParentWithSubtype(parentId, "setup");
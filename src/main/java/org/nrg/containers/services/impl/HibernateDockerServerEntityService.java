@@ -7,6 +7,8 @@ import org.nrg.framework.orm.hibernate.AbstractHibernateEntityService;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.List;
+
 @Service
 @Transactional
 public class HibernateDockerServerEntityService
@@ -14,6 +16,21 @@ public class HibernateDockerServerEntityService
         implements DockerServerEntityService {
     @Override
     public DockerServerEntity getServer() {
-        return getDao().getUniqueEnabledServer();
+        return getDao().getDefaultServer();
+    }
+
+    @Override
+    public List<DockerServerEntity> getEnabledServers() {
+        return getDao().getEnabledServers();
+    }
+
+    @Override
+    public DockerServerEntity addServer(final DockerServerEntity dockerServerEntity) {
+        return getDao().addServer(dockerServerEntity);
+    }
+
+    @Override
+    public void disableServer(final DockerServerEntity dockerServerEntity) {
+        getDao().disableServer(dockerServerEntity);
     }
 }
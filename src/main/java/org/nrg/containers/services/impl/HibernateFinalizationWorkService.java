@@ -0,0 +1,158 @@
+package org.nrg.containers.services.impl;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import org.nrg.containers.daos.FinalizationWorkRepository;
+import org.nrg.containers.model.container.auto.FinalizationNodeStats;
+import org.nrg.containers.model.container.entity.FinalizationWorkEntity;
+import org.nrg.containers.services.FinalizationWorkService;
+import org.nrg.containers.services.TaskLeaseService;
+import org.nrg.framework.orm.hibernate.AbstractHibernateEntityService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+@Service
+@Transactional
+public class HibernateFinalizationWorkService
+        extends AbstractHibernateEntityService<FinalizationWorkEntity, FinalizationWorkRepository>
+        implements FinalizationWorkService {
+    private static final Logger log = LoggerFactory.getLogger(HibernateFinalizationWorkService.class);
+    private static final long STATS_WINDOW_MILLIS = TimeUnit.HOURS.toMillis(1L);
+
+    private final TaskLeaseService taskLeaseService;
+    private final TransactionTemplate transactionTemplate;
+
+    @Autowired
+    public HibernateFinalizationWorkService(final TaskLeaseService taskLeaseService,
+                                            final PlatformTransactionManager transactionManager) {
+        this.taskLeaseService = taskLeaseService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Override
+    public boolean enqueue(final long containerDatabaseId, final String userId, final String exitCode,
+                           final String containerStatus, final long sortTime) {
+        if (getDao().retrieveByContainerDatabaseId(containerDatabaseId) != null) {
+            log.debug("Container {} is already in the finalization work table.", containerDatabaseId);
+            return false;
+        }
+        // If another node enqueues the same container at the same time, the unique container id makes one of the two fail.
+        getDao().create(FinalizationWorkEntity.create(containerDatabaseId, userId, exitCode, containerStatus, sortTime));
+        return true;
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public List<FinalizationWorkEntity> claim(final int maxItems, final long leaseMillis) {
+        if (maxItems <= 0) {
+            return Collections.emptyList();
+        }
+        final String nodeId = taskLeaseService.getNodeId();
+        final Date now = new Date();
+        final Date leaseExpires = new Date(now.getTime() + leaseMillis);
+
+        final List<Long> claimableIds = transactionTemplate.execute(new TransactionCallback<List<Long>>() {
+            @Override
+            public List<Long> doInTransaction(final TransactionStatus status) {
+                return getDao().retrieveClaimableIds(now, maxItems);
+            }
+        });
+
+        // Each item is claimed in its own short transaction, unless the caller already has one. Claiming an item that
+        // another node is claiming at the same moment waits only until that node's claim commits, and this node does
+        // not hold the items it has already claimed locked while it claims the rest. If the other node got the item,
+        // the claim matches nothing and the item is skipped.
+        final List<FinalizationWorkEntity> claimed = Lists.newArrayList();
+        for (final Long id : claimableIds) {
+            final FinalizationWorkEntity work = transactionTemplate.execute(new TransactionCallback<FinalizationWorkEntity>() {
+                @Override
+                public FinalizationWorkEntity doInTransaction(final TransactionStatus status) {
+                    return getDao().claim(id, nodeId, now, leaseExpires) ? getDao().retrieveClaimed(id) : null;
+                }
+            });
+            if (work != null) {
+                claimed.add(work);
+            }
+        }
+        if (!claimed.isEmpty()) {
+            log.debug("Node {} claimed {} finalization work items.", nodeId, claimed.size());
+        }
+        return claimed;
+    }
+
+    @Override
+    public void renew(final Collection<Long> ids, final long leaseMillis) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        getDao().renew(ids, taskLeaseService.getNodeId(), new Date(System.currentTimeMillis() + leaseMillis));
+    }
+
+    @Override
+    public void finish(final long id, final boolean failed) {
+        if (!getDao().finish(id, taskLeaseService.getNodeId(), failed)) {
+            log.info("Finalization work item {} was taken over by another node after this node's lease expired.", id);
+        }
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<FinalizationNodeStats> getNodeStats() {
+        final Date now = new Date();
+        final Date since = new Date(now.getTime() - STATS_WINDOW_MILLIS);
+        final Map<String, Long> claimed = getDao().countClaimedByNode(since);
+        final Map<String, Long> finished = getDao().countFinishedByNode(since, false);
+        final Map<String, Long> failed = getDao().countFinishedByNode(since, true);
+        final Map<String, Long> inProgress = getDao().countInProgressByNode(now);
+
+        final Set<String> nodeIds = Sets.newHashSet();
+        nodeIds.addAll(claimed.keySet());
+        nodeIds.addAll(finished.keySet());
+        nodeIds.addAll(failed.keySet());
+        nodeIds.addAll(inProgress.keySet());
+        nodeIds.remove(null);
+
+        final List<FinalizationNodeStats> stats = Lists.newArrayList();
+        for (final String nodeId : nodeIds) {
+            stats.add(FinalizationNodeStats.create(nodeId, count(claimed, nodeId), count(finished, nodeId),
+                    count(failed, nodeId), count(inProgress, nodeId)));
+        }
+        Collections.sort(stats, new Comparator<FinalizationNodeStats>() {
+            @Override
+            public int compare(final FinalizationNodeStats a, final FinalizationNodeStats b) {
+                if (a.claimedLastHour() != b.claimedLastHour()) {
+                    return a.claimedLastHour() > b.claimedLastHour() ? -1 : 1;
+                }
+                return a.nodeId().compareTo(b.nodeId());
+            }
+        });
+        return stats;
+    }
+
+    @Override
+    public int purgeFinishedBefore(final Date cutoff) {
+        return getDao().deleteFinishedBefore(cutoff);
+    }
+
+    private static long count(final Map<String, Long> counts, final String nodeId) {
+        final Long count = counts.get(nodeId);
+        return count == null ? 0L : count;
+    }
+}
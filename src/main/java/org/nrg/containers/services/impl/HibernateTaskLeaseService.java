@@ -0,0 +1,62 @@
+package org.nrg.containers.services.impl;
+
+import org.nrg.containers.daos.TaskLeaseRepository;
+import org.nrg.containers.model.cluster.entity.TaskLeaseEntity;
+import org.nrg.containers.services.TaskLeaseService;
+import org.nrg.framework.orm.hibernate.AbstractHibernateEntityService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.annotation.Nullable;
+import java.lang.management.ManagementFactory;
+import java.util.Date;
+import java.util.UUID;
+
+@Service
+@Transactional
+public class HibernateTaskLeaseService
+        extends AbstractHibernateEntityService<TaskLeaseEntity, TaskLeaseRepository>
+        implements TaskLeaseService {
+    private static final Logger log = LoggerFactory.getLogger(HibernateTaskLeaseService.class);
+
+    // The JVM name is "pid@host". The suffix keeps two runs that happen to get the same pid apart.
+    private final String nodeId = ManagementFactory.getRuntimeMXBean().getName() + "-" + UUID.randomUUID().toString().substring(0, 8);
+
+    @Override
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    @Override
+    public boolean tryAcquire(final String name, final long leaseMillis) {
+        final Date now = new Date();
+        final Date expires = new Date(now.getTime() + leaseMillis);
+        if (getDao().acquire(name, nodeId, now, expires)) {
+            return true;
+        }
+        if (getDao().retrieveByName(name) != null) {
+            return false;
+        }
+
+        // No one has run the task yet. If another node creates the lease at the same time, the unique name
+        // makes one of the two fail.
+        log.debug("Creating the lease on task {} for node {}.", name, nodeId);
+        getDao().create(TaskLeaseEntity.create(name, nodeId, expires));
+        return true;
+    }
+
+    @Override
+    @Nullable
+    @Transactional(readOnly = true)
+    public Date getExpiry(final String name) {
+        final TaskLeaseEntity lease = getDao().retrieveByName(name);
+        return lease == null ? null : lease.getExpires();
+    }
+
+    @Override
+    public void release(final String name) {
+        getDao().release(name, nodeId);
+    }
+}
@@ -0,0 +1,374 @@
+package org.nrg.containers.services.impl;
+
+import com.google.common.collect.ComparisonChain;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Ordering;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.commons.lang3.StringUtils;
+import org.nrg.containers.api.ContainerControlApi;
+import org.nrg.containers.exceptions.DockerServerException;
+import org.nrg.containers.exceptions.NoDockerServerException;
+import org.nrg.containers.model.CommandEventMapping;
+import org.nrg.containers.model.command.auto.Command;
+import org.nrg.containers.model.configuration.ContainerServicePrefsBean;
+import org.nrg.containers.model.dockerhub.DockerHubBase.DockerHub;
+import org.nrg.containers.model.image.docker.DockerImage;
+import org.nrg.containers.model.image.docker.WarmImageStatus;
+import org.nrg.containers.model.server.docker.DockerServerBase.DockerServer;
+import org.nrg.containers.services.CommandEventMappingService;
+import org.nrg.containers.services.CommandService;
+import org.nrg.containers.services.ContainerEntityService;
+import org.nrg.containers.services.DockerServerService;
+import org.nrg.containers.services.ImageWarmerService;
+import org.nrg.framework.exceptions.NotFoundException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+@Service
+public class ImageWarmerServiceImpl implements ImageWarmerService, DisposableBean {
+    private static final Logger log = LoggerFactory.getLogger(ImageWarmerServiceImpl.class);
+
+    // Pulls are mostly network-bound on the Docker server, so a couple at a time is plenty
+    private static final int PULL_THREADS = 2;
+
+    // How long a launch waits on an in-flight pull of its image before going ahead anyway
+    private static final long LAUNCH_WAIT_MILLIS = TimeUnit.MINUTES.toMillis(2);
+
+    private final ContainerControlApi controlApi;
+    private final CommandService commandService;
+    private final CommandEventMappingService commandEventMappingService;
+    private final ContainerEntityService containerEntityService;
+    private final ContainerServicePrefsBean containerServicePrefsBean;
+    private final DockerServerService dockerServerService;
+
+    // Keyed by server and image. See key().
+    private final ConcurrentMap<String, Future<DockerImage>> pullsInFlight = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, WarmImageStatus> statuses = new ConcurrentHashMap<>();
+    private final ExecutorService pullExecutor = Executors.newFixedThreadPool(PULL_THREADS,
+            new ThreadFactoryBuilder().setNameFormat("docker-image-warmer-%d").setDaemon(true).build());
+
+    @Autowired
+    public ImageWarmerServiceImpl(final ContainerControlApi controlApi,
+                                  final CommandService commandService,
+                                  final CommandEventMappingService commandEventMappingService,
+                                  final ContainerEntityService containerEntityService,
+                                  final ContainerServicePrefsBean containerServicePrefsBean,
+                                  final DockerServerService dockerServerService) {
+        this.controlApi = controlApi;
+        this.commandService = commandService;
+        this.commandEventMappingService = commandEventMappingService;
+        this.containerEntityService = containerEntityService;
+        this.containerServicePrefsBean = containerServicePrefsBean;
+        this.dockerServerService = dockerServerService;
+    }
+
+    @Override
+    public void warmAll() {
+        final Map<String, Set<String>> imagesToWarm = findImagesToWarm();
+        final List<DockerServer> servers = dockerServerService.getEnabledServers();
+
+        // Forget images and servers we no longer want, unless they are still being pulled
+        final Set<String> wanted = Sets.newHashSet();
+        for (final DockerServer server : servers) {
+            for (final String image : imagesToWarm.keySet()) {
+                wanted.add(key(server, image));
+            }
+        }
+        for (final String key : Lists.newArrayList(statuses.keySet())) {
+            if (!wanted.contains(key) && !pullsInFlight.containsKey(key)) {
+                statuses.remove(key);
+            }
+        }
+
+        log.debug("Warming {} image{} on {} server{}.", imagesToWarm.size(), imagesToWarm.size() == 1 ? "" : "s",
+                servers.size(), servers.size() == 1 ? "" : "s");
+        for (final DockerServer server : servers) {
+            for (final Map.Entry<String, Set<String>> entry : imagesToWarm.entrySet()) {
+                warm(server, entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    @Override
+    public Future<DockerImage> warm(final @Nonnull DockerServer server, final String imageName) {
+        return warm(server, normalize(imageName), Collections.<String>emptySet());
+    }
+
+    @Override
+    @Nullable
+    public DockerImage pull(final String imageName, final @Nullable DockerHub hub,
+                            final @Nullable String username, final @Nullable String password)
+            throws NoDockerServerException, DockerServerException, NotFoundException {
+        final DockerServer server;
+        try {
+            server = dockerServerService.getServer();
+        } catch (NotFoundException e) {
+            throw new NoDockerServerException(e);
+        }
+        final String image = normalize(imageName);
+        final String key = key(server, image);
+
+        final Future<DockerImage> inFlight = pullsInFlight.get(key);
+        if (inFlight != null) {
+            log.info("Image {} is already being pulled onto server {}. Waiting for that pull.", image, server.name());
+            try {
+                return inFlight.get();
+            } catch (ExecutionException | CancellationException e) {
+                // That pull may not have had the credentials we were given. Try again with them.
+                log.debug("Pull of image {} onto server {} failed. Pulling it again.", image, server.name());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new DockerServerException(e);
+            }
+        }
+
+        final FutureTask<DockerImage> pull = newPull(key, new Callable<DockerImage>() {
+            @Override
+            public DockerImage call() throws Exception {
+                return pullAndRecord(server, image, new Callable<DockerImage>() {
+                    @Override
+                    public DockerImage call() throws Exception {
+                        return controlApi.pullImage(imageName, hub, username, password);
+                    }
+                });
+            }
+        });
+        final Future<DockerImage> raced = pullsInFlight.putIfAbsent(key, pull);
+        if (raced == null) {
+            // On the caller's thread. It waits for the pull anyway, and the warmer's threads stay free.
+            pull.run();
+        }
+        try {
+            return (raced == null ? pull : raced).get();
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof NotFoundException) {
+                throw (NotFoundException) cause;
+            } else if (cause instanceof NoDockerServerException) {
+                throw (NoDockerServerException) cause;
+            } else if (cause instanceof DockerServerException) {
+                throw (DockerServerException) cause;
+            }
+            throw new DockerServerException(cause);
+        } catch (CancellationException e) {
+            throw new DockerServerException("Pull of image " + image + " was cancelled.");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DockerServerException(e);
+        }
+    }
+
+    @Override
+    public void awaitPull(final @Nonnull DockerServer server, final String imageName) {
+        if (StringUtils.isBlank(imageName)) {
+            return;
+        }
+        final Future<DockerImage> pull = pullsInFlight.get(key(server, normalize(imageName)));
+        if (pull == null) {
+            return;
+        }
+
+        log.info("Image {} is being pulled onto server {}. Waiting for the pull to finish before launching.", imageName, server.name());
+        try {
+            pull.get(LAUNCH_WAIT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            log.info("Image {} is still being pulled onto server {}. Launching anyway.", imageName, server.name());
+        } catch (ExecutionException e) {
+            log.debug("Pull of image {} onto server {} failed. Launching anyway.", imageName, server.name());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public List<WarmImageStatus> getStatus() {
+        final List<WarmImageStatus> status = Lists.newArrayList(statuses.values());
+        Collections.sort(status, new Comparator<WarmImageStatus>() {
+            @Override
+            public int compare(final WarmImageStatus first, final WarmImageStatus second) {
+                return ComparisonChain.start()
+                        .compare(first.image(), second.image())
+                        .compare(first.server(), second.server(), Ordering.natural().nullsFirst())
+                        .result();
+            }
+        });
+        return status;
+    }
+
+    @Override
+    public void destroy() {
+        pullExecutor.shutdownNow();
+    }
+
+    /**
+     * @return Every image we want to keep warm, with why we want it.
+     */
+    @Nonnull
+    private Map<String, Set<String>> findImagesToWarm() {
+        final Map<String, Set<String>> imagesToWarm = Maps.newLinkedHashMap();
+
+        for (final CommandEventMapping commandEventMapping : commandEventMappingService.getAll()) {
+            if (!commandEventMapping.isEnabled() || commandEventMapping.getCommandId() == null) {
+                continue;
+            }
+            final Command command = commandService.retrieve(commandEventMapping.getCommandId());
+            if (command != null) {
+                addImage(imagesToWarm, command.image(), WarmImageStatus.SOURCE_EVENT_MAPPING);
+            }
+        }
+
+        final Integer recentDays = containerServicePrefsBean.getImageWarmerRecentDays();
+        if (recentDays != null && recentDays > 0) {
+            final Date since = new Date(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(recentDays));
+            for (final String image : containerEntityService.getImagesUsedSince(since)) {
+                addImage(imagesToWarm, image, WarmImageStatus.SOURCE_RECENTLY_USED);
+            }
+        }
+
+        return imagesToWarm;
+    }
+
+    private void addImage(final Map<String, Set<String>> imagesToWarm, final String image, final String source) {
+        if (StringUtils.isBlank(image)) {
+            return;
+        }
+        final String normalized = normalize(image);
+        if (!imagesToWarm.containsKey(normalized)) {
+            imagesToWarm.put(normalized, Sets.<String>newTreeSet());
+        }
+        imagesToWarm.get(normalized).add(source);
+    }
+
+    /**
+     * Start pulling the image onto the server, unless we are already pulling it there.
+     */
+    private Future<DockerImage> warm(final @Nonnull DockerServer server, final @Nonnull String image, final @Nonnull Set<String> sources) {
+        final String key = key(server, image);
+        final Future<DockerImage> inFlight = pullsInFlight.get(key);
+        if (inFlight != null) {
+            return inFlight;
+        }
+
+        final FutureTask<DockerImage> pull = newPull(key, new Callable<DockerImage>() {
+            @Override
+            public DockerImage call() throws Exception {
+                return pull(server, image);
+            }
+        });
+        final Future<DockerImage> raced = pullsInFlight.putIfAbsent(key, pull);
+        if (raced != null) {
+            return raced;
+        }
+
+        final WarmImageStatus previous = statuses.get(key);
+        statuses.put(key, previous == null ?
+                WarmImageStatus.queued(image, server.id(), server.name(), sources) :
+                previous.withSources(sources.isEmpty() ? previous.sources() : sources)
+                        .withState(WarmImageStatus.QUEUED, previous.lastChecked(), null, null, null));
+        try {
+            pullExecutor.execute(pull);
+        } catch (RejectedExecutionException e) {
+            log.debug("Not pulling image {} onto server {}. Shutting down.", image, server.name());
+            pull.cancel(false);
+        }
+        return pull;
+    }
+
+    /**
+     * A pull that is no longer in flight once it is done.
+     */
+    @Nonnull
+    private FutureTask<DockerImage> newPull(final @Nonnull String key, final @Nonnull Callable<DockerImage> pull) {
+        return new FutureTask<DockerImage>(pull) {
+            @Override
+            protected void done() {
+                pullsInFlight.remove(key, this);
+            }
+        };
+    }
+
+    private DockerImage pull(final @Nonnull DockerServer server, final @Nonnull String image) throws Exception {
+        final Date checked = new Date();
+        try {
+            final DockerImage present = controlApi.getImageById(server, image);
+            setState(server, image, WarmImageStatus.PRESENT, checked, null, null, null);
+            return present;
+        } catch (NotFoundException ignored) {
+            // Not on the server. Pull it.
+        }
+
+        return pullAndRecord(server, image, new Callable<DockerImage>() {
+            @Override
+            public DockerImage call() throws Exception {
+                return controlApi.pullImage(server, image);
+            }
+        });
+    }
+
+    private DockerImage pullAndRecord(final @Nonnull DockerServer server, final @Nonnull String image,
+                                      final @Nonnull Callable<DockerImage> pull) throws Exception {
+        final Date started = new Date();
+        log.info("Pulling image {} onto server {}.", image, server.name());
+        setState(server, image, WarmImageStatus.PULLING, started, started, null, null);
+        try {
+            final DockerImage pulled = pull.call();
+            final long millis = System.currentTimeMillis() - started.getTime();
+            log.info("Pulled image {} onto server {} in {} ms.", image, server.name(), millis);
+            setState(server, image, WarmImageStatus.PULLED, new Date(), started, millis, null);
+            return pulled;
+        } catch (Exception e) {
+            log.warn("Could not pull image {} onto server {}: {}", image, server.name(), e.getMessage());
+            setState(server, image, WarmImageStatus.FAILED, new Date(), started, null, e.getMessage());
+            throw e;
+        }
+    }
+
+    private void setState(final DockerServer server, final String image, final String state, final Date lastChecked,
+                          final Date pullStarted, final Long pullMillis, final String message) {
+        final String key = key(server, image);
+        final WarmImageStatus previous = statuses.get(key);
+        final WarmImageStatus base = previous == null ? WarmImageStatus.queued(image, server.id(), server.name(), null) : previous;
+        statuses.put(key, base.withState(state, lastChecked, pullStarted, pullMillis, message));
+    }
+
+    @Nonnull
+    private static String key(final @Nonnull DockerServer server, final @Nonnull String image) {
+        return server.id() + " " + image;
+    }
+
+    /**
+     * Docker treats an image name without a tag as the "latest" tag. Do the same, so we do not pull it twice.
+     */
+    @Nonnull
+    private static String normalize(final @Nonnull String image) {
+        final String trimmed = image.trim();
+        final String lastPart = trimmed.substring(trimmed.lastIndexOf('/') + 1);
+        return lastPart.contains(":") || lastPart.contains("@") ? trimmed : trimmed + ":latest";
+    }
+}
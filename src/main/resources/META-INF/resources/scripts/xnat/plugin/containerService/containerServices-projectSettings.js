@@ -99,6 +99,10 @@ var XNAT = getObject(XNAT || {});
         return rootUrl('/xapi/commands' + appended);
     }
 
+    function catalogUrl(){
+        return rootUrl('/xapi/projects/'+getProjectId()+'/commands/catalog');
+    }
+
     function configUrl(commandId,wrapperName,appended){
         appended = isDefined(appended) ? '?' + appended : '';
         if (!commandId || !wrapperName) return false;
@@ -132,6 +136,21 @@ var XNAT = getObject(XNAT || {});
         });
     };
 
+    // all commands, plus the enabled status and configuration of each wrapper in this project, in one request
+    projCommandConfigManager.getCatalog = function(callback){
+        callback = isFunction(callback) ? callback : function(){};
+        return XNAT.xhr.get({
+            url: catalogUrl(),
+            dataType: 'json',
+            success: function(data){
+                if (data) {
+                    return data;
+                }
+                callback.apply(this, arguments);
+            }
+        });
+    };
+
     projConfigDefinition.getConfig = function(commandId,wrapperName,callback){
         if (!commandId || !wrapperName) return false;
         callback = isFunction(callback) ? callback : function(){};
@@ -433,26 +452,21 @@ var XNAT = getObject(XNAT || {});
             }, 'Set Defaults');
         }
 
-        function enabledCheckbox(command,wrapper){
-            projCommandConfigManager.getEnabledStatus(command,wrapper).done(function(data){
-                var enabled = data['enabled-for-site'] && data['enabled-for-project'];
-                $('#wrapper-'+wrapper.id+'-enable').prop('checked',enabled);
-                wrapperList[wrapper.id].enabled = enabled;
-
-                if (data['enabled-for-site'] === false) {
-                    // if a command has been disabled at the site-wide level, don't allow user to toggle it.
-                    // disable the input, and add a 'disabled' class to the input controller
-                    // or, remove the input and controller entirely.  
-                    $('#wrapper-'+wrapper.id+'-enable').prop('disabled','disabled')
-                        .parents('.switchbox').addClass('disabled').hide()
-                        .parent('div').html(spawn('span',{ 'style': { 'color': '#808080' }},'disabled'));
-                }
-                projCommandConfigManager.setMasterEnableSwitch();
-            });
+        function enabledCheckbox(command,wrapper,status){
+            status = status || {};
+            var enabled = !!(status['enabled-for-site'] && status['enabled-for-project']);
+            wrapperList[wrapper.id].enabled = enabled;
+
+            if (status['enabled-for-site'] === false) {
+                // if a command has been disabled at the site-wide level, don't allow user to toggle it.
+                return spawn('div.center', [
+                    spawn('span',{ 'style': { 'color': '#808080' }},'disabled')
+                ]);
+            }
 
             var ckbox = spawn('input.config-enabled.wrapper-enable', {
                 type: 'checkbox',
-                checked: false,
+                checked: enabled,
                 value: 'true',
                 id: 'wrapper-'+wrapper.id+'-enable',
                 data: { wrappername: wrapper.name, commandid: command.id },
@@ -514,8 +528,9 @@ var XNAT = getObject(XNAT || {});
             ]);
         }
 
-        projCommandConfigManager.getAll().done(function(data) {
-            commandList = data;
+        projCommandConfigManager.getCatalog().done(function(report) {
+            commandList = report.commands;
+            var wrapperReports = report.wrappers || {};
 
             if (commandList) {
                 commandList.forEach(function(command){
@@ -531,11 +546,12 @@ var XNAT = getObject(XNAT || {});
                             pccmTable.tr({title: wrapper.name, data: {id: wrapper.id, name: wrapper.name, image: command.image}})
                                 .td([viewLink(command, wrapper)]).addClass('name')
                                 .td(command.image)
-                                .td([['div.center', [enabledCheckbox(command,wrapper)]]])
+                                .td([['div.center', [enabledCheckbox(command,wrapper,wrapperReports[wrapper.id])]]])
                                 .td([['div.center', [editConfigButton(command,wrapper)]]]);
                         }
                     }
                 });
+                projCommandConfigManager.setMasterEnableSwitch();
 
             } else {
                 // create a handler when no command data is returned.
@@ -1269,6 +1269,10 @@ var XNAT = getObject(XNAT || {});
         return csrfUrl('/xapi/commands/'+command+'/wrappers/'+wrapperName+'/' + flag);
     }
 
+    function catalogUrl(){
+        return csrfUrl('/xapi/commands/catalog');
+    }
+
     function deleteWrapperUrl(id){
         return csrfUrl('/xapi/wrappers/'+id);
     }
@@ -1291,6 +1295,24 @@ var XNAT = getObject(XNAT || {});
         });
     };
 
+    // all commands, plus the site-wide enabled status and configuration of each wrapper, in one request
+    commandConfigManager.getCatalog = function(callback){
+        callback = isFunction(callback) ? callback : function(){};
+        return XNAT.xhr.get({
+            url: catalogUrl(),
+            dataType: 'json',
+            success: function(data){
+                if (data) {
+                    return data;
+                }
+                callback.apply(this, arguments);
+            },
+            fail: function (e) {
+                errorHandler(e, 'Could Not Retrieve List of Commands');
+            }
+        });
+    };
+
     commandConfigManager.getEnabledStatus = function(command,wrapper,callback){
         callback = isFunction(callback) ? callback : function(){};
         return XNAT.xhr.get({
@@ -1587,16 +1609,12 @@ var XNAT = getObject(XNAT || {});
             }, [ spawn('i.fa.fa-trash') ])
         }
 
-        function enabledCheckbox(command,wrapper){
-            commandConfigManager.getEnabledStatus(command,wrapper).done(function(data){
-                var enabled = wrapperList[wrapper.id].enabled = data; // update internal wrapper list
-                $('#wrapper-'+wrapper.id+'-enable').prop('checked',enabled);
-                commandConfigManager.setMasterEnableSwitch();
-            });
+        function enabledCheckbox(command,wrapper,status){
+            var enabled = wrapperList[wrapper.id].enabled = !!(status && status['enabled-for-site']); // update internal wrapper list
 
             var ckbox = spawn('input.config-enabled.wrapper-enable', {
                 type: 'checkbox',
-                checked: false,
+                checked: enabled,
                 value: 'true',
                 id: 'wrapper-'+wrapper.id+'-enable',
                 data: { name: wrapper.name },
@@ -1661,7 +1679,10 @@ var XNAT = getObject(XNAT || {});
             ]);
         }
 
-        commandConfigManager.getAll().done(function(data) {
+        commandConfigManager.getCatalog().done(function(report) {
+            var data = report.commands,
+                wrapperReports = report.wrappers || {};
+
             // populate commandList[]
             XNAT.plugin.containerService.commandList = data;
 
@@ -1671,11 +1692,6 @@ var XNAT = getObject(XNAT || {});
                     if (command.xnat) {
                         for (var k = 0, l = command.xnat.length; k < l; k++) {
                             var wrapper = command.xnat[k];
-                            ccmTable.tr({title: wrapper.name, data: {wrapperid: wrapper.id, commandid: command.id, name: wrapper.name, image: command.image}})
-                                .td([ viewLink(command, wrapper) ]).addClass('name')
-                                .td([ spawn('span.truncate.truncate200', command.image ) ])
-                                .td([ spawn('div', [enabledCheckbox(command,wrapper)]) ])
-                                .td([ spawn('div.center', [editConfigButton(command,wrapper), spacer(10), deleteConfigButton(wrapper)]) ]);
 
                             // populate wrapperList{}
                             XNAT.plugin.containerService.wrapperList[wrapper.id] = {
@@ -1684,9 +1700,16 @@ var XNAT = getObject(XNAT || {});
                                 'description': wrapper.description,
                                 'contexts': wrapper.contexts
                             };
+
+                            ccmTable.tr({title: wrapper.name, data: {wrapperid: wrapper.id, commandid: command.id, name: wrapper.name, image: command.image}})
+                                .td([ viewLink(command, wrapper) ]).addClass('name')
+                                .td([ spawn('span.truncate.truncate200', command.image ) ])
+                                .td([ spawn('div', [enabledCheckbox(command,wrapper,wrapperReports[wrapper.id])]) ])
+                                .td([ spawn('div.center', [editConfigButton(command,wrapper), spacer(10), deleteConfigButton(wrapper)]) ]);
                         }
                     }
                 }
+                commandConfigManager.setMasterEnableSwitch();
             } else {
                 // create a handler when no command data is returned.
                 return spawn('p','No XNAT-enabled Commands Found');
@@ -0,0 +1,89 @@
+package org.nrg.containers.api;
+
+import com.google.common.base.Ticker;
+import org.junit.Test;
+import org.nrg.containers.exceptions.DockerServerException;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class DockerCircuitBreakerTest {
+    private static final Long SERVER_ID = 1L;
+    private static final Long OTHER_SERVER_ID = 2L;
+
+    private final FakeTicker ticker = new FakeTicker();
+
+    @Test
+    public void testOpensAfterRepeatedFailuresAndClosesOnSuccess() throws Exception {
+        final DockerCircuitBreaker circuitBreaker = new DockerCircuitBreaker(60000L, ticker);
+
+        circuitBreaker.recordFailure(SERVER_ID, "first");
+        assertThat(circuitBreaker.isOpen(SERVER_ID), is(false));
+        circuitBreaker.checkClosed(SERVER_ID);
+
+        circuitBreaker.recordFailure(SERVER_ID, "second");
+        assertThat(circuitBreaker.isOpen(SERVER_ID), is(true));
+        try {
+            circuitBreaker.checkClosed(SERVER_ID);
+            fail("Should fail fast while the server is not answering.");
+        } catch (DockerServerException e) {
+            // expected
+        }
+
+        circuitBreaker.recordSuccess(SERVER_ID);
+        assertThat(circuitBreaker.isOpen(SERVER_ID), is(false));
+        circuitBreaker.checkClosed(SERVER_ID);
+    }
+
+    @Test
+    public void testServersAreTrackedSeparately() throws Exception {
+        final DockerCircuitBreaker circuitBreaker = new DockerCircuitBreaker(60000L, ticker);
+
+        circuitBreaker.recordFailure(SERVER_ID, "first");
+        circuitBreaker.recordFailure(SERVER_ID, "second");
+        assertThat(circuitBreaker.isOpen(SERVER_ID), is(true));
+        assertThat(circuitBreaker.isOpen(OTHER_SERVER_ID), is(false));
+        circuitBreaker.checkClosed(OTHER_SERVER_ID);
+
+        circuitBreaker.recordFailure(OTHER_SERVER_ID, "first");
+        circuitBreaker.recordSuccess(SERVER_ID);
+        assertThat(circuitBreaker.isOpen(SERVER_ID), is(false));
+        assertThat(circuitBreaker.isOpen(OTHER_SERVER_ID), is(false));
+    }
+
+    @Test
+    public void testLetsCallsThroughAgainAfterAWhile() throws Exception {
+        final DockerCircuitBreaker circuitBreaker = new DockerCircuitBreaker(60000L, ticker);
+
+        circuitBreaker.recordFailure(SERVER_ID, "first");
+        circuitBreaker.recordFailure(SERVER_ID, "second");
+        assertThat(circuitBreaker.isOpen(SERVER_ID), is(true));
+
+        ticker.advance(59, TimeUnit.SECONDS);
+        assertThat(circuitBreaker.isOpen(SERVER_ID), is(true));
+
+        ticker.advance(1, TimeUnit.SECONDS);
+        assertThat(circuitBreaker.isOpen(SERVER_ID), is(false));
+        circuitBreaker.checkClosed(SERVER_ID);
+
+        // Another failure opens it again straight away, since the failures were never cleared by a success
+        circuitBreaker.recordFailure(SERVER_ID, "third");
+        assertThat(circuitBreaker.isOpen(SERVER_ID), is(true));
+    }
+
+    private static class FakeTicker extends Ticker {
+        private long nanos = 0L;
+
+        @Override
+        public long read() {
+            return nanos;
+        }
+
+        void advance(final long time, final TimeUnit unit) {
+            nanos += unit.toNanos(time);
+        }
+    }
+}
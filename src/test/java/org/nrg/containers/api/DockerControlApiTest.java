@@ -1,6 +1,8 @@
 package org.nrg.containers.api;
 
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.spotify.docker.client.DockerClient;
 import com.spotify.docker.client.exceptions.DockerException;
 import com.spotify.docker.client.messages.ContainerConfig;
@@ -34,8 +36,10 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import java.util.regex.Pattern;
 
 import static java.lang.System.getenv;
@@ -277,6 +281,49 @@ public class DockerControlApiTest {
         // TODO assert more things about the events
     }
 
+    @Test
+    public void testGetExitEvents() throws Exception {
+        assumeThat(canConnectToDocker(), is(true));
+
+        CLIENT.pull(BUSYBOX_LATEST);
+        // A managed container is found in the labeled listing. An unmanaged one is inspected on its own.
+        final String listed = runToExit(ImmutableMap.of("org.nrg.containers.managed", "true"), 3);
+        final String unlisted = runToExit(Collections.<String, String>emptyMap(), 5);
+        final String gone = runToExit(Collections.<String, String>emptyMap(), 0);
+        CLIENT.removeContainer(gone);
+
+        try {
+            final List<DockerContainerEvent> exits = controlApi.getExitEvents(mockDockerServerService.getServer(),
+                    Lists.newArrayList(listed, unlisted, gone));
+
+            final Map<String, String> exitCodes = Maps.newHashMap();
+            for (final DockerContainerEvent exit : exits) {
+                assertThat(exit.isExitStatus(), is(true));
+                exitCodes.put(exit.containerId(), exit.exitCode());
+            }
+            assertThat(exitCodes.size(), is(3));
+            assertThat(exitCodes.get(listed), is("3"));
+            assertThat(exitCodes.get(unlisted), is("5"));
+            // A container that is gone has exited, with no exit code
+            assertThat(exitCodes.get(gone), is(""));
+        } finally {
+            CLIENT.removeContainer(listed);
+            CLIENT.removeContainer(unlisted);
+        }
+    }
+
+    private String runToExit(final Map<String, String> labels, final int exitCode) throws Exception {
+        final ContainerConfig config = ContainerConfig.builder()
+                .image(BUSYBOX_LATEST)
+                .cmd("sh", "-c", "exit " + exitCode)
+                .labels(labels)
+                .build();
+        final ContainerCreation creation = CLIENT.createContainer(config);
+        CLIENT.startContainer(creation.id());
+        CLIENT.waitContainer(creation.id());
+        return creation.id();
+    }
+
     private Matcher<Exception> imageNotFoundException(final String name) {
         final String exceptionMessage = "Image not found: " + name;
         final String description = "Image not found exception with image name " + name;
@@ -0,0 +1,82 @@
+package org.nrg.containers.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.hibernate.SessionFactory;
+import org.mockito.Mockito;
+import org.nrg.containers.daos.BulkLaunchItemRepository;
+import org.nrg.containers.daos.BulkLaunchJobRepository;
+import org.nrg.containers.jobs.BulkLaunchJobDrainer;
+import org.nrg.containers.model.bulklaunch.entity.BulkLaunchItemEntity;
+import org.nrg.containers.model.bulklaunch.entity.BulkLaunchJobEntity;
+import org.nrg.containers.model.configuration.ContainerServicePrefsBean;
+import org.nrg.containers.services.BulkLaunchJobService;
+import org.nrg.containers.services.BulkLaunchService;
+import org.nrg.containers.services.impl.HibernateBulkLaunchJobService;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.orm.hibernate4.HibernateTransactionManager;
+import org.springframework.orm.hibernate4.LocalSessionFactoryBean;
+import org.springframework.transaction.annotation.EnableTransactionManagement;
+import org.springframework.transaction.support.ResourceTransactionManager;
+
+import javax.sql.DataSource;
+import java.util.Properties;
+
+/**
+ * Stored bulk launch jobs, drained into a mock bulk launch service.
+ */
+@Configuration
+@EnableTransactionManagement
+@Import({HibernateConfig.class, ObjectMapperConfig.class})
+public class BulkLaunchJobTestConfig {
+    @Bean
+    public BulkLaunchJobService bulkLaunchJobService(final BulkLaunchItemRepository bulkLaunchItemRepository,
+                                                     final ObjectMapper objectMapper,
+                                                     final ContainerServicePrefsBean containerServicePrefsBean) {
+        return new HibernateBulkLaunchJobService(bulkLaunchItemRepository, objectMapper, containerServicePrefsBean);
+    }
+
+    @Bean
+    public ContainerServicePrefsBean mockContainerServicePrefsBean() {
+        return Mockito.mock(ContainerServicePrefsBean.class);
+    }
+
+    @Bean
+    public BulkLaunchJobRepository bulkLaunchJobRepository() {
+        return new BulkLaunchJobRepository();
+    }
+
+    @Bean
+    public BulkLaunchItemRepository bulkLaunchItemRepository() {
+        return new BulkLaunchItemRepository();
+    }
+
+    @Bean
+    public BulkLaunchService mockBulkLaunchService() {
+        return Mockito.mock(BulkLaunchService.class);
+    }
+
+    @Bean
+    public BulkLaunchJobDrainer bulkLaunchJobDrainer(final BulkLaunchJobService bulkLaunchJobService,
+                                                     final BulkLaunchService bulkLaunchService) {
+        return new BulkLaunchJobDrainer(bulkLaunchJobService, bulkLaunchService);
+    }
+
+    @Bean
+    public LocalSessionFactoryBean sessionFactory(final DataSource dataSource, @Qualifier("hibernateProperties") final Properties properties) {
+        final LocalSessionFactoryBean bean = new LocalSessionFactoryBean();
+        bean.setDataSource(dataSource);
+        bean.setHibernateProperties(properties);
+        bean.setAnnotatedClasses(
+                BulkLaunchJobEntity.class,
+                BulkLaunchItemEntity.class);
+        return bean;
+    }
+
+    @Bean
+    public ResourceTransactionManager transactionManager(final SessionFactory sessionFactory) throws Exception {
+        return new HibernateTransactionManager(sessionFactory);
+    }
+}
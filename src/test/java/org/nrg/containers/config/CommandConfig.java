@@ -4,6 +4,7 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import org.mockito.Mockito;
 import org.nrg.config.services.ConfigService;
 import org.nrg.containers.daos.CommandEntityRepository;
+import org.nrg.containers.model.configuration.ContainerServicePrefsBean;
 import org.nrg.containers.services.CommandEntityService;
 import org.nrg.containers.services.CommandService;
 import org.nrg.containers.services.ContainerConfigService;
@@ -36,7 +37,7 @@ public class CommandConfig {
     @Bean
     public ContainerConfigService containerConfigService(final ConfigService configService,
                                                          final ObjectMapper objectMapper) {
-        return new ContainerConfigServiceImpl(configService, objectMapper);
+        return new ContainerConfigServiceImpl(configService, objectMapper, Mockito.mock(ContainerServicePrefsBean.class));
     }
 
     @Bean
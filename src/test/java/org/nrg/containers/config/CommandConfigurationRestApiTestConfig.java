@@ -3,6 +3,7 @@ package org.nrg.containers.config;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.mockito.Mockito;
 import org.nrg.config.services.ConfigService;
+import org.nrg.containers.model.configuration.ContainerServicePrefsBean;
 import org.nrg.containers.rest.CommandConfigurationRestApi;
 import org.nrg.containers.services.CommandEntityService;
 import org.nrg.containers.services.CommandService;
@@ -30,9 +31,10 @@ import org.springframework.web.servlet.config.annotation.EnableWebMvc;
 public class CommandConfigurationRestApiTestConfig extends WebSecurityConfigurerAdapter {
     @Bean
     public CommandConfigurationRestApi commandConfigurationRestApi(final CommandService commandService,
+                                                                   final ObjectMapper objectMapper,
                                                                    final UserManagementServiceI userManagementServiceI,
                                                                    final RoleHolder roleHolder) {
-        return new CommandConfigurationRestApi(commandService, userManagementServiceI, roleHolder);
+        return new CommandConfigurationRestApi(commandService, objectMapper, userManagementServiceI, roleHolder);
     }
 
     @Bean
@@ -49,7 +51,7 @@ public class CommandConfigurationRestApiTestConfig extends WebSecurityConfigurer
     @Bean
     public ContainerConfigService containerConfigService(final ConfigService configService,
                                                          final ObjectMapper objectMapper) {
-        return new ContainerConfigServiceImpl(configService, objectMapper);
+        return new ContainerConfigServiceImpl(configService, objectMapper, Mockito.mock(ContainerServicePrefsBean.class));
     }
 
     @Bean
@@ -1,16 +1,23 @@
 package org.nrg.containers.config;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.hibernate.SessionFactory;
 import org.mockito.Mockito;
 import org.nrg.containers.api.ContainerControlApi;
+import org.nrg.containers.daos.ContainerArchiveEntityRepository;
 import org.nrg.containers.daos.ContainerEntityRepository;
+import org.nrg.containers.daos.FinalizationWorkRepository;
+import org.nrg.containers.model.container.entity.ContainerArchiveEntity;
 import org.nrg.containers.model.container.entity.ContainerEntity;
 import org.nrg.containers.model.container.entity.ContainerEntityHistory;
 import org.nrg.containers.model.container.entity.ContainerEntityInput;
 import org.nrg.containers.model.container.entity.ContainerEntityMount;
 import org.nrg.containers.model.container.entity.ContainerEntityOutput;
 import org.nrg.containers.model.container.entity.ContainerMountFilesEntity;
+import org.nrg.containers.model.container.entity.FinalizationWorkEntity;
+import org.nrg.containers.services.ContainerArchiveService;
 import org.nrg.containers.services.ContainerEntityService;
+import org.nrg.containers.services.impl.HibernateContainerArchiveService;
 import org.nrg.containers.services.impl.HibernateContainerEntityService;
 import org.nrg.framework.services.NrgEventService;
 import org.nrg.prefs.services.NrgPreferenceService;
@@ -84,6 +91,22 @@ public class ContainerEntityTestConfig {
         return new ContainerEntityRepository();
     }
 
+    @Bean
+    public ContainerArchiveService containerArchiveService(final ContainerEntityRepository containerEntityRepository,
+                                                           final ObjectMapper objectMapper) {
+        return new HibernateContainerArchiveService(containerEntityRepository, objectMapper);
+    }
+
+    @Bean
+    public ContainerArchiveEntityRepository containerArchiveEntityRepository() {
+        return new ContainerArchiveEntityRepository();
+    }
+
+    @Bean
+    public FinalizationWorkRepository finalizationWorkRepository() {
+        return new FinalizationWorkRepository();
+    }
+
     @Bean
     public LocalSessionFactoryBean sessionFactory(final DataSource dataSource, @Qualifier("hibernateProperties") final Properties properties) {
         final LocalSessionFactoryBean bean = new LocalSessionFactoryBean();
@@ -95,7 +118,9 @@ public class ContainerEntityTestConfig {
                 ContainerEntityInput.class,
                 ContainerEntityOutput.class,
                 ContainerEntityMount.class,
-                ContainerMountFilesEntity.class);
+                ContainerMountFilesEntity.class,
+                ContainerArchiveEntity.class,
+                FinalizationWorkEntity.class);
         return bean;
     }
 
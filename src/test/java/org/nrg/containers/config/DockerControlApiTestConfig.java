@@ -2,6 +2,7 @@ package org.nrg.containers.config;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.mockito.Mockito;
+import org.nrg.containers.api.DockerCircuitBreaker;
 import org.nrg.containers.api.DockerControlApi;
 import org.nrg.containers.daos.ContainerEntityRepository;
 import org.nrg.containers.services.CommandLabelService;
@@ -27,7 +28,7 @@ public class DockerControlApiTestConfig {
     public DockerControlApi dockerControlApi(final DockerServerService dockerServerService,
                                              final CommandLabelService commandLabelService,
                                              final NrgEventService eventService) {
-        return new DockerControlApi(dockerServerService, commandLabelService, eventService);
+        return new DockerControlApi(dockerServerService, commandLabelService, eventService, new DockerCircuitBreaker());
     }
 
     @Bean
@@ -5,6 +5,7 @@ import org.hibernate.SessionFactory;
 import org.mockito.Mockito;
 import org.nrg.config.services.ConfigService;
 import org.nrg.containers.daos.DockerHubDao;
+import org.nrg.containers.model.configuration.ContainerServicePrefsBean;
 import org.nrg.containers.model.dockerhub.DockerHubEntity;
 import org.nrg.containers.services.ContainerConfigService;
 import org.nrg.containers.services.DockerHubService;
@@ -37,7 +38,7 @@ public class DockerHubEntityTestConfig {
     @Bean
     public ContainerConfigService containerConfigService(final ConfigService configService,
                                                          final ObjectMapper objectMapper) {
-        return new ContainerConfigServiceImpl(configService, objectMapper);
+        return new ContainerConfigServiceImpl(configService, objectMapper, Mockito.mock(ContainerServicePrefsBean.class));
     }
 
     @Bean
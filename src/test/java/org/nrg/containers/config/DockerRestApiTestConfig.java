@@ -3,14 +3,19 @@ package org.nrg.containers.config;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.mockito.Mockito;
 import org.nrg.containers.api.ContainerControlApi;
+import org.nrg.containers.api.DockerCircuitBreaker;
 import org.nrg.containers.api.DockerControlApi;
 import org.nrg.containers.rest.DockerRestApi;
 import org.nrg.containers.services.CommandLabelService;
 import org.nrg.containers.services.CommandService;
+import org.nrg.containers.services.ContainerCleanupService;
+import org.nrg.containers.services.DockerHealthService;
 import org.nrg.containers.services.DockerHubService;
 import org.nrg.containers.services.DockerServerService;
 import org.nrg.containers.services.DockerService;
+import org.nrg.containers.services.ImageWarmerService;
 import org.nrg.containers.services.impl.CommandLabelServiceImpl;
+import org.nrg.containers.services.impl.DockerHealthServiceImpl;
 import org.nrg.containers.services.impl.DockerServiceImpl;
 import org.nrg.framework.services.ContextService;
 import org.nrg.framework.services.NrgEventService;
@@ -34,10 +39,22 @@ import org.springframework.web.servlet.config.annotation.EnableWebMvc;
 public class DockerRestApiTestConfig extends WebSecurityConfigurerAdapter {
     @Bean
     public DockerRestApi dockerRestApi(final DockerService dockerService,
+                                       final ImageWarmerService imageWarmerService,
+                                       final ContainerCleanupService containerCleanupService,
                                        final ObjectMapper objectMapper,
                                        final UserManagementServiceI userManagementService,
                                        final RoleHolder roleHolder) {
-        return new DockerRestApi(dockerService, objectMapper, userManagementService, roleHolder);
+        return new DockerRestApi(dockerService, imageWarmerService, containerCleanupService, objectMapper, userManagementService, roleHolder);
+    }
+
+    @Bean
+    public ImageWarmerService mockImageWarmerService() {
+        return Mockito.mock(ImageWarmerService.class);
+    }
+
+    @Bean
+    public ContainerCleanupService mockContainerCleanupService() {
+        return Mockito.mock(ContainerCleanupService.class);
     }
 
     @Bean
@@ -45,8 +62,17 @@ public class DockerRestApiTestConfig extends WebSecurityConfigurerAdapter {
                                        final DockerHubService dockerHubService,
                                        final CommandService commandService,
                                        final DockerServerService dockerServerService,
-                                       final CommandLabelService commandLabelService) {
-        return new DockerServiceImpl(controlApi, dockerHubService, commandService, dockerServerService, commandLabelService);
+                                       final CommandLabelService commandLabelService,
+                                       final DockerHealthService dockerHealthService,
+                                       final ImageWarmerService imageWarmerService) {
+        return new DockerServiceImpl(controlApi, dockerHubService, commandService, dockerServerService, commandLabelService,
+                dockerHealthService, imageWarmerService);
+    }
+
+    @Bean
+    public DockerHealthService dockerHealthService(final ContainerControlApi controlApi,
+                                                   final DockerHubService dockerHubService) {
+        return new DockerHealthServiceImpl(controlApi, dockerHubService);
     }
 
     @Bean
@@ -68,7 +94,7 @@ public class DockerRestApiTestConfig extends WebSecurityConfigurerAdapter {
     public ContainerControlApi mockContainerControlApi(final DockerServerService dockerServerService,
                                                        final CommandLabelService commandLabelService,
                                                        final NrgEventService eventService) {
-        final ContainerControlApi controlApi = new DockerControlApi(dockerServerService, commandLabelService, eventService);
+        final ContainerControlApi controlApi = new DockerControlApi(dockerServerService, commandLabelService, eventService, new DockerCircuitBreaker());
         return Mockito.spy(controlApi);
     }
 
@@ -1,9 +1,13 @@
 package org.nrg.containers.config;
 
+import org.mockito.Mockito;
 import org.nrg.containers.api.DockerControlApi;
 import org.nrg.containers.events.DockerStatusUpdater;
+import org.nrg.containers.model.configuration.ContainerServicePrefsBean;
 import org.nrg.containers.services.ContainerService;
+import org.nrg.containers.services.DockerHealthService;
 import org.nrg.containers.services.DockerServerService;
+import org.nrg.containers.services.TaskLeaseService;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Import;
@@ -25,8 +29,10 @@ public class EventPullingIntegrationTestConfig implements SchedulingConfigurer {
     @Bean
     public DockerStatusUpdater dockerEventPuller(final DockerControlApi dockerControlApi,
                                                  final DockerServerService dockerServerService,
-                                                 final ContainerService containerService) {
-        return new DockerStatusUpdater(dockerControlApi, dockerServerService, containerService);
+                                                 final ContainerService containerService,
+                                                 final DockerHealthService dockerHealthService) {
+        return new DockerStatusUpdater(dockerControlApi, dockerServerService, containerService, dockerHealthService,
+                Mockito.mock(TaskLeaseService.class), Mockito.mock(ContainerServicePrefsBean.class));
     }
 
     @Bean
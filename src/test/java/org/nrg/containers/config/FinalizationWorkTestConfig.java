@@ -0,0 +1,63 @@
+package org.nrg.containers.config;
+
+import org.hibernate.SessionFactory;
+import org.mockito.Mockito;
+import org.nrg.containers.daos.FinalizationWorkRepository;
+import org.nrg.containers.model.container.entity.FinalizationWorkEntity;
+import org.nrg.containers.services.FinalizationWorkService;
+import org.nrg.containers.services.TaskLeaseService;
+import org.nrg.containers.services.impl.HibernateFinalizationWorkService;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.orm.hibernate4.HibernateTransactionManager;
+import org.springframework.orm.hibernate4.LocalSessionFactoryBean;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.ResourceTransactionManager;
+
+import javax.sql.DataSource;
+import java.util.Properties;
+
+/**
+ * Two nodes sharing one finalization work table.
+ */
+@Configuration
+@Import({HibernateConfig.class})
+public class FinalizationWorkTestConfig {
+    @Bean
+    public FinalizationWorkService thisNodeFinalizationWorkService(final PlatformTransactionManager transactionManager) {
+        return new HibernateFinalizationWorkService(taskLeaseService("this-node"), transactionManager);
+    }
+
+    @Bean
+    public FinalizationWorkService otherNodeFinalizationWorkService(final PlatformTransactionManager transactionManager) {
+        return new HibernateFinalizationWorkService(taskLeaseService("other-node"), transactionManager);
+    }
+
+    @Bean
+    public FinalizationWorkRepository finalizationWorkRepository() {
+        return new FinalizationWorkRepository();
+    }
+
+    @Bean
+    public LocalSessionFactoryBean sessionFactory(final DataSource dataSource, @Qualifier("hibernateProperties") final Properties properties) {
+        final LocalSessionFactoryBean bean = new LocalSessionFactoryBean();
+        bean.setDataSource(dataSource);
+        bean.setHibernateProperties(properties);
+        bean.setAnnotatedClasses(
+                FinalizationWorkEntity.class);
+        return bean;
+    }
+
+    @Bean
+    public ResourceTransactionManager transactionManager(final SessionFactory sessionFactory) throws Exception {
+        return new HibernateTransactionManager(sessionFactory);
+    }
+
+    private static TaskLeaseService taskLeaseService(final String nodeId) {
+        final TaskLeaseService taskLeaseService = Mockito.mock(TaskLeaseService.class);
+        Mockito.when(taskLeaseService.getNodeId()).thenReturn(nodeId);
+        return taskLeaseService;
+    }
+}
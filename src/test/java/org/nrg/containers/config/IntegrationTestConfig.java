@@ -5,9 +5,11 @@ import org.hibernate.SessionFactory;
 import org.mockito.Mockito;
 import org.nrg.config.services.ConfigService;
 import org.nrg.containers.api.ContainerControlApi;
+import org.nrg.containers.api.DockerCircuitBreaker;
 import org.nrg.containers.api.DockerControlApi;
 import org.nrg.containers.daos.ContainerEntityRepository;
 import org.nrg.containers.daos.DockerServerEntityRepository;
+import org.nrg.containers.daos.FinalizationWorkRepository;
 import org.nrg.containers.events.listeners.DockerContainerEventListener;
 import org.nrg.containers.model.command.entity.CommandEntity;
 import org.nrg.containers.model.command.entity.CommandInputEntity;
@@ -19,32 +21,43 @@ import org.nrg.containers.model.command.entity.CommandWrapperExternalInputEntity
 import org.nrg.containers.model.command.entity.CommandWrapperOutputEntity;
 import org.nrg.containers.model.command.entity.DockerCommandEntity;
 import org.nrg.containers.model.command.entity.DockerSetupCommandEntity;
+import org.nrg.containers.model.configuration.ContainerServicePrefsBean;
+import org.nrg.containers.model.container.entity.ContainerArchiveEntity;
 import org.nrg.containers.model.container.entity.ContainerEntity;
 import org.nrg.containers.model.container.entity.ContainerEntityHistory;
 import org.nrg.containers.model.container.entity.ContainerEntityInput;
 import org.nrg.containers.model.container.entity.ContainerEntityMount;
 import org.nrg.containers.model.container.entity.ContainerEntityOutput;
 import org.nrg.containers.model.container.entity.ContainerMountFilesEntity;
+import org.nrg.containers.model.container.entity.FinalizationWorkEntity;
 import org.nrg.containers.model.server.docker.DockerServerEntity;
 import org.nrg.containers.services.CommandLabelService;
 import org.nrg.containers.services.CommandResolutionService;
 import org.nrg.containers.services.CommandService;
+import org.nrg.containers.services.ContainerCleanupService;
 import org.nrg.containers.services.ContainerEntityService;
 import org.nrg.containers.services.ContainerFinalizeService;
+import org.nrg.containers.services.ContainerQueueService;
 import org.nrg.containers.services.ContainerService;
+import org.nrg.containers.services.DockerHealthService;
 import org.nrg.containers.services.DockerHubService;
 import org.nrg.containers.services.DockerServerEntityService;
 import org.nrg.containers.services.DockerServerService;
 import org.nrg.containers.services.DockerService;
+import org.nrg.containers.services.FinalizationWorkService;
+import org.nrg.containers.services.ImageWarmerService;
 import org.nrg.containers.services.SetupCommandService;
+import org.nrg.containers.services.TaskLeaseService;
 import org.nrg.containers.services.impl.CommandLabelServiceImpl;
 import org.nrg.containers.services.impl.CommandResolutionServiceImpl;
 import org.nrg.containers.services.impl.ContainerFinalizeServiceImpl;
 import org.nrg.containers.services.impl.ContainerServiceImpl;
+import org.nrg.containers.services.impl.DockerHealthServiceImpl;
 import org.nrg.containers.services.impl.DockerServerServiceImpl;
 import org.nrg.containers.services.impl.DockerServiceImpl;
 import org.nrg.containers.services.impl.HibernateContainerEntityService;
 import org.nrg.containers.services.impl.HibernateDockerServerEntityService;
+import org.nrg.containers.services.impl.HibernateFinalizationWorkService;
 import org.nrg.containers.services.impl.SetupCommandServiceImpl;
 import org.nrg.framework.services.ContextService;
 import org.nrg.framework.services.NrgEventService;
@@ -61,6 +74,7 @@ import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Import;
 import org.springframework.orm.hibernate4.HibernateTransactionManager;
 import org.springframework.orm.hibernate4.LocalSessionFactoryBean;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.EnableTransactionManagement;
 import org.springframework.transaction.support.ResourceTransactionManager;
 import reactor.Environment;
@@ -82,12 +96,13 @@ public class IntegrationTestConfig {
     public DockerControlApi dockerControlApi(final DockerServerService dockerServerService,
                                              final CommandLabelService commandLabelService,
                                              final NrgEventService eventService) {
-        return new DockerControlApi(dockerServerService, commandLabelService, eventService);
+        return new DockerControlApi(dockerServerService, commandLabelService, eventService, new DockerCircuitBreaker());
     }
 
     @Bean
-    public DockerServerService dockerServerService(final DockerServerEntityService dockerServerEntityService) {
-        return new DockerServerServiceImpl(dockerServerEntityService);
+    public DockerServerService dockerServerService(final DockerServerEntityService dockerServerEntityService,
+                                                   final ContainerEntityService containerEntityService) {
+        return new DockerServerServiceImpl(dockerServerEntityService, containerEntityService);
     }
 
     @Bean
@@ -139,10 +154,31 @@ public class IntegrationTestConfig {
                                              final CommandResolutionService commandResolutionService,
                                              final AliasTokenService aliasTokenService,
                                              final SiteConfigPreferences siteConfigPreferences,
-                                             final ContainerFinalizeService containerFinalizeService) {
+                                             final ContainerFinalizeService containerFinalizeService,
+                                             final ImageWarmerService imageWarmerService,
+                                             final ContainerCleanupService containerCleanupService,
+                                             final ContainerQueueService containerQueueService,
+                                             final DockerServerService dockerServerService,
+                                             final FinalizationWorkService finalizationWorkService) {
         return new ContainerServiceImpl(containerControlApi, containerEntityService,
                         commandResolutionService, aliasTokenService, siteConfigPreferences,
-                        containerFinalizeService);
+                        containerFinalizeService, imageWarmerService, containerCleanupService, containerQueueService,
+                        Mockito.mock(ContainerServicePrefsBean.class), dockerServerService, finalizationWorkService);
+    }
+
+    @Bean
+    public ImageWarmerService mockImageWarmerService() {
+        return Mockito.mock(ImageWarmerService.class);
+    }
+
+    @Bean
+    public ContainerCleanupService mockContainerCleanupService() {
+        return Mockito.mock(ContainerCleanupService.class);
+    }
+
+    @Bean
+    public ContainerQueueService mockContainerQueueService() {
+        return Mockito.mock(ContainerQueueService.class);
     }
 
     @Bean
@@ -165,8 +201,17 @@ public class IntegrationTestConfig {
                                        final DockerHubService dockerHubService,
                                        final CommandService commandService,
                                        final DockerServerService dockerServerService,
-                                       final CommandLabelService commandLabelService) {
-        return new DockerServiceImpl(controlApi, dockerHubService, commandService, dockerServerService, commandLabelService);
+                                       final CommandLabelService commandLabelService,
+                                       final DockerHealthService dockerHealthService,
+                                       final ImageWarmerService imageWarmerService) {
+        return new DockerServiceImpl(controlApi, dockerHubService, commandService, dockerServerService, commandLabelService,
+                dockerHealthService, imageWarmerService);
+    }
+
+    @Bean
+    public DockerHealthService dockerHealthService(final ContainerControlApi controlApi,
+                                                   final DockerHubService dockerHubService) {
+        return new DockerHealthServiceImpl(controlApi, dockerHubService);
     }
 
     @Bean
@@ -178,8 +223,10 @@ public class IntegrationTestConfig {
     public ContainerFinalizeService containerFinalizeService(final ContainerControlApi containerControlApi,
                                                              final SiteConfigPreferences siteConfigPreferences,
                                                              final TransportService transportService,
-                                                             final CatalogService catalogService) {
-        return new ContainerFinalizeServiceImpl(containerControlApi, siteConfigPreferences, transportService, catalogService);
+                                                             final CatalogService catalogService,
+                                                             final DockerServerService dockerServerService) {
+        return new ContainerFinalizeServiceImpl(containerControlApi, siteConfigPreferences, transportService, catalogService,
+                dockerServerService);
     }
 
     @Bean
@@ -232,6 +279,18 @@ public class IntegrationTestConfig {
         return new ContainerEntityRepository();
     }
 
+    @Bean
+    public FinalizationWorkService finalizationWorkService(final PlatformTransactionManager transactionManager) {
+        final TaskLeaseService taskLeaseService = Mockito.mock(TaskLeaseService.class);
+        Mockito.when(taskLeaseService.getNodeId()).thenReturn("test-node");
+        return new HibernateFinalizationWorkService(taskLeaseService, transactionManager);
+    }
+
+    @Bean
+    public FinalizationWorkRepository finalizationWorkRepository() {
+        return new FinalizationWorkRepository();
+    }
+
     /*
     Session factory
      */
@@ -257,7 +316,9 @@ public class IntegrationTestConfig {
                 ContainerEntityInput.class,
                 ContainerEntityOutput.class,
                 ContainerEntityMount.class,
-                ContainerMountFilesEntity.class);
+                ContainerMountFilesEntity.class,
+                ContainerArchiveEntity.class,
+                FinalizationWorkEntity.class);
 
         return bean;
     }
@@ -2,13 +2,21 @@ package org.nrg.containers.config;
 
 import org.mockito.Mockito;
 import org.nrg.containers.api.ContainerControlApi;
+import org.nrg.containers.model.configuration.ContainerServicePrefsBean;
 import org.nrg.containers.rest.LaunchRestApi;
+import org.nrg.containers.services.BulkLaunchJobService;
+import org.nrg.containers.services.BulkLaunchService;
 import org.nrg.containers.services.CommandResolutionService;
 import org.nrg.containers.services.CommandService;
+import org.nrg.containers.services.ContainerCleanupService;
 import org.nrg.containers.services.ContainerEntityService;
 import org.nrg.containers.services.ContainerFinalizeService;
+import org.nrg.containers.services.ContainerQueueService;
 import org.nrg.containers.services.ContainerService;
 import org.nrg.containers.services.DockerServerService;
+import org.nrg.containers.services.FinalizationWorkService;
+import org.nrg.containers.services.ImageWarmerService;
+import org.nrg.containers.services.impl.BulkLaunchServiceImpl;
 import org.nrg.containers.services.impl.ContainerServiceImpl;
 import org.nrg.framework.services.ContextService;
 import org.nrg.transporter.TransportService;
@@ -38,9 +46,24 @@ public class LaunchRestApiTestConfig extends WebSecurityConfigurerAdapter {
     public LaunchRestApi launchRestApi(final CommandService commandService,
                                        final ContainerService containerService,
                                        final CommandResolutionService commandResolutionService,
+                                       final BulkLaunchService bulkLaunchService,
+                                       final BulkLaunchJobService bulkLaunchJobService,
                                        final UserManagementServiceI userManagementServiceI,
                                        final RoleHolder roleHolder) {
-        return new LaunchRestApi(commandService, containerService, commandResolutionService, userManagementServiceI, roleHolder);
+        return new LaunchRestApi(commandService, containerService, commandResolutionService, bulkLaunchService, bulkLaunchJobService, userManagementServiceI, roleHolder);
+    }
+
+    @Bean
+    public BulkLaunchService bulkLaunchService(final ContainerService containerService,
+                                               final CommandService commandService,
+                                               final CommandResolutionService commandResolutionService) {
+        return new BulkLaunchServiceImpl(containerService, commandService, commandResolutionService,
+                Mockito.mock(ContainerServicePrefsBean.class));
+    }
+
+    @Bean
+    public BulkLaunchJobService mockBulkLaunchJobService() {
+        return Mockito.mock(BulkLaunchJobService.class);
     }
 
     @Bean
@@ -49,10 +72,30 @@ public class LaunchRestApiTestConfig extends WebSecurityConfigurerAdapter {
                                              final CommandResolutionService commandResolutionService,
                                              final AliasTokenService aliasTokenService,
                                              final SiteConfigPreferences siteConfigPreferences,
-                                             final ContainerFinalizeService containerFinalizeService) {
+                                             final ContainerFinalizeService containerFinalizeService,
+                                             final ImageWarmerService imageWarmerService,
+                                             final ContainerCleanupService containerCleanupService,
+                                             final ContainerQueueService containerQueueService,
+                                             final DockerServerService dockerServerService) {
         return new ContainerServiceImpl(containerControlApi, containerEntityService,
                 commandResolutionService, aliasTokenService, siteConfigPreferences,
-                containerFinalizeService);
+                containerFinalizeService, imageWarmerService, containerCleanupService, containerQueueService,
+                Mockito.mock(ContainerServicePrefsBean.class), dockerServerService, Mockito.mock(FinalizationWorkService.class));
+    }
+
+    @Bean
+    public ImageWarmerService mockImageWarmerService() {
+        return Mockito.mock(ImageWarmerService.class);
+    }
+
+    @Bean
+    public ContainerCleanupService mockContainerCleanupService() {
+        return Mockito.mock(ContainerCleanupService.class);
+    }
+
+    @Bean
+    public ContainerQueueService mockContainerQueueService() {
+        return Mockito.mock(ContainerQueueService.class);
     }
 
     @Bean
@@ -0,0 +1,137 @@
+package org.nrg.containers.daos;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.nrg.containers.model.configuration.ContainerServicePrefsBean;
+import org.nrg.containers.model.container.ContainerAuditGranularity;
+import org.nrg.containers.model.container.entity.ContainerEntity;
+import org.nrg.containers.model.container.entity.ContainerEntityHistory;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.when;
+
+public class ContainerAuditFilterTest {
+    private static final String[] PROPERTY_NAMES = {"status", "statusTime"};
+    private static final int[] STATUS_DIRTY = {0};
+    private static final int[] STATUS_TIME_DIRTY = {1};
+
+    private ContainerServicePrefsBean mockPrefs;
+    private ContainerAuditFilter filter;
+    private ContainerEntity running;
+    private ContainerEntity complete;
+    private ContainerEntityHistory history;
+    private Object otherEntity;
+
+    @Before
+    public void setup() {
+        mockPrefs = Mockito.mock(ContainerServicePrefsBean.class);
+        filter = new ContainerAuditFilter(mockPrefs);
+
+        running = new ContainerEntity();
+        running.setStatus("Running");
+        complete = new ContainerEntity();
+        complete.setStatus("Complete");
+        history = new ContainerEntityHistory();
+        otherEntity = new Object();
+    }
+
+    @After
+    public void teardown() {
+        ContainerAuditFilter.resumeForCurrentThread();
+    }
+
+    @Test
+    public void testFull() {
+        when(mockPrefs.auditGranularity()).thenReturn(ContainerAuditGranularity.FULL);
+
+        assertThat(filter.shouldAuditInsert(running), is(true));
+        assertThat(filter.shouldAuditInsert(history), is(true));
+        assertThat(filter.shouldAuditUpdate(running, PROPERTY_NAMES, STATUS_TIME_DIRTY, null, null), is(true));
+        assertThat(filter.shouldAuditUpdate(history, PROPERTY_NAMES, STATUS_TIME_DIRTY, null, null), is(true));
+        assertThat(filter.shouldAuditCollectionChange(running), is(true));
+        assertThat(filter.shouldAuditDelete(history), is(true));
+    }
+
+    @Test
+    public void testEntity() {
+        when(mockPrefs.auditGranularity()).thenReturn(ContainerAuditGranularity.ENTITY);
+
+        assertThat(filter.shouldAuditInsert(running), is(true));
+        assertThat(filter.shouldAuditInsert(history), is(false));
+        assertThat(filter.shouldAuditUpdate(running, PROPERTY_NAMES, STATUS_TIME_DIRTY, null, null), is(true));
+        assertThat(filter.shouldAuditUpdate(history, PROPERTY_NAMES, STATUS_TIME_DIRTY, null, null), is(false));
+        assertThat(filter.shouldAuditCollectionChange(running), is(false));
+        assertThat(filter.shouldAuditDelete(running), is(true));
+        assertThat(filter.shouldAuditDelete(history), is(false));
+    }
+
+    @Test
+    public void testLifecycle() {
+        when(mockPrefs.auditGranularity()).thenReturn(ContainerAuditGranularity.LIFECYCLE);
+
+        assertThat(filter.shouldAuditInsert(running), is(true));
+        assertThat(filter.shouldAuditInsert(history), is(false));
+        assertThat(filter.shouldAuditDelete(running), is(true));
+        assertThat(filter.shouldAuditCollectionChange(running), is(false));
+
+        // Only the update that makes the status terminal
+        assertThat(filter.shouldAuditUpdate(running, PROPERTY_NAMES, STATUS_DIRTY, null, null), is(false));
+        assertThat(filter.shouldAuditUpdate(complete, PROPERTY_NAMES, STATUS_DIRTY, null, null), is(true));
+        assertThat(filter.shouldAuditUpdate(complete, PROPERTY_NAMES, STATUS_TIME_DIRTY, null, null), is(false));
+        assertThat(filter.shouldAuditUpdate(history, PROPERTY_NAMES, STATUS_DIRTY, null, null), is(false));
+
+        // Detached updates have no dirty properties, so compare the states
+        assertThat(filter.shouldAuditUpdate(complete, PROPERTY_NAMES, null,
+                new Object[]{"Running", null}, new Object[]{"Complete", null}), is(true));
+        assertThat(filter.shouldAuditUpdate(complete, PROPERTY_NAMES, null,
+                new Object[]{"Complete", null}, new Object[]{"Complete", null}), is(false));
+    }
+
+    @Test
+    public void testNone() {
+        when(mockPrefs.auditGranularity()).thenReturn(ContainerAuditGranularity.NONE);
+
+        assertThat(filter.shouldAuditInsert(running), is(false));
+        assertThat(filter.shouldAuditInsert(history), is(false));
+        assertThat(filter.shouldAuditUpdate(complete, PROPERTY_NAMES, STATUS_DIRTY, null, null), is(false));
+        assertThat(filter.shouldAuditCollectionChange(running), is(false));
+        assertThat(filter.shouldAuditDelete(running), is(false));
+    }
+
+    @Test
+    public void testOtherEntitiesAreAlwaysAudited() {
+        when(mockPrefs.auditGranularity()).thenReturn(ContainerAuditGranularity.NONE);
+
+        assertThat(filter.shouldAuditInsert(otherEntity), is(true));
+        assertThat(filter.shouldAuditUpdate(otherEntity, PROPERTY_NAMES, STATUS_DIRTY, null, null), is(true));
+        assertThat(filter.shouldAuditCollectionChange(otherEntity), is(true));
+        assertThat(filter.shouldAuditDelete(otherEntity), is(true));
+    }
+
+    @Test
+    public void testSuppressedThreadAuditsNothing() {
+        when(mockPrefs.auditGranularity()).thenReturn(ContainerAuditGranularity.FULL);
+
+        ContainerAuditFilter.suppressForCurrentThread();
+        assertThat(filter.granularity(), is(ContainerAuditGranularity.NONE));
+        assertThat(filter.shouldAuditInsert(running), is(false));
+
+        ContainerAuditFilter.resumeForCurrentThread();
+        assertThat(filter.shouldAuditInsert(running), is(true));
+    }
+
+    @Test
+    public void testUnreadablePreferenceAuditsEverything() {
+        when(mockPrefs.auditGranularity()).thenThrow(new RuntimeException("not yet"));
+
+        assertThat(filter.granularity(), is(ContainerAuditGranularity.FULL));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownGranularityIsRejected() {
+        ContainerAuditGranularity.fromName("everything");
+    }
+}
@@ -0,0 +1,144 @@
+package org.nrg.containers.events;
+
+import com.google.common.collect.ImmutableMap;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.nrg.containers.api.ContainerControlApi;
+import org.nrg.containers.model.configuration.ContainerServicePrefsBean;
+import org.nrg.containers.model.server.docker.DockerServerBase.DockerServer;
+import org.nrg.containers.services.ContainerService;
+import org.nrg.containers.services.DockerHealthService;
+import org.nrg.containers.services.DockerServerService;
+import org.nrg.containers.services.TaskLeaseService;
+import org.nrg.xft.schema.XFTManager;
+import org.powermock.core.classloader.annotations.PowerMockIgnore;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.powermock.api.mockito.PowerMockito.mockStatic;
+import static org.powermock.api.mockito.PowerMockito.when;
+
+@RunWith(PowerMockRunner.class)
+@PrepareForTest({XFTManager.class})
+@PowerMockIgnore({"org.apache.*", "java.*", "javax.*", "org.w3c.*", "com.sun.*"})
+public class DockerStatusUpdaterTest {
+    private static final String CONTAINER_ID = "abc123";
+
+    private ContainerControlApi mockControlApi;
+    private DockerServerService mockDockerServerService;
+    private DockerHealthService mockDockerHealthService;
+    private TaskLeaseService mockTaskLeaseService;
+    private ContainerService mockContainerService;
+    private DockerServer server;
+    private DockerStatusUpdater dockerStatusUpdater;
+
+    @Before
+    public void setup() throws Exception {
+        mockStatic(XFTManager.class);
+        when(XFTManager.isInitialized()).thenReturn(true);
+
+        mockControlApi = Mockito.mock(ContainerControlApi.class);
+        mockDockerServerService = Mockito.mock(DockerServerService.class);
+        mockDockerHealthService = Mockito.mock(DockerHealthService.class);
+        mockTaskLeaseService = Mockito.mock(TaskLeaseService.class);
+        mockContainerService = Mockito.mock(ContainerService.class);
+        final ContainerServicePrefsBean mockPrefs = Mockito.mock(ContainerServicePrefsBean.class);
+        when(mockPrefs.getStatusUpdaterLeaseSeconds()).thenReturn(30);
+
+        server = server(new Date());
+        when(mockDockerServerService.getServersInUse()).thenReturn(Collections.singletonList(server));
+        when(mockDockerServerService.retrieveServer()).thenReturn(server);
+        when(mockDockerHealthService.isServerReachable(any(DockerServer.class))).thenReturn(true);
+        when(mockTaskLeaseService.tryAcquire(anyString(), anyLong())).thenReturn(true);
+        when(mockContainerService.retrieveNonfinalizedContainerIds()).thenReturn(ImmutableMap.of(CONTAINER_ID, server.id()));
+
+        dockerStatusUpdater = new DockerStatusUpdater(mockControlApi, mockDockerServerService, mockContainerService,
+                mockDockerHealthService, mockTaskLeaseService, mockPrefs);
+    }
+
+    @Test
+    public void testSweepsOnStartupOnly() throws Exception {
+        dockerStatusUpdater.run();
+        dockerStatusUpdater.run();
+
+        verify(mockControlApi, times(1)).getExitEvents(server, Collections.singletonList(CONTAINER_ID));
+        verify(mockContainerService, times(1)).scheduleMissedFinalizations();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testReplayIsCappedAndSweepsForWhatItSkips() throws Exception {
+        dockerStatusUpdater.run();
+
+        final DockerServer behind = server(new Date(System.currentTimeMillis() - TimeUnit.HOURS.toMillis(3)));
+        when(mockDockerServerService.getServersInUse()).thenReturn(Collections.singletonList(behind));
+        dockerStatusUpdater.run();
+
+        final ArgumentCaptor<Date> since = ArgumentCaptor.forClass(Date.class);
+        verify(mockControlApi).throwContainerEvents(eq(behind), since.capture(), any(Date.class));
+        assertThat(since.getValue().getTime(), greaterThanOrEqualTo(System.currentTimeMillis() - TimeUnit.HOURS.toMillis(1)));
+        verify(mockControlApi).getExitEvents(eq(behind), any(Collection.class));
+        // Only the server that fell behind is swept again
+        verify(mockContainerService, times(1)).scheduleMissedFinalizations();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testSweepsWhenTheServerAnswersAgain() throws Exception {
+        dockerStatusUpdater.run();
+
+        when(mockDockerHealthService.isServerReachable(server)).thenReturn(false);
+        dockerStatusUpdater.run();
+        verify(mockControlApi, times(1)).getExitEvents(eq(server), any(Collection.class));
+
+        when(mockDockerHealthService.isServerReachable(server)).thenReturn(true);
+        dockerStatusUpdater.run();
+        verify(mockControlApi, times(2)).getExitEvents(eq(server), any(Collection.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testSweepsOnTakingTheLeaseOver() throws Exception {
+        dockerStatusUpdater.run();
+
+        when(mockTaskLeaseService.tryAcquire(anyString(), anyLong())).thenReturn(false);
+        dockerStatusUpdater.run();
+        verify(mockControlApi, times(1)).getExitEvents(eq(server), any(Collection.class));
+
+        when(mockTaskLeaseService.tryAcquire(anyString(), anyLong())).thenReturn(true);
+        dockerStatusUpdater.run();
+        verify(mockControlApi, times(2)).getExitEvents(eq(server), any(Collection.class));
+        verify(mockContainerService, times(2)).scheduleMissedFinalizations();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testUnreachableServerIsNotPolled() throws Exception {
+        when(mockDockerHealthService.isServerReachable(server)).thenReturn(false);
+        dockerStatusUpdater.run();
+
+        verify(mockControlApi, never()).throwContainerEvents(any(DockerServer.class), any(Date.class), any(Date.class));
+        verify(mockControlApi, never()).getExitEvents(any(DockerServer.class), any(Collection.class));
+    }
+
+    private static DockerServer server(final Date lastEventCheckTime) {
+        return DockerServer.create(1L, "server", "unix:///var/run/docker.sock", null, false, lastEventCheckTime);
+    }
+}
@@ -0,0 +1,179 @@
+package org.nrg.containers.jobs;
+
+import com.google.common.collect.Lists;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.nrg.containers.config.BulkLaunchJobTestConfig;
+import org.nrg.containers.daos.BulkLaunchItemRepository;
+import org.nrg.containers.model.bulklaunch.auto.BulkLaunchJob;
+import org.nrg.containers.model.bulklaunch.entity.BulkLaunchItemEntity;
+import org.nrg.containers.model.bulklaunch.entity.BulkLaunchJobEntity;
+import org.nrg.containers.model.command.auto.LaunchReport;
+import org.nrg.containers.services.BulkLaunchJobService;
+import org.nrg.containers.services.BulkLaunchService;
+import org.nrg.xdat.security.helpers.Users;
+import org.nrg.xft.schema.XFTManager;
+import org.nrg.xft.security.UserI;
+import org.powermock.core.classloader.annotations.PowerMockIgnore;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+import org.powermock.modules.junit4.PowerMockRunnerDelegate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallbackWithoutResult;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.powermock.api.mockito.PowerMockito.mockStatic;
+import static org.powermock.api.mockito.PowerMockito.when;
+
+@RunWith(PowerMockRunner.class)
+@PowerMockRunnerDelegate(SpringJUnit4ClassRunner.class)
+@PrepareForTest({XFTManager.class, Users.class})
+@PowerMockIgnore({"org.apache.*", "java.*", "javax.*", "org.w3c.*", "com.sun.*"})
+@ContextConfiguration(classes = BulkLaunchJobTestConfig.class)
+public class BulkLaunchJobDrainerTest {
+    private static final String INPUT = "session";
+    private static final long WRAPPER_ID = 10L;
+
+    @Autowired private BulkLaunchJobDrainer bulkLaunchJobDrainer;
+    @Autowired private BulkLaunchJobService bulkLaunchJobService;
+    @Autowired private BulkLaunchService mockBulkLaunchService;
+    @Autowired private BulkLaunchItemRepository bulkLaunchItemRepository;
+    @Autowired private PlatformTransactionManager transactionManager;
+
+    private UserI mockUser;
+
+    @Before
+    public void setup() throws Exception {
+        mockUser = Mockito.mock(UserI.class);
+        when(mockUser.getLogin()).thenReturn("me");
+
+        mockStatic(XFTManager.class);
+        when(XFTManager.isInitialized()).thenReturn(true);
+        mockStatic(Users.class);
+        when(Users.getUser("me")).thenReturn(mockUser);
+
+        Mockito.reset(mockBulkLaunchService);
+        when(mockBulkLaunchService.launch(anyString(), anyLong(), anyString(), anyLong(), any(List.class), any(UserI.class)))
+                .thenAnswer(new Answer<List<LaunchReport>>() {
+                    @Override
+                    @SuppressWarnings("unchecked")
+                    public List<LaunchReport> answer(final InvocationOnMock invocation) {
+                        final List<LaunchReport> reports = Lists.newArrayList();
+                        for (final Map<String, String> launchParams : (List<Map<String, String>>) invocation.getArguments()[4]) {
+                            reports.add(LaunchReport.ContainerSuccess.create("container-" + launchParams.get(INPUT), launchParams, null, WRAPPER_ID));
+                        }
+                        return reports;
+                    }
+                });
+    }
+
+    @Test
+    @DirtiesContext
+    @SuppressWarnings("unchecked")
+    public void testJobsTakeTurnsAChunkAtATime() throws Exception {
+        final BulkLaunchJob large = bulkLaunchJobService.create(null, 0L, null, WRAPPER_ID, launchParamSets(120), mockUser);
+        final BulkLaunchJob small = bulkLaunchJobService.create(null, 0L, null, WRAPPER_ID, launchParamSets(10), mockUser);
+
+        bulkLaunchJobDrainer.run();
+
+        final ArgumentCaptor<List> launched = ArgumentCaptor.forClass(List.class);
+        verify(mockBulkLaunchService, times(4)).launch(anyString(), anyLong(), anyString(), eq(WRAPPER_ID), launched.capture(), eq(mockUser));
+        final List<Integer> chunkSizes = Lists.newArrayList();
+        for (final List chunk : launched.getAllValues()) {
+            chunkSizes.add(chunk.size());
+        }
+        // The small job does not wait for the large one to finish
+        assertThat(chunkSizes, contains(50, 10, 50, 20));
+
+        assertThat(bulkLaunchJobService.getJob(large.id()).status(), is(BulkLaunchJobEntity.COMPLETE));
+        assertThat(bulkLaunchJobService.getJob(large.id()).succeeded(), is(120));
+        assertThat(bulkLaunchJobService.getJob(small.id()).status(), is(BulkLaunchJobEntity.COMPLETE));
+        assertThat(bulkLaunchJobService.getJob(small.id()).succeeded(), is(10));
+
+        // Nothing is launched twice
+        Mockito.reset(mockBulkLaunchService);
+        bulkLaunchJobDrainer.run();
+        verify(mockBulkLaunchService, never()).launch(anyString(), anyLong(), anyString(), anyLong(), any(List.class), any(UserI.class));
+    }
+
+    @Test
+    @DirtiesContext
+    @SuppressWarnings("unchecked")
+    public void testItemsAbandonedForAnHourAreFailed() throws Exception {
+        final BulkLaunchJob job = bulkLaunchJobService.create(null, 0L, null, WRAPPER_ID, launchParamSets(3), mockUser);
+
+        // A node claimed the first two items and went down. It claimed the first one over an hour ago.
+        final List<Long> claimedIds = Lists.newArrayList(bulkLaunchJobService.claimItems(job.id(), 2).keySet());
+        setClaimed(claimedIds.get(0), new Date(System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(61L)));
+
+        bulkLaunchJobDrainer.run();
+
+        final ArgumentCaptor<List> launched = ArgumentCaptor.forClass(List.class);
+        verify(mockBulkLaunchService, times(1)).launch(anyString(), anyLong(), anyString(), eq(WRAPPER_ID), launched.capture(), eq(mockUser));
+        assertThat((List<Map<String, String>>) launched.getValue(), contains(Collections.singletonMap(INPUT, "2")));
+
+        final BulkLaunchJob drained = bulkLaunchJobService.getJob(job.id());
+        assertThat(drained.succeeded(), is(1));
+        assertThat(drained.failed(), is(1));
+        // The item claimed recently may still be launching
+        assertThat(drained.status(), is(BulkLaunchJobEntity.RUNNING));
+    }
+
+    @Test
+    @DirtiesContext
+    @SuppressWarnings("unchecked")
+    public void testNothingRunsBeforeXftIsInitialized() throws Exception {
+        when(XFTManager.isInitialized()).thenReturn(false);
+        final BulkLaunchJob job = bulkLaunchJobService.create(null, 0L, null, WRAPPER_ID, launchParamSets(3), mockUser);
+
+        bulkLaunchJobDrainer.run();
+
+        verify(mockBulkLaunchService, never()).launch(anyString(), anyLong(), anyString(), anyLong(), any(List.class), any(UserI.class));
+        assertThat(bulkLaunchJobService.getJob(job.id()).status(), is(BulkLaunchJobEntity.PENDING));
+    }
+
+    private static List<Map<String, String>> launchParamSets(final int count) {
+        final List<Map<String, String>> launchParamSets = Lists.newArrayList();
+        for (int i = 0; i < count; i++) {
+            launchParamSets.add(Collections.singletonMap(INPUT, String.valueOf(i)));
+        }
+        return launchParamSets;
+    }
+
+    private void setClaimed(final long itemId, final Date claimed) {
+        new TransactionTemplate(transactionManager).execute(new TransactionCallbackWithoutResult() {
+            @Override
+            protected void doInTransactionWithoutResult(final TransactionStatus status) {
+                final BulkLaunchItemEntity item = bulkLaunchItemRepository.retrieve(itemId);
+                item.setClaimed(claimed);
+                bulkLaunchItemRepository.update(item);
+            }
+        });
+    }
+}
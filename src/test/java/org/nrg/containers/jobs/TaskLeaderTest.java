@@ -0,0 +1,83 @@
+package org.nrg.containers.jobs;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.nrg.containers.services.TaskLeaseService;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class TaskLeaderTest {
+    private static final String TASK = "task";
+    private static final long LEASE_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
+    private TaskLeaseService mockTaskLeaseService;
+    private TaskLeader taskLeader;
+
+    @Before
+    public void setup() {
+        mockTaskLeaseService = Mockito.mock(TaskLeaseService.class);
+        when(mockTaskLeaseService.getNodeId()).thenReturn("this-node");
+        taskLeader = new TaskLeader(mockTaskLeaseService, TASK);
+    }
+
+    @Test
+    public void testLeaderRenewsEveryRun() {
+        when(mockTaskLeaseService.tryAcquire(TASK, LEASE_MILLIS)).thenReturn(true);
+
+        assertThat(taskLeader.isLeader(LEASE_MILLIS), is(true));
+        assertThat(taskLeader.isLeader(LEASE_MILLIS), is(true));
+
+        verify(mockTaskLeaseService, times(2)).tryAcquire(TASK, LEASE_MILLIS);
+    }
+
+    @Test
+    public void testFollowerWaitsForTheLeaseToExpire() {
+        when(mockTaskLeaseService.tryAcquire(TASK, LEASE_MILLIS)).thenReturn(false);
+        when(mockTaskLeaseService.getExpiry(TASK)).thenReturn(new Date(System.currentTimeMillis() + LEASE_MILLIS));
+
+        assertThat(taskLeader.isLeader(LEASE_MILLIS), is(false));
+        assertThat(taskLeader.isLeader(LEASE_MILLIS), is(false));
+        assertThat(taskLeader.isLeader(LEASE_MILLIS), is(false));
+
+        // Only the first run went to the database
+        verify(mockTaskLeaseService, times(1)).tryAcquire(TASK, LEASE_MILLIS);
+    }
+
+    @Test
+    public void testFollowerTakesOverAnExpiredLease() {
+        when(mockTaskLeaseService.tryAcquire(TASK, LEASE_MILLIS)).thenReturn(false, true);
+        when(mockTaskLeaseService.getExpiry(TASK)).thenReturn(new Date(System.currentTimeMillis() - 1L));
+
+        assertThat(taskLeader.isLeader(LEASE_MILLIS), is(false));
+        assertThat(taskLeader.isLeader(LEASE_MILLIS), is(true));
+    }
+
+    @Test
+    public void testAFailedAttemptIsNotLeadership() {
+        when(mockTaskLeaseService.tryAcquire(anyString(), anyLong())).thenThrow(new RuntimeException("duplicate key"));
+
+        assertThat(taskLeader.isLeader(LEASE_MILLIS), is(false));
+    }
+
+    @Test
+    public void testResignReleasesOnlyAHeldLease() {
+        taskLeader.resign();
+        verify(mockTaskLeaseService, never()).release(TASK);
+
+        when(mockTaskLeaseService.tryAcquire(TASK, LEASE_MILLIS)).thenReturn(true);
+        taskLeader.isLeader(LEASE_MILLIS);
+        taskLeader.resign();
+        verify(mockTaskLeaseService).release(TASK);
+    }
+}
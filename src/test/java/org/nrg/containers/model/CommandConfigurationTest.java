@@ -8,6 +8,7 @@ import org.mockito.Mockito;
 import org.nrg.config.entities.Configuration;
 import org.nrg.config.services.ConfigService;
 import org.nrg.containers.config.CommandConfigurationTestConfig;
+import org.nrg.containers.model.command.auto.CommandResources;
 import org.nrg.containers.model.configuration.CommandConfigurationInternal;
 import org.nrg.containers.model.configuration.CommandConfigurationInternal.CommandInputConfiguration;
 import org.nrg.containers.model.configuration.CommandConfigurationInternal.CommandOutputConfiguration;
@@ -142,6 +143,33 @@ public class CommandConfigurationTest {
         assertThat(retrieved, is(expected));
     }
 
+    @Test
+    public void testProjectResourcesOverrideSiteResources() throws Exception {
+        final CommandConfigurationInternal site = CommandConfigurationInternal.builder()
+                .resources(CommandResources.builder().cpuLimit(2.0).memoryLimitMb(4096L).pidsLimit(100).build())
+                .build();
+        final CommandConfigurationInternal project = CommandConfigurationInternal.builder()
+                .resources(CommandResources.builder().memoryLimitMb(8192L).shmSizeMb(256L).build())
+                .build();
+        final CommandResources expected = CommandResources.builder()
+                .cpuLimit(2.0)
+                .memoryLimitMb(8192L)
+                .pidsLimit(100)
+                .shmSizeMb(256L)
+                .build();
+
+        final Configuration mockSiteConfiguration = Mockito.mock(Configuration.class);
+        when(mockSiteConfiguration.getContents()).thenReturn(mapper.writeValueAsString(site));
+        when(mockConfigService.getConfig(eq(TOOL_ID), anyString(), eq(Scope.Site), isNull(String.class))).thenReturn(mockSiteConfiguration);
+        final Configuration mockProjectConfiguration = Mockito.mock(Configuration.class);
+        when(mockProjectConfiguration.getContents()).thenReturn(mapper.writeValueAsString(project));
+        when(mockConfigService.getConfig(eq(TOOL_ID), anyString(), eq(Scope.Project), isNotNull(String.class))).thenReturn(mockProjectConfiguration);
+
+        final CommandConfigurationInternal retrieved =
+                containerConfigService.getProjectConfiguration(PROJECT_NAME, WRAPPER_ID);
+        assertThat(retrieved.resources(), is(expected));
+    }
+
     private CommandInputConfiguration.Builder allNotNullInputBuilder() {
         return CommandInputConfiguration.builder()
                 .defaultValue("who")
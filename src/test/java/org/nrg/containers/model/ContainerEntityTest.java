@@ -1,16 +1,23 @@
 package org.nrg.containers.model;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.Lists;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mockito;
 import org.nrg.containers.config.ContainerEntityTestConfig;
+import org.nrg.containers.daos.FinalizationWorkRepository;
 import org.nrg.containers.model.command.auto.Command;
 import org.nrg.containers.model.command.auto.ResolvedCommand;
 import org.nrg.containers.model.command.auto.ResolvedInputTreeNode;
 import org.nrg.containers.model.command.auto.ResolvedInputValue;
 import org.nrg.containers.model.container.auto.Container;
+import org.nrg.containers.model.container.auto.ContainerStats;
+import org.nrg.containers.model.container.auto.ServiceTask;
 import org.nrg.containers.model.container.entity.ContainerEntity;
+import org.nrg.containers.model.container.entity.ContainerEntityHistory;
+import org.nrg.containers.model.container.entity.FinalizationWorkEntity;
+import org.nrg.containers.services.ContainerArchiveService;
 import org.nrg.containers.services.ContainerEntityService;
 import org.nrg.xft.security.UserI;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -21,7 +28,9 @@ import org.springframework.test.context.transaction.TestTransaction;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.Collections;
+import java.util.Date;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import static org.hamcrest.Matchers.hasItem;
 import static org.hamcrest.Matchers.hasItems;
@@ -39,6 +48,8 @@ public class ContainerEntityTest {
 
     @Autowired private ObjectMapper mapper;
     @Autowired private ContainerEntityService containerEntityService;
+    @Autowired private ContainerArchiveService containerArchiveService;
+    @Autowired private FinalizationWorkRepository finalizationWorkRepository;
 
     @Test
     public void testSpringConfiguration() {
@@ -144,4 +155,314 @@ public class ContainerEntityTest {
         assertThat(nonfinalizedServices, hasSize(1));
         assertThat(nonfinalizedServices, hasItem(serviceNonfinalizedCreated));
     }
+
+    @Test
+    @DirtiesContext
+    public void testArchiveFinalizedContainers() throws Exception {
+        final Date longAgo = new Date(0L);
+        final ContainerEntity finalized = ContainerEntity.fromPojo(Container.builder()
+                .databaseId(0L)
+                .commandId(10L)
+                .wrapperId(100L)
+                .containerId("finalized")
+                .userId("me")
+                .dockerImage("whale")
+                .commandLine("exit 0")
+                .status("Complete")
+                .statusTime(longAgo)
+                .build());
+        finalized.setFinalized(true);
+        // Complete, but not finalized yet
+        final ContainerEntity finalizing = ContainerEntity.fromPojo(Container.builder()
+                .databaseId(0L)
+                .commandId(10L)
+                .wrapperId(100L)
+                .containerId("finalizing")
+                .userId("me")
+                .dockerImage("whale")
+                .commandLine("exit 0")
+                .status("Complete")
+                .statusTime(longAgo)
+                .build());
+        // Finalized, but its finalization work has not been marked finished
+        final ContainerEntity unfinishedWork = ContainerEntity.fromPojo(Container.builder()
+                .databaseId(0L)
+                .commandId(10L)
+                .wrapperId(100L)
+                .containerId("unfinished-work")
+                .userId("me")
+                .dockerImage("whale")
+                .commandLine("exit 0")
+                .status("Complete")
+                .statusTime(longAgo)
+                .build());
+        unfinishedWork.setFinalized(true);
+        final ContainerEntity running = ContainerEntity.fromPojo(Container.builder()
+                .databaseId(0L)
+                .commandId(10L)
+                .wrapperId(100L)
+                .containerId("running")
+                .userId("me")
+                .dockerImage("whale")
+                .commandLine("sleep 100")
+                .status("Running")
+                .statusTime(longAgo)
+                .build());
+
+        final ContainerEntity finalizedCreated = containerEntityService.create(finalized);
+        final ContainerEntity runningCreated = containerEntityService.create(running);
+        final ContainerEntity finalizingCreated = containerEntityService.create(finalizing);
+        final ContainerEntity unfinishedWorkCreated = containerEntityService.create(unfinishedWork);
+        finalizationWorkRepository.create(FinalizationWorkEntity.create(unfinishedWorkCreated.getId(), "me", "0", "Complete", 0L));
+
+        TestTransaction.flagForCommit();
+        TestTransaction.end();
+        TestTransaction.start();
+
+        assertThat(containerArchiveService.archiveFinalizedContainers(new Date(), 10), is(1));
+        assertThat(containerArchiveService.archiveFinalizedContainers(new Date(), 10), is(0));
+
+        assertThat(containerEntityService.retrieve(finalizedCreated.getId()), is(nullValue()));
+        assertThat(containerEntityService.retrieve(runningCreated.getId()), is(runningCreated));
+        assertThat(containerEntityService.retrieve(finalizingCreated.getId()), is(finalizingCreated));
+        assertThat(containerEntityService.retrieve(unfinishedWorkCreated.getId()), is(unfinishedWorkCreated));
+
+        final Container archived = containerArchiveService.getArchived("finalized");
+        assertThat(archived.databaseId(), is(finalizedCreated.getId()));
+        assertThat(archived.status(), is("Complete"));
+        assertThat(containerArchiveService.getArchived(String.valueOf(finalizedCreated.getId())), is(archived));
+        assertThat(containerArchiveService.getArchived(0, 10), hasSize(1));
+    }
+
+    @Test
+    @DirtiesContext
+    public void testComputeStats() throws Exception {
+        // Queued for a minute, then ran for two minutes before it was finalized
+        final ContainerEntity ran = statsContainer("ran", "Complete", true);
+        ran.setHistory(Lists.newArrayList(
+                historyItem(ContainerEntity.QUEUED, 0L),
+                historyItem("start", 60L),
+                historyItem("die", 150L),
+                historyItem("Complete", 180L)));
+        // A service task that ran for 20 seconds
+        final ContainerEntity serviceRan = statsContainer("service-ran", "Complete", true);
+        serviceRan.setHistory(Lists.newArrayList(
+                historyItem("Created", 0L),
+                historyItem("running", 10L),
+                historyItem("Complete", 30L)));
+        // Finalized without ever running, so it has no runtime
+        final ContainerEntity neverRan = statsContainer("never-ran", "Failed", true);
+        neverRan.setHistory(Lists.newArrayList(
+                historyItem("Created", 0L),
+                historyItem("Failed", 5L)));
+        // Complete, but not finalized yet
+        final ContainerEntity finalizing = statsContainer("finalizing", "Complete", false);
+        finalizing.setHistory(Lists.newArrayList(
+                historyItem("start", 0L),
+                historyItem("die", 1000L)));
+
+        containerEntityService.create(ran);
+        containerEntityService.create(serviceRan);
+        containerEntityService.create(neverRan);
+        containerEntityService.create(finalizing);
+
+        TestTransaction.flagForCommit();
+        TestTransaction.end();
+        TestTransaction.start();
+
+        final ContainerStats stats = containerEntityService.computeStats();
+        assertThat(stats.total(), is(4L));
+        assertThat(stats.byStatus().get("Complete"), is(3L));
+        assertThat(stats.byStatus().get("Failed"), is(1L));
+        assertThat(stats.byUser().get("me"), is(4L));
+        assertThat(stats.averageRuntimeSeconds(), is(70d));
+
+        assertThat(stats.byWrapper(), hasSize(1));
+        final ContainerStats.WrapperStats wrapperStats = stats.byWrapper().get(0);
+        assertThat(wrapperStats.wrapperId(), is(100L));
+        assertThat(wrapperStats.commandId(), is(10L));
+        assertThat(wrapperStats.count(), is(4L));
+        assertThat(wrapperStats.finalizedCount(), is(3L));
+        assertThat(wrapperStats.averageRuntimeSeconds(), is(70d));
+        assertThat(wrapperStats.p50RuntimeSeconds(), is(20d));
+        assertThat(wrapperStats.p95RuntimeSeconds(), is(120d));
+    }
+
+    @Test
+    @DirtiesContext
+    public void testClaimForFinalization() throws Exception {
+        final ContainerEntity running = ContainerEntity.fromPojo(Container.builder()
+                .databaseId(0L)
+                .commandId(10L)
+                .wrapperId(100L)
+                .containerId("running")
+                .userId("me")
+                .dockerImage("whale")
+                .commandLine("sleep 100")
+                .status("Running")
+                .build());
+        final ContainerEntity complete = ContainerEntity.fromPojo(Container.builder()
+                .databaseId(0L)
+                .commandId(10L)
+                .wrapperId(100L)
+                .containerId("complete")
+                .userId("me")
+                .dockerImage("whale")
+                .commandLine("exit 0")
+                .status("Complete")
+                .build());
+        complete.setFinalized(true);
+        // Saved before the finalized flag was recorded
+        final ContainerEntity legacyComplete = ContainerEntity.fromPojo(Container.builder()
+                .databaseId(0L)
+                .commandId(10L)
+                .wrapperId(100L)
+                .containerId("legacy")
+                .userId("me")
+                .dockerImage("whale")
+                .commandLine("exit 0")
+                .status("Complete")
+                .build());
+        legacyComplete.setFinalized(null);
+
+        final ContainerEntity runningCreated = containerEntityService.create(running);
+        final ContainerEntity completeCreated = containerEntityService.create(complete);
+        final ContainerEntity legacyCompleteCreated = containerEntityService.create(legacyComplete);
+
+        TestTransaction.flagForCommit();
+        TestTransaction.end();
+        TestTransaction.start();
+
+        assertThat(containerEntityService.claimForFinalization(runningCreated.getId()), is(true));
+        assertThat(containerEntityService.claimForFinalization(runningCreated.getId()), is(false));
+        assertThat(containerEntityService.claimForFinalization(completeCreated.getId()), is(false));
+        assertThat(containerEntityService.claimForFinalization(legacyCompleteCreated.getId()), is(false));
+
+        assertThat(containerEntityService.compareAndSetStatus(runningCreated.getId(), "Running", "Failed"), is(false));
+        assertThat(containerEntityService.compareAndSetStatus(runningCreated.getId(), ContainerEntity.FINALIZING, "Complete"), is(true));
+
+        TestTransaction.flagForCommit();
+        TestTransaction.end();
+        TestTransaction.start();
+
+        assertThat(containerEntityService.retrieve(runningCreated.getId()).getStatus(), is("Complete"));
+    }
+
+    @Test
+    @DirtiesContext
+    public void testClaimCompleteServiceForFinalization() throws Exception {
+        final UserI mockAdmin = Mockito.mock(UserI.class);
+        when(mockAdmin.getLogin()).thenReturn("admin");
+
+        final ContainerEntity service = ContainerEntity.fromPojo(Container.builder()
+                .databaseId(0L)
+                .commandId(10L)
+                .wrapperId(100L)
+                .userId("me")
+                .dockerImage("whale")
+                .commandLine("exit 0")
+                .serviceId("service")
+                .swarm(true)
+                .status("Running")
+                .statusTime(new Date(0L))
+                .build());
+        final ContainerEntity serviceCreated = containerEntityService.create(service);
+
+        // The task's state goes into the service's status before the service is finalized
+        final ServiceTask task = ServiceTask.builder()
+                .serviceId("service")
+                .taskId("task")
+                .nodeId("node")
+                .status("complete")
+                .statusTime(new Date())
+                .exitCode(0)
+                .build();
+        containerEntityService.addContainerHistoryItem(serviceCreated,
+                ContainerEntityHistory.fromPojo(Container.ContainerHistory.fromServiceTask(task)), mockAdmin);
+
+        TestTransaction.flagForCommit();
+        TestTransaction.end();
+        TestTransaction.start();
+
+        assertThat(containerEntityService.retrieve(serviceCreated.getId()).getStatus(), is("Complete"));
+        assertThat(containerEntityService.retrieve(serviceCreated.getId()).hasBeenFinalized(), is(false));
+        assertThat(containerEntityService.claimForFinalization(serviceCreated.getId()), is(true));
+        assertThat(containerEntityService.claimForFinalization(serviceCreated.getId()), is(false));
+        assertThat(containerEntityService.compareAndFinalize(serviceCreated.getId(), ContainerEntity.FINALIZING, "Complete"), is(true));
+
+        TestTransaction.flagForCommit();
+        TestTransaction.end();
+        TestTransaction.start();
+
+        final ContainerEntity finalized = containerEntityService.retrieve(serviceCreated.getId());
+        assertThat(finalized.getStatus(), is("Complete"));
+        assertThat(finalized.hasBeenFinalized(), is(true));
+        assertThat(containerEntityService.claimForFinalization(serviceCreated.getId()), is(false));
+    }
+
+    @Test
+    @DirtiesContext
+    public void testRequeueStaleDispatches() throws Exception {
+        final ContainerEntity stale = ContainerEntity.fromPojo(Container.builder()
+                .databaseId(0L)
+                .commandId(10L)
+                .wrapperId(100L)
+                .userId("me")
+                .dockerImage("whale")
+                .commandLine("exit 0")
+                .status(ContainerEntity.DISPATCHING)
+                .statusTime(new Date(0L))
+                .build());
+        final ContainerEntity dispatching = ContainerEntity.fromPojo(Container.builder()
+                .databaseId(0L)
+                .commandId(10L)
+                .wrapperId(100L)
+                .userId("me")
+                .dockerImage("whale")
+                .commandLine("exit 0")
+                .status(ContainerEntity.DISPATCHING)
+                .statusTime(new Date())
+                .build());
+        final ContainerEntity staleCreated = containerEntityService.create(stale);
+        final ContainerEntity dispatchingCreated = containerEntityService.create(dispatching);
+
+        TestTransaction.flagForCommit();
+        TestTransaction.end();
+        TestTransaction.start();
+
+        assertThat(containerEntityService.hasQueued(), is(false));
+        final Date cutoff = new Date(System.currentTimeMillis() - 60000L);
+        assertThat(containerEntityService.requeueStaleDispatches(cutoff), is(1));
+
+        TestTransaction.flagForCommit();
+        TestTransaction.end();
+        TestTransaction.start();
+
+        assertThat(containerEntityService.retrieve(staleCreated.getId()).getStatus(), is(ContainerEntity.QUEUED));
+        assertThat(containerEntityService.hasQueued(), is(true));
+        assertThat(containerEntityService.retrieve(dispatchingCreated.getId()).getStatus(), is(ContainerEntity.DISPATCHING));
+        assertThat(containerEntityService.requeueStaleDispatches(cutoff), is(0));
+    }
+
+    private static ContainerEntity statsContainer(final String containerId, final String status, final boolean finalized) {
+        final ContainerEntity containerEntity = ContainerEntity.fromPojo(Container.builder()
+                .databaseId(0L)
+                .commandId(10L)
+                .wrapperId(100L)
+                .containerId(containerId)
+                .userId("me")
+                .dockerImage("whale")
+                .commandLine("exit 0")
+                .status(status)
+                .statusTime(new Date())
+                .build());
+        containerEntity.setFinalized(finalized);
+        return containerEntity;
+    }
+
+    private static ContainerEntityHistory historyItem(final String status, final long seconds) {
+        final ContainerEntityHistory historyItem = ContainerEntityHistory.fromSystem(status, null);
+        historyItem.setTimeRecorded(new Date(TimeUnit.SECONDS.toMillis(seconds)));
+        return historyItem;
+    }
 }
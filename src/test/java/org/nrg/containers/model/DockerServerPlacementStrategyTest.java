@@ -0,0 +1,65 @@
+package org.nrg.containers.model;
+
+import com.google.common.collect.Lists;
+import org.junit.Test;
+import org.nrg.containers.model.server.docker.DockerServerLoad;
+import org.nrg.containers.model.server.docker.DockerServerPlacementStrategy;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class DockerServerPlacementStrategyTest {
+    private static final long GB = 1024L * 1024L * 1024L;
+
+    private final DockerServerLoad small = DockerServerLoad.create(1L, "small", 2, 8 * GB, 1);
+    private final DockerServerLoad big = DockerServerLoad.create(2L, "big", 3, 64 * GB, 4);
+    private final DockerServerLoad idle = DockerServerLoad.create(3L, "idle", 0, 4 * GB, 1);
+
+    @Test
+    public void testLeastContainers() {
+        assertThat(DockerServerPlacementStrategy.LEAST_CONTAINERS.choose(Lists.newArrayList(small, big, idle)), is(idle));
+    }
+
+    @Test
+    public void testMostFreeMemory() {
+        assertThat(DockerServerPlacementStrategy.MOST_FREE_MEMORY.choose(Lists.newArrayList(small, big, idle)), is(big));
+    }
+
+    @Test
+    public void testWeighted() {
+        // big: 4 / 4 = 1, idle: 1 / 1 = 1, small: 3 / 1 = 3. The tie goes to the server listed first.
+        assertThat(DockerServerPlacementStrategy.WEIGHTED.choose(Lists.newArrayList(small, big, idle)), is(big));
+        assertThat(DockerServerPlacementStrategy.WEIGHTED.choose(Lists.newArrayList(idle, big)), is(idle));
+    }
+
+    @Test
+    public void testPlacementsSinceTheLoadWasReadSpreadOut() {
+        final List<DockerServerLoad> loads = Lists.newArrayList(small, idle);
+        for (int placed = 0; placed < 4; placed++) {
+            final DockerServerLoad chosen = DockerServerPlacementStrategy.LEAST_CONTAINERS.choose(loads);
+            loads.set(loads.indexOf(chosen), chosen.plusOne());
+        }
+        assertThat(loads.get(0).runningContainers(), is(3));
+        assertThat(loads.get(1).runningContainers(), is(3));
+    }
+
+    @Test
+    public void testNoServers() {
+        assertThat(DockerServerPlacementStrategy.WEIGHTED.choose(Collections.<DockerServerLoad>emptyList()), is(nullValue()));
+    }
+
+    @Test
+    public void testFromName() {
+        assertThat(DockerServerPlacementStrategy.fromName("Most-Free-Memory"), is(DockerServerPlacementStrategy.MOST_FREE_MEMORY));
+        assertThat(DockerServerPlacementStrategy.fromName(null), is(DockerServerPlacementStrategy.LEAST_CONTAINERS));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testFromUnknownName() {
+        DockerServerPlacementStrategy.fromName("bogus");
+    }
+}
@@ -0,0 +1,95 @@
+package org.nrg.containers.model;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import org.junit.Test;
+import org.nrg.containers.model.command.auto.ResolvedCommand;
+import org.nrg.containers.model.command.auto.ResolvedCommand.ResolvedCommandOutput;
+import org.nrg.containers.model.command.auto.ResolvedCommandMount;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class ResolvedCommandBatchTest {
+    private static final ResolvedCommandMount MANIFEST_MOUNT = mount(ResolvedCommand.BATCH_MANIFEST_MOUNT, "/batch/manifest", "/build/abc", false);
+    private static final ResolvedCommandMount STATUS_MOUNT = mount(ResolvedCommand.BATCH_STATUS_MOUNT, "/batch/status", "/build/abc/status", true);
+
+    @Test
+    public void testItemsAreMountedUnderTheirIndexAndNamedForIt() throws Exception {
+        final ResolvedCommand batch = ResolvedCommand.batch(Lists.newArrayList(item("A"), item("B")), MANIFEST_MOUNT, STATUS_MOUNT);
+
+        assertThat(batch.isBatch(), is(true));
+        assertThat(batch.image(), is("image-A"));
+        assertThat(batch.commandLine(), is("run A"));
+        assertThat(batch.rawInputValues(), is((Map<String, String>) ImmutableMap.of("session[0]", "A", "session[1]", "B")));
+        assertThat(batch.environmentVariables().get(ResolvedCommand.BATCH_MANIFEST_ENV), is("/batch/manifest/" + ResolvedCommand.BATCH_MANIFEST_FILE));
+        assertThat(batch.environmentVariables().get(ResolvedCommand.BATCH_STATUS_ENV), is("/batch/status"));
+
+        final List<String> mountNames = Lists.newArrayList();
+        final List<String> mountPaths = Lists.newArrayList();
+        for (final ResolvedCommandMount mount : batch.mounts()) {
+            mountNames.add(mount.name());
+            mountPaths.add(mount.containerPath());
+        }
+        assertThat(mountNames, contains(ResolvedCommand.BATCH_MANIFEST_MOUNT, ResolvedCommand.BATCH_STATUS_MOUNT,
+                "in[0]", "out[0]", "in[1]", "out[1]"));
+        assertThat(mountPaths, contains("/batch/manifest", "/batch/status",
+                "/batch/0/input", "/batch/0/output", "/batch/1/input", "/batch/1/output"));
+
+        final ResolvedCommandOutput secondOutput = batch.outputs().get(1);
+        assertThat(secondOutput.name(), is("result[1]"));
+        assertThat(secondOutput.mount(), is("out[1]"));
+        assertThat(secondOutput.handledByWrapperInput(), is("session[1]"));
+    }
+
+    @Test
+    public void testItemNamesRoundTrip() throws Exception {
+        assertThat(ResolvedCommand.batchItemName("session", 12), is("session[12]"));
+        assertThat(ResolvedCommand.batchItemIndex("session[12]"), is(12));
+        assertThat(ResolvedCommand.batchItemIndex("session"), is(nullValue()));
+        assertThat(ResolvedCommand.batchItemContainerPath("relative", 3), is("/batch/3/relative"));
+
+        final List<Map<String, String>> items = ResolvedCommand.splitBatchItems(
+                ImmutableMap.of("session[1]", "B", "flag[0]", "x", "session[0]", "A", "unqualified", "ignored"));
+        assertThat(items, contains(
+                (Map<String, String>) ImmutableMap.of("flag", "x", "session", "A"),
+                (Map<String, String>) ImmutableMap.of("session", "B")));
+    }
+
+    private static ResolvedCommand item(final String session) {
+        return ResolvedCommand.builder()
+                .wrapperId(1L)
+                .wrapperName("wrapper")
+                .commandId(2L)
+                .commandName("command")
+                .image("image-" + session)
+                .commandLine("run " + session)
+                .addRawInputValue("session", session)
+                .addMount(mount("in", "/input", "/archive/" + session, false))
+                .addMount(mount("out", "/output", "/build/" + session, true))
+                .addOutput(ResolvedCommandOutput.builder()
+                        .name("result")
+                        .type("Resource")
+                        .required(true)
+                        .mount("out")
+                        .label("RESULT")
+                        .handledByWrapperInput("session")
+                        .build())
+                .build();
+    }
+
+    private static ResolvedCommandMount mount(final String name, final String containerPath, final String hostPath, final boolean writable) {
+        return ResolvedCommandMount.builder()
+                .name(name)
+                .containerPath(containerPath)
+                .xnatHostPath(hostPath)
+                .containerHostPath(hostPath)
+                .writable(writable)
+                .build();
+    }
+}
@@ -14,7 +14,9 @@ import org.nrg.containers.model.command.auto.Command;
 import org.nrg.containers.model.command.auto.Command.CommandInput;
 import org.nrg.containers.model.command.auto.Command.CommandOutput;
 import org.nrg.containers.model.command.auto.Command.CommandWrapper;
+import org.nrg.containers.model.command.auto.CommandResources;
 import org.nrg.containers.model.command.entity.CommandEntity;
+import org.nrg.containers.model.configuration.CommandCatalogReport;
 import org.nrg.containers.model.configuration.CommandConfiguration;
 import org.nrg.containers.model.configuration.CommandConfigurationInternal;
 import org.nrg.containers.services.CommandEntityService;
@@ -25,6 +27,7 @@ import org.nrg.xdat.security.services.UserManagementServiceI;
 import org.nrg.xft.security.UserI;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.security.authentication.TestingAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.test.context.ContextConfiguration;
@@ -36,7 +39,9 @@ import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 import org.springframework.web.context.WebApplicationContext;
 
 import java.io.File;
+import java.util.Collections;
 
+import static org.hamcrest.Matchers.notNullValue;
 import static org.hamcrest.core.Is.is;
 import static org.junit.Assert.assertThat;
 import static org.mockito.Matchers.anyString;
@@ -44,6 +49,7 @@ import static org.mockito.Matchers.eq;
 import static org.mockito.Matchers.isNull;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.authentication;
@@ -55,6 +61,7 @@ import static org.springframework.test.web.servlet.request.MockMvcRequestBuilder
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @RunWith(SpringJUnit4ClassRunner.class)
@@ -64,6 +71,7 @@ public class CommandConfigurationRestApiTest {
     private UserI mockAdmin;
     private Authentication authentication;
     private MockMvc mockMvc;
+    private Command command;
     private CommandConfiguration commandConfiguration;
     private String commandConfigurationJson;
     private String commandConfigurationInternalJson;
@@ -118,7 +126,7 @@ public class CommandConfigurationRestApiTest {
                 .id(wrapperId)
                 .name(wrapperName)
                 .build();
-        final Command command = Command.builder()
+        command = Command.builder()
                 .id(commandId)
                 .name("aCommand")
                 .type("docker")
@@ -128,6 +136,7 @@ public class CommandConfigurationRestApiTest {
                 .build();
         when(mockCommandEntityService.getWrapperId(commandId, wrapperName)).thenReturn(wrapperId);
         when(mockCommandEntityService.getCommandByWrapperId(wrapperId)).thenReturn(CommandEntity.fromPojo(command));
+        when(mockCommandEntityService.getAll()).thenReturn(Collections.singletonList(CommandEntity.fromPojo(command)));
 
         // Create a command configuration
         final CommandConfigurationInternal commandConfigurationInternal = CommandConfigurationInternal.builder()
@@ -204,6 +213,28 @@ public class CommandConfigurationRestApiTest {
                 .andExpect(status().isCreated());
     }
 
+    @Test
+    public void testCreateSiteConfigWithUnusableResources() throws Exception {
+        final CommandConfiguration withResources = CommandConfiguration.create(command, command.xnatCommandWrappers().get(0),
+                CommandConfigurationInternal.builder()
+                        .enabled(true)
+                        .resources(CommandResources.builder().memoryLimitMb(1024L).memoryReservationMb(2048L).build())
+                        .build());
+
+        final MockHttpServletRequestBuilder request =
+                post(siteConfigRestPath)
+                        .content(mapper.writeValueAsString(withResources))
+                        .contentType(JSON)
+                        .with(authentication(authentication))
+                        .with(csrf())
+                        .with(testSecurityContext());
+
+        mockMvc.perform(request)
+                .andExpect(status().isBadRequest());
+        verify(mockConfigService, never()).replaceConfig(anyString(), anyString(), anyString(), anyString(),
+                anyString(), eq(Scope.Site), isNull(String.class));
+    }
+
     @Test
     public void testGetSiteConfig() throws Exception {
         when(mockConfigService
@@ -233,6 +264,51 @@ public class CommandConfigurationRestApiTest {
         assertThat(commandConfigurationResponse, is(commandConfiguration));
     }
 
+    @Test
+    public void testGetSiteCatalog() throws Exception {
+        when(mockConfigService
+                .getConfig(
+                        eq(ContainerConfigService.TOOL_ID),
+                        eq(configPath),
+                        eq(Scope.Site),
+                        isNull(String.class)
+                ))
+                .thenReturn(mockConfig);
+
+        final MockHttpServletRequestBuilder request =
+                get("/commands/catalog")
+                        .with(authentication(authentication))
+                        .with(csrf())
+                        .with(testSecurityContext());
+
+        final MockHttpServletResponse response =
+                mockMvc.perform(request)
+                        .andExpect(status().isOk())
+                        .andExpect(content().contentType(JSON))
+                        .andReturn()
+                        .getResponse();
+
+        final CommandCatalogReport report = mapper.readValue(response.getContentAsString(), CommandCatalogReport.class);
+        final long wrapperId = command.xnatCommandWrappers().get(0).id();
+        assertThat(report.commands().size(), is(1));
+        assertThat(report.wrappers().get(wrapperId).enabledForSite(), is(true));
+        assertThat(report.wrappers().get(wrapperId).configuration(), is(commandConfiguration));
+
+        // Nothing changed, so the same ETag should get us a 304
+        final String etag = response.getHeader("ETag");
+        assertThat(etag, is(notNullValue()));
+        final MockHttpServletRequestBuilder conditionalRequest =
+                get("/commands/catalog")
+                        .header("If-None-Match", etag)
+                        .with(authentication(authentication))
+                        .with(csrf())
+                        .with(testSecurityContext());
+
+        mockMvc.perform(conditionalRequest)
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", etag));
+    }
+
     @Test
     public void testDeleteSiteConfig() throws Exception {
         when(mockConfigService
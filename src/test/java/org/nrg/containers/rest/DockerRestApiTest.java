@@ -663,6 +663,48 @@ public class DockerRestApiTest {
         assertThat(responseList, everyItem(isIn(expected)));
     }
 
+    @Test
+    public void testImageSummariesAreCached() throws Exception {
+        final String path = "/docker/image-summaries";
+
+        final DockerImage image = DockerImage.builder()
+                .imageId("sha256:cached")
+                .addTag("xnat/cached:1.0")
+                .build();
+        final Command command = Command.builder()
+                .name("cached")
+                .image("xnat/cached:1.0")
+                .build();
+
+        Mockito.reset(mockCommandService);
+        doReturn(Lists.newArrayList(image)).when(mockContainerControlApi).getAllImages();
+        when(mockCommandService.getAll()).thenReturn(Lists.newArrayList(command));
+        when(mockCommandService.getCatalogVersion()).thenReturn(1L);
+
+        final MockHttpServletRequestBuilder request = get(path)
+                .with(authentication(NONADMIN_AUTH))
+                .with(csrf()).with(testSecurityContext());
+
+        // Same images, same commands: computed once
+        mockMvc.perform(request).andExpect(status().isOk());
+        mockMvc.perform(request).andExpect(status().isOk());
+        verify(mockCommandService, times(1)).getAll();
+
+        // The commands changed
+        when(mockCommandService.getCatalogVersion()).thenReturn(2L);
+        mockMvc.perform(request).andExpect(status().isOk());
+        verify(mockCommandService, times(2)).getAll();
+
+        // The images changed
+        final DockerImage newImage = DockerImage.builder()
+                .imageId("sha256:new")
+                .addTag("xnat/new:1.0")
+                .build();
+        doReturn(Lists.newArrayList(image, newImage)).when(mockContainerControlApi).getAllImages();
+        mockMvc.perform(request).andExpect(status().isOk());
+        verify(mockCommandService, times(3)).getAll();
+    }
+
     @Test
     public void testListHash() throws Exception {
         // This is to test a question I have.
@@ -19,9 +19,13 @@ import org.junit.runner.RunWith;
 import org.mockito.ArgumentMatcher;
 import org.mockito.Matchers;
 import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.nrg.containers.api.ContainerControlApi;
 import org.nrg.containers.config.LaunchRestApiTestConfig;
 import org.nrg.containers.exceptions.CommandResolutionException;
+import org.nrg.containers.model.bulklaunch.auto.BulkLaunchJob;
+import org.nrg.containers.model.bulklaunch.entity.BulkLaunchJobEntity;
 import org.nrg.containers.model.command.auto.Command.CommandWrapper;
 import org.nrg.containers.model.command.auto.LaunchReport;
 import org.nrg.containers.model.command.auto.LaunchUi;
@@ -29,6 +33,7 @@ import org.nrg.containers.model.command.auto.ResolvedCommand;
 import org.nrg.containers.model.configuration.CommandConfiguration;
 import org.nrg.containers.model.container.auto.Container;
 import org.nrg.containers.model.container.entity.ContainerEntity;
+import org.nrg.containers.services.BulkLaunchJobService;
 import org.nrg.containers.services.CommandResolutionService;
 import org.nrg.containers.services.CommandService;
 import org.nrg.containers.services.ContainerEntityService;
@@ -52,6 +57,7 @@ import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 import org.springframework.web.context.WebApplicationContext;
 
 import java.io.File;
+import java.io.Writer;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
@@ -67,7 +73,11 @@ import static org.mockito.Matchers.anyMap;
 import static org.mockito.Matchers.anyMapOf;
 import static org.mockito.Matchers.argThat;
 import static org.mockito.Matchers.eq;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.nrg.containers.model.server.docker.DockerServerBase.*;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.authentication;
@@ -76,6 +86,8 @@ import static org.springframework.security.test.web.servlet.request.SecurityMock
 import static org.springframework.security.test.web.servlet.setup.SecurityMockMvcConfigurers.springSecurity;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @RunWith(SpringJUnit4ClassRunner.class)
@@ -114,6 +126,7 @@ public class LaunchRestApiTest {
     @Autowired private DockerServerService mockDockerServerService;
     @Autowired private SiteConfigPreferences mockSiteConfigPreferences;
     @Autowired private UserManagementServiceI mockUserManagementServiceI;
+    @Autowired private BulkLaunchJobService mockBulkLaunchJobService;
     @Autowired private ObjectMapper mapper;
 
     @Rule public TemporaryFolder folder = new TemporaryFolder(new File("/tmp"));
@@ -148,6 +161,8 @@ public class LaunchRestApiTest {
         final String containerHost = "unix:///var/run/docker.sock";
         final DockerServer dockerServer = DockerServer.create(0L, containerServerName, containerHost, null, false);
         when(mockDockerServerService.getServer()).thenReturn(dockerServer);
+        when(mockDockerServerService.getEnabledServers()).thenReturn(Collections.singletonList(dockerServer));
+        when(mockDockerServerService.getServerFor(any(Container.class))).thenReturn(dockerServer);
 
         // Mock the userI
         final String url = "mock://url";
@@ -198,8 +213,8 @@ public class LaunchRestApiTest {
         when(mockContainerEntityService.save(containerEntity, mockAdmin)).thenReturn(containerEntity);
 
         // We have to match any resolved command because spring will add a csrf token to the inputs. I don't know how to get that token in advance.
-        when(mockDockerControlApi.createContainerOrSwarmService(any(ResolvedCommand.class), eq(mockAdmin))).thenReturn(CONTAINER);
-        doNothing().when(mockDockerControlApi).startContainer(FAKE_CONTAINER_ID);
+        when(mockDockerControlApi.createContainerOrSwarmService(eq(dockerServer), any(ResolvedCommand.class), eq(mockAdmin))).thenReturn(CONTAINER);
+        doNothing().when(mockDockerControlApi).startContainer(dockerServer, FAKE_CONTAINER_ID);
         // when(mockContainerEntityService.save(any(ResolvedCommand.class), eq(FAKE_CONTAINER_ID), any(String.class), eq(mockAdmin)))
         //         .thenReturn(CONTAINER_ENTITY);
     }
@@ -357,6 +372,79 @@ public class LaunchRestApiTest {
         assertThat(actualLaunchUi, is(expectedLaunchUi));
     }
 
+    @Test
+    public void testBulkLaunchJobReportsAreStreamedToTheOwner() throws Exception {
+        final String reportsPath = "/bulklaunch/jobs/%d/reports";
+        final long jobId = 5L;
+        final String ndjson = "{\"status\":\"success\"}\n{\"status\":\"failure\"}\n";
+
+        Mockito.reset(mockBulkLaunchJobService);
+        when(mockBulkLaunchJobService.getJob(jobId)).thenReturn(bulkLaunchJob(jobId, mockAdmin.getLogin()));
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(final InvocationOnMock invocation) throws Throwable {
+                ((Writer) invocation.getArguments()[1]).write(ndjson);
+                return null;
+            }
+        }).when(mockBulkLaunchJobService).writeReports(eq(jobId), any(Writer.class));
+
+        final MockHttpServletRequestBuilder request = get(String.format(reportsPath, jobId))
+                .with(authentication(authentication))
+                .with(csrf())
+                .with(testSecurityContext());
+
+        mockMvc.perform(request)
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Type", "application/x-ndjson"))
+                .andExpect(content().string(ndjson));
+    }
+
+    @Test
+    public void testBulkLaunchJobIsHiddenFromOtherUsers() throws Exception {
+        final long jobId = 5L;
+        final UserI mockOtherUser = Mockito.mock(UserI.class);
+        when(mockOtherUser.getLogin()).thenReturn("someone-else");
+        final Authentication otherUserAuthentication = new TestingAuthenticationToken(mockOtherUser, "pass");
+
+        Mockito.reset(mockBulkLaunchJobService);
+        when(mockBulkLaunchJobService.getJob(jobId)).thenReturn(bulkLaunchJob(jobId, mockAdmin.getLogin()));
+
+        for (final String path : Lists.newArrayList("/bulklaunch/jobs/%d", "/bulklaunch/jobs/%d/reports")) {
+            final MockHttpServletRequestBuilder request = get(String.format(path, jobId))
+                    .with(authentication(otherUserAuthentication))
+                    .with(csrf())
+                    .with(testSecurityContext());
+            mockMvc.perform(request).andExpect(status().isNotFound());
+        }
+        verify(mockBulkLaunchJobService, never()).writeReports(anyLong(), any(Writer.class));
+    }
+
+    @Test
+    public void testAdminCanSeeOtherUsersBulkLaunchJobs() throws Exception {
+        final long jobId = 5L;
+        final BulkLaunchJob job = bulkLaunchJob(jobId, "someone-else");
+
+        Mockito.reset(mockBulkLaunchJobService);
+        when(mockBulkLaunchJobService.getJob(jobId)).thenReturn(job);
+
+        final MockHttpServletRequestBuilder request = get(String.format("/bulklaunch/jobs/%d", jobId))
+                .with(authentication(authentication))
+                .with(csrf())
+                .with(testSecurityContext());
+
+        final String response = mockMvc.perform(request)
+                .andExpect(status().isOk())
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+        assertThat(mapper.readValue(response, BulkLaunchJob.class), is(job));
+    }
+
+    private static BulkLaunchJob bulkLaunchJob(final long jobId, final String userId) {
+        return BulkLaunchJob.create(jobId, userId, null, null, null, 10L, BulkLaunchJobEntity.RUNNING,
+                2, 2, 1, 1, null, null);
+    }
+
     @SuppressWarnings("unchecked")
     private ArgumentMatcher<Map<String, String>> isMapWithEntry(final String key, final String value) {
         return new ArgumentMatcher<Map<String, String>>() {
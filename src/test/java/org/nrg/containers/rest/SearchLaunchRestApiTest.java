@@ -0,0 +1,189 @@
+package org.nrg.containers.rest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.nrg.containers.config.LaunchRestApiTestConfig;
+import org.nrg.containers.model.bulklaunch.auto.BulkLaunchJob;
+import org.nrg.containers.model.bulklaunch.entity.BulkLaunchJobEntity;
+import org.nrg.containers.services.BulkLaunchJobService;
+import org.nrg.xft.XFTTable;
+import org.nrg.xft.db.MaterializedView;
+import org.nrg.xft.db.MaterializedViewI;
+import org.nrg.xft.security.UserI;
+import org.powermock.core.classloader.annotations.PowerMockIgnore;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+import org.powermock.modules.junit4.PowerMockRunnerDelegate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.test.context.web.WebAppConfiguration;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Matchers.isNull;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.powermock.api.mockito.PowerMockito.mockStatic;
+import static org.powermock.api.mockito.PowerMockito.when;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.authentication;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.testSecurityContext;
+import static org.springframework.security.test.web.servlet.setup.SecurityMockMvcConfigurers.springSecurity;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@RunWith(PowerMockRunner.class)
+@PowerMockRunnerDelegate(SpringJUnit4ClassRunner.class)
+@PrepareForTest({MaterializedView.class})
+@PowerMockIgnore({"org.apache.*", "java.*", "javax.*", "org.w3c.*", "com.sun.*"})
+@WebAppConfiguration
+@ContextConfiguration(classes = LaunchRestApiTestConfig.class)
+public class SearchLaunchRestApiTest {
+    private static final long WRAPPER_ID = 10L;
+    private static final String SEARCH_ID = "search123";
+    private static final String ROOT_ELEMENT = "session";
+    private static final int PAGE_SIZE = 500;
+
+    private UserI mockUser;
+    private Authentication authentication;
+    private MockMvc mockMvc;
+    private MaterializedViewI mockSearch;
+    private List<Map<String, String>> storedLaunchParamSets;
+
+    @Autowired private WebApplicationContext wac;
+    @Autowired private BulkLaunchJobService mockBulkLaunchJobService;
+    @Autowired private ObjectMapper mapper;
+
+    @Before
+    public void setup() throws Exception {
+        mockMvc = MockMvcBuilders.webAppContextSetup(wac).apply(springSecurity()).build();
+
+        mockUser = Mockito.mock(UserI.class);
+        when(mockUser.getLogin()).thenReturn("me");
+        authentication = new TestingAuthenticationToken(mockUser, "pass");
+
+        mockSearch = Mockito.mock(MaterializedViewI.class);
+        when(mockSearch.getUser_name()).thenReturn("me");
+        mockStatic(MaterializedView.class);
+        when(MaterializedView.retrieveView(eq(SEARCH_ID), any(UserI.class))).thenReturn(mockSearch);
+
+        // Read every page, as the real service would, and keep what it stored
+        storedLaunchParamSets = Lists.newArrayList();
+        Mockito.reset(mockBulkLaunchJobService);
+        when(mockBulkLaunchJobService.create(anyString(), anyLong(), anyString(), anyLong(),
+                any(BulkLaunchJobService.LaunchParamPages.class), any(UserI.class)))
+                .thenAnswer(new Answer<BulkLaunchJob>() {
+                    @Override
+                    public BulkLaunchJob answer(final InvocationOnMock invocation) throws Throwable {
+                        final BulkLaunchJobService.LaunchParamPages pages = (BulkLaunchJobService.LaunchParamPages) invocation.getArguments()[4];
+                        for (List<Map<String, String>> page = pages.nextPage(); !page.isEmpty(); page = pages.nextPage()) {
+                            storedLaunchParamSets.addAll(page);
+                        }
+                        return BulkLaunchJob.create(1L, "me", (String) invocation.getArguments()[0], null, null, WRAPPER_ID,
+                                BulkLaunchJobEntity.PENDING, storedLaunchParamSets.size(), 0, 0, 0, null, null);
+                    }
+                });
+    }
+
+    @Test
+    public void testSearchResultsAreReadAPageAtATimeIntoAJob() throws Exception {
+        // A full page, a page whose keys are all empty, then the last page
+        final List<Object[]> firstPage = Lists.newArrayList();
+        for (int i = 0; i < PAGE_SIZE; i++) {
+            firstPage.add(new Object[]{"label-" + i, "XNAT_E" + i});
+        }
+        stubPage(0, firstPage);
+        stubPage(PAGE_SIZE, Lists.<Object[]>newArrayList(new Object[]{"no key", null}));
+        stubPage(PAGE_SIZE + 1, Lists.<Object[]>newArrayList(new Object[]{"last", "XNAT_E_last"}));
+        stubPage(PAGE_SIZE + 2, Lists.<Object[]>newArrayList());
+
+        final String response = mockMvc.perform(searchLaunch("/wrappers/%d/searchlaunch", "{\"flag\": \"true\"}"))
+                .andExpect(status().isAccepted())
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+
+        final BulkLaunchJob job = mapper.readValue(response, BulkLaunchJob.class);
+        assertThat(job.items(), is(PAGE_SIZE + 1));
+        assertThat(storedLaunchParamSets.get(0), is((Map<String, String>) ImmutableMap.of(ROOT_ELEMENT, "XNAT_E0", "flag", "true")));
+        assertThat(storedLaunchParamSets.get(PAGE_SIZE), is((Map<String, String>) ImmutableMap.of(ROOT_ELEMENT, "XNAT_E_last", "flag", "true")));
+        verify(mockBulkLaunchJobService).create(isNull(String.class), eq(0L), isNull(String.class), eq(WRAPPER_ID),
+                any(BulkLaunchJobService.LaunchParamPages.class), eq(mockUser));
+    }
+
+    @Test
+    public void testProjectSearchLaunchCreatesAProjectJob() throws Exception {
+        stubPage(0, Lists.<Object[]>newArrayList(new Object[]{"label", "XNAT_E1"}));
+        stubPage(1, Lists.<Object[]>newArrayList());
+
+        mockMvc.perform(searchLaunch("/projects/project1/wrappers/%d/searchlaunch", null))
+                .andExpect(status().isAccepted());
+
+        assertThat(storedLaunchParamSets, contains((Map<String, String>) ImmutableMap.of(ROOT_ELEMENT, "XNAT_E1")));
+        verify(mockBulkLaunchJobService).create(eq("project1"), eq(0L), isNull(String.class), eq(WRAPPER_ID),
+                any(BulkLaunchJobService.LaunchParamPages.class), eq(mockUser));
+    }
+
+    @Test
+    public void testOtherUsersSearchIsNotFound() throws Exception {
+        when(mockSearch.getUser_name()).thenReturn("someone-else");
+
+        mockMvc.perform(searchLaunch("/wrappers/%d/searchlaunch", null))
+                .andExpect(status().isNotFound());
+
+        verify(mockBulkLaunchJobService, never()).create(anyString(), anyLong(), anyString(), anyLong(),
+                any(BulkLaunchJobService.LaunchParamPages.class), any(UserI.class));
+    }
+
+    @Test
+    public void testMissingSearchIsNotFound() throws Exception {
+        when(MaterializedView.retrieveView(eq(SEARCH_ID), any(UserI.class))).thenReturn(null);
+
+        mockMvc.perform(searchLaunch("/wrappers/%d/searchlaunch", null))
+                .andExpect(status().isNotFound());
+
+        verify(mockBulkLaunchJobService, never()).create(anyString(), anyLong(), anyString(), anyLong(),
+                any(BulkLaunchJobService.LaunchParamPages.class), any(UserI.class));
+    }
+
+    private MockHttpServletRequestBuilder searchLaunch(final String pathTemplate, final String body) {
+        final MockHttpServletRequestBuilder request = post(String.format(pathTemplate, WRAPPER_ID))
+                .param("searchId", SEARCH_ID)
+                .param("rootElement", ROOT_ELEMENT)
+                .with(authentication(authentication))
+                .with(csrf())
+                .with(testSecurityContext());
+        return body == null ? request : request.content(body).contentType(MediaType.APPLICATION_JSON_UTF8);
+    }
+
+    private void stubPage(final int offset, final List<Object[]> rows) throws Exception {
+        final XFTTable page = Mockito.mock(XFTTable.class);
+        when(page.rows()).thenReturn(new ArrayList<>(rows));
+        when(page.getColumnIndex("key")).thenReturn(1);
+        when(mockSearch.getData(null, offset, PAGE_SIZE)).thenReturn(page);
+    }
+}
@@ -0,0 +1,272 @@
+package org.nrg.containers.services;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mockito;
+import org.nrg.containers.config.BulkLaunchJobTestConfig;
+import org.nrg.containers.daos.BulkLaunchJobRepository;
+import org.nrg.containers.exceptions.BadRequestException;
+import org.nrg.containers.model.bulklaunch.auto.BulkLaunchJob;
+import org.nrg.containers.model.bulklaunch.entity.BulkLaunchJobEntity;
+import org.nrg.containers.model.command.auto.LaunchReport;
+import org.nrg.containers.model.configuration.ContainerServicePrefsBean;
+import org.nrg.xft.security.UserI;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.when;
+
+/**
+ * Each call to the service runs in its own transaction, as it does when the drainer calls it.
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = BulkLaunchJobTestConfig.class)
+public class BulkLaunchJobServiceTest {
+    private static final String INPUT = "session";
+    private static final long WRAPPER_ID = 10L;
+
+    @Autowired private BulkLaunchJobService bulkLaunchJobService;
+    @Autowired private BulkLaunchJobRepository bulkLaunchJobRepository;
+    @Autowired private PlatformTransactionManager transactionManager;
+    @Autowired private ObjectMapper mapper;
+    @Autowired private ContainerServicePrefsBean mockPrefs;
+
+    private UserI mockUser;
+
+    @Before
+    public void setup() {
+        Mockito.reset(mockPrefs);
+        mockUser = Mockito.mock(UserI.class);
+        when(mockUser.getLogin()).thenReturn("me");
+    }
+
+    @Test
+    @DirtiesContext
+    public void testClaimItemsMovesTheCursor() {
+        final BulkLaunchJob job = bulkLaunchJobService.create(null, 0L, null, WRAPPER_ID, launchParamSets(5), mockUser);
+        assertThat(job.status(), is(BulkLaunchJobEntity.PENDING));
+        assertThat(job.items(), is(5));
+
+        assertThat(sessions(bulkLaunchJobService.claimItems(job.id(), 2)), contains("0", "1"));
+        assertThat(sessions(bulkLaunchJobService.claimItems(job.id(), 2)), contains("2", "3"));
+
+        // A node that read the cursor before it moved does not get the same items
+        assertThat(moveCursor(job.id(), 2, 4), is(false));
+        assertThat(moveCursor(job.id(), 4, 5), is(true));
+        assertThat(bulkLaunchJobService.claimItems(job.id(), 2).isEmpty(), is(true));
+
+        final BulkLaunchJob claimed = getJob(job.id());
+        assertThat(claimed.status(), is(BulkLaunchJobEntity.RUNNING));
+        assertThat(claimed.launched(), is(5));
+    }
+
+    @Test
+    @DirtiesContext
+    public void testJobCompletesWhenEveryItemHasAReport() {
+        final BulkLaunchJob job = bulkLaunchJobService.create(null, 0L, null, WRAPPER_ID, launchParamSets(3), mockUser);
+        final Map<Long, Map<String, String>> claimed = bulkLaunchJobService.claimItems(job.id(), 3);
+        final List<Long> itemIds = Lists.newArrayList(claimed.keySet());
+
+        bulkLaunchJobService.recordReports(job.id(), Collections.singletonMap(itemIds.get(0), success(claimed.get(itemIds.get(0)))));
+        bulkLaunchJobService.recordReports(job.id(), Collections.singletonMap(itemIds.get(1), success(claimed.get(itemIds.get(1)))));
+        assertThat(getJob(job.id()).status(), is(BulkLaunchJobEntity.RUNNING));
+        assertThat(getJob(job.id()).finished(), is(nullValue()));
+
+        bulkLaunchJobService.recordReports(job.id(), Collections.singletonMap(itemIds.get(2), failure(claimed.get(itemIds.get(2)))));
+        // A second report for an item is ignored
+        bulkLaunchJobService.recordReports(job.id(), Collections.singletonMap(itemIds.get(2), success(claimed.get(itemIds.get(2)))));
+
+        final BulkLaunchJob complete = getJob(job.id());
+        assertThat(complete.status(), is(BulkLaunchJobEntity.COMPLETE));
+        assertThat(complete.finished(), is(not(nullValue())));
+        assertThat(complete.succeeded(), is(2));
+        assertThat(complete.failed(), is(1));
+        assertThat(completeIfDone(job.id()), is(false));
+    }
+
+    @Test
+    @DirtiesContext
+    public void testEmptyJobIsCompleteRightAway() {
+        final BulkLaunchJob job = bulkLaunchJobService.create(null, 0L, null, WRAPPER_ID,
+                Collections.<Map<String, String>>emptyList(), mockUser);
+        assertThat(job.status(), is(BulkLaunchJobEntity.COMPLETE));
+        assertThat(bulkLaunchJobService.getUnfinishedJobs().isEmpty(), is(true));
+    }
+
+    @Test
+    @DirtiesContext
+    public void testPagedJobIsStoredWithinTheItemCap() throws Exception {
+        when(mockPrefs.getBulkLaunchUiMaxItems()).thenReturn(4);
+
+        final BulkLaunchJob job = bulkLaunchJobService.create(null, 0L, null, WRAPPER_ID, pages(2, 2), mockUser);
+        assertThat(job.items(), is(4));
+        assertThat(sessions(bulkLaunchJobService.claimItems(job.id(), 10)), contains("0", "1", "2", "3"));
+    }
+
+    @Test
+    @DirtiesContext
+    public void testPagedJobOverTheItemCapIsNotStored() throws Exception {
+        when(mockPrefs.getBulkLaunchUiMaxItems()).thenReturn(4);
+
+        try {
+            bulkLaunchJobService.create(null, 0L, null, WRAPPER_ID, pages(2, 2, 1), mockUser);
+            fail("Expected the job to be over the item cap.");
+        } catch (BadRequestException ignored) {
+            // expected
+        }
+        assertThat(bulkLaunchJobService.getUnfinishedJobs().isEmpty(), is(true));
+    }
+
+    @Test
+    @DirtiesContext
+    public void testAbandonedItemsAreFailed() throws Exception {
+        final BulkLaunchJob job = bulkLaunchJobService.create(null, 0L, null, WRAPPER_ID, launchParamSets(3), mockUser);
+        bulkLaunchJobService.claimItems(job.id(), 2);
+
+        // Claimed just now, so not abandoned yet
+        final long now = System.currentTimeMillis();
+        assertThat(bulkLaunchJobService.failAbandonedItems(new Date(now - TimeUnit.HOURS.toMillis(1L)), 10), is(0));
+
+        assertThat(bulkLaunchJobService.failAbandonedItems(new Date(now + TimeUnit.SECONDS.toMillis(1L)), 10), is(2));
+        final BulkLaunchJob failed = getJob(job.id());
+        assertThat(failed.failed(), is(2));
+        // The item that was never claimed is still to be launched
+        assertThat(failed.status(), is(BulkLaunchJobEntity.RUNNING));
+        assertThat(bulkLaunchJobService.failAbandonedItems(new Date(now + TimeUnit.SECONDS.toMillis(1L)), 10), is(0));
+
+        final List<JsonNode> reports = readReports(job.id());
+        assertThat(reports.size(), is(2));
+        for (final JsonNode report : reports) {
+            assertThat(report.get("status").asText(), is("failure"));
+        }
+    }
+
+    @Test
+    @DirtiesContext
+    public void testReportsAreWrittenInItemOrder() throws Exception {
+        final BulkLaunchJob job = bulkLaunchJobService.create(null, 0L, null, WRAPPER_ID, launchParamSets(4), mockUser);
+        final Map<Long, Map<String, String>> claimed = bulkLaunchJobService.claimItems(job.id(), 3);
+
+        // Reported out of order, and the last item has no report yet
+        final Map<Long, LaunchReport> reports = Maps.newLinkedHashMap();
+        for (final Long itemId : Lists.reverse(Lists.newArrayList(claimed.keySet()))) {
+            reports.put(itemId, success(claimed.get(itemId)));
+        }
+        bulkLaunchJobService.recordReports(job.id(), reports);
+
+        final List<String> written = Lists.newArrayList();
+        for (final JsonNode report : readReports(job.id())) {
+            written.add(report.get("params").get(INPUT).asText());
+        }
+        assertThat(written, contains("0", "1", "2"));
+    }
+
+    private List<Map<String, String>> launchParamSets(final int count) {
+        final List<Map<String, String>> launchParamSets = Lists.newArrayList();
+        for (int i = 0; i < count; i++) {
+            launchParamSets.add(Collections.singletonMap(INPUT, String.valueOf(i)));
+        }
+        return launchParamSets;
+    }
+
+    /**
+     * Pages of the given sizes, numbered across pages.
+     */
+    private static BulkLaunchJobService.LaunchParamPages pages(final int... pageSizes) {
+        return new BulkLaunchJobService.LaunchParamPages() {
+            private int page = 0;
+            private int item = 0;
+
+            @Override
+            public List<Map<String, String>> nextPage() throws IOException {
+                final List<Map<String, String>> launchParamSets = Lists.newArrayList();
+                if (page < pageSizes.length) {
+                    for (int i = 0; i < pageSizes[page]; i++) {
+                        launchParamSets.add(Collections.singletonMap(INPUT, String.valueOf(item++)));
+                    }
+                    page++;
+                }
+                return launchParamSets;
+            }
+        };
+    }
+
+    private static List<String> sessions(final Map<Long, Map<String, String>> claimed) {
+        final List<String> sessions = Lists.newArrayList();
+        for (final Map<String, String> launchParams : claimed.values()) {
+            sessions.add(launchParams.get(INPUT));
+        }
+        return sessions;
+    }
+
+    private static LaunchReport success(final Map<String, String> launchParams) {
+        return LaunchReport.ContainerSuccess.create("container-" + launchParams.get(INPUT), launchParams, null, WRAPPER_ID);
+    }
+
+    private static LaunchReport failure(final Map<String, String> launchParams) {
+        return LaunchReport.Failure.create("uh oh", launchParams, 0L, WRAPPER_ID);
+    }
+
+    private BulkLaunchJob getJob(final long jobId) {
+        try {
+            return bulkLaunchJobService.getJob(jobId);
+        } catch (Exception e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private List<JsonNode> readReports(final long jobId) throws Exception {
+        final StringWriter writer = new StringWriter();
+        bulkLaunchJobService.writeReports(jobId, writer);
+        final List<JsonNode> reports = Lists.newArrayList();
+        for (final String line : writer.toString().split("\n")) {
+            if (!line.isEmpty()) {
+                reports.add(mapper.readTree(line));
+            }
+        }
+        return reports;
+    }
+
+    private boolean moveCursor(final long jobId, final int expectedCursor, final int newCursor) {
+        return new TransactionTemplate(transactionManager).execute(new TransactionCallback<Boolean>() {
+            @Override
+            public Boolean doInTransaction(final TransactionStatus status) {
+                return bulkLaunchJobRepository.moveCursor(jobId, expectedCursor, newCursor);
+            }
+        });
+    }
+
+    private boolean completeIfDone(final long jobId) {
+        return new TransactionTemplate(transactionManager).execute(new TransactionCallback<Boolean>() {
+            @Override
+            public Boolean doInTransaction(final TransactionStatus status) {
+                return bulkLaunchJobRepository.completeIfDone(jobId);
+            }
+        });
+    }
+}
@@ -0,0 +1,224 @@
+package org.nrg.containers.services;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.nrg.containers.exceptions.BadRequestException;
+import org.nrg.containers.exceptions.CommandResolutionException;
+import org.nrg.containers.model.command.auto.Command.CommandWrapper;
+import org.nrg.containers.model.command.auto.Command.ConfiguredCommand;
+import org.nrg.containers.model.command.auto.LaunchReport;
+import org.nrg.containers.model.command.auto.ResolvedCommand;
+import org.nrg.containers.model.command.auto.ResolvedCommand.PartiallyResolvedCommand;
+import org.nrg.containers.model.configuration.ContainerServicePrefsBean;
+import org.nrg.containers.model.container.LaunchPriority;
+import org.nrg.containers.model.container.auto.Container;
+import org.nrg.containers.services.impl.BulkLaunchServiceImpl;
+import org.nrg.xft.security.UserI;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyMapOf;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Matchers.isNull;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class BulkLaunchServiceTest {
+    private static final long WRAPPER_ID = 12L;
+    private static final String INPUT_NAME = "session";
+
+    private ContainerService mockContainerService;
+    private CommandService mockCommandService;
+    private CommandResolutionService mockCommandResolutionService;
+    private ContainerServicePrefsBean mockPrefs;
+    private UserI mockUser;
+    private BulkLaunchService bulkLaunchService;
+
+    @Before
+    public void setup() throws Exception {
+        mockContainerService = Mockito.mock(ContainerService.class);
+        mockCommandService = Mockito.mock(CommandService.class);
+        mockCommandResolutionService = Mockito.mock(CommandResolutionService.class);
+        mockUser = Mockito.mock(UserI.class);
+        mockPrefs = Mockito.mock(ContainerServicePrefsBean.class);
+        when(mockPrefs.getBulkLaunchParallelism()).thenReturn(3);
+        when(mockPrefs.getBulkLaunchUiMaxItems()).thenReturn(0);
+
+        bulkLaunchService = new BulkLaunchServiceImpl(mockContainerService, mockCommandService,
+                mockCommandResolutionService, mockPrefs);
+    }
+
+    @Test
+    public void testReportsAreInOrderAndFailuresAreIsolated() throws Exception {
+        // Stub on this thread; the launches run on the worker pool
+        final Map<String, Container> containers = Maps.newHashMap();
+        final List<Map<String, String>> launchParamSets = Lists.newArrayList();
+        for (int i = 0; i < 20; i++) {
+            final Container container = Mockito.mock(Container.class);
+            when(container.containerId()).thenReturn("container-" + i);
+            containers.put(String.valueOf(i), container);
+            launchParamSets.add(ImmutableMap.of(INPUT_NAME, String.valueOf(i)));
+        }
+
+        when(mockContainerService.resolveCommandAndLaunchContainer(isNull(String.class), eq(0L), isNull(String.class), eq(WRAPPER_ID),
+                anyMapOf(String.class, String.class), eq(mockUser), eq(LaunchPriority.BULK), isNull(LaunchPriority.class)))
+                .thenAnswer(new Answer<Container>() {
+                    @Override
+                    public Container answer(final InvocationOnMock invocation) throws Throwable {
+                        @SuppressWarnings("unchecked")
+                        final String value = ((Map<String, String>) invocation.getArguments()[4]).get(INPUT_NAME);
+                        if (Integer.parseInt(value) % 3 == 0) {
+                            throw new CommandResolutionException("bad " + value);
+                        }
+                        return containers.get(value);
+                    }
+                });
+
+        final List<LaunchReport> reports = bulkLaunchService.launch(null, 0L, null, WRAPPER_ID, launchParamSets, mockUser);
+
+        assertThat(reports.size(), is(20));
+        for (int i = 0; i < 20; i++) {
+            final LaunchReport report = reports.get(i);
+            if (i % 3 == 0) {
+                assertThat(report, instanceOf(LaunchReport.Failure.class));
+                assertThat(((LaunchReport.Failure) report).message(), is("bad " + i));
+                assertThat(report.launchParams().get(INPUT_NAME), is(String.valueOf(i)));
+            } else {
+                assertThat(report, instanceOf(LaunchReport.ContainerSuccess.class));
+                assertThat(((LaunchReport.ContainerSuccess) report).containerId(), is("container-" + i));
+            }
+        }
+    }
+
+    @Test
+    public void testBatchedWrapperLaunchesOneContainerPerBatch() throws Exception {
+        final CommandWrapper wrapper = Mockito.mock(CommandWrapper.class);
+        when(wrapper.isBatched()).thenReturn(true);
+        when(wrapper.batchSize()).thenReturn(2);
+        final ConfiguredCommand configuredCommand = Mockito.mock(ConfiguredCommand.class);
+        when(configuredCommand.wrapper()).thenReturn(wrapper);
+        when(mockCommandService.getAndConfigure(WRAPPER_ID)).thenReturn(configuredCommand);
+
+        final List<Map<String, String>> launchParamSets = Lists.newArrayList();
+        final Map<String, ResolvedCommand> resolvedByValue = Maps.newHashMap();
+        for (int i = 0; i < 5; i++) {
+            final Map<String, String> launchParams = ImmutableMap.of(INPUT_NAME, String.valueOf(i));
+            launchParamSets.add(launchParams);
+            if (i == 3) {
+                when(mockCommandResolutionService.resolve(configuredCommand, launchParams, mockUser))
+                        .thenThrow(new CommandResolutionException("bad 3"));
+            } else {
+                final ResolvedCommand resolved = Mockito.mock(ResolvedCommand.class);
+                resolvedByValue.put(String.valueOf(i), resolved);
+                when(mockCommandResolutionService.resolve(configuredCommand, launchParams, mockUser)).thenReturn(resolved);
+            }
+        }
+
+        final ResolvedCommand firstBatch = Mockito.mock(ResolvedCommand.class);
+        final ResolvedCommand secondBatch = Mockito.mock(ResolvedCommand.class);
+        when(mockCommandResolutionService.resolveBatch(Lists.newArrayList(resolvedByValue.get("0"), resolvedByValue.get("1"))))
+                .thenReturn(firstBatch);
+        when(mockCommandResolutionService.resolveBatch(Lists.newArrayList(resolvedByValue.get("2"), resolvedByValue.get("4"))))
+                .thenReturn(secondBatch);
+        final Container firstContainer = Mockito.mock(Container.class);
+        when(firstContainer.containerId()).thenReturn("batch-0");
+        final Container secondContainer = Mockito.mock(Container.class);
+        when(secondContainer.containerId()).thenReturn("batch-1");
+        when(mockContainerService.launchResolvedCommand(firstBatch, mockUser, LaunchPriority.BULK)).thenReturn(firstContainer);
+        when(mockContainerService.launchResolvedCommand(secondBatch, mockUser, LaunchPriority.BULK)).thenReturn(secondContainer);
+
+        final List<LaunchReport> reports = bulkLaunchService.launch(null, 0L, null, WRAPPER_ID, launchParamSets, mockUser);
+
+        assertThat(reports.size(), is(5));
+        final String[] expectedContainerIds = {"batch-0", "batch-0", "batch-1", null, "batch-1"};
+        for (int i = 0; i < 5; i++) {
+            final LaunchReport report = reports.get(i);
+            assertThat(report.launchParams().get(INPUT_NAME), is(String.valueOf(i)));
+            if (expectedContainerIds[i] == null) {
+                assertThat(report, instanceOf(LaunchReport.Failure.class));
+                assertThat(((LaunchReport.Failure) report).message(), is("bad " + i));
+            } else {
+                assertThat(report, instanceOf(LaunchReport.ContainerSuccess.class));
+                assertThat(((LaunchReport.ContainerSuccess) report).containerId(), is(expectedContainerIds[i]));
+            }
+        }
+        verify(mockContainerService, never()).resolveCommandAndLaunchContainer(anyString(), anyLong(), anyString(), anyLong(),
+                anyMapOf(String.class, String.class), any(UserI.class), any(LaunchPriority.class), any(LaunchPriority.class));
+    }
+
+    @Test
+    public void testPreResolveResolvesEachDistinctItemOnce() throws Exception {
+        final ConfiguredCommand configuredCommand = Mockito.mock(ConfiguredCommand.class);
+        when(mockCommandService.getAndConfigure(WRAPPER_ID)).thenReturn(configuredCommand);
+
+        final Map<String, PartiallyResolvedCommand> resolvedByValue = Maps.newHashMap();
+        for (final String value : new String[]{"1", "2"}) {
+            final PartiallyResolvedCommand resolved = Mockito.mock(PartiallyResolvedCommand.class);
+            resolvedByValue.put(value, resolved);
+            when(mockCommandResolutionService.preResolve(configuredCommand, ImmutableMap.of(INPUT_NAME, value, "flag", "true"), mockUser))
+                    .thenReturn(resolved);
+        }
+
+        final List<PartiallyResolvedCommand> resolved = bulkLaunchService.preResolve(null, 0L, null, WRAPPER_ID,
+                ImmutableMap.of(INPUT_NAME, "1,2,1", "flag", "true"), mockUser);
+
+        assertThat(resolved, contains(resolvedByValue.get("1"), resolvedByValue.get("2"), resolvedByValue.get("1")));
+        verify(mockCommandService, times(1)).getAndConfigure(WRAPPER_ID);
+        verify(mockCommandResolutionService, times(2)).preResolve(eq(configuredCommand), anyMapOf(String.class, String.class), eq(mockUser));
+    }
+
+    @Test
+    public void testPreResolveResolvesEachCombinationOfRootsOnce() throws Exception {
+        final ConfiguredCommand configuredCommand = Mockito.mock(ConfiguredCommand.class);
+        when(mockCommandService.getAndConfigure(WRAPPER_ID)).thenReturn(configuredCommand);
+        when(mockCommandResolutionService.preResolve(eq(configuredCommand), anyMapOf(String.class, String.class), eq(mockUser)))
+                .thenAnswer(new Answer<PartiallyResolvedCommand>() {
+                    @Override
+                    @SuppressWarnings("unchecked")
+                    public PartiallyResolvedCommand answer(final InvocationOnMock invocation) {
+                        final Map<String, String> params = (Map<String, String>) invocation.getArguments()[1];
+                        return PartiallyResolvedCommand.builder()
+                                .wrapperId(WRAPPER_ID)
+                                .wrapperName(params.get(INPUT_NAME) + params.get("other"))
+                                .commandId(1L)
+                                .commandName("command")
+                                .image("image")
+                                .build();
+                    }
+                });
+
+        final List<PartiallyResolvedCommand> resolved = bulkLaunchService.preResolve(null, 0L, null, WRAPPER_ID,
+                ImmutableMap.of(INPUT_NAME, "1,2,1", "other", "a,b", "flag", "true"), mockUser);
+
+        final List<String> names = Lists.newArrayList();
+        for (final PartiallyResolvedCommand partiallyResolvedCommand : resolved) {
+            names.add(partiallyResolvedCommand.wrapperName());
+        }
+        assertThat(names, contains("1a", "1b", "2a", "2b", "1a", "1b"));
+        verify(mockCommandResolutionService, times(4)).preResolve(eq(configuredCommand), anyMapOf(String.class, String.class), eq(mockUser));
+    }
+
+    @Test(expected = BadRequestException.class)
+    public void testPreResolveRejectsTooManyItems() throws Exception {
+        when(mockPrefs.getBulkLaunchUiMaxItems()).thenReturn(5);
+
+        bulkLaunchService.preResolve(null, 0L, null, WRAPPER_ID,
+                ImmutableMap.of(INPUT_NAME, "1,2,3", "other", "a,b"), mockUser);
+    }
+}
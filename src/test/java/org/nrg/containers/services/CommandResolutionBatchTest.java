@@ -0,0 +1,107 @@
+package org.nrg.containers.services;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.Lists;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mockito;
+import org.nrg.config.services.ConfigService;
+import org.nrg.containers.config.ObjectMapperConfig;
+import org.nrg.containers.exceptions.CommandResolutionException;
+import org.nrg.containers.model.command.auto.ResolvedCommand;
+import org.nrg.containers.model.command.auto.ResolvedCommand.ResolvedCommandOutput;
+import org.nrg.containers.model.command.auto.ResolvedCommandMount;
+import org.nrg.containers.services.impl.CommandResolutionServiceImpl;
+import org.nrg.xdat.preferences.SiteConfigPreferences;
+
+import java.io.File;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.when;
+
+public class CommandResolutionBatchTest {
+    @Rule public TemporaryFolder folder = new TemporaryFolder(new File("/tmp"));
+
+    private ObjectMapper mapper;
+    private CommandResolutionService commandResolutionService;
+
+    @Before
+    public void setup() throws Exception {
+        mapper = new ObjectMapperConfig().objectMapper();
+        final SiteConfigPreferences mockSiteConfigPreferences = Mockito.mock(SiteConfigPreferences.class);
+        when(mockSiteConfigPreferences.getBuildPath()).thenReturn(folder.getRoot().getAbsolutePath());
+
+        commandResolutionService = new CommandResolutionServiceImpl(Mockito.mock(CommandService.class),
+                Mockito.mock(ConfigService.class), mockSiteConfigPreferences, mapper, Mockito.mock(SetupCommandService.class));
+    }
+
+    @Test
+    public void testManifestListsEachItem() throws Exception {
+        final ResolvedCommand batch = commandResolutionService.resolveBatch(Lists.newArrayList(item(1L, "A"), item(1L, "B")));
+
+        ResolvedCommandMount manifestMount = null;
+        ResolvedCommandMount statusMount = null;
+        for (final ResolvedCommandMount mount : batch.mounts()) {
+            if (ResolvedCommand.BATCH_MANIFEST_MOUNT.equals(mount.name())) {
+                manifestMount = mount;
+            } else if (ResolvedCommand.BATCH_STATUS_MOUNT.equals(mount.name())) {
+                statusMount = mount;
+            }
+        }
+        assertThat(manifestMount.writable(), is(false));
+        assertThat(statusMount.writable(), is(true));
+        assertThat(new File(statusMount.xnatHostPath()).isDirectory(), is(true));
+
+        final JsonNode items = mapper.readTree(new File(manifestMount.xnatHostPath(), ResolvedCommand.BATCH_MANIFEST_FILE)).get("items");
+        assertThat(items.size(), is(2));
+        final JsonNode second = items.get(1);
+        assertThat(second.get("index").asInt(), is(1));
+        assertThat(second.get("mounts").get("out").asText(), is("/batch/1/output"));
+        assertThat(second.get("outputs").get("result").asText(), is("/batch/1/output/result.txt"));
+        assertThat(second.get("status-file").asText(), is("/batch/status/1"));
+    }
+
+    @Test
+    public void testItemsOfAnotherWrapperAreNotBatched() throws Exception {
+        try {
+            commandResolutionService.resolveBatch(Lists.newArrayList(item(1L, "A"), item(2L, "B")));
+            fail("Expected items of two wrappers not to be batched.");
+        } catch (CommandResolutionException ignored) {
+            // expected
+        }
+        assertThat(folder.getRoot().list().length, is(0));
+    }
+
+    private static ResolvedCommand item(final long wrapperId, final String session) {
+        return ResolvedCommand.builder()
+                .wrapperId(wrapperId)
+                .wrapperName("wrapper")
+                .commandId(2L)
+                .commandName("command")
+                .image("image")
+                .commandLine("run")
+                .addRawInputValue("session", session)
+                .addMount(ResolvedCommandMount.builder()
+                        .name("out")
+                        .containerPath("/output")
+                        .xnatHostPath("/build/" + session)
+                        .containerHostPath("/build/" + session)
+                        .writable(true)
+                        .build())
+                .addOutput(ResolvedCommandOutput.builder()
+                        .name("result")
+                        .type("Resource")
+                        .required(true)
+                        .mount("out")
+                        .path("result.txt")
+                        .label("RESULT")
+                        .handledByWrapperInput("session")
+                        .build())
+                .build();
+    }
+}
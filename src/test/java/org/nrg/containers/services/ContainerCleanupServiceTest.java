@@ -0,0 +1,109 @@
+package org.nrg.containers.services;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Matchers;
+import org.mockito.Mockito;
+import org.nrg.containers.api.ContainerControlApi;
+import org.nrg.containers.exceptions.DockerServerException;
+import org.nrg.containers.model.configuration.ContainerServicePrefsBean;
+import org.nrg.containers.model.container.ContainerRemovalPolicy;
+import org.nrg.containers.model.container.auto.ContainerPruneReport;
+import org.nrg.containers.model.container.entity.ContainerEntity;
+import org.nrg.containers.model.server.docker.DockerServerBase.DockerServer;
+import org.nrg.containers.services.impl.ContainerCleanupServiceImpl;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ContainerCleanupServiceTest {
+    private ContainerControlApi mockControlApi;
+    private ContainerEntityService mockContainerEntityService;
+    private ContainerServicePrefsBean mockPrefs;
+    private ContainerCleanupService containerCleanupService;
+    private DockerServer server;
+
+    @Before
+    public void setup() throws Exception {
+        mockControlApi = Mockito.mock(ContainerControlApi.class);
+        mockContainerEntityService = Mockito.mock(ContainerEntityService.class);
+        mockPrefs = Mockito.mock(ContainerServicePrefsBean.class);
+        final DockerServerService mockDockerServerService = Mockito.mock(DockerServerService.class);
+        server = DockerServer.create(1L, "server", "unix:///var/run/docker.sock", null, false);
+        when(mockDockerServerService.getServer()).thenReturn(server);
+        when(mockDockerServerService.getServersInUse()).thenReturn(Collections.singletonList(server));
+
+        containerCleanupService = new ContainerCleanupServiceImpl(mockControlApi, mockContainerEntityService,
+                mockDockerServerService, mockPrefs);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testPruneKeepsFailedContainersAndRecentOnes() throws Exception {
+        when(mockPrefs.containerRemovalPolicy()).thenReturn(ContainerRemovalPolicy.KEEP_FAILED);
+        when(mockPrefs.getContainerRemovalDelayHours()).thenReturn(1);
+
+        final Date old = new Date(System.currentTimeMillis() - TimeUnit.HOURS.toMillis(2));
+        final ContainerEntity oldComplete = entity("old-complete", "Complete", old, null);
+        final ContainerEntity newComplete = entity("new-complete", "Complete", new Date(), null);
+        final ContainerEntity oldFailed = entity("old-failed", "Failed", old, null);
+        final ContainerEntity newSetup = entity("new-setup", "Complete", new Date(), "setup");
+        final ContainerEntity oldRunning = entity("old-running", "Running", old, null);
+        // Exited, but its logs and outputs have not been collected yet
+        final ContainerEntity oldKilled = entity("old-killed", "Killed", old, null);
+        final ContainerEntity oldCompleteNotFinalized = entity("old-complete-not-finalized", "Complete", old, null);
+        oldCompleteNotFinalized.setFinalized(false);
+
+        when(mockControlApi.getExitedContainerSizes(server, false)).thenReturn(ImmutableMap.<String, Long>builder()
+                .put("old-complete", 0L).put("new-complete", 0L).put("old-failed", 0L).put("new-setup", 0L)
+                .put("old-running", 0L).put("old-killed", 0L).put("old-complete-not-finalized", 0L)
+                .build());
+        when(mockControlApi.getExitedContainerSizes(server, Lists.newArrayList("old-complete", "new-setup")))
+                .thenReturn(ImmutableMap.of("old-complete", 100L, "new-setup", 400L));
+        when(mockContainerEntityService.retrieveByDockerIds(Matchers.any(Collection.class)))
+                .thenReturn(Lists.newArrayList(oldComplete, newComplete, oldFailed, newSetup, oldRunning, oldKilled,
+                        oldCompleteNotFinalized));
+        when(mockControlApi.getDanglingImageSizes(server)).thenReturn(ImmutableMap.of("sha256:dangling", 1000L, "sha256:in-use", 2000L));
+        doThrow(new DockerServerException("conflict")).when(mockControlApi).deleteImageById(server, "sha256:in-use", false);
+
+        final ContainerPruneReport report = containerCleanupService.prune();
+
+        verify(mockControlApi).removeContainer(server, "old-complete");
+        verify(mockControlApi).removeContainer(server, "new-setup");
+        verify(mockControlApi, never()).removeContainer(server, "new-complete");
+        verify(mockControlApi, never()).removeContainer(server, "old-failed");
+        verify(mockControlApi, never()).removeContainer(server, "old-running");
+        verify(mockControlApi, never()).removeContainer(server, "old-killed");
+        verify(mockControlApi, never()).removeContainer(server, "old-complete-not-finalized");
+        verify(mockControlApi, never()).getExitedContainerSizes(server, true);
+
+        assertThat(report.containersRemoved(), is(2));
+        assertThat(report.containerBytesReclaimed(), is(500L));
+        assertThat(report.imagesRemoved(), is(1));
+        assertThat(report.imagesFailed(), is(1));
+        assertThat(report.imageBytesReclaimed(), is(1000L));
+        assertThat(containerCleanupService.getLastPruneReport(), is(report));
+    }
+
+    private ContainerEntity entity(final String containerId, final String status, final Date statusTime, final String subtype) {
+        final ContainerEntity containerEntity = new ContainerEntity();
+        containerEntity.setContainerId(containerId);
+        containerEntity.setStatus(status);
+        containerEntity.setStatusTime(statusTime);
+        containerEntity.setSubtype(subtype);
+        // Finalization leaves a container complete or failed
+        containerEntity.setFinalized(status.contains("Complete") || status.contains("Failed"));
+        return containerEntity;
+    }
+}
@@ -0,0 +1,114 @@
+package org.nrg.containers.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.nrg.config.entities.Configuration;
+import org.nrg.config.services.ConfigService;
+import org.nrg.containers.config.ObjectMapperConfig;
+import org.nrg.containers.model.configuration.CommandConfigurationInternal;
+import org.nrg.containers.model.configuration.ContainerServicePrefsBean;
+import org.nrg.containers.services.impl.ContainerConfigServiceImpl;
+import org.nrg.framework.constants.Scope;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.nrg.containers.services.ContainerConfigService.TOOL_ID;
+import static org.nrg.containers.services.ContainerConfigService.WRAPPER_CONFIG_PATH_TEMPLATE;
+
+public class ContainerConfigServiceTest {
+    private static final long WRAPPER_ID = 7L;
+    private static final String WRAPPER_PATH = String.format(WRAPPER_CONFIG_PATH_TEMPLATE, WRAPPER_ID);
+    private static final String GENERATION_PATH = "wrapper-config-generation";
+
+    private ObjectMapper mapper;
+    private ConfigService mockConfigService;
+    private ContainerServicePrefsBean mockPrefs;
+    private ContainerConfigService containerConfigService;
+
+    @Before
+    public void setup() throws Exception {
+        mapper = new ObjectMapperConfig().objectMapper();
+        mockConfigService = Mockito.mock(ConfigService.class);
+        mockPrefs = Mockito.mock(ContainerServicePrefsBean.class);
+        when(mockPrefs.getCommandConfigCacheSeconds()).thenReturn(300);
+        when(mockPrefs.getCommandConfigSyncSeconds()).thenReturn(0);
+
+        containerConfigService = new ContainerConfigServiceImpl(mockConfigService, mapper, mockPrefs);
+    }
+
+    @Test
+    public void testSiteConfigurationIsReadOnce() throws Exception {
+        stubSiteConfiguration(CommandConfigurationInternal.create(true, null));
+
+        assertThat(containerConfigService.getSiteConfiguration(WRAPPER_ID).enabled(), is(true));
+        assertThat(containerConfigService.getSiteConfiguration(WRAPPER_ID).enabled(), is(true));
+        assertThat(containerConfigService.isEnabledForSite(WRAPPER_ID), is(true));
+
+        verify(mockConfigService, times(1)).getConfig(TOOL_ID, WRAPPER_PATH, Scope.Site, null);
+    }
+
+    @Test
+    public void testMissingConfigurationIsCached() throws Exception {
+        assertThat(containerConfigService.getSiteConfiguration(WRAPPER_ID), is(nullValue()));
+        assertThat(containerConfigService.getSiteConfiguration(WRAPPER_ID), is(nullValue()));
+
+        verify(mockConfigService, times(1)).getConfig(TOOL_ID, WRAPPER_PATH, Scope.Site, null);
+    }
+
+    @Test
+    public void testWritesGoThroughToCache() throws Exception {
+        stubSiteConfiguration(CommandConfigurationInternal.create(true, null));
+        assertThat(containerConfigService.isEnabledForSite(WRAPPER_ID), is(true));
+
+        containerConfigService.disableForSite(WRAPPER_ID, "admin", "test");
+
+        // The stub still says enabled, so this comes from the cache
+        assertThat(containerConfigService.isEnabledForSite(WRAPPER_ID), is(false));
+        verify(mockConfigService, times(1)).getConfig(TOOL_ID, WRAPPER_PATH, Scope.Site, null);
+    }
+
+    @Test
+    public void testCacheIsDroppedWhenChangedOnAnotherNode() throws Exception {
+        when(mockPrefs.getCommandConfigSyncSeconds()).thenReturn(1);
+        stubSiteConfiguration(CommandConfigurationInternal.create(true, null));
+        assertThat(containerConfigService.isEnabledForSite(WRAPPER_ID), is(true));
+
+        // Another node disables the wrapper and writes a new generation
+        stubSiteConfiguration(CommandConfigurationInternal.create(false, null));
+        final Configuration generation = Mockito.mock(Configuration.class);
+        when(generation.getContents()).thenReturn("changed elsewhere");
+        when(mockConfigService.getConfig(TOOL_ID, GENERATION_PATH)).thenReturn(generation);
+
+        // Not checked again until the sync interval has passed
+        assertThat(containerConfigService.isEnabledForSite(WRAPPER_ID), is(true));
+        Thread.sleep(1100L);
+        assertThat(containerConfigService.isEnabledForSite(WRAPPER_ID), is(false));
+        verify(mockConfigService, times(2)).getConfig(TOOL_ID, WRAPPER_PATH, Scope.Site, null);
+    }
+
+    @Test
+    public void testCacheCanBeTurnedOff() throws Exception {
+        when(mockPrefs.getCommandConfigCacheSeconds()).thenReturn(0);
+        stubSiteConfiguration(CommandConfigurationInternal.create(true, null));
+
+        containerConfigService.getSiteConfiguration(WRAPPER_ID);
+        containerConfigService.getSiteConfiguration(WRAPPER_ID);
+
+        verify(mockConfigService, times(2)).getConfig(TOOL_ID, WRAPPER_PATH, Scope.Site, null);
+        verify(mockConfigService, times(0)).getConfig(eq(TOOL_ID), anyString());
+    }
+
+    private void stubSiteConfiguration(final CommandConfigurationInternal commandConfigurationInternal) throws Exception {
+        final Configuration configuration = Mockito.mock(Configuration.class);
+        when(configuration.getContents()).thenReturn(mapper.writeValueAsString(commandConfigurationInternal));
+        when(mockConfigService.getConfig(TOOL_ID, WRAPPER_PATH, Scope.Site, null)).thenReturn(configuration);
+    }
+}
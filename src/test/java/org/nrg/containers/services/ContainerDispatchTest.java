@@ -0,0 +1,124 @@
+package org.nrg.containers.services;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mockito;
+import org.nrg.containers.api.ContainerControlApi;
+import org.nrg.containers.exceptions.CommandResolutionException;
+import org.nrg.containers.model.command.auto.ResolvedCommand;
+import org.nrg.containers.model.configuration.ContainerServicePrefsBean;
+import org.nrg.containers.model.container.ContainerInputType;
+import org.nrg.containers.model.container.entity.ContainerEntity;
+import org.nrg.containers.model.container.entity.ContainerEntityInput;
+import org.nrg.containers.services.impl.ContainerServiceImpl;
+import org.nrg.xdat.preferences.SiteConfigPreferences;
+import org.nrg.xdat.security.helpers.Users;
+import org.nrg.xdat.services.AliasTokenService;
+import org.nrg.xft.security.UserI;
+import org.powermock.core.classloader.annotations.PowerMockIgnore;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyMapOf;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.powermock.api.mockito.PowerMockito.mockStatic;
+import static org.powermock.api.mockito.PowerMockito.when;
+
+@RunWith(PowerMockRunner.class)
+@PrepareForTest({Users.class})
+@PowerMockIgnore({"org.apache.*", "java.*", "javax.*", "org.w3c.*", "com.sun.*"})
+public class ContainerDispatchTest {
+    private static final long DATABASE_ID = 5L;
+    private static final long WRAPPER_ID = 3L;
+    private static final String PROJECT = "project1";
+
+    private ContainerEntityService mockContainerEntityService;
+    private CommandResolutionService mockCommandResolutionService;
+    private UserI mockUser;
+    private ContainerService containerService;
+
+    @Before
+    public void setup() throws Exception {
+        mockContainerEntityService = Mockito.mock(ContainerEntityService.class);
+        mockCommandResolutionService = Mockito.mock(CommandResolutionService.class);
+        final ContainerQueueService mockContainerQueueService = Mockito.mock(ContainerQueueService.class);
+
+        mockUser = Mockito.mock(UserI.class);
+        when(mockUser.getLogin()).thenReturn("me");
+        mockStatic(Users.class);
+        when(Users.getUser("me")).thenReturn(mockUser);
+
+        final ContainerEntity queued = queuedBatch();
+        when(mockContainerEntityService.retrieve(DATABASE_ID)).thenReturn(queued);
+        when(mockContainerEntityService.compareAndSetStatus(DATABASE_ID, ContainerEntity.QUEUED, ContainerEntity.DISPATCHING)).thenReturn(true);
+        when(mockContainerQueueService.getDispatchable()).thenReturn(Lists.newArrayList(queued));
+
+        containerService = new ContainerServiceImpl(Mockito.mock(ContainerControlApi.class), mockContainerEntityService,
+                mockCommandResolutionService, Mockito.mock(AliasTokenService.class), Mockito.mock(SiteConfigPreferences.class),
+                Mockito.mock(ContainerFinalizeService.class), Mockito.mock(ImageWarmerService.class),
+                Mockito.mock(ContainerCleanupService.class), mockContainerQueueService,
+                Mockito.mock(ContainerServicePrefsBean.class), Mockito.mock(DockerServerService.class),
+                Mockito.mock(FinalizationWorkService.class));
+    }
+
+    @Test
+    public void testQueuedBatchIsResolvedAgainItemByItem() throws Exception {
+        final ResolvedCommand first = Mockito.mock(ResolvedCommand.class);
+        final ResolvedCommand second = Mockito.mock(ResolvedCommand.class);
+        when(mockCommandResolutionService.resolve(PROJECT, WRAPPER_ID, ImmutableMap.of("session", "XNAT_E0"), mockUser)).thenReturn(first);
+        when(mockCommandResolutionService.resolve(PROJECT, WRAPPER_ID, ImmutableMap.of("session", "XNAT_E1"), mockUser)).thenReturn(second);
+        // Stop once the batch is resolved; launching it is tested elsewhere
+        when(mockCommandResolutionService.resolveBatch(Lists.newArrayList(first, second)))
+                .thenThrow(new CommandResolutionException("stop here"));
+
+        containerService.dispatchQueued();
+
+        verify(mockCommandResolutionService).resolveBatch(Lists.newArrayList(first, second));
+        verify(mockContainerEntityService).compareAndFinalize(DATABASE_ID, ContainerEntity.DISPATCHING, "Failed");
+    }
+
+    @Test
+    public void testQueuedBatchFailsWhenAnItemNoLongerResolves() throws Exception {
+        when(mockCommandResolutionService.resolve(eq(PROJECT), eq(WRAPPER_ID), anyMapOf(String.class, String.class), eq(mockUser)))
+                .thenThrow(new CommandResolutionException("gone"));
+
+        containerService.dispatchQueued();
+
+        verify(mockCommandResolutionService, never()).resolveBatch(any(List.class));
+        verify(mockContainerEntityService).compareAndFinalize(DATABASE_ID, ContainerEntity.DISPATCHING, "Failed");
+    }
+
+    private static ContainerEntity queuedBatch() {
+        final ContainerEntity containerEntity = new ContainerEntity();
+        containerEntity.setId(DATABASE_ID);
+        containerEntity.setCommandId(2L);
+        containerEntity.setWrapperId(WRAPPER_ID);
+        containerEntity.setUserId("me");
+        containerEntity.setProject(PROJECT);
+        containerEntity.setDockerImage("image");
+        containerEntity.setCommandLine("run");
+        containerEntity.setStatus(ContainerEntity.QUEUED);
+        containerEntity.setStatusTime(new Date());
+        final Map<String, String> rawInputs = ImmutableMap.of(
+                ResolvedCommand.batchItemName("session", 0), "XNAT_E0",
+                ResolvedCommand.batchItemName("session", 1), "XNAT_E1");
+        final List<ContainerEntityInput> inputs = Lists.newArrayList();
+        for (final Map.Entry<String, String> rawInput : rawInputs.entrySet()) {
+            inputs.add(ContainerEntityInput.create(rawInput.getKey(), rawInput.getValue(), ContainerInputType.RAW));
+        }
+        containerEntity.setInputs(inputs);
+        containerEntity.setEnvironmentVariables(Collections.<String, String>emptyMap());
+        return containerEntity;
+    }
+}
@@ -0,0 +1,128 @@
+package org.nrg.containers.services;
+
+import com.google.common.collect.Lists;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.nrg.containers.api.ContainerControlApi;
+import org.nrg.containers.model.configuration.ContainerServicePrefsBean;
+import org.nrg.containers.model.container.entity.ContainerEntity;
+import org.nrg.containers.model.container.entity.FinalizationWorkEntity;
+import org.nrg.containers.services.impl.ContainerServiceImpl;
+import org.nrg.xdat.preferences.SiteConfigPreferences;
+import org.nrg.xdat.services.AliasTokenService;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * The containers in the claimed work no longer exist, so each finalization only finishes its work.
+ */
+public class ContainerFinalizationPoolTest {
+    private ContainerEntityService mockContainerEntityService;
+    private FinalizationWorkService mockFinalizationWorkService;
+    private ContainerServicePrefsBean mockPrefs;
+    private ContainerServiceImpl containerService;
+    private CountDownLatch release;
+
+    @Before
+    public void setup() throws Exception {
+        mockContainerEntityService = Mockito.mock(ContainerEntityService.class);
+        mockFinalizationWorkService = Mockito.mock(FinalizationWorkService.class);
+        mockPrefs = Mockito.mock(ContainerServicePrefsBean.class);
+        when(mockPrefs.getFinalizationParallelism()).thenReturn(2);
+        when(mockFinalizationWorkService.claim(anyInt(), anyLong())).thenReturn(Collections.<FinalizationWorkEntity>emptyList());
+
+        // Finalizations hold their workers until released
+        release = new CountDownLatch(1);
+        when(mockContainerEntityService.retrieve(anyLong())).thenAnswer(new Answer<ContainerEntity>() {
+            @Override
+            public ContainerEntity answer(final InvocationOnMock invocation) throws Throwable {
+                release.await(5, TimeUnit.SECONDS);
+                return null;
+            }
+        });
+
+        containerService = new ContainerServiceImpl(Mockito.mock(ContainerControlApi.class), mockContainerEntityService,
+                Mockito.mock(CommandResolutionService.class), Mockito.mock(AliasTokenService.class), Mockito.mock(SiteConfigPreferences.class),
+                Mockito.mock(ContainerFinalizeService.class), Mockito.mock(ImageWarmerService.class),
+                Mockito.mock(ContainerCleanupService.class), Mockito.mock(ContainerQueueService.class),
+                mockPrefs, Mockito.mock(DockerServerService.class), mockFinalizationWorkService);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testClaimsOnlyWhatThereAreFreeWorkersFor() throws Exception {
+        when(mockFinalizationWorkService.claim(anyInt(), anyLong()))
+                .thenReturn(Lists.newArrayList(work(1L), work(2L)))
+                .thenReturn(Collections.<FinalizationWorkEntity>emptyList());
+
+        containerService.claimFinalizationWork();
+        verify(mockFinalizationWorkService).claim(eq(2), anyLong());
+
+        // Both workers are busy, so nothing more is claimed, and the running work's leases are renewed
+        containerService.claimFinalizationWork();
+        verify(mockFinalizationWorkService, times(1)).claim(anyInt(), anyLong());
+        final ArgumentCaptor<Collection> renewed = ArgumentCaptor.forClass(Collection.class);
+        verify(mockFinalizationWorkService, times(2)).renew(renewed.capture(), anyLong());
+        assertThat(renewed.getValue().size(), is(2));
+
+        // Each worker that frees up finishes its work and claims more
+        release.countDown();
+        verify(mockFinalizationWorkService, timeout(5000)).finish(1L, false);
+        verify(mockFinalizationWorkService, timeout(5000)).finish(2L, false);
+        verify(mockFinalizationWorkService, timeout(5000).times(3)).claim(anyInt(), anyLong());
+        containerService.destroy();
+    }
+
+    @Test
+    public void testShutdownLetsClaimedWorkFinish() throws Exception {
+        when(mockFinalizationWorkService.claim(anyInt(), anyLong()))
+                .thenReturn(Lists.newArrayList(work(1L), work(2L)))
+                .thenReturn(Collections.<FinalizationWorkEntity>emptyList());
+        containerService.claimFinalizationWork();
+
+        final Thread releaser = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(200L);
+                } catch (InterruptedException ignored) {
+                    // release now
+                }
+                release.countDown();
+            }
+        });
+        releaser.start();
+        containerService.destroy();
+
+        verify(mockFinalizationWorkService).finish(1L, false);
+        verify(mockFinalizationWorkService).finish(2L, false);
+
+        // Nothing more is claimed once the pool is shut down
+        containerService.claimFinalizationWork();
+        verify(mockFinalizationWorkService, times(1)).claim(anyInt(), anyLong());
+    }
+
+    private static FinalizationWorkEntity work(final long containerDatabaseId) {
+        final FinalizationWorkEntity work = FinalizationWorkEntity.create(containerDatabaseId, "me", "0", "Complete", 0L);
+        work.setId(containerDatabaseId);
+        work.setAttempts(1);
+        return work;
+    }
+}
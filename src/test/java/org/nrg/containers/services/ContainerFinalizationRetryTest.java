@@ -0,0 +1,131 @@
+package org.nrg.containers.services;
+
+import com.google.common.collect.Lists;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mockito;
+import org.nrg.containers.api.ContainerControlApi;
+import org.nrg.containers.model.configuration.ContainerServicePrefsBean;
+import org.nrg.containers.model.container.entity.ContainerEntity;
+import org.nrg.containers.model.container.entity.FinalizationWorkEntity;
+import org.nrg.containers.services.impl.ContainerServiceImpl;
+import org.nrg.xdat.preferences.SiteConfigPreferences;
+import org.nrg.xdat.security.helpers.Users;
+import org.nrg.xdat.services.AliasTokenService;
+import org.nrg.xft.security.UserI;
+import org.powermock.core.classloader.annotations.PowerMockIgnore;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import java.util.Collections;
+import java.util.Date;
+
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.powermock.api.mockito.PowerMockito.mockStatic;
+import static org.powermock.api.mockito.PowerMockito.when;
+
+@RunWith(PowerMockRunner.class)
+@PrepareForTest({Users.class})
+@PowerMockIgnore({"org.apache.*", "java.*", "javax.*", "org.w3c.*", "com.sun.*"})
+public class ContainerFinalizationRetryTest {
+    private static final long DATABASE_ID = 5L;
+    private static final long WORK_ID = 7L;
+
+    private ContainerEntityService mockContainerEntityService;
+    private FinalizationWorkService mockFinalizationWorkService;
+    private ContainerServiceImpl containerService;
+
+    @Before
+    public void setup() throws Exception {
+        mockContainerEntityService = Mockito.mock(ContainerEntityService.class);
+        mockFinalizationWorkService = Mockito.mock(FinalizationWorkService.class);
+
+        final UserI mockUser = Mockito.mock(UserI.class);
+        when(mockUser.getLogin()).thenReturn("me");
+        mockStatic(Users.class);
+        when(Users.getUser("me")).thenReturn(mockUser);
+
+        when(mockContainerEntityService.retrieve(DATABASE_ID)).thenReturn(exited());
+
+        containerService = new ContainerServiceImpl(Mockito.mock(ContainerControlApi.class), mockContainerEntityService,
+                Mockito.mock(CommandResolutionService.class), Mockito.mock(AliasTokenService.class), Mockito.mock(SiteConfigPreferences.class),
+                Mockito.mock(ContainerFinalizeService.class), Mockito.mock(ImageWarmerService.class),
+                Mockito.mock(ContainerCleanupService.class), Mockito.mock(ContainerQueueService.class),
+                Mockito.mock(ContainerServicePrefsBean.class), Mockito.mock(DockerServerService.class), mockFinalizationWorkService);
+    }
+
+    @After
+    public void teardown() throws Exception {
+        containerService.destroy();
+    }
+
+    @Test
+    public void testAbandonedWorkIsRetriedFromTheExitStatus() throws Exception {
+        claim(work(2));
+
+        // The container goes back to how it exited, and is finalized again. Here someone else got to it first.
+        verify(mockContainerEntityService, timeout(5000)).claimForFinalization(DATABASE_ID);
+        verify(mockContainerEntityService).compareAndSetStatus(DATABASE_ID, ContainerEntity.FINALIZING, "die");
+        verify(mockFinalizationWorkService, timeout(5000)).finish(WORK_ID, false);
+        verify(mockContainerEntityService, never()).finalizeUnlessFinalized(anyLong(), anyString());
+    }
+
+    @Test
+    public void testWorkAbandonedTooOftenFailsTheContainerWhateverItsStatus() throws Exception {
+        claim(work(4));
+
+        verify(mockFinalizationWorkService, timeout(5000)).finish(WORK_ID, true);
+        verify(mockContainerEntityService).finalizeUnlessFinalized(DATABASE_ID, "Failed");
+        verify(mockContainerEntityService, never()).claimForFinalization(anyLong());
+        verify(mockContainerEntityService, never()).compareAndSetStatus(anyLong(), anyString(), anyString());
+    }
+
+    @Test
+    public void testExitsMissingFromTheWorkTableAreAdded() throws Exception {
+        when(mockFinalizationWorkService.claim(anyInt(), anyLong())).thenReturn(Collections.<FinalizationWorkEntity>emptyList());
+        when(mockContainerEntityService.retrieveExitedWithoutFinalizationWork(Mockito.any(Date.class)))
+                .thenReturn(Lists.newArrayList(DATABASE_ID));
+
+        containerService.scheduleMissedFinalizations();
+
+        verify(mockFinalizationWorkService).enqueue(eq(DATABASE_ID), eq("me"), anyString(), eq("die"), anyLong());
+        verify(mockFinalizationWorkService).claim(anyInt(), anyLong());
+    }
+
+    private void claim(final FinalizationWorkEntity work) {
+        when(mockFinalizationWorkService.claim(anyInt(), anyLong()))
+                .thenReturn(Lists.newArrayList(work))
+                .thenReturn(Collections.<FinalizationWorkEntity>emptyList());
+        containerService.claimFinalizationWork();
+    }
+
+    private static FinalizationWorkEntity work(final int attempts) {
+        final FinalizationWorkEntity work = FinalizationWorkEntity.create(DATABASE_ID, "me", "0", "die", 0L);
+        work.setId(WORK_ID);
+        work.setAttempts(attempts);
+        return work;
+    }
+
+    private static ContainerEntity exited() {
+        final ContainerEntity containerEntity = new ContainerEntity();
+        containerEntity.setId(DATABASE_ID);
+        containerEntity.setCommandId(2L);
+        containerEntity.setWrapperId(3L);
+        containerEntity.setUserId("me");
+        containerEntity.setContainerId("abc123");
+        containerEntity.setDockerImage("image");
+        containerEntity.setCommandLine("run");
+        containerEntity.setStatus("die");
+        containerEntity.setStatusTime(new Date());
+        containerEntity.setEnvironmentVariables(Collections.<String, String>emptyMap());
+        return containerEntity;
+    }
+}
@@ -0,0 +1,131 @@
+package org.nrg.containers.services;
+
+import com.google.common.collect.Lists;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mockito;
+import org.nrg.containers.api.ContainerControlApi;
+import org.nrg.containers.model.command.auto.ResolvedCommand;
+import org.nrg.containers.model.container.ContainerInputType;
+import org.nrg.containers.model.container.auto.Container;
+import org.nrg.containers.model.container.auto.Container.ContainerHistory;
+import org.nrg.containers.model.container.auto.Container.ContainerInput;
+import org.nrg.containers.model.container.auto.Container.ContainerMount;
+import org.nrg.containers.model.container.auto.Container.ContainerMountFiles;
+import org.nrg.containers.model.container.auto.Container.ContainerOutput;
+import org.nrg.containers.services.impl.ContainerFinalizeServiceImpl;
+import org.nrg.transporter.TransportService;
+import org.nrg.xdat.preferences.SiteConfigPreferences;
+import org.nrg.xft.security.UserI;
+import org.nrg.xnat.services.archive.CatalogService;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class ContainerFinalizeServiceTest {
+    private static final String COMPLETE = "Batch item complete";
+    private static final String FAILED = "Batch item failed";
+
+    @Rule public TemporaryFolder folder = new TemporaryFolder(new File("/tmp"));
+
+    private File statusDir;
+    private ContainerFinalizeService containerFinalizeService;
+
+    @Before
+    public void setup() throws Exception {
+        statusDir = folder.newFolder("status");
+        containerFinalizeService = new ContainerFinalizeServiceImpl(Mockito.mock(ContainerControlApi.class),
+                Mockito.mock(SiteConfigPreferences.class), Mockito.mock(TransportService.class),
+                Mockito.mock(CatalogService.class), Mockito.mock(DockerServerService.class));
+    }
+
+    @Test
+    public void testItemsThatReportSuccessCompleteWhenTheContainerExitsNonzero() throws Exception {
+        writeStatus(0, "0");
+        writeStatus(1, "3\n");
+        // Item 2 wrote no status file, so it has the container's exit status
+
+        final Container finalized = containerFinalizeService.finalizeContainer(batch(3, false), Mockito.mock(UserI.class), true);
+
+        assertThat(finalized.status(), is("Complete"));
+        assertThat(batchItemStatuses(finalized), contains(COMPLETE, FAILED, FAILED));
+    }
+
+    @Test
+    public void testItemsWithoutStatusFilesCompleteWhenTheContainerExitsZero() throws Exception {
+        writeStatus(1, "1");
+
+        final Container finalized = containerFinalizeService.finalizeContainer(batch(2, false), Mockito.mock(UserI.class), false);
+
+        assertThat(finalized.status(), is("Complete"));
+        assertThat(batchItemStatuses(finalized), contains(COMPLETE, FAILED));
+    }
+
+    @Test
+    public void testItemsFailOnTheirOwnRequiredOutputs() throws Exception {
+        writeStatus(0, "0");
+        writeStatus(1, "0");
+
+        // The required outputs' directories are empty
+        final Container finalized = containerFinalizeService.finalizeContainer(batch(2, true), Mockito.mock(UserI.class), false);
+
+        assertThat(finalized.status(), is("Failed"));
+        assertThat(batchItemStatuses(finalized), contains(FAILED, FAILED));
+    }
+
+    @Test
+    public void testContainerFailsWhenEveryItemFails() throws Exception {
+        final Container finalized = containerFinalizeService.finalizeContainer(batch(2, false), Mockito.mock(UserI.class), true);
+
+        assertThat(finalized.status(), is("Failed"));
+        assertThat(batchItemStatuses(finalized), contains(FAILED, FAILED));
+    }
+
+    private Container batch(final int items, final boolean requiredOutputs) throws Exception {
+        final Container.Builder builder = Container.builder()
+                .databaseId(1L)
+                .commandId(2L)
+                .wrapperId(3L)
+                .userId("me")
+                .containerId("abc123")
+                .dockerImage("image")
+                .commandLine("run")
+                .addMount(mount(ResolvedCommand.BATCH_STATUS_MOUNT, statusDir));
+        for (int i = 0; i < items; i++) {
+            final String mountName = ResolvedCommand.batchItemName("out", i);
+            builder.addInput(ContainerInput.create(0L, ContainerInputType.RAW, ResolvedCommand.batchItemName("session", i), "XNAT_E" + i))
+                    .addMount(mount(mountName, folder.newFolder("out" + i)))
+                    .addOutput(ContainerOutput.create(0L, ResolvedCommand.batchItemName("result", i), "Resource", requiredOutputs,
+                            mountName, null, null, "RESULT", null, ResolvedCommand.batchItemName("session", i)));
+        }
+        return builder.build();
+    }
+
+    private static ContainerMount mount(final String name, final File hostDir) {
+        return ContainerMount.create(0L, name, true, hostDir.getAbsolutePath(), hostDir.getAbsolutePath(),
+                "/" + name, Collections.<ContainerMountFiles>emptyList());
+    }
+
+    private void writeStatus(final int item, final String exitCode) throws Exception {
+        Files.write(new File(statusDir, ResolvedCommand.batchItemStatusFile(item)).toPath(), exitCode.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static List<String> batchItemStatuses(final Container container) {
+        final List<String> statuses = Lists.newArrayList();
+        for (final ContainerHistory historyItem : container.history()) {
+            if (historyItem.status().startsWith("Batch item")) {
+                statuses.add(historyItem.status());
+            }
+        }
+        return statuses;
+    }
+}
@@ -0,0 +1,145 @@
+package org.nrg.containers.services;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.nrg.containers.model.configuration.ContainerServicePrefsBean;
+import org.nrg.containers.model.container.LaunchPriority;
+import org.nrg.containers.model.container.auto.QueuedLaunch;
+import org.nrg.containers.model.container.entity.ContainerEntity;
+import org.nrg.containers.services.impl.ContainerQueueServiceImpl;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ContainerQueueServiceTest {
+    private ContainerEntityService mockContainerEntityService;
+    private ContainerServicePrefsBean mockPrefs;
+    private ContainerQueueService containerQueueService;
+
+    @Before
+    public void setup() throws Exception {
+        mockContainerEntityService = Mockito.mock(ContainerEntityService.class);
+        mockPrefs = Mockito.mock(ContainerServicePrefsBean.class);
+        when(mockPrefs.getMaxConcurrentContainersPerProject()).thenReturn(0);
+        when(mockPrefs.getMaxConcurrentContainersPerUser()).thenReturn(0);
+        when(mockPrefs.getMaxConcurrentContainersPerWrapper()).thenReturn(0);
+        when(mockContainerEntityService.retrieveQueued()).thenReturn(Collections.<ContainerEntity>emptyList());
+
+        containerQueueService = new ContainerQueueServiceImpl(mockContainerEntityService, mockPrefs);
+    }
+
+    @Test
+    public void testFairShareOrderFavorsUsersWithFewestContainers() throws Exception {
+        final List<ContainerEntity> queued = Lists.newArrayList(
+                entity(1L, "alice", "p1"), entity(2L, "alice", "p1"), entity(3L, "alice", "p1"), entity(4L, "alice", "p1"),
+                entity(5L, "bob", "p1"), entity(6L, "bob", "p1"),
+                entity(7L, "carol", "p2"));
+
+        final List<ContainerEntity> ordered = ContainerQueueServiceImpl.fairShareOrder(queued, ImmutableMap.of("alice", 2L));
+
+        assertThat(ids(ordered), contains(5L, 7L, 6L, 1L, 2L, 3L, 4L));
+    }
+
+    @Test
+    public void testPriorityOrderAgesLowPriorityLaunchesUp() throws Exception {
+        final long now = System.currentTimeMillis();
+        final long aging = TimeUnit.MINUTES.toMillis(10);
+        final List<ContainerEntity> queued = Lists.newArrayList(
+                entity(1L, "alice", "p1", LaunchPriority.EVENT, now - 25 * 60 * 1000L),
+                entity(2L, "alice", "p1", LaunchPriority.EVENT, now - 60 * 1000L),
+                entity(3L, "bob", "p1", LaunchPriority.BULK, now - 60 * 1000L),
+                entity(4L, "carol", "p1", LaunchPriority.INTERACTIVE, now));
+
+        // Without aging, strictly by priority
+        assertThat(ids(ContainerQueueServiceImpl.priorityOrder(queued, Collections.<String, Long>emptyMap(), now, 0L)),
+                contains(4L, 3L, 1L, 2L));
+
+        // Launch 1 has waited two aging intervals, so it competes with interactive launches
+        assertThat(ids(ContainerQueueServiceImpl.priorityOrder(queued, Collections.<String, Long>emptyMap(), now, aging)),
+                contains(1L, 4L, 3L, 2L));
+    }
+
+    @Test
+    public void testNoLimitsNeverQueues() throws Exception {
+        assertThat(containerQueueService.mustQueue("p1", "alice", 1L), is(false));
+        verify(mockContainerEntityService, never()).hasQueued();
+        verify(mockContainerEntityService, never()).countActiveContainers(anyString());
+    }
+
+    @Test
+    public void testProjectLimit() throws Exception {
+        when(mockPrefs.getMaxConcurrentContainersPerProject()).thenReturn(1);
+        when(mockContainerEntityService.countActiveContainers("project")).thenReturn(ImmutableMap.of("p1", 1L));
+
+        assertThat(containerQueueService.mustQueue("p1", "alice", 1L), is(true));
+        assertThat(containerQueueService.mustQueue("p2", "alice", 1L), is(false));
+    }
+
+    @Test
+    public void testUserLimitDispatchesOnlyWhatFits() throws Exception {
+        when(mockPrefs.getMaxConcurrentContainersPerUser()).thenReturn(2);
+        when(mockContainerEntityService.countActiveContainers("userId")).thenReturn(ImmutableMap.of("alice", 2L, "bob", 1L));
+        when(mockContainerEntityService.retrieveQueued()).thenReturn(Lists.newArrayList(
+                entity(1L, "alice", "p1"), entity(2L, "alice", "p1"),
+                entity(3L, "bob", "p1"), entity(4L, "bob", "p1")));
+
+        assertThat(ids(containerQueueService.getDispatchable()), contains(3L));
+
+        final List<QueuedLaunch> queue = containerQueueService.getQueue();
+        assertThat(queue.size(), is(4));
+        assertThat(queue.get(0).databaseId(), is(3L));
+        assertThat(queue.get(0).position(), is(1));
+        assertThat(queue.get(0).waitingOn(), is(nullValue()));
+        assertThat(queue.get(1).databaseId(), is(1L));
+        assertThat(queue.get(1).waitingOn(), is("user"));
+        assertThat(queue.get(2).databaseId(), is(4L));
+        assertThat(queue.get(2).waitingOn(), is("user"));
+        assertThat(queue.get(3).databaseId(), is(2L));
+        assertThat(queue.get(3).position(), is(4));
+
+        // Someone is already waiting, so a new launch waits its turn too
+        when(mockContainerEntityService.hasQueued()).thenReturn(true);
+        assertThat(containerQueueService.mustQueue("p2", "carol", 1L), is(true));
+    }
+
+    private ContainerEntity entity(final long id, final String userId, final String project) {
+        final ContainerEntity containerEntity = new ContainerEntity();
+        containerEntity.setId(id);
+        containerEntity.setUserId(userId);
+        containerEntity.setProject(project);
+        containerEntity.setWrapperId(1L);
+        containerEntity.setStatus(ContainerEntity.QUEUED);
+        containerEntity.setStatusTime(new Date());
+        return containerEntity;
+    }
+
+    private ContainerEntity entity(final long id, final String userId, final String project,
+                                   final LaunchPriority priority, final long queuedAt) {
+        final ContainerEntity containerEntity = entity(id, userId, project);
+        containerEntity.setPriority(priority.getName());
+        containerEntity.setStatusTime(new Date(queuedAt));
+        return containerEntity;
+    }
+
+    private List<Long> ids(final List<ContainerEntity> containerEntities) {
+        final List<Long> ids = Lists.newArrayList();
+        for (final ContainerEntity containerEntity : containerEntities) {
+            ids.add(containerEntity.getId());
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,121 @@
+package org.nrg.containers.services;
+
+import com.google.common.collect.Lists;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.nrg.containers.config.FinalizationWorkTestConfig;
+import org.nrg.containers.model.container.auto.FinalizationNodeStats;
+import org.nrg.containers.model.container.entity.FinalizationWorkEntity;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@Transactional
+@ContextConfiguration(classes = FinalizationWorkTestConfig.class)
+public class FinalizationWorkServiceTest {
+    private static final long LEASE_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
+    @Autowired @Qualifier("thisNodeFinalizationWorkService") private FinalizationWorkService thisNode;
+    @Autowired @Qualifier("otherNodeFinalizationWorkService") private FinalizationWorkService otherNode;
+
+    @Test
+    @DirtiesContext
+    public void testEnqueueOnce() {
+        assertThat(thisNode.enqueue(1L, "user", "0", "die", 100L), is(true));
+        assertThat(otherNode.enqueue(1L, "user", "0", "die", 100L), is(false));
+    }
+
+    @Test
+    @DirtiesContext
+    public void testClaimInSortOrderAndOnlyOnce() {
+        thisNode.enqueue(1L, "user", "0", "die", 300L);
+        thisNode.enqueue(2L, "user", "0", "die", 100L);
+        thisNode.enqueue(3L, "user", "0", "die", 200L);
+
+        final List<FinalizationWorkEntity> claimed = thisNode.claim(2, LEASE_MILLIS);
+        assertThat(containerIds(claimed), contains(2L, 3L));
+        assertThat(claimed.get(0).getClaimedBy(), is("this-node"));
+        assertThat(claimed.get(0).getAttempts(), is(1));
+
+        final List<FinalizationWorkEntity> claimedByOther = otherNode.claim(5, LEASE_MILLIS);
+        assertThat(containerIds(claimedByOther), contains(1L));
+        assertThat(otherNode.claim(5, LEASE_MILLIS), is(empty()));
+    }
+
+    @Test
+    @DirtiesContext
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void testClaimWithoutACallerTransaction() {
+        thisNode.enqueue(1L, "user", "0", "die", 100L);
+        thisNode.enqueue(2L, "user", "0", "die", 200L);
+
+        // Each claim is committed on its own, so the other node sees both as taken
+        final List<FinalizationWorkEntity> claimed = thisNode.claim(5, LEASE_MILLIS);
+        assertThat(containerIds(claimed), contains(1L, 2L));
+        assertThat(claimed.get(1).getClaimedBy(), is("this-node"));
+        assertThat(otherNode.claim(5, LEASE_MILLIS), is(empty()));
+        assertThat(otherNode.getNodeStats(), contains(FinalizationNodeStats.create("this-node", 2L, 0L, 0L, 2L)));
+    }
+
+    @Test
+    @DirtiesContext
+    public void testAbandonedClaimIsRetriedAfterTheLeaseExpires() {
+        thisNode.enqueue(1L, "user", "0", "die", 100L);
+        final long workId = thisNode.claim(1, -1L).get(0).getId();
+
+        final List<FinalizationWorkEntity> retried = otherNode.claim(1, LEASE_MILLIS);
+        assertThat(retried, hasSize(1));
+        assertThat(retried.get(0).getId(), is(workId));
+        assertThat(retried.get(0).getClaimedBy(), is("other-node"));
+        assertThat(retried.get(0).getAttempts(), is(2));
+
+        // The node that lost the lease cannot finish the work or renew its claim
+        thisNode.finish(workId, false);
+        thisNode.renew(Collections.singletonList(workId), LEASE_MILLIS);
+        assertThat(thisNode.claim(1, LEASE_MILLIS), is(empty()));
+
+        otherNode.finish(workId, false);
+        assertThat(otherNode.claim(1, LEASE_MILLIS), is(empty()));
+    }
+
+    @Test
+    @DirtiesContext
+    public void testNodeStats() {
+        for (long containerId = 1L; containerId <= 4L; containerId++) {
+            thisNode.enqueue(containerId, "user", "0", "die", containerId);
+        }
+        final List<FinalizationWorkEntity> thisNodeWork = thisNode.claim(3, LEASE_MILLIS);
+        final List<FinalizationWorkEntity> otherNodeWork = otherNode.claim(3, LEASE_MILLIS);
+        thisNode.finish(thisNodeWork.get(0).getId(), false);
+        thisNode.finish(thisNodeWork.get(1).getId(), true);
+        otherNode.finish(otherNodeWork.get(0).getId(), false);
+
+        final List<FinalizationNodeStats> stats = thisNode.getNodeStats();
+        assertThat(stats, contains(
+                FinalizationNodeStats.create("this-node", 3L, 1L, 1L, 1L),
+                FinalizationNodeStats.create("other-node", 1L, 1L, 0L, 0L)));
+    }
+
+    private static List<Long> containerIds(final List<FinalizationWorkEntity> work) {
+        final List<Long> containerIds = Lists.newArrayList();
+        for (final FinalizationWorkEntity item : work) {
+            containerIds.add(item.getContainerDatabaseId());
+        }
+        return containerIds;
+    }
+}
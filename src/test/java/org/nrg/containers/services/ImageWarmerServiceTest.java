@@ -0,0 +1,207 @@
+package org.nrg.containers.services;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.nrg.containers.api.ContainerControlApi;
+import org.nrg.containers.model.configuration.ContainerServicePrefsBean;
+import org.nrg.containers.model.dockerhub.DockerHubBase.DockerHub;
+import org.nrg.containers.model.image.docker.DockerImage;
+import org.nrg.containers.model.image.docker.WarmImageStatus;
+import org.nrg.containers.model.server.docker.DockerServerBase.DockerServer;
+import org.nrg.containers.services.impl.ImageWarmerServiceImpl;
+import org.nrg.framework.exceptions.NotFoundException;
+
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ImageWarmerServiceTest {
+    private static final String IMAGE = "xnat/warm";
+    private static final DockerServer SERVER = DockerServer.create(1L, "server", "unix:///var/run/docker.sock", null, false, new Date());
+    private static final DockerServer OTHER_SERVER = DockerServer.create(2L, "other", "tcp://other:2375", null, false, new Date());
+
+    private ContainerControlApi mockControlApi;
+    private ImageWarmerServiceImpl imageWarmerService;
+
+    @Before
+    public void setup() throws Exception {
+        mockControlApi = Mockito.mock(ContainerControlApi.class);
+        final DockerServerService mockDockerServerService = Mockito.mock(DockerServerService.class);
+        when(mockDockerServerService.getServer()).thenReturn(SERVER);
+        imageWarmerService = new ImageWarmerServiceImpl(mockControlApi,
+                Mockito.mock(CommandService.class),
+                Mockito.mock(CommandEventMappingService.class),
+                Mockito.mock(ContainerEntityService.class),
+                Mockito.mock(ContainerServicePrefsBean.class),
+                mockDockerServerService);
+    }
+
+    @After
+    public void teardown() {
+        imageWarmerService.destroy();
+    }
+
+    @Test
+    public void testConcurrentPullsOfTheSameImageAreDeduplicated() throws Exception {
+        final DockerImage image = DockerImage.builder()
+                .imageId("sha256:warm")
+                .addTag(IMAGE + ":latest")
+                .build();
+        final CountDownLatch pullStarted = new CountDownLatch(1);
+        final CountDownLatch finishPull = new CountDownLatch(1);
+        when(mockControlApi.getImageById(SERVER, IMAGE + ":latest")).thenThrow(new NotFoundException("not here"));
+        when(mockControlApi.pullImage(SERVER, IMAGE + ":latest")).thenAnswer(new Answer<DockerImage>() {
+            @Override
+            public DockerImage answer(final InvocationOnMock invocation) throws Throwable {
+                pullStarted.countDown();
+                finishPull.await(10, TimeUnit.SECONDS);
+                return image;
+            }
+        });
+
+        // An untagged name is the same image as its "latest" tag
+        final Future<DockerImage> first = imageWarmerService.warm(SERVER, IMAGE);
+        final Future<DockerImage> second = imageWarmerService.warm(SERVER, IMAGE + ":latest");
+        assertThat(second, is(sameInstance(first)));
+
+        assertThat(pullStarted.await(10, TimeUnit.SECONDS), is(true));
+        final List<WarmImageStatus> pulling = imageWarmerService.getStatus();
+        assertThat(pulling, hasSize(1));
+        assertThat(pulling.get(0).state(), is(WarmImageStatus.PULLING));
+
+        finishPull.countDown();
+        assertThat(first.get(10, TimeUnit.SECONDS), is(image));
+        imageWarmerService.awaitPull(SERVER, IMAGE);
+        verify(mockControlApi, times(1)).pullImage(SERVER, IMAGE + ":latest");
+
+        final List<WarmImageStatus> pulled = imageWarmerService.getStatus();
+        assertThat(pulled, hasSize(1));
+        assertThat(pulled.get(0).state(), is(WarmImageStatus.PULLED));
+    }
+
+    @Test
+    public void testPullsOntoEachServerSeparately() throws Exception {
+        final DockerImage image = DockerImage.builder()
+                .imageId("sha256:warm")
+                .addTag(IMAGE + ":latest")
+                .build();
+        when(mockControlApi.getImageById(SERVER, IMAGE + ":latest")).thenReturn(image);
+        when(mockControlApi.getImageById(OTHER_SERVER, IMAGE + ":latest")).thenThrow(new NotFoundException("not here"));
+        when(mockControlApi.pullImage(OTHER_SERVER, IMAGE + ":latest")).thenReturn(image);
+
+        final Future<DockerImage> onServer = imageWarmerService.warm(SERVER, IMAGE);
+        final Future<DockerImage> onOtherServer = imageWarmerService.warm(OTHER_SERVER, IMAGE);
+        assertThat(onOtherServer, is(not(sameInstance(onServer))));
+        assertThat(onServer.get(10, TimeUnit.SECONDS), is(image));
+        assertThat(onOtherServer.get(10, TimeUnit.SECONDS), is(image));
+
+        verify(mockControlApi, never()).pullImage(SERVER, IMAGE + ":latest");
+        verify(mockControlApi, times(1)).pullImage(OTHER_SERVER, IMAGE + ":latest");
+
+        final List<WarmImageStatus> status = imageWarmerService.getStatus();
+        assertThat(status, hasSize(2));
+        assertThat(status.get(0).server(), is("other"));
+        assertThat(status.get(0).state(), is(WarmImageStatus.PULLED));
+        assertThat(status.get(1).server(), is("server"));
+        assertThat(status.get(1).state(), is(WarmImageStatus.PRESENT));
+    }
+
+    @Test
+    public void testPullFromHubWaitsForAnImageBeingWarmed() throws Exception {
+        final DockerImage image = DockerImage.builder()
+                .imageId("sha256:warm")
+                .addTag(IMAGE + ":latest")
+                .build();
+        final CountDownLatch pullStarted = new CountDownLatch(1);
+        final CountDownLatch finishPull = new CountDownLatch(1);
+        when(mockControlApi.getImageById(SERVER, IMAGE + ":latest")).thenThrow(new NotFoundException("not here"));
+        when(mockControlApi.pullImage(SERVER, IMAGE + ":latest")).thenAnswer(blockUntil(pullStarted, finishPull, image));
+
+        final Future<DockerImage> warm = imageWarmerService.warm(SERVER, IMAGE);
+        assertThat(pullStarted.await(10, TimeUnit.SECONDS), is(true));
+
+        final FutureTask<DockerImage> pullFromHub = pullFromHub();
+        final Thread pullFromHubThread = new Thread(pullFromHub);
+        pullFromHubThread.start();
+        awaitState(pullFromHubThread, Thread.State.WAITING);
+
+        finishPull.countDown();
+        assertThat(warm.get(10, TimeUnit.SECONDS), is(image));
+        assertThat(pullFromHub.get(10, TimeUnit.SECONDS), is(image));
+        verify(mockControlApi, never()).pullImage(IMAGE, DockerHub.DEFAULT, null, null);
+    }
+
+    @Test
+    public void testWarmingWaitsForAPullFromHub() throws Exception {
+        final DockerImage image = DockerImage.builder()
+                .imageId("sha256:warm")
+                .addTag(IMAGE + ":latest")
+                .build();
+        final CountDownLatch pullStarted = new CountDownLatch(1);
+        final CountDownLatch finishPull = new CountDownLatch(1);
+        when(mockControlApi.pullImage(IMAGE, DockerHub.DEFAULT, null, null)).thenAnswer(blockUntil(pullStarted, finishPull, image));
+
+        final FutureTask<DockerImage> pullFromHub = pullFromHub();
+        new Thread(pullFromHub).start();
+        assertThat(pullStarted.await(10, TimeUnit.SECONDS), is(true));
+
+        // Warming and launches share the pull from the hub
+        final Future<DockerImage> warm = imageWarmerService.warm(SERVER, IMAGE);
+        assertThat(imageWarmerService.getStatus().get(0).state(), is(WarmImageStatus.PULLING));
+
+        finishPull.countDown();
+        imageWarmerService.awaitPull(SERVER, IMAGE);
+        assertThat(pullFromHub.get(10, TimeUnit.SECONDS), is(image));
+        assertThat(warm.get(10, TimeUnit.SECONDS), is(image));
+        verify(mockControlApi, times(1)).pullImage(IMAGE, DockerHub.DEFAULT, null, null);
+        verify(mockControlApi, never()).getImageById(SERVER, IMAGE + ":latest");
+        verify(mockControlApi, never()).pullImage(SERVER, IMAGE + ":latest");
+    }
+
+    private FutureTask<DockerImage> pullFromHub() {
+        return new FutureTask<>(new Callable<DockerImage>() {
+            @Override
+            public DockerImage call() throws Exception {
+                return imageWarmerService.pull(IMAGE, DockerHub.DEFAULT, null, null);
+            }
+        });
+    }
+
+    private static Answer<DockerImage> blockUntil(final CountDownLatch started, final CountDownLatch finish,
+                                                  final DockerImage image) {
+        return new Answer<DockerImage>() {
+            @Override
+            public DockerImage answer(final InvocationOnMock invocation) throws Throwable {
+                started.countDown();
+                finish.await(10, TimeUnit.SECONDS);
+                return image;
+            }
+        };
+    }
+
+    private static void awaitState(final Thread thread, final Thread.State state) {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (thread.getState() != state) {
+            assertThat("Thread did not reach " + state + " in time.", System.nanoTime() < deadline, is(true));
+            Thread.yield();
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package org.nrg.containers.services.impl;
+
+import com.google.common.collect.Lists;
+import org.junit.After;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.nrg.containers.model.command.auto.Command;
+import org.nrg.containers.model.command.auto.Command.CommandWrapper;
+import org.nrg.containers.model.command.entity.CommandEntity;
+import org.nrg.containers.services.CommandEntityService;
+import org.nrg.containers.services.ContainerConfigService;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class CommandCatalogTest {
+    private static final String XSI_TYPE = "xnat:mrSessionData";
+
+    @After
+    public void teardown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    public void testEntriesForXsiTypeAreIndexedPerSnapshot() throws Exception {
+        final Command first = command(1L, 10L, XSI_TYPE);
+        final CommandCatalog catalog = CommandCatalog.build(0L, Collections.singletonList(first));
+
+        final List<CommandCatalog.Entry> entries = catalog.entriesFor(XSI_TYPE);
+        assertThat(wrapperIds(entries), contains(10L));
+        assertThat(catalog.entriesFor(XSI_TYPE), is(sameInstance(entries)));
+
+        // A new snapshot does not reuse the old snapshot's index
+        final CommandCatalog withSecond = catalog.withCommand(command(2L, 20L, XSI_TYPE));
+        assertThat(wrapperIds(withSecond.entriesFor(XSI_TYPE)), contains(10L, 20L));
+        assertThat(wrapperIds(catalog.entriesFor(XSI_TYPE)), contains(10L));
+
+        assertThat(wrapperIds(withSecond.withoutCommand(1L).entriesFor(XSI_TYPE)), contains(20L));
+    }
+
+    @Test
+    public void testChangesBumpTheVersionButNotTheAge() throws Exception {
+        final long tenMinutesAgo = System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(10);
+        final CommandCatalog catalog = CommandCatalog.build(3L, Collections.singletonList(command(1L, 10L, XSI_TYPE)), tenMinutesAgo);
+
+        final CommandCatalog withCommand = catalog.withCommand(command(2L, 20L, XSI_TYPE));
+        assertThat(withCommand.version(), is(4L));
+        final CommandCatalog withoutCommand = withCommand.withoutCommand(1L);
+        assertThat(withoutCommand.version(), is(5L));
+        assertThat(withoutCommand.command(1L), is(nullValue()));
+        assertThat(catalog.command(1L), is(not(nullValue())));
+
+        // Derived snapshots still need rebuilding to pick up changes made on other nodes
+        assertThat(withCommand.isOlderThan(TimeUnit.MINUTES.toMillis(1)), is(true));
+        assertThat(withoutCommand.isOlderThan(TimeUnit.MINUTES.toMillis(1)), is(true));
+    }
+
+    @Test
+    public void testCatalogIsThrownAwayWhenTheTransactionRollsBack() throws Exception {
+        final Command command = command(1L, 10L, XSI_TYPE);
+        final CommandEntityService mockCommandEntityService = Mockito.mock(CommandEntityService.class);
+        when(mockCommandEntityService.getAll()).thenReturn(Collections.singletonList(CommandEntity.fromPojo(command)));
+        final CommandServiceImpl commandService = new CommandServiceImpl(mockCommandEntityService,
+                Mockito.mock(ContainerConfigService.class));
+
+        final long version = commandService.getCatalogVersion();
+        assertThat(commandService.retrieve(1L), is(not(nullValue())));
+
+        TransactionSynchronizationManager.initSynchronization();
+        commandService.delete(command);
+        assertThat(commandService.getCatalogVersion(), is(version + 1));
+        assertThat(commandService.retrieve(1L), is(nullValue()));
+
+        for (final TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            synchronization.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK);
+        }
+        TransactionSynchronizationManager.clearSynchronization();
+
+        // The delete never happened, so the catalog is rebuilt from the database with the command in it
+        assertThat(commandService.retrieve(1L), is(not(nullValue())));
+        assertThat(commandService.getCatalogVersion(), is(version + 2));
+        verify(mockCommandEntityService, times(2)).getAll();
+    }
+
+    private static Command command(final long commandId, final long wrapperId, final String context) {
+        return Command.builder()
+                .id(commandId)
+                .name("command-" + commandId)
+                .image("xnat/command:" + commandId)
+                .addCommandWrapper(CommandWrapper.builder()
+                        .id(wrapperId)
+                        .name("wrapper-" + wrapperId)
+                        .addContext(context)
+                        .build())
+                .build();
+    }
+
+    private static List<Long> wrapperIds(final List<CommandCatalog.Entry> entries) {
+        final List<Long> wrapperIds = Lists.newArrayList();
+        for (final CommandCatalog.Entry entry : entries) {
+            wrapperIds.add(entry.wrapper().id());
+        }
+        return wrapperIds;
+    }
+}
@@ -0,0 +1,219 @@
+package org.nrg.containers.services.impl;
+
+import com.google.common.base.Ticker;
+import com.google.common.collect.Lists;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.nrg.containers.api.ContainerControlApi;
+import org.nrg.containers.exceptions.DockerServerException;
+import org.nrg.containers.model.dockerhub.DockerHubBase.DockerHub;
+import org.nrg.containers.model.dockerhub.DockerHubBase.DockerHubWithPing;
+import org.nrg.containers.model.server.docker.DockerServerBase.DockerServer;
+import org.nrg.containers.services.DockerHubService;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class DockerHealthServiceTest {
+    private static final DockerServer SERVER = DockerServer.create(1L, "server", "unix:///var/run/docker.sock", null, false, new Date());
+    private static final DockerHub HUB = DockerHub.create(1L, "hub", "https://hub.example.com", false);
+
+    private final FakeTicker ticker = new FakeTicker();
+    private ContainerControlApi mockControlApi;
+    private DockerHubService mockDockerHubService;
+    private DockerHealthServiceImpl dockerHealthService;
+
+    @Before
+    public void setup() throws Exception {
+        mockControlApi = Mockito.mock(ContainerControlApi.class);
+        mockDockerHubService = Mockito.mock(DockerHubService.class);
+        when(mockControlApi.ping()).thenReturn("OK");
+        when(mockControlApi.ping(SERVER)).thenReturn("OK");
+        when(mockControlApi.pingHub(HUB, null, null)).thenReturn("OK");
+
+        dockerHealthService = new DockerHealthServiceImpl(mockControlApi, mockDockerHubService, ticker);
+    }
+
+    @After
+    public void teardown() {
+        dockerHealthService.destroy();
+    }
+
+    @Test
+    public void testServerAnswerIsCachedUntilItIsTooOld() throws Exception {
+        assertThat(dockerHealthService.isServerReachable(), is(true));
+        assertThat(dockerHealthService.isServerReachable(SERVER), is(true));
+
+        when(mockControlApi.ping()).thenThrow(new DockerServerException("down"));
+        when(mockControlApi.ping(SERVER)).thenThrow(new DockerServerException("down"));
+        ticker.advance(29, TimeUnit.SECONDS);
+        assertThat(dockerHealthService.isServerReachable(), is(true));
+        assertThat(dockerHealthService.isServerReachable(SERVER), is(true));
+        verify(mockControlApi, times(1)).ping();
+        verify(mockControlApi, times(1)).ping(SERVER);
+
+        ticker.advance(1, TimeUnit.SECONDS);
+        assertThat(dockerHealthService.isServerReachable(), is(false));
+        assertThat(dockerHealthService.isServerReachable(SERVER), is(false));
+        verify(mockControlApi, times(2)).ping();
+        verify(mockControlApi, times(2)).ping(SERVER);
+    }
+
+    @Test
+    public void testHubAnswerIsCachedUntilItIsTooOld() throws Exception {
+        assertThat(dockerHealthService.ping(HUB).ping(), is(true));
+
+        ticker.advance(119, TimeUnit.SECONDS);
+        assertThat(dockerHealthService.ping(HUB).ping(), is(true));
+        verify(mockControlApi, times(1)).pingHub(HUB, null, null);
+
+        ticker.advance(1, TimeUnit.SECONDS);
+        assertThat(dockerHealthService.ping(HUB).ping(), is(true));
+        verify(mockControlApi, times(2)).pingHub(HUB, null, null);
+    }
+
+    @Test
+    public void testRefreshRepingsHubsBeforeTheirAnswersAreTooOld() throws Exception {
+        when(mockDockerHubService.getHubs()).thenReturn(Collections.singletonList(HUB));
+        dockerHealthService.ping(HUB);
+
+        ticker.advance(59, TimeUnit.SECONDS);
+        dockerHealthService.refresh();
+        verify(mockControlApi, times(1)).pingHub(HUB, null, null);
+
+        ticker.advance(1, TimeUnit.SECONDS);
+        dockerHealthService.refresh();
+        verify(mockControlApi, times(2)).pingHub(HUB, null, null);
+    }
+
+    @Test
+    public void testConcurrentServerPingsAreDeduplicated() throws Exception {
+        final CountDownLatch pingStarted = new CountDownLatch(1);
+        final CountDownLatch finishPing = new CountDownLatch(1);
+        when(mockControlApi.ping()).thenAnswer(blockUntil(pingStarted, finishPing));
+
+        final FutureTask<Boolean> first = isServerReachable();
+        new Thread(first).start();
+        assertThat(pingStarted.await(10, TimeUnit.SECONDS), is(true));
+
+        // The second caller waits for the first one's answer instead of pinging again
+        final FutureTask<Boolean> second = isServerReachable();
+        final Thread secondThread = new Thread(second);
+        secondThread.start();
+        awaitState(secondThread, Thread.State.BLOCKED);
+
+        finishPing.countDown();
+        assertThat(first.get(10, TimeUnit.SECONDS), is(true));
+        assertThat(second.get(10, TimeUnit.SECONDS), is(true));
+        verify(mockControlApi, times(1)).ping();
+    }
+
+    @Test
+    public void testConcurrentHubPingsAreDeduplicated() throws Exception {
+        final CountDownLatch pingStarted = new CountDownLatch(1);
+        final CountDownLatch finishPing = new CountDownLatch(1);
+        when(mockControlApi.pingHub(HUB, null, null)).thenAnswer(blockUntil(pingStarted, finishPing));
+
+        final FutureTask<DockerHubWithPing> first = pingHub();
+        new Thread(first).start();
+        assertThat(pingStarted.await(10, TimeUnit.SECONDS), is(true));
+
+        // The second caller waits on the ping that is already in flight
+        final FutureTask<DockerHubWithPing> second = pingHub();
+        final Thread secondThread = new Thread(second);
+        secondThread.start();
+        awaitState(secondThread, Thread.State.TIMED_WAITING);
+
+        finishPing.countDown();
+        assertThat(first.get(10, TimeUnit.SECONDS).ping(), is(true));
+        assertThat(second.get(10, TimeUnit.SECONDS).ping(), is(true));
+        verify(mockControlApi, times(1)).pingHub(HUB, null, null);
+    }
+
+    @Test
+    public void testHubsArePingedTogether() throws Exception {
+        final DockerHub otherHub = DockerHub.create(2L, "other", "https://other.example.com", false);
+        final CountDownLatch bothStarted = new CountDownLatch(2);
+        final CountDownLatch finishPing = new CountDownLatch(1);
+        when(mockControlApi.pingHub(HUB, null, null)).thenAnswer(blockUntil(bothStarted, finishPing));
+        when(mockControlApi.pingHub(otherHub, null, null)).thenAnswer(blockUntil(bothStarted, finishPing));
+
+        final FutureTask<?> ping = new FutureTask<>(new Callable<Object>() {
+            @Override
+            public Object call() {
+                return dockerHealthService.ping(Lists.newArrayList(HUB, otherHub));
+            }
+        });
+        new Thread(ping).start();
+
+        // Both pings are under way before either has answered
+        assertThat(bothStarted.await(10, TimeUnit.SECONDS), is(true));
+        finishPing.countDown();
+        ping.get(10, TimeUnit.SECONDS);
+    }
+
+    private FutureTask<Boolean> isServerReachable() {
+        return new FutureTask<>(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return dockerHealthService.isServerReachable();
+            }
+        });
+    }
+
+    private FutureTask<DockerHubWithPing> pingHub() {
+        return new FutureTask<>(new Callable<DockerHubWithPing>() {
+            @Override
+            public DockerHubWithPing call() {
+                return dockerHealthService.ping(HUB);
+            }
+        });
+    }
+
+    private static Answer<String> blockUntil(final CountDownLatch started, final CountDownLatch finish) {
+        return new Answer<String>() {
+            @Override
+            public String answer(final InvocationOnMock invocation) throws Throwable {
+                started.countDown();
+                finish.await(10, TimeUnit.SECONDS);
+                return "OK";
+            }
+        };
+    }
+
+    private static void awaitState(final Thread thread, final Thread.State state) {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (thread.getState() != state) {
+            assertThat("Thread did not reach " + state + " in time.", System.nanoTime() < deadline, is(true));
+            Thread.yield();
+        }
+    }
+
+    private static class FakeTicker extends Ticker {
+        private final AtomicLong nanos = new AtomicLong();
+
+        @Override
+        public long read() {
+            return nanos.get();
+        }
+
+        void advance(final long time, final TimeUnit unit) {
+            nanos.addAndGet(unit.toNanos(time));
+        }
+    }
+}